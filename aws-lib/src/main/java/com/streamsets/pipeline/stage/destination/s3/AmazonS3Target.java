@@ -134,6 +134,11 @@ public class AmazonS3Target extends BaseTarget {
     }
     if (getContext().getService(DataFormatGeneratorService.class).isWholeFileFormat()) {
       fileHelper = new WholeFileHelper(getContext(), s3TargetConfigBean, transferManager, issues);
+    } else if (s3TargetConfigBean.streamUpload) {
+      // Upload buffers are sized after the part size, which must have been validated
+      if (issues.isEmpty()) {
+        fileHelper = new StreamingFileHelper(getContext(), s3TargetConfigBean, transferManager);
+      }
     } else {
       fileHelper = new DefaultFileHelper(getContext(), s3TargetConfigBean, transferManager);
     }
@@ -145,6 +150,9 @@ public class AmazonS3Target extends BaseTarget {
 
   @Override
   public void destroy() {
+    if (fileHelper != null) {
+      fileHelper.destroy();
+    }
     s3TargetConfigBean.s3Config.destroy();
     if (transferManager != null) {
       // don't shut down s3 client again since it's already closed by s3Config.destroy().
@@ -171,7 +179,7 @@ public class AmazonS3Target extends BaseTarget {
       for (UploadMetadata upload : uploads) {
         try {
           // Wait for given object to fully upload
-          upload.getUpload().waitForCompletion();
+          upload.waitForCompletion();
 
           // Propagate events associated with this upload
           for(EventRecord event : upload.getEvents()) {
@@ -90,6 +90,12 @@ public class AmazonS3TargetUpgrader implements StageUpgrader {
         // fall through
       case 10:
         upgradeV10toV11(configs, context);
+        if(toVersion == 11) {
+          break;
+        }
+        // fall through
+      case 11:
+        upgradeV11toV12(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -240,4 +246,11 @@ public class AmazonS3TargetUpgrader implements StageUpgrader {
     context.registerService(DataFormatGeneratorService.class, dataFormatConfigs);
   }
 
+  private static void upgradeV11toV12(List<Config> configs) {
+    configs.add(new Config(S3TargetConfigBean.S3_TARGET_CONFIG_BEAN_PREFIX + "streamUpload", false));
+    configs.add(new Config(S3TargetConfigBean.S3_TARGET_CONFIG_BEAN_PREFIX + "uploadBuffers", 4));
+    configs.add(new Config(S3TargetConfigBean.S3_TARGET_CONFIG_BEAN_PREFIX + "offHeapUploadBuffers", false));
+    configs.add(new Config(S3TargetConfigBean.S3_TARGET_CONFIG_BEAN_PREFIX + "maxObjectSize", 0));
+  }
+
 }
@@ -27,6 +27,7 @@ public enum Errors implements ErrorCode {
   S3_04("Invalid time basis expression '{}': {}"),
   S3_05("File Name Prefix cannot be empty"),
   S3_06("File Name Suffix contains '/' or starts with '.'"),
+  S3_07("Minimum Upload Part Size must be between {} and {} bytes when Stream Upload is enabled"),
 
 
   S3_20("Cannot connect to Amazon S3, reason : {}"),
@@ -20,14 +20,17 @@ import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.services.s3.model.SSECustomerKey;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.util.StringUtils;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.Target;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.stage.common.DefaultErrorRecordHandler;
 import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
+import com.streamsets.pipeline.stage.lib.aws.SSEOption;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,12 +46,17 @@ abstract class FileHelper {
   protected static final String OBJECT_KEY = "objectKey";
   protected static final String RECORD_COUNT = "recordCount";
 
+  private static final String GZIP_EXTENSION = ".gz";
+  private static final String DOT = ".";
+
   private final TransferManager transferManager;
 
   protected final Target.Context context;
   protected final S3TargetConfigBean s3TargetConfigBean;
   protected final ErrorRecordHandler errorRecordHandler;
 
+  private int fileCount = 0;
+
   FileHelper(Target.Context context, S3TargetConfigBean s3TargetConfigBean, TransferManager transferManager) {
     this.context = context;
     this.s3TargetConfigBean = s3TargetConfigBean;
@@ -58,6 +66,25 @@ abstract class FileHelper {
 
   abstract List<UploadMetadata> handle(Iterator<Record> recordIterator, String bucket, String keyPrefix) throws IOException, StageException;
 
+  void destroy() {
+  }
+
+  protected String getUniqueDateWithIncrementalFileName(String keyPrefix) {
+    fileCount++;
+    StringBuilder fileName = new StringBuilder();
+    fileName = fileName.append(keyPrefix).append(fileCount);
+
+    if (!StringUtils.isNullOrEmpty(s3TargetConfigBean.fileNameSuffix)) {
+      fileName.append(DOT);
+      fileName = fileName.append(s3TargetConfigBean.fileNameSuffix);
+    }
+
+    if (s3TargetConfigBean.compress) {
+      fileName = fileName.append(GZIP_EXTENSION);
+    }
+    return fileName.toString();
+  }
+
   protected ObjectMetadata getObjectMetadata() throws StageException {
     ObjectMetadata metadata = null;
     if (s3TargetConfigBean.sseConfig.useSSE) {
@@ -102,6 +129,14 @@ abstract class FileHelper {
     return metadata;
   }
 
+  protected SSECustomerKey getSSECustomerKey() throws StageException {
+    if (s3TargetConfigBean.sseConfig.useSSE && s3TargetConfigBean.sseConfig.encryption == SSEOption.CUSTOMER) {
+      return new SSECustomerKey(s3TargetConfigBean.sseConfig.customerKey.get())
+          .withMd5(s3TargetConfigBean.sseConfig.customerKeyMd5.get());
+    }
+    return null;
+  }
+
   Upload doUpload(String bucket, String fileName, InputStream is, ObjectMetadata metadata) {
     final PutObjectRequest putObjectRequest = new PutObjectRequest(
         bucket,
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.SSECustomerKey;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Output stream that uploads an Amazon S3 object while it is being written.
+ *
+ * Data is collected in buffers taken from an {@link UploadBufferPool}. Every time a buffer fills up it is sent as
+ * the next part of a multipart upload on the given executor, so at most the pool's buffers are held in memory no
+ * matter how big the object gets. Objects that never fill a buffer are sent with a single put request instead.
+ *
+ * Upload failures don't surface on {@link #write} right away: they fail the next write once known, and always fail
+ * the future returned by {@link #getCompletion()}, which completes when the object is fully uploaded after
+ * {@link #close()}. A failed multipart upload is aborted so that S3 doesn't keep its parts around.
+ */
+final class S3MultipartOutputStream extends OutputStream {
+  private static final Logger LOG = LoggerFactory.getLogger(S3MultipartOutputStream.class);
+
+  private final AmazonS3 s3Client;
+  private final Executor executor;
+  private final UploadBufferPool buffers;
+  private final String bucket;
+  private final String key;
+  private final ObjectMetadata metadata;
+  private final SSECustomerKey sseCustomerKey;
+
+  private final List<CompletableFuture<PartETag>> parts;
+  private CompletableFuture<String> uploadId;
+  private CompletableFuture<Void> completion;
+  private volatile Throwable failure;
+  private ByteBuffer current;
+  private long bytesWritten;
+  private boolean closed;
+
+  S3MultipartOutputStream(
+      AmazonS3 s3Client,
+      Executor executor,
+      UploadBufferPool buffers,
+      String bucket,
+      String key,
+      ObjectMetadata metadata,
+      SSECustomerKey sseCustomerKey
+  ) {
+    this.s3Client = s3Client;
+    this.executor = executor;
+    this.buffers = buffers;
+    this.bucket = bucket;
+    this.key = key;
+    this.metadata = metadata == null ? new ObjectMetadata() : metadata;
+    this.sseCustomerKey = sseCustomerKey;
+    this.parts = new ArrayList<>();
+  }
+
+  String getBucket() {
+    return bucket;
+  }
+
+  String getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the number of bytes written to the stream so far, uploaded or not.
+   */
+  long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureBuffer();
+    current.put((byte) b);
+    bytesWritten++;
+    if (!current.hasRemaining()) {
+      uploadPart();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      ensureBuffer();
+      int count = Math.min(len, current.remaining());
+      current.put(b, off, count);
+      bytesWritten += count;
+      off += count;
+      len -= count;
+      if (!current.hasRemaining()) {
+        uploadPart();
+      }
+    }
+  }
+
+  /**
+   * Uploads whatever is left and finishes the object. Use {@link #getCompletion()} to wait for the upload.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    if (uploadId == null) {
+      final ByteBuffer buffer = current == null ? ByteBuffer.allocate(0) : (ByteBuffer) current.flip();
+      current = null;
+      completion = CompletableFuture.runAsync(() -> {
+        try {
+          metadata.setContentLength(buffer.remaining());
+          PutObjectRequest request = new PutObjectRequest(bucket, key, new ByteBufferInputStream(buffer), metadata);
+          s3Client.putObject(request.withSSECustomerKey(sseCustomerKey));
+        } finally {
+          release(buffer);
+        }
+      }, executor);
+      return;
+    }
+
+    if (current != null && current.position() > 0) {
+      uploadPart();
+    } else if (current != null) {
+      release(current);
+      current = null;
+    }
+    completion = CompletableFuture.allOf(parts.toArray(new CompletableFuture[parts.size()]))
+        .thenRunAsync(() -> s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(
+            bucket,
+            key,
+            uploadId.join(),
+            parts.stream().map(CompletableFuture::join).collect(Collectors.toList())
+        )), executor)
+        .whenComplete((ignored, error) -> {
+          if (error != null) {
+            abortUpload();
+          }
+        });
+  }
+
+  /**
+   * Discards the object. Nothing becomes visible in the bucket and parts uploaded so far are dropped.
+   */
+  void abort() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (current != null) {
+      release(current);
+      current = null;
+    }
+    if (uploadId == null) {
+      completion = CompletableFuture.completedFuture(null);
+    } else {
+      completion = CompletableFuture.allOf(parts.toArray(new CompletableFuture[parts.size()]))
+          .handle((ignored, error) -> {
+            abortUpload();
+            return null;
+          });
+    }
+  }
+
+  /**
+   * Returns a future that completes once the object is uploaded (or the upload is aborted), only valid after the
+   * stream has been closed or aborted.
+   */
+  Future<Void> getCompletion() {
+    return completion;
+  }
+
+  private void ensureBuffer() throws IOException {
+    if (closed) {
+      throw new IOException("Stream is already closed");
+    }
+    if (failure != null) {
+      throw new IOException("Upload of object '" + key + "' failed: " + failure, failure);
+    }
+    if (current == null) {
+      try {
+        current = buffers.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+      }
+    }
+  }
+
+  private void uploadPart() {
+    if (uploadId == null) {
+      uploadId = CompletableFuture.supplyAsync(
+          () -> s3Client.initiateMultipartUpload(
+              new InitiateMultipartUploadRequest(bucket, key, metadata).withSSECustomerKey(sseCustomerKey)
+          ).getUploadId(),
+          executor
+      );
+    }
+
+    final ByteBuffer buffer = (ByteBuffer) current.flip();
+    final int partNumber = parts.size() + 1;
+    current = null;
+    // Runs even if the upload couldn't be initiated so that the buffer always goes back to the pool
+    CompletableFuture<PartETag> part = uploadId.handleAsync((id, error) -> {
+      try {
+        if (error != null) {
+          throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        }
+        UploadPartRequest request = new UploadPartRequest()
+            .withBucketName(bucket)
+            .withKey(key)
+            .withUploadId(id)
+            .withPartNumber(partNumber)
+            .withPartSize(buffer.remaining())
+            .withInputStream(new ByteBufferInputStream(buffer))
+            .withSSECustomerKey(sseCustomerKey);
+        return s3Client.uploadPart(request).getPartETag();
+      } finally {
+        release(buffer);
+      }
+    }, executor);
+    part.whenComplete((etag, error) -> {
+      if (error != null && failure == null) {
+        failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+      }
+    });
+    parts.add(part);
+  }
+
+  private void abortUpload() {
+    if (uploadId.isCompletedExceptionally()) {
+      // Nothing to abort
+      return;
+    }
+    try {
+      s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId.join()));
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to abort multipart upload of object '{}': {}", key, e.toString(), e);
+    }
+  }
+
+  private void release(ByteBuffer buffer) {
+    // Zero length buffers for empty objects don't come from the pool
+    if (buffer.capacity() > 0) {
+      buffers.release(buffer);
+    }
+  }
+
+  /**
+   * Reads a buffer without copying it, supporting mark/reset so that the client can retry a failed request.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private int mark;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.mark = buffer.position();
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+      mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+      buffer.position(mark);
+    }
+  }
+}
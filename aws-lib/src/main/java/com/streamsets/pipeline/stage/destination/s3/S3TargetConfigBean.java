@@ -35,6 +35,8 @@ public class S3TargetConfigBean {
   public static final String S3_CONFIG_PREFIX = S3_TARGET_CONFIG_BEAN_PREFIX + "s3Config.";
   public static final String S3_SSE_CONFIG_PREFIX = S3_TARGET_CONFIG_BEAN_PREFIX + "sseConfig.";
   public static final String S3_TM_CONFIG_PREFIX = S3_TARGET_CONFIG_BEAN_PREFIX + "tmConfig.";
+  // S3 rejects parts other than the last one that are smaller than 5 MiB
+  static final long MIN_STREAM_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
 
   @ConfigDefBean(groups = "S3")
   public S3ConnectionTargetConfig s3Config;
@@ -118,6 +120,61 @@ public class S3TargetConfigBean {
   )
   public boolean compress;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Stream Upload",
+      description = "Uploads objects in parts while records are written instead of generating whole objects in " +
+          "memory first. Part size is the minimum upload part size, which S3 requires to be at least 5 MiB.",
+      displayPosition = 8100,
+      group = "ADVANCED"
+  )
+  public boolean streamUpload;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "4",
+      label = "Upload Buffers",
+      description = "Number of part sized buffers used for streamed uploads. Writing waits while all buffers are " +
+          "being uploaded.",
+      displayPosition = 8110,
+      group = "ADVANCED",
+      dependsOn = "streamUpload",
+      triggeredByValue = "true",
+      min = 1
+  )
+  public int uploadBuffers = 4;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Off-Heap Upload Buffers",
+      description = "Allocates the upload buffers outside of the Java heap",
+      displayPosition = 8120,
+      group = "ADVANCED",
+      dependsOn = "streamUpload",
+      triggeredByValue = "true"
+  )
+  public boolean offHeapUploadBuffers;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "0",
+      label = "Max Object Size (bytes)",
+      description = "Starts a new object once the current one reaches this size. Objects never span batches. Use 0 " +
+          "to write one object per partition and batch.",
+      displayPosition = 8130,
+      group = "ADVANCED",
+      dependsOn = "streamUpload",
+      triggeredByValue = "true",
+      min = 0
+  )
+  public long maxObjectSize;
+
   public List<Stage.ConfigIssue> init(Stage.Context context, List<Stage.ConfigIssue> issues) {
     DataFormatGeneratorService generatorService = context.getService(DataFormatGeneratorService.class);
 
@@ -147,6 +204,21 @@ public class S3TargetConfigBean {
       );
     }
 
+    // Streamed parts are accepted by S3 from 5 MiB on and are buffered in memory, so they can't be bigger than an array
+    if (streamUpload && !generatorService.isWholeFileFormat()
+        && (tmConfig.minimumUploadPartSize < MIN_STREAM_UPLOAD_PART_SIZE
+            || tmConfig.minimumUploadPartSize > Integer.MAX_VALUE)) {
+      issues.add(
+          context.createConfigIssue(
+              Groups.ADVANCED.getLabel(),
+              S3TargetConfigBean.S3_TM_CONFIG_PREFIX + "minimumUploadPartSize",
+              Errors.S3_07,
+              MIN_STREAM_UPLOAD_PART_SIZE,
+              Integer.MAX_VALUE
+          )
+      );
+    }
+
     return issues;
   }
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.streamsets.pipeline.api.EventRecord;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.Target;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.api.service.dataformats.DataFormatGeneratorService;
+import com.streamsets.pipeline.api.service.dataformats.DataGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes records straight into {@link S3MultipartOutputStream}s, so objects are uploaded while they are generated
+ * and only a fixed number of part sized buffers is kept in memory.
+ *
+ * Like {@link DefaultFileHelper} every object is finished within the batch that wrote it, so that the batch is only
+ * committed once its records are in S3. Only one object is open at any time, it never holds more than one buffer
+ * that isn't being uploaded and thus can't starve itself of buffers.
+ */
+final class StreamingFileHelper extends FileHelper {
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingFileHelper.class);
+
+  private final AmazonS3 s3Client;
+  private final ExecutorService executor;
+  private final UploadBufferPool buffers;
+
+  StreamingFileHelper(Target.Context context, S3TargetConfigBean s3TargetConfigBean, TransferManager transferManager) {
+    super(context, s3TargetConfigBean, transferManager);
+    this.s3Client = transferManager.getAmazonS3Client();
+    this.executor = Executors.newFixedThreadPool(
+        s3TargetConfigBean.tmConfig.threadPoolSize,
+        new ThreadFactoryBuilder().setNameFormat("S3 Streaming Upload-%d").setDaemon(true).build()
+    );
+    this.buffers = new UploadBufferPool(
+        (int) s3TargetConfigBean.tmConfig.minimumUploadPartSize,
+        s3TargetConfigBean.uploadBuffers,
+        s3TargetConfigBean.offHeapUploadBuffers
+    );
+  }
+
+  @Override
+  public List<UploadMetadata> handle(Iterator<Record> recordIterator, String bucket, String keyPrefix) throws IOException, StageException {
+    List<UploadMetadata> uploads = new ArrayList<>();
+    OpenObject object = null;
+
+    try {
+      while (recordIterator.hasNext()) {
+        Record currentRecord = recordIterator.next();
+        if (object == null) {
+          object = open(bucket, keyPrefix);
+        }
+        try {
+          object.generator.write(currentRecord);
+          if (s3TargetConfigBean.maxObjectSize > 0) {
+            // Push the record down to the upload stream so that its size is accounted for
+            object.generator.flush();
+          }
+          object.records.add(currentRecord);
+        } catch (StageException e) {
+          errorRecordHandler.onError(
+              new OnRecordErrorException(
+                  currentRecord,
+                  e.getErrorCode(),
+                  e.getParams()
+              )
+          );
+        } catch (IOException e) {
+          errorRecordHandler.onError(
+              new OnRecordErrorException(
+                  currentRecord,
+                  Errors.S3_32,
+                  currentRecord.getHeader().getSourceId(),
+                  e.toString(),
+                  e
+              )
+          );
+        }
+        if (s3TargetConfigBean.maxObjectSize > 0 && object.out.getBytesWritten() >= s3TargetConfigBean.maxObjectSize) {
+          close(object, uploads);
+          object = null;
+        }
+      }
+
+      if (object != null) {
+        close(object, uploads);
+        object = null;
+      }
+    } finally {
+      if (object != null) {
+        // the batch failed half way through the object, give its buffer back and drop what was uploaded
+        object.out.abort();
+      }
+    }
+    return uploads;
+  }
+
+  @Override
+  void destroy() {
+    executor.shutdownNow();
+  }
+
+  private OpenObject open(String bucket, String keyPrefix) throws IOException, StageException {
+    //For uniqueness
+    String fileName = getUniqueDateWithIncrementalFileName(keyPrefix + System.currentTimeMillis() + "-");
+    S3MultipartOutputStream out = new S3MultipartOutputStream(
+        s3Client,
+        executor,
+        buffers,
+        bucket,
+        fileName,
+        getObjectMetadata(),
+        getSSECustomerKey()
+    );
+    // wrap with gzip compression output stream if required
+    OutputStream os = (s3TargetConfigBean.compress) ? new GZIPOutputStream(out) : out;
+    DataGenerator generator = context.getService(DataFormatGeneratorService.class).getGenerator(os);
+    return new OpenObject(out, generator);
+  }
+
+  private void close(OpenObject object, List<UploadMetadata> uploads) throws IOException {
+    // upload object on Amazon S3 only if at least one record was successfully written to it
+    if (object.records.isEmpty()) {
+      object.out.abort();
+      try {
+        object.generator.close();
+      } catch (IOException e) {
+        LOG.debug("Error closing generator of discarded object '{}': {}", object.out.getKey(), e.toString(), e);
+      }
+      return;
+    }
+    object.generator.close();
+
+    //Create and issue file close event record, but the events are thrown after the batch completion.
+    EventRecord eventRecord = S3Events.S3_OBJECT_WRITTEN
+        .create(context)
+        .with(BUCKET, object.out.getBucket())
+        .with(OBJECT_KEY, object.out.getKey())
+        .with(RECORD_COUNT, object.records.size())
+        .create();
+
+    uploads.add(new UploadMetadata(
+        object.out.getCompletion(),
+        object.out.getBucket(),
+        object.records,
+        ImmutableList.of(eventRecord)
+    ));
+  }
+
+  private static class OpenObject {
+    private final S3MultipartOutputStream out;
+    private final DataGenerator generator;
+    private final List<Record> records;
+
+    OpenObject(S3MultipartOutputStream out, DataGenerator generator) {
+      this.out = out;
+      this.generator = generator;
+      this.records = new ArrayList<>();
+    }
+  }
+}
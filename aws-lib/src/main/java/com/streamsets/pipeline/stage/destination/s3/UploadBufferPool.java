@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.s3;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Fixed number of reusable part sized buffers for streamed uploads.
+ *
+ * Buffers are allocated on first use and handed back with {@link #release(ByteBuffer)} once their part is uploaded.
+ * {@link #take()} blocks while all of them are in flight, which bounds the memory used by an upload and throttles
+ * record generation to the upload speed.
+ */
+final class UploadBufferPool {
+  private final int bufferSize;
+  private final int bufferCount;
+  private final boolean offHeap;
+  private final BlockingQueue<ByteBuffer> available;
+  private int allocated;
+
+  UploadBufferPool(int bufferSize, int bufferCount, boolean offHeap) {
+    Preconditions.checkArgument(bufferSize > 0, "bufferSize must be positive");
+    Preconditions.checkArgument(bufferCount > 0, "bufferCount must be positive");
+    this.bufferSize = bufferSize;
+    this.bufferCount = bufferCount;
+    this.offHeap = offHeap;
+    this.available = new LinkedBlockingQueue<>(bufferCount);
+  }
+
+  int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Returns an empty buffer, waiting for one to be released if all of them are in use.
+   */
+  ByteBuffer take() throws InterruptedException {
+    ByteBuffer buffer = available.poll();
+    if (buffer == null) {
+      synchronized (this) {
+        if (allocated < bufferCount) {
+          allocated++;
+          return offHeap ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+      }
+      buffer = available.take();
+    }
+    return buffer;
+  }
+
+  void release(ByteBuffer buffer) {
+    buffer.clear();
+    available.offer(buffer);
+  }
+}
@@ -15,11 +15,14 @@
  */
 package com.streamsets.pipeline.stage.destination.s3;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.transfer.Upload;
 import com.streamsets.pipeline.api.EventRecord;
 import com.streamsets.pipeline.api.Record;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class UploadMetadata {
 
@@ -28,6 +31,11 @@ public class UploadMetadata {
    */
   private final Upload upload;
 
+  /**
+   * Completion of a streamed upload, used instead of upload for objects written with S3MultipartOutputStream.
+   */
+  private final Future<?> completion;
+
   /**
    * Calculated bucket for this upload.
    */
@@ -52,6 +60,20 @@ public class UploadMetadata {
     List<EventRecord> events
   ) {
     this.upload = upload;
+    this.completion = null;
+    this.bucket = bucket;
+    this.records = records;
+    this.events = events;
+  }
+
+  public UploadMetadata(
+    Future<?> completion,
+    String bucket,
+    List<Record> records,
+    List<EventRecord> events
+  ) {
+    this.upload = null;
+    this.completion = completion;
     this.bucket = bucket;
     this.records = records;
     this.events = events;
@@ -61,6 +83,25 @@ public class UploadMetadata {
     return upload;
   }
 
+  /**
+   * Waits for the object to be fully uploaded.
+   */
+  public void waitForCompletion() throws InterruptedException {
+    if (upload != null) {
+      upload.waitForCompletion();
+      return;
+    }
+    try {
+      completion.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmazonClientException) {
+        throw (AmazonClientException) cause;
+      }
+      throw new AmazonClientException(cause.toString(), cause);
+    }
+  }
+
   public String getBucket() {
     return bucket;
   }
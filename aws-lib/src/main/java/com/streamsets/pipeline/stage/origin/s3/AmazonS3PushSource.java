@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.BasePushSource;
+import com.streamsets.pipeline.api.service.dataformats.DataFormatParserService;
+import com.streamsets.pipeline.lib.executor.SafeScheduledExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multithreaded variant of {@link AmazonS3Source}.
+ * <p/>
+ * One thread lists objects into an {@link S3ObjectIndex} kept across refills and hands them out in read order
+ * through a bounded prefetch queue, while the {@link AmazonS3WorkerCallable}s fetch and parse several objects
+ * concurrently. Objects can therefore complete out of read order; {@link S3OffsetTracker} keeps the offsets so that
+ * a restart resumes every object where it was left.
+ */
+public class AmazonS3PushSource extends BasePushSource {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AmazonS3PushSource.class);
+  private static final String S3_THREAD_PREFIX = "Amazon S3 Worker - ";
+
+  private final S3ConfigBean s3ConfigBean;
+  private final int numberOfThreads;
+  private final int prefetchQueueSize;
+
+  private ExecutorService executorService;
+
+  public AmazonS3PushSource(S3ConfigBean s3ConfigBean, int numberOfThreads, int prefetchQueueSize) {
+    this.s3ConfigBean = s3ConfigBean;
+    this.numberOfThreads = numberOfThreads;
+    this.prefetchQueueSize = prefetchQueueSize;
+  }
+
+  @Override
+  protected List<ConfigIssue> init() {
+    List<ConfigIssue> issues = super.init();
+    s3ConfigBean.init(getContext(), issues);
+
+    if (getContext().isPreview()) {
+      s3ConfigBean.basicConfig.maxWaitTime = 1000;
+    }
+
+    // Propagate StringBuilder size to the service
+    getContext().getService(DataFormatParserService.class).setStringBuilderPoolSize(getNumberOfThreads());
+    return issues;
+  }
+
+  @Override
+  public void destroy() {
+    Optional.ofNullable(executorService).ifPresent(ExecutorService::shutdownNow);
+    s3ConfigBean.destroy();
+    super.destroy();
+  }
+
+  @Override
+  public int getNumberOfThreads() {
+    return numberOfThreads;
+  }
+
+  @Override
+  public void produce(Map<String, String> lastOffsets, int maxBatchSize) throws StageException {
+    int batchSize = Math.min(s3ConfigBean.basicConfig.maxBatchSize, maxBatchSize);
+
+    S3OffsetTracker tracker = new S3OffsetTracker(
+        getContext(),
+        s3ConfigBean.s3FileConfig.objectOrdering,
+        lastOffsets
+    );
+    S3ObjectIndex index = new S3ObjectIndex(s3ConfigBean.s3Config.getS3Client(), s3ConfigBean, tracker);
+    BlockingQueue<S3ObjectSummary> queue = new ArrayBlockingQueue<>(prefetchQueueSize);
+    S3Spooler spooler = new S3Spooler(getContext(), s3ConfigBean);
+
+    try {
+      executorService = new SafeScheduledExecutorService(numberOfThreads + 1, S3_THREAD_PREFIX);
+      ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+
+      completionService.submit(() -> list(index, tracker, queue));
+      for (int i = 0; i < numberOfThreads; i++) {
+        completionService.submit(new AmazonS3WorkerCallable(
+            getContext(),
+            s3ConfigBean,
+            queue,
+            index,
+            tracker,
+            spooler,
+            batchSize
+        ));
+      }
+
+      for (int i = 0; i < numberOfThreads + 1; i++) {
+        try {
+          completionService.take().get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof StageException) {
+            throw (StageException) cause;
+          }
+          LOG.error("Error while reading objects: {}", cause.toString(), cause);
+          throw new StageException(Errors.S3_SPOOLDIR_26, cause.toString(), cause);
+        } catch (InterruptedException e) {
+          LOG.error("Interrupted while waiting for the workers to complete", e);
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    } finally {
+      shutdownExecutorIfNeeded();
+    }
+  }
+
+  /**
+   * Hands out the objects of the index in read order until the pipeline is stopped, waiting for room in the queue
+   * when the workers are behind and for new objects when all of them have been listed.
+   */
+  private Void list(
+      S3ObjectIndex index,
+      S3OffsetTracker tracker,
+      BlockingQueue<S3ObjectSummary> queue
+  ) throws StageException {
+    long maxWaitTime = s3ConfigBean.basicConfig.maxWaitTime;
+    try {
+      while (!getContext().isStopped()) {
+        S3ObjectSummary next = index.next();
+        if (next == null) {
+          LOG.debug("No new object available after '{}' ms", maxWaitTime);
+          TimeUnit.MILLISECONDS.sleep(maxWaitTime);
+          continue;
+        }
+        tracker.dispatch(next);
+        while (!queue.offer(next, maxWaitTime, TimeUnit.MILLISECONDS)) {
+          if (getContext().isStopped()) {
+            return null;
+          }
+        }
+      }
+    } catch (AmazonClientException e) {
+      throw new StageException(Errors.S3_SPOOLDIR_23, e.toString(), e);
+    } catch (InterruptedException e) {
+      LOG.warn("Listing interrupted");
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  private void shutdownExecutorIfNeeded() {
+    Optional.ofNullable(executorService).ifPresent(executor -> {
+      if (!executor.isTerminated()) {
+        LOG.info("Shutting down executor service");
+        executor.shutdown();
+      }
+    });
+  }
+}
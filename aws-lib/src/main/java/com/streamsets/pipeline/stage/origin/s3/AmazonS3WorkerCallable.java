@@ -0,0 +1,394 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.api.BatchContext;
+import com.streamsets.pipeline.api.BatchMaker;
+import com.streamsets.pipeline.api.PushSource;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.api.ext.io.ObjectLengthException;
+import com.streamsets.pipeline.api.ext.io.OverrunException;
+import com.streamsets.pipeline.api.impl.Utils;
+import com.streamsets.pipeline.api.lineage.EndPointType;
+import com.streamsets.pipeline.api.lineage.LineageEvent;
+import com.streamsets.pipeline.api.lineage.LineageEventType;
+import com.streamsets.pipeline.api.lineage.LineageSpecificAttribute;
+import com.streamsets.pipeline.api.service.dataformats.DataFormatParserService;
+import com.streamsets.pipeline.api.service.dataformats.DataParser;
+import com.streamsets.pipeline.api.service.dataformats.DataParserException;
+import com.streamsets.pipeline.api.service.dataformats.RecoverableDataParserException;
+import com.streamsets.pipeline.lib.event.CommonEvents;
+import com.streamsets.pipeline.lib.hashing.HashingUtil;
+import com.streamsets.pipeline.stage.common.DefaultErrorRecordHandler;
+import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
+import com.streamsets.pipeline.stage.common.HeaderAttributeConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker of {@link AmazonS3PushSource}, reads the objects taken from the prefetch queue one at a time and produces
+ * one batch per call to {@link PushSource.Context#startBatch()}, committing the offset of the object being read.
+ */
+public class AmazonS3WorkerCallable implements Callable<Void> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AmazonS3WorkerCallable.class);
+  private static final long DEFAULT_FETCH_SIZE = 1024 * 1024L;
+  private static final String BUCKET = "bucket";
+  private static final String OBJECT_KEY = "objectKey";
+  private static final String OWNER = "owner";
+  private static final String SIZE = "size";
+  private static final String CONTENT_LENGTH = "Content-Length";
+
+  private final PushSource.Context context;
+  private final S3ConfigBean s3ConfigBean;
+  private final AmazonS3 s3Client;
+  private final DataFormatParserService dataParser;
+  private final BlockingQueue<S3ObjectSummary> queue;
+  private final S3ObjectIndex index;
+  private final S3OffsetTracker tracker;
+  private final S3Spooler spooler;
+  private final int batchSize;
+
+  private ErrorRecordHandler errorRecordHandler;
+  private S3ObjectSummary currentObject;
+  private String currentOffset;
+  private DataParser parser;
+  private S3Object object;
+  private long recordCount;
+  private long errorCount;
+
+  public AmazonS3WorkerCallable(
+      PushSource.Context context,
+      S3ConfigBean s3ConfigBean,
+      BlockingQueue<S3ObjectSummary> queue,
+      S3ObjectIndex index,
+      S3OffsetTracker tracker,
+      S3Spooler spooler,
+      int batchSize
+  ) {
+    this.context = context;
+    this.s3ConfigBean = s3ConfigBean;
+    this.s3Client = s3ConfigBean.s3Config.getS3Client();
+    this.dataParser = context.getService(DataFormatParserService.class);
+    this.queue = queue;
+    this.index = index;
+    this.tracker = tracker;
+    this.spooler = spooler;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public Void call() throws StageException {
+    try {
+      while (!context.isStopped() && !Thread.currentThread().isInterrupted()) {
+        BatchContext batchContext = context.startBatch();
+        errorRecordHandler = new DefaultErrorRecordHandler(context, batchContext);
+        produce(batchContext);
+      }
+    } finally {
+      closeObject();
+    }
+    return null;
+  }
+
+  private void produce(BatchContext batchContext) throws StageException {
+    if (currentObject == null) {
+      try {
+        currentObject = queue.poll(s3ConfigBean.basicConfig.maxWaitTime, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        LOG.warn("Polling interrupted");
+        Thread.currentThread().interrupt();
+      }
+      if (currentObject == null) {
+        sendNoMoreDataEventIfNeeded(batchContext);
+        context.processBatch(batchContext);
+        return;
+      }
+      currentOffset = tracker.getOffset(currentObject.getKey());
+      recordCount = 0;
+      errorCount = 0;
+    }
+
+    String key = currentObject.getKey();
+    boolean postProcess = true;
+    if (S3Constants.MINUS_ONE.equals(currentOffset)) {
+      // Fully read by a previous run, which may have stopped before post processing it
+      if (!context.processBatch(batchContext)) {
+        // Try again with the next batch
+        return;
+      }
+    } else {
+      String committedOffset = currentOffset;
+      long committedRecordCount = recordCount;
+      long committedErrorCount = errorCount;
+      try {
+        currentOffset = generateBatch(currentObject, currentOffset, batchContext.getBatchMaker());
+      } catch (BadSpoolObjectException ex) {
+        LOG.error(Errors.S3_SPOOLDIR_01.getMessage(), ex.getObject(), ex.getPos(), ex.toString(), ex);
+        context.reportError(Errors.S3_SPOOLDIR_01, ex.getObject(), ex.getPos(), ex.toString());
+        try {
+          spooler.handleObjectAsError(key);
+        } catch (AmazonClientException e) {
+          throw new StageException(Errors.S3_SPOOLDIR_24, e.toString(), e);
+        }
+        closeObject();
+        currentOffset = S3Constants.MINUS_ONE;
+        postProcess = false;
+      }
+      AmazonS3Source.S3Offset s3Offset = new AmazonS3Source.S3Offset(
+          key,
+          currentOffset,
+          currentObject.getETag(),
+          String.valueOf(currentObject.getLastModified().getTime())
+      );
+      // An object that was moved to the error location can't be read again, it is done either way
+      if (!context.processBatch(batchContext, key, s3Offset.toString()) && postProcess) {
+        // The offset wasn't committed, read the records of the failed batch again from the last committed offset
+        LOG.warn("Batch for object '{}' failed, reading it again from offset '{}'", key, committedOffset);
+        closeObject();
+        currentOffset = committedOffset;
+        recordCount = committedRecordCount;
+        errorCount = committedErrorCount;
+        return;
+      }
+    }
+
+    if (S3Constants.MINUS_ONE.equals(currentOffset)) {
+      if (postProcess) {
+        try {
+          spooler.postProcessObject(key);
+        } catch (AmazonClientException e) {
+          throw new StageException(Errors.S3_SPOOLDIR_24, e.toString(), e);
+        }
+      }
+      tracker.completed(currentObject, recordCount, errorCount);
+      currentObject = null;
+    }
+  }
+
+  private void sendNoMoreDataEventIfNeeded(BatchContext batchContext) {
+    if (queue.isEmpty() && index.isDrained()) {
+      long[] counts = tracker.pollNoMoreDataCounts();
+      if (counts != null) {
+        LOG.info("sending no-more-data event.  records {} errors {} files {} ", counts[0], counts[1], counts[2]);
+        CommonEvents.NO_MORE_DATA.create(context, batchContext)
+            .with("record-count", counts[0])
+            .with("error-count", counts[1])
+            .with("file-count", counts[2])
+            .createAndSend();
+      }
+    }
+  }
+
+  private String generateBatch(S3ObjectSummary s3Object, String offset, BatchMaker batchMaker)
+      throws StageException, BadSpoolObjectException {
+    try {
+      if (parser == null) {
+        String recordId = s3ConfigBean.s3Config.bucket + s3ConfigBean.s3Config.delimiter + s3Object.getKey();
+        if (dataParser.isWholeFileFormat()) {
+          handleWholeFileDataFormat(s3Object, recordId);
+        } else {
+          if (context.isPreview() && s3Object.getSize() > 0) {
+            object = AmazonS3Util.getObjectRange(
+                s3Client,
+                s3ConfigBean.s3Config.bucket,
+                s3Object.getKey(),
+                Math.min(s3Object.getSize(), DEFAULT_FETCH_SIZE),
+                s3ConfigBean.sseConfig.useCustomerSSEKey,
+                s3ConfigBean.sseConfig.customerKey,
+                s3ConfigBean.sseConfig.customerKeyMd5
+            );
+          } else {
+            object = AmazonS3Util.getObject(
+                s3Client,
+                s3ConfigBean.s3Config.bucket,
+                s3Object.getKey(),
+                s3ConfigBean.sseConfig.useCustomerSSEKey,
+                s3ConfigBean.sseConfig.customerKey,
+                s3ConfigBean.sseConfig.customerKeyMd5
+            );
+          }
+          parser = dataParser.getParser(recordId, object.getObjectContent(), offset);
+        }
+        sendLineageEvent(s3Object);
+      }
+      int i = 0;
+      while (i < batchSize) {
+        try {
+          Record record;
+          try {
+            record = parser.parse();
+          } catch (RecoverableDataParserException ex) {
+            // Propagate partially parsed record to error stream
+            record = ex.getUnparsedRecord();
+            setHeaders(record, object);
+            errorRecordHandler.onError(new OnRecordErrorException(record, ex.getErrorCode(), ex.getParams()));
+            continue;
+          }
+
+          if (record != null) {
+            setHeaders(record, object);
+            batchMaker.addRecord(record);
+            recordCount++;
+            i++;
+            offset = parser.getOffset();
+          } else {
+            closeObject();
+            offset = S3Constants.MINUS_ONE;
+            break;
+          }
+        } catch (ObjectLengthException ex) {
+          String exOffset = offset;
+          offset = S3Constants.MINUS_ONE;
+          errorRecordHandler.onError(Errors.S3_SPOOLDIR_02, s3Object.getKey(), exOffset, ex);
+          errorCount++;
+        }
+      }
+    } catch (AmazonClientException e) {
+      LOG.error("Error processing object with key '{}' offset '{}'", s3Object.getKey(), offset, e);
+      throw new StageException(Errors.S3_SPOOLDIR_25, e.toString(), e);
+    } catch (IOException | DataParserException ex) {
+      if (!(ex.getCause() instanceof AbortedException)) {
+        offset = S3Constants.MINUS_ONE;
+        String exOffset;
+        if (ex instanceof OverrunException) {
+          exOffset = String.valueOf(((OverrunException) ex).getStreamOffset());
+        } else {
+          try {
+            exOffset = (parser != null) ? parser.getOffset() : S3Constants.MINUS_ONE;
+          } catch (IOException ex1) {
+            LOG.warn("Could not get the object offset to report with error, reason: {}", ex1.toString(), ex);
+            exOffset = S3Constants.MINUS_ONE;
+          }
+        }
+
+        switch (context.getOnErrorRecord()) {
+          case DISCARD:
+            break;
+          case TO_ERROR:
+            throw new BadSpoolObjectException(s3Object.getKey(), exOffset, ex);
+          case STOP_PIPELINE:
+            context.reportError(Errors.S3_SPOOLDIR_03, s3Object.getKey(), exOffset, ex.toString(), ex);
+            throw new StageException(Errors.S3_SPOOLDIR_03, s3Object.getKey(), exOffset, ex.toString(), ex);
+          default:
+            throw new IllegalStateException(Utils.format("Unknown OnError value '{}'",
+                context.getOnErrorRecord(), ex));
+        }
+      }
+    } finally {
+      if (S3Constants.MINUS_ONE.equals(offset)) {
+        closeObject();
+      }
+    }
+    return offset;
+  }
+
+  private void closeObject() {
+    if (parser != null) {
+      try {
+        parser.close();
+      } catch (IOException ex) {
+        LOG.debug("Exception while closing parser : '{}'", ex.toString(), ex);
+      }
+      parser = null;
+    }
+    if (object != null) {
+      try {
+        object.close();
+      } catch (IOException ex) {
+        LOG.debug("Exception while closing S3 object : '{}'", ex.toString(), ex);
+      }
+      object = null;
+    }
+  }
+
+  private void setHeaders(Record record, S3Object object) {
+    if (s3ConfigBean.enableMetaData) {
+      Map<String, Object> metaData = AmazonS3Util.getMetaData(object);
+      for (Map.Entry<String, Object> entry : metaData.entrySet()) {
+        //Content-Length is partial for whole file format, so not populating it here
+        boolean shouldAddThisMetadata = !(dataParser.isWholeFileFormat() && entry.getKey().equals(CONTENT_LENGTH));
+        if (shouldAddThisMetadata) {
+          String value = entry.getValue() == null ? "" : entry.getValue().toString();
+          record.getHeader().setAttribute(entry.getKey(), value);
+        }
+      }
+      record.getHeader().setAttribute("Name", object.getKey());
+    }
+  }
+
+  private void handleWholeFileDataFormat(S3ObjectSummary s3ObjectSummary, String recordId)
+      throws StageException, IOException {
+    //partialObject with fetchSize 1 byte, used for extracting metadata.
+    S3Object partialS3ObjectForMetadata = AmazonS3Util.getObjectRange(
+        s3Client,
+        s3ConfigBean.s3Config.bucket,
+        s3ObjectSummary.getKey(),
+        1,
+        s3ConfigBean.sseConfig.useCustomerSSEKey,
+        s3ConfigBean.sseConfig.customerKey,
+        s3ConfigBean.sseConfig.customerKeyMd5
+    );
+    S3FileRef.Builder s3FileRefBuilder = new S3FileRef.Builder()
+        .s3Client(s3Client)
+        .s3ObjectSummary(s3ObjectSummary)
+        .useSSE(s3ConfigBean.sseConfig.useCustomerSSEKey)
+        .customerKey(s3ConfigBean.sseConfig.customerKey)
+        .customerKeyMd5(s3ConfigBean.sseConfig.customerKeyMd5)
+        .bufferSize((int) dataParser.suggestedWholeFileBufferSize())
+        .createMetrics(true)
+        .totalSizeInBytes(s3ObjectSummary.getSize())
+        .rateLimit(dataParser.wholeFileRateLimit());
+    if (dataParser.isWholeFileChecksumRequired()) {
+      s3FileRefBuilder.verifyChecksum(true)
+          .checksumAlgorithm(HashingUtil.HashType.MD5)
+          //128 bit hex encoded md5 checksum.
+          .checksum(partialS3ObjectForMetadata.getObjectMetadata().getETag());
+    }
+    Map<String, Object> metadata = AmazonS3Util.getMetaData(partialS3ObjectForMetadata);
+    metadata.put(BUCKET, s3ObjectSummary.getBucketName());
+    metadata.put(OBJECT_KEY, s3ObjectSummary.getKey());
+    metadata.put(OWNER, s3ObjectSummary.getOwner());
+    metadata.put(SIZE, s3ObjectSummary.getSize());
+    metadata.put(HeaderAttributeConstants.FILE_NAME, s3ObjectSummary.getKey());
+    metadata.remove(CONTENT_LENGTH);
+    parser = dataParser.getParser(recordId, metadata, s3FileRefBuilder.build());
+    //Object is assigned so that setHeaders() function can use this to get metadata
+    //information about the object
+    object = partialS3ObjectForMetadata;
+  }
+
+  private void sendLineageEvent(S3ObjectSummary s3Object) {
+    LineageEvent event = context.createLineageEvent(LineageEventType.ENTITY_READ);
+    event.setSpecificAttribute(LineageSpecificAttribute.ENDPOINT_TYPE, EndPointType.S3.name());
+    event.setSpecificAttribute(LineageSpecificAttribute.ENTITY_NAME, s3Object.getKey());
+    event.setSpecificAttribute(LineageSpecificAttribute.DESCRIPTION, s3ConfigBean.s3Config.bucket);
+    context.publishLineageEvent(event);
+  }
+}
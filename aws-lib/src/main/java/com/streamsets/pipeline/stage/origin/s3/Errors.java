@@ -39,6 +39,7 @@ public enum Errors implements ErrorCode {
   S3_SPOOLDIR_23("Unable to fetch object, reason : {}"),
   S3_SPOOLDIR_24("Unable to move object, reason : {}"),
   S3_SPOOLDIR_25("Unable to get object content, reason : {}"),
+  S3_SPOOLDIR_26("Error while reading objects: {}"),
   ;
 
   private final String msg;
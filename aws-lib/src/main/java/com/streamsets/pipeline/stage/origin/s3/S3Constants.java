@@ -22,6 +22,7 @@ import com.streamsets.pipeline.common.InterfaceStability;
 @InterfaceStability.Unstable
 public class S3Constants {
   public static final String MINUS_ONE = "-1";
+  public static final String ZERO = "0";
 
   private S3Constants() {}
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.iterable.S3Objects;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.lib.util.AntPathMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Listing of the objects to read that survives between refills, used by {@link AmazonS3PushSource}.
+ * <p/>
+ * With lexicographical ordering a refill resumes listing after the last object added to the index, so objects are
+ * not listed again once handed out. S3 cannot list by modification time, so with timestamp ordering a refill still scans the whole prefix, but
+ * it keeps up to {@link S3FileConfig#poolSize} eligible objects and skips the ones already handed out, instead of
+ * scanning again for every pool of objects as {@link AmazonS3Util#listObjectsChronologically} does.
+ * <p/>
+ * Not thread safe, the index is used by the listing thread only.
+ */
+final class S3ObjectIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(S3ObjectIndex.class);
+
+  private final AmazonS3 s3Client;
+  private final S3ConfigBean s3ConfigBean;
+  private final AntPathMatcher pathMatcher;
+  private final S3OffsetTracker tracker;
+  private final int capacity;
+  private final TreeSet<S3ObjectSummary> pending;
+  // Last key examined by a listing, lexicographical ordering only. Keys that do not match the pattern or are not
+  // eligible won't be read later either, so refills don't list them again.
+  private String marker;
+  private volatile boolean drained;
+
+  S3ObjectIndex(AmazonS3 s3Client, S3ConfigBean s3ConfigBean, S3OffsetTracker tracker) {
+    this.s3Client = s3Client;
+    this.s3ConfigBean = s3ConfigBean;
+    this.pathMatcher = new AntPathMatcher(s3ConfigBean.s3Config.delimiter);
+    this.tracker = tracker;
+    this.capacity = s3ConfigBean.s3FileConfig.poolSize;
+    Comparator<S3ObjectSummary> byKey = Comparator.comparing(S3ObjectSummary::getKey);
+    this.pending = new TreeSet<>(
+        s3ConfigBean.s3FileConfig.objectOrdering == ObjectOrdering.TIMESTAMP ?
+            Comparator.comparing(S3ObjectSummary::getLastModified).thenComparing(byKey) :
+            byKey
+    );
+    this.marker = tracker.getMarker();
+  }
+
+  /**
+   * Returns the next object to read, listing more objects if none is left, or null if there is nothing to read.
+   */
+  S3ObjectSummary next() {
+    if (pending.isEmpty()) {
+      switch (s3ConfigBean.s3FileConfig.objectOrdering) {
+        case TIMESTAMP:
+          scan();
+          break;
+        case LEXICOGRAPHICAL:
+          listAfterMarker();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown ordering: " + s3ConfigBean.s3FileConfig.objectOrdering.getLabel());
+      }
+      drained = pending.isEmpty();
+      LOG.debug("Listed '{}' objects", pending.size());
+    }
+    return pending.pollFirst();
+  }
+
+  /**
+   * Returns whether the last refill found nothing to read.
+   */
+  boolean isDrained() {
+    return drained;
+  }
+
+  private void listAfterMarker() {
+    ListObjectsRequest listObjectsRequest = new ListObjectsRequest();
+    listObjectsRequest.setBucketName(s3ConfigBean.s3Config.bucket);
+    listObjectsRequest.setPrefix(s3ConfigBean.s3Config.commonPrefix);
+    listObjectsRequest.setMaxKeys(AmazonS3Util.BATCH_SIZE);
+    listObjectsRequest.setMarker(marker);
+
+    ObjectListing objectListing = s3Client.listObjects(listObjectsRequest);
+    while (true) {
+      for (S3ObjectSummary s : objectListing.getObjectSummaries()) {
+        marker = s.getKey();
+        if (isMatching(s) && tracker.isEligible(s)) {
+          pending.add(s);
+          if (pending.size() == capacity) {
+            return;
+          }
+        }
+      }
+      if (!objectListing.isTruncated()) {
+        return;
+      }
+      objectListing = s3Client.listNextBatchOfObjects(objectListing);
+    }
+  }
+
+  private void scan() {
+    S3Objects s3ObjectSummaries = S3Objects
+        .withPrefix(s3Client, s3ConfigBean.s3Config.bucket, s3ConfigBean.s3Config.commonPrefix)
+        .withBatchSize(AmazonS3Util.BATCH_SIZE);
+    for (S3ObjectSummary s : s3ObjectSummaries) {
+      if (isMatching(s) && tracker.isEligible(s)) {
+        pending.add(s);
+        if (pending.size() > capacity) {
+          pending.pollLast();
+        }
+      }
+    }
+  }
+
+  private boolean isMatching(S3ObjectSummary s) {
+    String remainingPrefix = s.getKey().substring(s3ConfigBean.s3Config.commonPrefix.length());
+    // Empty for the placeholder objects of "folders" created by hand, see AmazonS3Util
+    return !remainingPrefix.isEmpty() && pathMatcher.match(s3ConfigBean.s3FileConfig.prefixPattern, remainingPrefix);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.api.PushSource;
+import com.streamsets.pipeline.api.StageException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the objects handed out to the workers of {@link AmazonS3PushSource} and of the offsets committed
+ * for them.
+ * <p/>
+ * Objects are handed out in read order but complete in any order, so the offsets are a watermark, below which every
+ * object has been fully read, plus one entry per object above the watermark that has been started. The entry of an
+ * object is committed by the worker reading it, the watermark is moved here once all the objects up to it are done
+ * and the entries it covers are then removed. Restarting from these offsets skips the objects that were completed
+ * and resumes the ones that were partially read.
+ */
+final class S3OffsetTracker {
+
+  static final String WATERMARK = "$watermark$";
+
+  private final PushSource.Context context;
+  private final Comparator<AmazonS3Source.S3Offset> ordering;
+  // Objects above the watermark, mapped to whether they are done
+  private final TreeMap<AmazonS3Source.S3Offset, Boolean> tracked;
+  // Objects handed out and not done yet, mapped to the offset to start reading from
+  private final Map<String, String> inFlight;
+  // Offsets of the previous run not matched to a listed object yet
+  private final Map<String, AmazonS3Source.S3Offset> restored;
+  // Objects fully read by the previous run, kept until the watermark covers them as they may no longer be listed
+  private final TreeMap<AmazonS3Source.S3Offset, String> restoredDone;
+  private AmazonS3Source.S3Offset watermark;
+
+  private long noMoreDataRecordCount;
+  private long noMoreDataErrorCount;
+  private long noMoreDataFileCount;
+
+  S3OffsetTracker(
+      PushSource.Context context,
+      ObjectOrdering objectOrdering,
+      Map<String, String> lastOffsets
+  ) throws StageException {
+    this.context = context;
+    this.ordering = comparator(objectOrdering);
+    this.tracked = new TreeMap<>(ordering);
+    this.inFlight = new HashMap<>();
+    this.restored = new HashMap<>();
+    this.restoredDone = new TreeMap<>(ordering);
+
+    watermark = AmazonS3Source.S3Offset.fromString(lastOffsets.get(WATERMARK));
+    List<String> covered = new ArrayList<>();
+    for (Map.Entry<String, String> entry : lastOffsets.entrySet()) {
+      if (WATERMARK.equals(entry.getKey()) || entry.getValue() == null) {
+        continue;
+      }
+      AmazonS3Source.S3Offset offset = AmazonS3Source.S3Offset.fromString(entry.getValue());
+      boolean done = S3Constants.MINUS_ONE.equals(offset.getOffset());
+      if (done && ordering.compare(offset, watermark) <= 0) {
+        covered.add(entry.getKey());
+      } else {
+        if (done) {
+          restoredDone.put(offset, offset.getKey());
+        }
+        restored.put(offset.getKey(), offset);
+      }
+    }
+    for (String key : covered) {
+      context.commitOffset(key, null);
+    }
+  }
+
+  /**
+   * Returns the key to resume lexicographical listings after, null to list from the beginning.
+   */
+  synchronized String getMarker() {
+    return watermark.getKey();
+  }
+
+  /**
+   * Returns whether a listed object still has to be read, or post processed if it was read by a previous run.
+   */
+  synchronized boolean isEligible(S3ObjectSummary summary) {
+    if (restored.containsKey(summary.getKey())) {
+      return true;
+    }
+    AmazonS3Source.S3Offset position = position(summary);
+    return !tracked.containsKey(position) && ordering.compare(position, watermark) > 0;
+  }
+
+  /**
+   * Marks the object as handed out to a worker. The worker then gets the offset to start reading it from with
+   * {@link #getOffset(String)}, -1 meaning that the object was completely read by a previous run.
+   */
+  synchronized void dispatch(S3ObjectSummary summary) {
+    AmazonS3Source.S3Offset position = position(summary);
+    AmazonS3Source.S3Offset previous = restored.remove(summary.getKey());
+    String offset = S3Constants.ZERO;
+    if (previous != null && summary.getETag().equals(previous.geteTag())) {
+      offset = previous.getOffset();
+    }
+    tracked.put(position, false);
+    inFlight.put(summary.getKey(), offset);
+  }
+
+  synchronized String getOffset(String key) {
+    return inFlight.get(key);
+  }
+
+  /**
+   * Marks the object as done and moves the watermark over all the objects done before it.
+   */
+  synchronized void completed(S3ObjectSummary summary, long recordCount, long errorCount) {
+    inFlight.remove(summary.getKey());
+    tracked.put(position(summary), true);
+    if (recordCount > 0 || errorCount > 0) {
+      noMoreDataRecordCount += recordCount;
+      noMoreDataErrorCount += errorCount;
+      noMoreDataFileCount++;
+    }
+
+    List<String> covered = new ArrayList<>();
+    AmazonS3Source.S3Offset newWatermark = watermark;
+    while (!tracked.isEmpty() && tracked.firstEntry().getValue()) {
+      AmazonS3Source.S3Offset done = tracked.pollFirstEntry().getKey();
+      if (ordering.compare(done, newWatermark) > 0) {
+        newWatermark = done;
+      }
+      if (!inFlight.containsKey(done.getKey())) {
+        covered.add(done.getKey());
+      }
+    }
+    if (newWatermark != watermark) {
+      watermark = new AmazonS3Source.S3Offset(
+          newWatermark.getKey(),
+          S3Constants.MINUS_ONE,
+          newWatermark.geteTag(),
+          newWatermark.getTimestamp()
+      );
+      context.commitOffset(WATERMARK, watermark.toString());
+      // Entries of objects read by the previous run that were not listed again, e.g. moved by post processing
+      while (!restoredDone.isEmpty() && ordering.compare(restoredDone.firstKey(), watermark) <= 0) {
+        String key = restoredDone.pollFirstEntry().getValue();
+        if (restored.remove(key) != null && !inFlight.containsKey(key)) {
+          covered.add(key);
+        }
+      }
+    }
+    for (String key : covered) {
+      context.commitOffset(key, null);
+    }
+  }
+
+  synchronized boolean isIdle() {
+    return inFlight.isEmpty();
+  }
+
+  /**
+   * Returns the record, error and file counts to report in a no-more-data event, resetting them, or null if no
+   * event has to be sent because objects are being read or nothing was read since the last event.
+   */
+  synchronized long[] pollNoMoreDataCounts() {
+    if (!inFlight.isEmpty() || (noMoreDataRecordCount == 0 && noMoreDataErrorCount == 0)) {
+      return null;
+    }
+    long[] counts = {noMoreDataRecordCount, noMoreDataErrorCount, noMoreDataFileCount};
+    noMoreDataRecordCount = 0;
+    noMoreDataErrorCount = 0;
+    noMoreDataFileCount = 0;
+    return counts;
+  }
+
+  static AmazonS3Source.S3Offset position(S3ObjectSummary summary) {
+    return new AmazonS3Source.S3Offset(
+        summary.getKey(),
+        S3Constants.ZERO,
+        summary.getETag(),
+        String.valueOf(summary.getLastModified().getTime())
+    );
+  }
+
+  static Comparator<AmazonS3Source.S3Offset> comparator(ObjectOrdering objectOrdering) {
+    Comparator<AmazonS3Source.S3Offset> byKey = Comparator.comparing(
+        AmazonS3Source.S3Offset::getKey,
+        Comparator.nullsFirst(Comparator.naturalOrder())
+    );
+    switch (objectOrdering) {
+      case TIMESTAMP:
+        return Comparator.<AmazonS3Source.S3Offset>comparingLong(o -> Long.parseLong(o.getTimestamp())).thenComparing(byKey);
+      case LEXICOGRAPHICAL:
+        return byKey;
+      default:
+        throw new IllegalArgumentException("Unknown ordering: " + objectOrdering.getLabel());
+    }
+  }
+}
@@ -20,7 +20,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.codahale.metrics.Meter;
 import com.google.common.base.Preconditions;
-import com.streamsets.pipeline.api.Source;
+import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.config.PostProcessingOptions;
 import com.streamsets.pipeline.lib.util.AntPathMatcher;
@@ -36,12 +36,12 @@ public class S3Spooler {
 
   private static final Logger LOG = LoggerFactory.getLogger(S3Spooler.class);
 
-  private final Source.Context context;
+  private final Stage.Context context;
   private final S3ConfigBean s3ConfigBean;
   private final AmazonS3 s3Client;
   private AntPathMatcher pathMatcher;
 
-  public S3Spooler(Source.Context context, S3ConfigBean s3ConfigBean) {
+  public S3Spooler(Stage.Context context, S3ConfigBean s3ConfigBean) {
     this.context = context;
     this.s3ConfigBean = s3ConfigBean;
     this.s3Client = s3ConfigBean.s3Config.getS3Client();
@@ -190,18 +190,28 @@ public class S3Spooler {
 
   public void handleCurrentObjectAsError() {
     if (currentObject != null) {
-      //Move to error prefix only if the error bucket and prefix is specified and is different from
-      //source bucket and prefix
-      Utils.checkNotNull(s3ConfigBean.errorConfig, "s3ConfigBean.errorConfig");
-      postProcessOrErrorHandle(currentObject.getKey(), s3ConfigBean.errorConfig.errorHandlingOption,
-          s3ConfigBean.errorConfig.errorBucket, s3ConfigBean.errorConfig.errorPrefix,
-          s3ConfigBean.errorConfig.archivingOption);
+      handleObjectAsError(currentObject.getKey());
       currentObject = null;
     } else {
       LOG.debug("Current object is null");
     }
   }
 
+  void handleObjectAsError(String objectKey) {
+    //Move to error prefix only if the error bucket and prefix is specified and is different from
+    //source bucket and prefix
+    Utils.checkNotNull(s3ConfigBean.errorConfig, "s3ConfigBean.errorConfig");
+    postProcessOrErrorHandle(objectKey, s3ConfigBean.errorConfig.errorHandlingOption,
+        s3ConfigBean.errorConfig.errorBucket, s3ConfigBean.errorConfig.errorPrefix,
+        s3ConfigBean.errorConfig.archivingOption);
+  }
+
+  void postProcessObject(String objectKey) {
+    postProcessOrErrorHandle(objectKey, s3ConfigBean.postProcessingConfig.postProcessing,
+        s3ConfigBean.postProcessingConfig.postProcessBucket, s3ConfigBean.postProcessingConfig.postProcessPrefix,
+        s3ConfigBean.postProcessingConfig.archivingOption);
+  }
+
   public void postProcessOlderObjectIfNeeded(AmazonS3Source.S3Offset s3Offset) {
     //If sdc was shutdown after reading an object but before post processing it, handle it now.
 
@@ -219,9 +229,7 @@ public class S3Spooler {
       S3ObjectSummary objectSummary = AmazonS3Util.getObjectSummary(s3Client, s3ConfigBean.s3Config.bucket, s3Offset.getKey());
       if(objectSummary != null &&
         objectSummary.getLastModified().compareTo(new Date(Long.parseLong(s3Offset.getTimestamp()))) == 0) {
-        postProcessOrErrorHandle(s3Offset.getKey(), s3ConfigBean.postProcessingConfig.postProcessing,
-          s3ConfigBean.postProcessingConfig.postProcessBucket, s3ConfigBean.postProcessingConfig.postProcessPrefix,
-          s3ConfigBean.postProcessingConfig.archivingOption);
+        postProcessObject(s3Offset.getKey());
       }
     }
     currentObject = null;
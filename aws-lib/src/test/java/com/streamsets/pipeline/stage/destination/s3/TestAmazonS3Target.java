@@ -23,6 +23,7 @@ import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.streamsets.pipeline.api.EventRecord;
+import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.OnRecordError;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
@@ -36,6 +37,7 @@ import com.streamsets.pipeline.stage.lib.aws.AWSConfig;
 import com.streamsets.pipeline.stage.lib.aws.AWSRegions;
 import com.streamsets.pipeline.stage.lib.aws.ProxyConfig;
 import com.streamsets.pipeline.stage.lib.aws.TransferManagerConfig;
+import org.apache.commons.io.IOUtils;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Assume;
@@ -45,6 +47,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
@@ -262,6 +265,15 @@ public class TestAmazonS3Target {
       boolean useCompression,
       String suffix
   ) {
+    return new AmazonS3Target(createS3TargetConfigBean(commonPrefix, partition, useCompression, suffix));
+  }
+
+  private S3TargetConfigBean createS3TargetConfigBean(
+      String commonPrefix,
+      String partition,
+      boolean useCompression,
+      String suffix
+  ) {
 
     S3ConnectionTargetConfig s3Config = new S3ConnectionTargetConfig();
     s3Config.region = AWSRegions.OTHER;
@@ -287,9 +299,149 @@ public class TestAmazonS3Target {
     s3TargetConfigBean.tmConfig.threadPoolSize = 3;
     s3TargetConfigBean.fileNameSuffix = suffix;
 
+    return s3TargetConfigBean;
+  }
+
+  private AmazonS3Target createStreamingS3target(String commonPrefix, long maxObjectSize) {
+    S3TargetConfigBean s3TargetConfigBean = createS3TargetConfigBean(commonPrefix, "", false, "txt");
+    s3TargetConfigBean.streamUpload = true;
+    s3TargetConfigBean.tmConfig.minimumUploadPartSize = S3TargetConfigBean.MIN_STREAM_UPLOAD_PART_SIZE;
+    s3TargetConfigBean.uploadBuffers = 2;
+    s3TargetConfigBean.maxObjectSize = maxObjectSize;
     return new AmazonS3Target(s3TargetConfigBean);
   }
 
+  @Test
+  public void testStreamUpload() throws Exception {
+    String prefix = "testStreamUpload";
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, createStreamingS3target(prefix, 0))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    targetRunner.runInit();
+
+    targetRunner.runWrite(TestUtil.createStringRecords(BUCKET_NAME));
+
+    TestUtil.assertStringRecords(s3client, BUCKET_NAME, prefix);
+    Assert.assertEquals(1, targetRunner.getEventRecords().size());
+    Assert.assertEquals(9, targetRunner.getEventRecords().get(0).get("/recordCount").getValueAsLong());
+
+    targetRunner.runDestroy();
+  }
+
+  @Test
+  public void testStreamUploadMultipleParts() throws Exception {
+    String prefix = "testStreamUploadMultipleParts";
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, createStreamingS3target(prefix, 0))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    targetRunner.runInit();
+
+    // 11 records of 1 MiB, uploaded in 3 parts
+    char[] chars = new char[1024 * 1024];
+    Arrays.fill(chars, 'a');
+    String value = new String(chars);
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 11; i++) {
+      Record record = RecordCreator.create("s", "s:" + i);
+      record.set(Field.create(value));
+      record.getHeader().setAttribute("bucket", BUCKET_NAME);
+      records.add(record);
+    }
+    targetRunner.runWrite(records);
+
+    ObjectListing objectListing = s3client.listObjects(BUCKET_NAME, prefix);
+    Assert.assertEquals(1, objectListing.getObjectSummaries().size());
+    List<String> lines = IOUtils.readLines(
+        s3client.getObject(BUCKET_NAME, objectListing.getObjectSummaries().get(0).getKey()).getObjectContent()
+    );
+    Assert.assertEquals(11, lines.size());
+    for (String line : lines) {
+      Assert.assertEquals("\"" + value + "\"", line);
+    }
+
+    targetRunner.runDestroy();
+  }
+
+  @Test
+  public void testStreamUploadPartSizeBelowS3Minimum() throws Exception {
+    S3TargetConfigBean s3TargetConfigBean = createS3TargetConfigBean("testStreamUploadPartSize", "", false, "txt");
+    s3TargetConfigBean.streamUpload = true;
+    s3TargetConfigBean.tmConfig.minimumUploadPartSize = S3TargetConfigBean.MIN_STREAM_UPLOAD_PART_SIZE - 1;
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, new AmazonS3Target(s3TargetConfigBean))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    List<Stage.ConfigIssue> issues = targetRunner.runValidateConfigs();
+    Assert.assertEquals(1, issues.size());
+    Assert.assertTrue(issues.get(0).toString().contains(Errors.S3_07.name()));
+  }
+
+  @Test
+  public void testStreamUploadCompletesEveryBatch() throws Exception {
+    String prefix = "testStreamUploadCompletesEveryBatch";
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, createStreamingS3target(prefix, 1024))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    targetRunner.runInit();
+
+    // Objects don't stay open across batches, the records of a batch are in S3 when the batch is done
+    targetRunner.runWrite(TestUtil.createStringRecords(BUCKET_NAME));
+    Assert.assertEquals(1, s3client.listObjects(BUCKET_NAME, prefix).getObjectSummaries().size());
+    Assert.assertEquals(1, targetRunner.getEventRecords().size());
+
+    targetRunner.runWrite(TestUtil.createStringRecords(BUCKET_NAME));
+    ObjectListing objectListing = s3client.listObjects(BUCKET_NAME, prefix);
+    Assert.assertEquals(2, objectListing.getObjectSummaries().size());
+    Assert.assertEquals(2, targetRunner.getEventRecords().size());
+    for (S3ObjectSummary summary : objectListing.getObjectSummaries()) {
+      List<String> lines = IOUtils.readLines(s3client.getObject(BUCKET_NAME, summary.getKey()).getObjectContent());
+      Assert.assertEquals(9, lines.size());
+    }
+
+    targetRunner.runDestroy();
+  }
+
+  @Test
+  public void testStreamUploadManyPartitionsFewBuffers() throws Exception {
+    String prefix = "testStreamUploadManyPartitionsFewBuffers";
+    S3TargetConfigBean s3TargetConfigBean = createS3TargetConfigBean(prefix, "${record:id()}", false, "txt");
+    s3TargetConfigBean.streamUpload = true;
+    s3TargetConfigBean.tmConfig.minimumUploadPartSize = S3TargetConfigBean.MIN_STREAM_UPLOAD_PART_SIZE;
+    s3TargetConfigBean.uploadBuffers = 1;
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, new AmazonS3Target(s3TargetConfigBean))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    targetRunner.runInit();
+
+    // More partitions than buffers, each partition's object is finished before the next one takes a buffer
+    targetRunner.runWrite(TestUtil.createStringRecords(BUCKET_NAME));
+
+    Assert.assertEquals(9, targetRunner.getEventRecords().size());
+    Assert.assertEquals(9, s3client.listObjects(BUCKET_NAME, prefix).getObjectSummaries().size());
+    targetRunner.runDestroy();
+  }
+
+  @Test
+  public void testStreamUploadRollsBySize() throws Exception {
+    String prefix = "testStreamUploadRollsBySize";
+    TargetRunner targetRunner = new TargetRunner.Builder(AmazonS3DTarget.class, createStreamingS3target(prefix, 50))
+      .addService(DataFormatGeneratorService.class, new SdkJsonDataFormatGeneratorService())
+      .build();
+    targetRunner.runInit();
+
+    targetRunner.runWrite(TestUtil.createStringRecords(BUCKET_NAME));
+    targetRunner.runDestroy();
+
+    // Each object is closed as soon as it reaches 50 bytes, one event per object
+    List<EventRecord> events = targetRunner.getEventRecords();
+    Assert.assertTrue(events.size() > 1);
+    Assert.assertEquals(events.size(), s3client.listObjects(BUCKET_NAME, prefix).getObjectSummaries().size());
+    long recordCount = 0;
+    for (EventRecord event : events) {
+      recordCount += event.get("/recordCount").getValueAsLong();
+    }
+    Assert.assertEquals(9, recordCount);
+  }
+
   @Test
   public void testEventRecords() throws Exception {
     String prefix = "testEventRecords";
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestS3MultipartOutputStream {
+  private static final String BUCKET = "bucket";
+  private static final String KEY = "key";
+
+  private ExecutorService executor;
+  private FakeS3Client s3Client;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    s3Client = new FakeS3Client();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private S3MultipartOutputStream createStream(UploadBufferPool buffers) {
+    return new S3MultipartOutputStream(s3Client, executor, buffers, BUCKET, KEY, null, null);
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testSmallObjectIsPutInOneRequest() throws Exception {
+    S3MultipartOutputStream out = createStream(new UploadBufferPool(100, 2, false));
+    byte[] data = randomBytes(60);
+    out.write(data);
+    out.close();
+    out.getCompletion().get();
+
+    Assert.assertArrayEquals(data, s3Client.objects.get(KEY));
+    Assert.assertEquals(0, s3Client.initiated.get());
+  }
+
+  @Test
+  public void testEmptyObject() throws Exception {
+    S3MultipartOutputStream out = createStream(new UploadBufferPool(100, 2, false));
+    out.close();
+    out.getCompletion().get();
+
+    Assert.assertArrayEquals(new byte[0], s3Client.objects.get(KEY));
+  }
+
+  @Test
+  public void testLargeObjectIsUploadedInParts() throws Exception {
+    testLargeObject(false);
+  }
+
+  @Test
+  public void testLargeObjectWithOffHeapBuffers() throws Exception {
+    testLargeObject(true);
+  }
+
+  private void testLargeObject(boolean offHeap) throws Exception {
+    S3MultipartOutputStream out = createStream(new UploadBufferPool(16, 2, offHeap));
+    byte[] data = randomBytes(1000);
+    // Mix single byte and array writes that span several parts
+    out.write(data[0]);
+    out.write(data, 1, 500);
+    for (int i = 501; i < 600; i++) {
+      out.write(data[i]);
+    }
+    out.write(data, 600, 400);
+    Assert.assertEquals(1000, out.getBytesWritten());
+    out.close();
+    out.getCompletion().get();
+
+    Assert.assertEquals(1, s3Client.initiated.get());
+    Assert.assertEquals(63, s3Client.parts.size());
+    Assert.assertArrayEquals(data, s3Client.objects.get(KEY));
+    Assert.assertTrue(s3Client.maxConcurrentParts.get() <= 2);
+  }
+
+  @Test
+  public void testFailedPartAbortsUpload() throws Exception {
+    s3Client.failPart = 3;
+    S3MultipartOutputStream out = createStream(new UploadBufferPool(16, 2, false));
+    try {
+      for (int i = 0; i < 100; i++) {
+        out.write(randomBytes(16));
+        Thread.sleep(1);
+      }
+      Assert.fail("Writing after a failed part should fail");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof AmazonServiceException);
+    }
+    out.close();
+    try {
+      out.getCompletion().get();
+      Assert.fail("Upload should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof AmazonServiceException);
+    }
+    Assert.assertEquals(1, s3Client.aborted.get());
+    Assert.assertFalse(s3Client.objects.containsKey(KEY));
+  }
+
+  @Test
+  public void testAbort() throws Exception {
+    S3MultipartOutputStream out = createStream(new UploadBufferPool(16, 2, false));
+    out.write(randomBytes(40));
+    out.abort();
+    out.getCompletion().get();
+
+    Assert.assertEquals(1, s3Client.aborted.get());
+    Assert.assertFalse(s3Client.objects.containsKey(KEY));
+  }
+
+  @Test
+  public void testBuffersAreReused() throws Exception {
+    UploadBufferPool buffers = new UploadBufferPool(16, 2, false);
+    for (int i = 0; i < 3; i++) {
+      S3MultipartOutputStream out = createStream(buffers);
+      out.write(randomBytes(100));
+      out.close();
+      out.getCompletion().get(10, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals(3, s3Client.initiated.get());
+  }
+
+  /**
+   * Keeps uploaded objects in memory.
+   */
+  private static class FakeS3Client extends AbstractAmazonS3 {
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<Integer, byte[]> parts = new TreeMap<>();
+    private final AtomicInteger initiated = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+    private final AtomicInteger concurrentParts = new AtomicInteger();
+    private final AtomicInteger maxConcurrentParts = new AtomicInteger();
+    private volatile int failPart = -1;
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+      try {
+        objects.put(request.getKey(), ByteStreams.toByteArray(request.getInputStream()));
+      } catch (IOException e) {
+        throw new AmazonServiceException(e.toString(), e);
+      }
+      return new PutObjectResult();
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+      InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+      result.setUploadId("upload-" + initiated.incrementAndGet());
+      synchronized (parts) {
+        parts.clear();
+      }
+      return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+      int concurrent = concurrentParts.incrementAndGet();
+      maxConcurrentParts.accumulateAndGet(concurrent, Math::max);
+      try {
+        if (request.getPartNumber() == failPart) {
+          throw new AmazonServiceException("Part failed");
+        }
+        byte[] data = ByteStreams.toByteArray(request.getInputStream());
+        Assert.assertEquals(request.getPartSize(), data.length);
+        synchronized (parts) {
+          parts.put(request.getPartNumber(), data);
+        }
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("etag-" + request.getPartNumber());
+        return result;
+      } catch (IOException e) {
+        throw new AmazonServiceException(e.toString(), e);
+      } finally {
+        concurrentParts.decrementAndGet();
+      }
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+      ByteArrayOutputStream object = new ByteArrayOutputStream();
+      synchronized (parts) {
+        Assert.assertEquals(parts.size(), request.getPartETags().size());
+        int expected = 1;
+        for (PartETag etag : request.getPartETags()) {
+          Assert.assertEquals(expected++, etag.getPartNumber());
+          object.write(parts.get(etag.getPartNumber()), 0, parts.get(etag.getPartNumber()).length);
+        }
+      }
+      objects.put(request.getKey(), object.toByteArray());
+      return new CompleteMultipartUploadResult();
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+      aborted.incrementAndGet();
+    }
+  }
+}
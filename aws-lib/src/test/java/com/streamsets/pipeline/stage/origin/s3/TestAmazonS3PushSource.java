@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.service.dataformats.DataFormatParserService;
+import com.streamsets.pipeline.config.PostProcessingOptions;
+import com.streamsets.pipeline.sdk.PushSourceRunner;
+import com.streamsets.pipeline.sdk.service.SdkJsonDataFormatParserService;
+import com.streamsets.pipeline.stage.common.AmazonS3TestSuite;
+import com.streamsets.pipeline.stage.common.TestUtil;
+import com.streamsets.pipeline.stage.lib.aws.AWSConfig;
+import com.streamsets.pipeline.stage.lib.aws.AWSRegions;
+import com.streamsets.pipeline.stage.lib.aws.ProxyConfig;
+import com.streamsets.pipeline.stage.origin.lib.BasicConfig;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TestAmazonS3PushSource extends AmazonS3TestSuite {
+
+  private static final String BUCKET_NAME = "push-bucket";
+  private static final String PREFIX = "logs/";
+  private static final int OBJECT_COUNT = 20;
+
+  private static AmazonS3 s3client;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    setupS3();
+    BasicAWSCredentials credentials = new BasicAWSCredentials("foo", "bar");
+    s3client = AmazonS3ClientBuilder
+        .standard()
+        .withCredentials(new AWSStaticCredentialsProvider(credentials))
+        .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration("http://localhost:" + port, null))
+        .withPathStyleAccessEnabled(true)
+        .withChunkedEncodingDisabled(true)
+        .build();
+
+    TestUtil.createBucket(s3client, BUCKET_NAME);
+    for (int i = 0; i < OBJECT_COUNT; i++) {
+      InputStream in = new ByteArrayInputStream(("{\"key\": " + i + "}").getBytes());
+      s3client.putObject(new PutObjectRequest(BUCKET_NAME, objectKey(i), in, new ObjectMetadata()));
+    }
+    // Not matching the prefix pattern
+    InputStream in = new ByteArrayInputStream("{\"key\": -1}".getBytes());
+    s3client.putObject(new PutObjectRequest(BUCKET_NAME, PREFIX + "file.txt", in, new ObjectMetadata()));
+  }
+
+  @AfterClass
+  public static void tearDownClass() {
+    teardownS3();
+  }
+
+  @Test
+  public void testProduceAllObjects() throws Exception {
+    for (ObjectOrdering ordering : ObjectOrdering.values()) {
+      PushSourceRunner runner = createRunner(ordering, 4);
+      runner.runInit();
+      try {
+        List<Record> records = produce(runner, Collections.emptyMap(), OBJECT_COUNT);
+
+        Assert.assertEquals(OBJECT_COUNT, records.size());
+        Assert.assertEquals(OBJECT_COUNT, keys(records).size());
+
+        // Every object is done, only the watermark is left
+        Map<String, String> offsets = runner.getOffsets();
+        Assert.assertEquals(1, offsets.size());
+        Assert.assertTrue(offsets.get(S3OffsetTracker.WATERMARK).startsWith(objectKey(OBJECT_COUNT - 1) + "::-1::"));
+      } finally {
+        runner.runDestroy();
+      }
+    }
+  }
+
+  @Test
+  public void testResumeFromOffsets() throws Exception {
+    for (ObjectOrdering ordering : ObjectOrdering.values()) {
+      Map<String, String> lastOffsets = new HashMap<>();
+      lastOffsets.put(S3OffsetTracker.WATERMARK, doneOffset(9));
+      lastOffsets.put(objectKey(12), doneOffset(12));
+      lastOffsets.put(objectKey(15), doneOffset(15));
+
+      PushSourceRunner runner = createRunner(ordering, 3);
+      runner.runInit();
+      try {
+        List<Record> records = produce(runner, lastOffsets, OBJECT_COUNT - 12);
+
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 10; i < OBJECT_COUNT; i++) {
+          if (i != 12 && i != 15) {
+            expected.add(i);
+          }
+        }
+        Assert.assertEquals(expected, keys(records));
+
+        Map<String, String> offsets = runner.getOffsets();
+        Assert.assertEquals(1, offsets.size());
+        Assert.assertTrue(offsets.get(S3OffsetTracker.WATERMARK).startsWith(objectKey(OBJECT_COUNT - 1) + "::-1::"));
+      } finally {
+        runner.runDestroy();
+      }
+    }
+  }
+
+  private static List<Record> produce(
+      PushSourceRunner runner,
+      Map<String, String> lastOffsets,
+      int expectedRecords
+  ) throws Exception {
+    List<Record> records = Collections.synchronizedList(new ArrayList<>());
+    runner.runProduce(lastOffsets, 5, output -> {
+      List<Record> batch = output.getRecords().get("lane");
+      if (batch != null) {
+        records.addAll(batch);
+      }
+      // Stop once every object has been read and the watermark moved over all of them
+      String watermark = runner.getOffsets().get(S3OffsetTracker.WATERMARK);
+      if (records.size() >= expectedRecords && watermark != null &&
+          watermark.startsWith(objectKey(OBJECT_COUNT - 1) + "::")) {
+        runner.setStop();
+      }
+    });
+    runner.waitOnProduce();
+    return records;
+  }
+
+  private static Set<Integer> keys(List<Record> records) {
+    Set<Integer> keys = new HashSet<>();
+    for (Record record : records) {
+      keys.add(record.get("/key").getValueAsInteger());
+    }
+    return keys;
+  }
+
+  private static String objectKey(int i) {
+    return String.format("%sfile%02d.log", PREFIX, i);
+  }
+
+  private static String doneOffset(int i) {
+    S3ObjectSummary summary = AmazonS3Util.getObjectSummary(s3client, BUCKET_NAME, objectKey(i));
+    return new AmazonS3Source.S3Offset(
+        summary.getKey(),
+        S3Constants.MINUS_ONE,
+        summary.getETag(),
+        String.valueOf(summary.getLastModified().getTime())
+    ).toString();
+  }
+
+  private static PushSourceRunner createRunner(ObjectOrdering ordering, int numberOfThreads) {
+    S3ConfigBean s3ConfigBean = new S3ConfigBean();
+    s3ConfigBean.basicConfig = new BasicConfig();
+    s3ConfigBean.basicConfig.maxWaitTime = 100;
+    s3ConfigBean.basicConfig.maxBatchSize = 5;
+
+    s3ConfigBean.sseConfig = new S3SSEConfigBean();
+    s3ConfigBean.sseConfig.useCustomerSSEKey = false;
+
+    s3ConfigBean.errorConfig = new S3ErrorConfig();
+    s3ConfigBean.errorConfig.errorHandlingOption = PostProcessingOptions.NONE;
+
+    s3ConfigBean.postProcessingConfig = new S3PostProcessingConfig();
+    s3ConfigBean.postProcessingConfig.postProcessing = PostProcessingOptions.NONE;
+
+    s3ConfigBean.s3FileConfig = new S3FileConfig();
+    s3ConfigBean.s3FileConfig.overrunLimit = 65;
+    s3ConfigBean.s3FileConfig.prefixPattern = "*.log";
+    s3ConfigBean.s3FileConfig.objectOrdering = ordering;
+    // Smaller than the number of objects so that the index is refilled
+    s3ConfigBean.s3FileConfig.poolSize = 7;
+
+    s3ConfigBean.s3Config = new S3ConnectionSourceConfig();
+    s3ConfigBean.s3Config.region = AWSRegions.OTHER;
+    s3ConfigBean.s3Config.endpoint = "http://localhost:" + port;
+    s3ConfigBean.s3Config.bucket = BUCKET_NAME;
+    s3ConfigBean.s3Config.awsConfig = new AWSConfig();
+    s3ConfigBean.s3Config.awsConfig.awsAccessKeyId = () -> "foo";
+    s3ConfigBean.s3Config.awsConfig.awsSecretAccessKey = () -> "bar";
+    s3ConfigBean.s3Config.awsConfig.disableChunkedEncoding = true;
+    s3ConfigBean.s3Config.commonPrefix = PREFIX;
+    s3ConfigBean.s3Config.delimiter = "/";
+    s3ConfigBean.proxyConfig = new ProxyConfig();
+
+    AmazonS3PushSource source = new AmazonS3PushSource(s3ConfigBean, numberOfThreads, 2);
+    return new PushSourceRunner.Builder(AmazonS3DPushSource.class, source)
+        .addService(DataFormatParserService.class, new SdkJsonDataFormatParserService())
+        .addOutputLane("lane")
+        .build();
+  }
+}
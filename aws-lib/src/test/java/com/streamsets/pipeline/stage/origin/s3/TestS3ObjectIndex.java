@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.streamsets.pipeline.api.PushSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class TestS3ObjectIndex {
+
+  private static final int PAGE_SIZE = 2;
+
+  // Lists the given sorted keys in pages of PAGE_SIZE, the way S3 resumes listings after a marker
+  private static ObjectListing page(List<String> keys, String marker) {
+    ObjectListing listing = new ObjectListing();
+    int count = 0;
+    for (String key : keys) {
+      if (marker != null && key.compareTo(marker) <= 0) {
+        continue;
+      }
+      if (count == PAGE_SIZE) {
+        listing.setTruncated(true);
+        break;
+      }
+      S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setKey(key);
+      summary.setETag("e" + key);
+      summary.setLastModified(new Date(1000));
+      listing.getObjectSummaries().add(summary);
+      listing.setNextMarker(key);
+      count++;
+    }
+    return listing;
+  }
+
+  @Test
+  public void testRefillSkipsNonMatchingKeys() throws Exception {
+    List<String> keys = Arrays.asList("a.log", "b.txt", "c.txt", "d.txt", "e.txt");
+    AmazonS3 s3Client = Mockito.mock(AmazonS3.class);
+    Mockito.when(s3Client.listObjects(Mockito.any(ListObjectsRequest.class))).thenAnswer(
+        invocation -> page(keys, ((ListObjectsRequest) invocation.getArguments()[0]).getMarker())
+    );
+    Mockito.when(s3Client.listNextBatchOfObjects(Mockito.any(ObjectListing.class))).thenAnswer(
+        invocation -> page(keys, ((ObjectListing) invocation.getArguments()[0]).getNextMarker())
+    );
+
+    S3ConfigBean s3ConfigBean = new S3ConfigBean();
+    s3ConfigBean.s3Config = new S3ConnectionSourceConfig();
+    s3ConfigBean.s3Config.bucket = "bucket";
+    s3ConfigBean.s3Config.commonPrefix = "";
+    s3ConfigBean.s3Config.delimiter = "/";
+    s3ConfigBean.s3FileConfig = new S3FileConfig();
+    s3ConfigBean.s3FileConfig.prefixPattern = "*.log";
+    s3ConfigBean.s3FileConfig.objectOrdering = ObjectOrdering.LEXICOGRAPHICAL;
+    s3ConfigBean.s3FileConfig.poolSize = 10;
+    S3OffsetTracker tracker = new S3OffsetTracker(
+        Mockito.mock(PushSource.Context.class),
+        ObjectOrdering.LEXICOGRAPHICAL,
+        Collections.emptyMap()
+    );
+
+    S3ObjectIndex index = new S3ObjectIndex(s3Client, s3ConfigBean, tracker);
+    S3ObjectSummary summary = index.next();
+    Assert.assertEquals("a.log", summary.getKey());
+    tracker.dispatch(summary);
+    Mockito.verify(s3Client, Mockito.times(1)).listObjects(Mockito.any(ListObjectsRequest.class));
+    Mockito.verify(s3Client, Mockito.times(2)).listNextBatchOfObjects(Mockito.any(ObjectListing.class));
+
+    // Empty refills resume after the last listed key instead of listing the non matching keys again
+    for (int i = 0; i < 3; i++) {
+      Assert.assertNull(index.next());
+      Assert.assertTrue(index.isDrained());
+    }
+    Mockito.verify(s3Client, Mockito.times(4)).listObjects(Mockito.any(ListObjectsRequest.class));
+    Mockito.verify(s3Client, Mockito.times(2)).listNextBatchOfObjects(Mockito.any(ObjectListing.class));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.s3;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.collect.ImmutableMap;
+import com.streamsets.pipeline.api.PushSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestS3OffsetTracker {
+
+  private PushSource.Context context;
+  private Map<String, String> committed;
+
+  @Before
+  public void setUp() {
+    committed = new HashMap<>();
+    context = Mockito.mock(PushSource.Context.class);
+    Mockito.doAnswer(invocation -> {
+      String entity = (String) invocation.getArguments()[0];
+      String offset = (String) invocation.getArguments()[1];
+      if (offset == null) {
+        committed.remove(entity);
+      } else {
+        committed.put(entity, offset);
+      }
+      return null;
+    }).when(context).commitOffset(Mockito.any(), Mockito.any());
+  }
+
+  private static S3ObjectSummary summary(String key, String eTag, long lastModified) {
+    S3ObjectSummary summary = new S3ObjectSummary();
+    summary.setKey(key);
+    summary.setETag(eTag);
+    summary.setLastModified(new Date(lastModified));
+    return summary;
+  }
+
+  private static String offset(S3ObjectSummary summary, String offset) {
+    return new AmazonS3Source.S3Offset(
+        summary.getKey(),
+        offset,
+        summary.getETag(),
+        String.valueOf(summary.getLastModified().getTime())
+    ).toString();
+  }
+
+  @Test
+  public void testOutOfOrderCompletion() throws Exception {
+    S3OffsetTracker tracker = new S3OffsetTracker(context, ObjectOrdering.TIMESTAMP, Collections.emptyMap());
+    S3ObjectSummary a = summary("a", "ea", 1000);
+    S3ObjectSummary b = summary("b", "eb", 1000);
+    S3ObjectSummary c = summary("c", "ec", 2000);
+    for (S3ObjectSummary summary : new S3ObjectSummary[]{a, b, c}) {
+      Assert.assertTrue(tracker.isEligible(summary));
+      tracker.dispatch(summary);
+      Assert.assertFalse(tracker.isEligible(summary));
+      Assert.assertEquals(S3Constants.ZERO, tracker.getOffset(summary.getKey()));
+      // What the worker commits once done with the object
+      committed.put(summary.getKey(), offset(summary, S3Constants.MINUS_ONE));
+    }
+
+    // c is done but a and b are not, nothing can be covered yet
+    tracker.completed(c, 1, 0);
+    Assert.assertFalse(committed.containsKey(S3OffsetTracker.WATERMARK));
+    Assert.assertEquals(3, committed.size());
+
+    tracker.completed(a, 1, 0);
+    Assert.assertEquals(offset(a, S3Constants.MINUS_ONE), committed.get(S3OffsetTracker.WATERMARK));
+    Assert.assertFalse(committed.containsKey("a"));
+    Assert.assertFalse(tracker.isIdle());
+
+    tracker.completed(b, 1, 0);
+    Assert.assertEquals(ImmutableMap.of(S3OffsetTracker.WATERMARK, offset(c, S3Constants.MINUS_ONE)), committed);
+    Assert.assertTrue(tracker.isIdle());
+
+    // Covered by the watermark
+    Assert.assertFalse(tracker.isEligible(summary("b", "eb", 1000)));
+    // Later object, or a new version of one already read
+    Assert.assertTrue(tracker.isEligible(summary("d", "ed", 2000)));
+    Assert.assertTrue(tracker.isEligible(summary("a", "ea2", 3000)));
+  }
+
+  @Test
+  public void testRestore() throws Exception {
+    S3ObjectSummary a = summary("a", "ea", 1000);
+    S3ObjectSummary b = summary("b", "eb", 2000);
+    S3ObjectSummary c = summary("c", "ec", 3000);
+    S3ObjectSummary d = summary("d", "ed", 4000);
+    S3ObjectSummary e = summary("e", "ee", 5000);
+    committed.put(S3OffsetTracker.WATERMARK, offset(b, S3Constants.MINUS_ONE));
+    // Done before the watermark moved over it
+    committed.put("a", offset(a, S3Constants.MINUS_ONE));
+    committed.put("c", offset(c, "10"));
+    committed.put("d", offset(d, S3Constants.MINUS_ONE));
+    committed.put("e", offset(e, "20"));
+
+    S3OffsetTracker tracker = new S3OffsetTracker(context, ObjectOrdering.TIMESTAMP, new HashMap<>(committed));
+    Assert.assertFalse(committed.containsKey("a"));
+    Assert.assertEquals("b", tracker.getMarker());
+
+    Assert.assertFalse(tracker.isEligible(a));
+    Assert.assertFalse(tracker.isEligible(b));
+    Assert.assertTrue(tracker.isEligible(c));
+    Assert.assertTrue(tracker.isEligible(d));
+
+    // Partially read, resumed
+    tracker.dispatch(c);
+    Assert.assertEquals("10", tracker.getOffset("c"));
+    // Fully read, only needs post processing
+    tracker.dispatch(d);
+    Assert.assertEquals(S3Constants.MINUS_ONE, tracker.getOffset("d"));
+    // Modified since it was partially read, read again
+    S3ObjectSummary modified = summary("e", "ee2", 5000);
+    tracker.dispatch(modified);
+    Assert.assertEquals(S3Constants.ZERO, tracker.getOffset("e"));
+
+    tracker.completed(d, 0, 0);
+    tracker.completed(c, 1, 0);
+    Assert.assertEquals(offset(d, S3Constants.MINUS_ONE), committed.get(S3OffsetTracker.WATERMARK));
+    Assert.assertFalse(committed.containsKey("c"));
+    Assert.assertFalse(committed.containsKey("d"));
+  }
+
+  @Test
+  public void testNoMoreDataCounts() throws Exception {
+    S3OffsetTracker tracker = new S3OffsetTracker(context, ObjectOrdering.LEXICOGRAPHICAL, Collections.emptyMap());
+    Assert.assertNull(tracker.pollNoMoreDataCounts());
+
+    S3ObjectSummary a = summary("a", "ea", 1000);
+    S3ObjectSummary b = summary("b", "eb", 1000);
+    tracker.dispatch(a);
+    tracker.dispatch(b);
+    tracker.completed(a, 5, 1);
+    // b is still being read
+    Assert.assertNull(tracker.pollNoMoreDataCounts());
+
+    tracker.completed(b, 3, 0);
+    Assert.assertArrayEquals(new long[]{8, 1, 2}, tracker.pollNoMoreDataCounts());
+    Assert.assertNull(tracker.pollNoMoreDataCounts());
+    Assert.assertEquals("b", tracker.getMarker());
+  }
+}
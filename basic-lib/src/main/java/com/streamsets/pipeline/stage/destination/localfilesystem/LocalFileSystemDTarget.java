@@ -25,7 +25,7 @@ import com.streamsets.pipeline.api.base.configurablestage.DTarget;
 import com.streamsets.pipeline.stage.destination.hdfs.HdfsTarget;
 
 @StageDef(
-    version = 3,
+    version = 4,
     label = "Local FS",
     description = "Writes to the local file system",
     icon = "localfilesystem.png",
@@ -30,13 +30,14 @@ import com.streamsets.pipeline.api.base.configurablestage.DProcessor;
 import java.util.List;
 
 @StageDef(
-    version = 1,
+    version = 2,
     label = "Record Deduplicator",
     description = "Separates unique and duplicate records based on field comparison",
     icon="dedup.png",
     outputStreams = OutputStreams.class,
     execution = ExecutionMode.STANDALONE,
     flags = StageBehaviorFlags.PASSTHROUGH,
+    upgrader = DeDupProcessorUpgrader.class,
     onlineHelpRefUrl ="index.html?contextID=task_ikr_c2f_zq"
 )
 @ConfigGroups(Groups.class)
@@ -92,9 +93,55 @@ public class DeDupDProcessor extends DProcessor {
   @FieldSelectorModel
   public List<String> fieldsToCompare;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      defaultValue = "HEAP",
+      label = "Hash Storage",
+      description = "Off-Heap stores the compared hashes outside of the Java heap in roughly 45 to 70 bytes per " +
+          "record",
+      displayPosition = 50,
+      group = "DE_DUP"
+  )
+  @ValueChooserModel(HashStorageChooserValues.class)
+  public HashStorage hashStorage;
+
+  @ConfigDef(
+      required = false,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Persist Window",
+      description = "Keeps the hashes in a memory-mapped file so that the window survives pipeline restarts",
+      displayPosition = 60,
+      group = "DE_DUP",
+      dependsOn = "hashStorage",
+      triggeredByValue = "OFF_HEAP"
+  )
+  public boolean persistWindow;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      label = "Window Directory",
+      description = "Local directory for the memory-mapped window file",
+      displayPosition = 70,
+      group = "DE_DUP",
+      dependsOn = "persistWindow",
+      triggeredByValue = "true"
+  )
+  public String windowDirectory;
+
   @Override
   protected Processor createProcessor() {
-    return new DeDupProcessor(recordCountWindow, timeWindowSecs, compareFields, fieldsToCompare);
+    return new DeDupProcessor(
+        recordCountWindow,
+        timeWindowSecs,
+        compareFields,
+        fieldsToCompare,
+        hashStorage,
+        persistWindow,
+        windowDirectory
+    );
   }
 
 }
@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.stage.processor.dedup;
 
+import com.codahale.metrics.Meter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.hash.HashCode;
@@ -31,6 +32,9 @@ import com.streamsets.pipeline.lib.queue.XEvictingQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -40,20 +44,38 @@ import java.util.concurrent.TimeUnit;
 public class DeDupProcessor extends RecordProcessor {
   private static final long MEMORY_USAGE_PER_HASH = 85;
   private static final String CACHE_KEY = "cache";
+  private static final String INDEX_KEY = "offHeapIndex";
+  private static final String INDEX_REFERENCES_KEY = "offHeapIndexReferences";
+  // Preview and validation use the heap cache instead of the off-heap index, they only see a few records
+  private static final int MAX_PREVIEW_WINDOW = 100000;
+  private static final String LOOKUPS_METER = "Deduplication Lookups";
+  private static final String WINDOW_GAUGE = "Deduplication Window";
   private static final Logger LOG = LoggerFactory.getLogger(DeDupProcessor.class);
 
   private final  int recordCountWindow;
   private final  int timeWindowSecs;
   private final  SelectFields compareFields;
   private final  List<String> fieldsToCompare;
+  private final  HashStorage hashStorage;
+  private final  boolean persistWindow;
+  private final  String windowDirectory;
   private CacheCleaner cacheCleaner;
 
   public DeDupProcessor(int recordCountWindow, int timeWindowSecs,
       SelectFields compareFields, List<String> fieldsToCompare) {
+    this(recordCountWindow, timeWindowSecs, compareFields, fieldsToCompare, HashStorage.HEAP, false, null);
+  }
+
+  public DeDupProcessor(int recordCountWindow, int timeWindowSecs,
+      SelectFields compareFields, List<String> fieldsToCompare,
+      HashStorage hashStorage, boolean persistWindow, String windowDirectory) {
     this.recordCountWindow = recordCountWindow;
     this.timeWindowSecs = timeWindowSecs;
     this.compareFields = compareFields;
     this.fieldsToCompare = fieldsToCompare;
+    this.hashStorage = hashStorage;
+    this.persistWindow = persistWindow;
+    this.windowDirectory = windowDirectory;
   }
 
   private static final Object VOID = new Object();
@@ -62,6 +84,9 @@ public class DeDupProcessor extends RecordProcessor {
   private HashingUtil.RecordFunnel funnel;
   private Cache<HashCode, HashCode> hashCache;
   private XEvictingQueue<HashCode> hashBuffer;
+  private OffHeapHashIndex hashIndex;
+  private Meter lookupsMeter;
+  private Map<String, Object> windowGauge;
   private String uniqueLane;
   private String duplicateLane;
 
@@ -83,12 +108,18 @@ public class DeDupProcessor extends RecordProcessor {
       issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "compareFields", Errors.DEDUP_02));
     }
 
-    long estimatedMemory = MEMORY_USAGE_PER_HASH * recordCountWindow;
-    long maxPipelineMemoryBytes = getContext().getPipelineMaxMemory() * 1000 * 1000;
-    if (estimatedMemory > maxPipelineMemoryBytes) {
-      issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "recordCountWindow", Errors.DEDUP_03,
-        recordCountWindow, estimatedMemory / (1000 * 1000), getContext().getPipelineMaxMemory()));
-        //MiB to bytes conversion, use  1000 * 1000 instead of 1024 * 1024
+    if (hashStorage == HashStorage.OFF_HEAP) {
+      if (issues.isEmpty()) {
+        initOffHeapIndex(issues);
+      }
+    } else {
+      long estimatedMemory = MEMORY_USAGE_PER_HASH * recordCountWindow;
+      long maxPipelineMemoryBytes = getContext().getPipelineMaxMemory() * 1000 * 1000;
+      if (estimatedMemory > maxPipelineMemoryBytes) {
+        issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "recordCountWindow", Errors.DEDUP_03,
+          recordCountWindow, estimatedMemory / (1000 * 1000), getContext().getPipelineMaxMemory()));
+          //MiB to bytes conversion, use  1000 * 1000 instead of 1024 * 1024
+      }
     }
     if (issues.isEmpty()) {
       hasher = HashingUtil.getHasher(HashingUtil.HashType.MURMUR3_128);
@@ -100,26 +131,30 @@ public class DeDupProcessor extends RecordProcessor {
           '\u0000'
       ) : HashingUtil.getRecordFunnel(fieldsToCompare, false, true, '\u0000');
 
-      Map<String, Object> runnerSharedMap = getContext().getStageRunnerSharedMap();
-      synchronized (runnerSharedMap) {
-        if(!runnerSharedMap.containsKey(CACHE_KEY)) {
-          CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
-          if (timeWindowSecs > 0) {
-            cacheBuilder.expireAfterWrite(timeWindowSecs, TimeUnit.SECONDS);
-          }
-          if(LOG.isDebugEnabled()) {
-            cacheBuilder.recordStats();
-          }
-          hashCache = cacheBuilder.build();
+      if (hashIndex == null) {
+        Map<String, Object> runnerSharedMap = getContext().getStageRunnerSharedMap();
+        synchronized (runnerSharedMap) {
+          if(!runnerSharedMap.containsKey(CACHE_KEY)) {
+            CacheBuilder cacheBuilder = CacheBuilder.newBuilder();
+            if (timeWindowSecs > 0) {
+              cacheBuilder.expireAfterWrite(timeWindowSecs, TimeUnit.SECONDS);
+            }
+            if(LOG.isDebugEnabled()) {
+              cacheBuilder.recordStats();
+            }
+            hashCache = cacheBuilder.build();
 
-          runnerSharedMap.put(CACHE_KEY, hashCache);
-        } else {
-          hashCache = (Cache<HashCode, HashCode>) runnerSharedMap.get(CACHE_KEY);
+            runnerSharedMap.put(CACHE_KEY, hashCache);
+          } else {
+            hashCache = (Cache<HashCode, HashCode>) runnerSharedMap.get(CACHE_KEY);
+          }
         }
-      }
-      cacheCleaner = new CacheCleaner(hashCache, "DeDupProcessor", 10 * 60 * 1000);
+        cacheCleaner = new CacheCleaner(hashCache, "DeDupProcessor", 10 * 60 * 1000);
 
-      hashBuffer = XEvictingQueue.create(recordCountWindow);
+        hashBuffer = XEvictingQueue.create(
+            getContext().isPreview() ? Math.min(recordCountWindow, MAX_PREVIEW_WINDOW) : recordCountWindow
+        );
+      }
       hashAttrName = getInfo() + ".hash";
       uniqueLane = getContext().getOutputLanes().get(OutputStreams.UNIQUE.ordinal());
       duplicateLane = getContext().getOutputLanes().get(OutputStreams.DUPLICATE.ordinal());
@@ -127,10 +162,74 @@ public class DeDupProcessor extends RecordProcessor {
     return issues;
   }
 
+  private void initOffHeapIndex(List<ConfigIssue> issues) {
+    File windowFile = null;
+    if (persistWindow) {
+      File directory = new File(windowDirectory);
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "windowDirectory", Errors.DEDUP_06,
+            windowDirectory, "not a directory"));
+        return;
+      }
+      String fileName = (getContext().getPipelineId() + "-" + getInfo().getInstanceName())
+          .replaceAll("[^a-zA-Z0-9_.-]", "_") + ".dedup";
+      windowFile = new File(directory, fileName);
+    }
+
+    if (getContext().isPreview()) {
+      // Don't allocate the window (or write preview records to the persisted one) for a preview or validation run
+      return;
+    }
+
+    // All runners share the same index
+    Map<String, Object> runnerSharedMap = getContext().getStageRunnerSharedMap();
+    synchronized (runnerSharedMap) {
+      hashIndex = (OffHeapHashIndex) runnerSharedMap.get(INDEX_KEY);
+      if (hashIndex == null) {
+        try {
+          long timeWindowMillis = TimeUnit.SECONDS.toMillis(timeWindowSecs);
+          if (windowFile == null) {
+            hashIndex = OffHeapHashIndex.allocate(recordCountWindow, timeWindowMillis);
+          } else {
+            hashIndex = OffHeapHashIndex.map(windowFile, recordCountWindow, timeWindowMillis);
+          }
+        } catch (OutOfMemoryError e) {
+          issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "recordCountWindow", Errors.DEDUP_05,
+              OffHeapHashIndex.requiredMemory(recordCountWindow), e.toString()));
+          return;
+        } catch (IllegalStateException e) {
+          issues.add(getContext().createConfigIssue(Groups.DE_DUP.name(), "windowDirectory", Errors.DEDUP_06,
+              windowDirectory, e.toString()));
+          return;
+        }
+        runnerSharedMap.put(INDEX_KEY, hashIndex);
+      }
+      Integer references = (Integer) runnerSharedMap.get(INDEX_REFERENCES_KEY);
+      runnerSharedMap.put(INDEX_REFERENCES_KEY, (references == null) ? 1 : references + 1);
+    }
+
+    lookupsMeter = getContext().createMeter(LOOKUPS_METER);
+    windowGauge = getContext().createGauge(WINDOW_GAUGE).getValue();
+    updateWindowGauge();
+  }
+
+  private void updateWindowGauge() {
+    long size = hashIndex.size();
+    windowGauge.put("Hashes", size);
+    windowGauge.put("Memory (bytes)", hashIndex.getMemory());
+    windowGauge.put("Memory per Hash (bytes)", hashIndex.getMemory() / hashIndex.getWindow());
+  }
+
   boolean duplicateCheck(Record record) throws ExecutionException {
     HashCode hash = hasher.hashObject(record, funnel);
     record.getHeader().setAttribute(hashAttrName, hash.toString());
 
+    if (hashIndex != null) {
+      lookupsMeter.mark();
+      ByteBuffer bytes = ByteBuffer.wrap(hash.asBytes());
+      return !hashIndex.putIfAbsent(bytes.getLong(), bytes.getLong(), System.currentTimeMillis());
+    }
+
     HashCode hashInstance = hashCache.get(hash, () -> hash);
     // We are riding on the fact that if the instance is the same we just added and it is not a dup
     boolean dup = hashInstance != hash;
@@ -149,6 +248,15 @@ public class DeDupProcessor extends RecordProcessor {
 
   @Override
   public void process(Batch batch, BatchMaker batchMaker) throws StageException {
+    if (hashIndex != null) {
+      if (!batch.getRecords().hasNext() && timeWindowSecs > 0) {
+        // No records - expire the old hashes so that we don't hold on to them for the whole idle time
+        hashIndex.evictOlderThan(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(timeWindowSecs));
+      }
+      super.process(batch, batchMaker);
+      updateWindowGauge();
+      return;
+    }
     if (!batch.getRecords().hasNext()) {
       // No records - take the opportunity to clean up the cache so that we don't hold on to memory indefinitely
       cacheCleaner.periodicCleanUp();
@@ -156,6 +264,29 @@ public class DeDupProcessor extends RecordProcessor {
     super.process(batch, batchMaker);
   }
 
+  @Override
+  public void destroy() {
+    if (hashIndex != null) {
+      // Index is shared by all runners, the last runner to be destroyed closes it
+      Map<String, Object> runnerSharedMap = getContext().getStageRunnerSharedMap();
+      synchronized (runnerSharedMap) {
+        int references = (Integer) runnerSharedMap.get(INDEX_REFERENCES_KEY) - 1;
+        if (references > 0) {
+          runnerSharedMap.put(INDEX_REFERENCES_KEY, references);
+        } else {
+          runnerSharedMap.remove(INDEX_REFERENCES_KEY);
+          runnerSharedMap.remove(INDEX_KEY);
+          try {
+            hashIndex.close();
+          } catch (IOException e) {
+            LOG.error("Error while closing de-duplication window: {}", e.toString(), e);
+          }
+        }
+      }
+    }
+    super.destroy();
+  }
+
   @Override
   protected void process(Record record, BatchMaker batchMaker) throws StageException {
     try {
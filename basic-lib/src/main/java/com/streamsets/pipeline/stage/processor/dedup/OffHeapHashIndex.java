@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.dedup;
+
+import com.streamsets.pipeline.api.impl.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * De-duplication window of 128-bit hashes stored outside of the java heap.
+ *
+ * The window consists of an open-addressing (linear probing) hash table of raw hashes and a ring buffer holding the
+ * hashes together with their insertion timestamps in insertion order. The ring drives both count-window eviction
+ * (oldest entry is dropped once the ring is full) and time-window eviction (entries older than the time window are
+ * dropped from the head of the ring). Removal from the table uses backward shift deletion, so there are no tombstones
+ * and no per-entry objects at all.
+ *
+ * The memory can be either allocated with direct buffers or mapped from a file. In the latter case the window survives
+ * restarts - the file is marked clean when the index is closed and a file that was not closed cleanly (or was created
+ * for different window size) is discarded when opened.
+ *
+ * Layout: header, table (capacity x [long, long]), ring (window x [long, long, long]). All zero hash denotes empty
+ * slot in the table, such hash is stored as 0,1 instead.
+ *
+ * All public methods are synchronized as the index is shared by all pipeline runners.
+ */
+public class OffHeapHashIndex implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapHashIndex.class);
+
+  private static final long MAGIC = 0x5344434465447570L;
+  private static final long VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int CAPACITY_OFFSET = 16;
+  private static final int WINDOW_OFFSET = 24;
+  private static final int RING_HEAD_OFFSET = 32;
+  private static final int RING_SIZE_OFFSET = 40;
+  private static final int CLEAN_OFFSET = 48;
+
+  static final int SLOT_SIZE = 16;
+  static final int RING_ENTRY_SIZE = 24;
+  private static final double MAX_LOAD_FACTOR = 0.75;
+
+  // Direct and mapped buffers are limited to 2GB, the memory is split to 1GB segments. Every value is a long at 8-byte
+  // aligned position, so a value never crosses segments.
+  private static final int SEGMENT_BITS = 30;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+  private final long capacity;
+  private final long mask;
+  private final long window;
+  private final long timeWindowMillis;
+  private final long tableOffset;
+  private final long ringOffset;
+  private final long totalSize;
+  private final RandomAccessFile file;
+  private ByteBuffer[] segments;
+
+  private long ringHead;
+  private long ringSize;
+
+  /**
+   * Creates index in direct memory.
+   *
+   * @param window Maximum number of hashes in the window
+   * @param timeWindowMillis Maximum age of hashes in the window, zero for no time window
+   */
+  public static OffHeapHashIndex allocate(long window, long timeWindowMillis) {
+    return new OffHeapHashIndex(window, timeWindowMillis, null);
+  }
+
+  /**
+   * Creates index mapped from given file, reusing its content if the file was created for the same window size
+   * and was closed cleanly.
+   */
+  public static OffHeapHashIndex map(File file, long window, long timeWindowMillis) {
+    return new OffHeapHashIndex(window, timeWindowMillis, file);
+  }
+
+  /**
+   * Number of bytes required for an index of given window size.
+   */
+  public static long requiredMemory(long window) {
+    return HEADER_SIZE + capacityFor(window) * SLOT_SIZE + window * RING_ENTRY_SIZE;
+  }
+
+  private static long capacityFor(long window) {
+    long minCapacity = (long) Math.ceil(window / MAX_LOAD_FACTOR);
+    return Math.max(16, Long.highestOneBit(minCapacity - 1) << 1);
+  }
+
+  private OffHeapHashIndex(long window, long timeWindowMillis, File backingFile) {
+    Utils.checkArgument(window > 0, "window must be greater than zero");
+    this.window = window;
+    this.timeWindowMillis = timeWindowMillis;
+    this.capacity = capacityFor(window);
+    this.mask = capacity - 1;
+    this.tableOffset = HEADER_SIZE;
+    this.ringOffset = tableOffset + capacity * SLOT_SIZE;
+    this.totalSize = ringOffset + window * RING_ENTRY_SIZE;
+
+    int segmentCount = (int) ((totalSize + SEGMENT_MASK) >>> SEGMENT_BITS);
+    segments = new ByteBuffer[segmentCount];
+    if (backingFile == null) {
+      file = null;
+      for (int i = 0; i < segmentCount; i++) {
+        segments[i] = ByteBuffer.allocateDirect(segmentSize(i));
+      }
+      initHeader();
+    } else {
+      try {
+        boolean existed = backingFile.exists() && backingFile.length() == totalSize;
+        file = new RandomAccessFile(backingFile, "rw");
+        if (!existed) {
+          file.setLength(0);
+          file.setLength(totalSize);
+        }
+        FileChannel channel = file.getChannel();
+        for (int i = 0; i < segmentCount; i++) {
+          segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << SEGMENT_BITS, segmentSize(i));
+        }
+        if (existed && isValidSnapshot()) {
+          ringHead = getLong(RING_HEAD_OFFSET);
+          ringSize = getLong(RING_SIZE_OFFSET);
+          LOG.info("Restored de-duplication window of {} hashes from '{}'", ringSize, backingFile);
+        } else if (existed) {
+          LOG.warn("De-duplication window file '{}' was not closed cleanly, starting with empty window", backingFile);
+          clear();
+        } else {
+          initHeader();
+        }
+        // Until closed the file content isn't consistent
+        putLong(CLEAN_OFFSET, 0);
+        force();
+      } catch (IOException e) {
+        closeQuietly();
+        throw new IllegalStateException(Utils.format("Can't map '{}': {}", backingFile, e.toString()), e);
+      }
+    }
+  }
+
+  private int segmentSize(int segment) {
+    return (int) Math.min(1L << SEGMENT_BITS, totalSize - ((long) segment << SEGMENT_BITS));
+  }
+
+  private boolean isValidSnapshot() {
+    return getLong(MAGIC_OFFSET) == MAGIC &&
+        getLong(VERSION_OFFSET) == VERSION &&
+        getLong(CAPACITY_OFFSET) == capacity &&
+        getLong(WINDOW_OFFSET) == window &&
+        getLong(CLEAN_OFFSET) == 1;
+  }
+
+  private void initHeader() {
+    putLong(MAGIC_OFFSET, MAGIC);
+    putLong(VERSION_OFFSET, VERSION);
+    putLong(CAPACITY_OFFSET, capacity);
+    putLong(WINDOW_OFFSET, window);
+    putLong(RING_HEAD_OFFSET, 0);
+    putLong(RING_SIZE_OFFSET, 0);
+  }
+
+  private void clear() {
+    for (ByteBuffer segment : segments) {
+      for (int i = 0; i < segment.capacity(); i += 8) {
+        segment.putLong(i, 0);
+      }
+    }
+    ringHead = 0;
+    ringSize = 0;
+    initHeader();
+  }
+
+  private long getLong(long offset) {
+    return segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & SEGMENT_MASK));
+  }
+
+  private void putLong(long offset, long value) {
+    segments[(int) (offset >>> SEGMENT_BITS)].putLong((int) (offset & SEGMENT_MASK), value);
+  }
+
+  /**
+   * Adds hash to the window unless it's already present.
+   *
+   * @return true if the hash was added, false if it was already in the window (e.g. it's a duplicate)
+   */
+  public synchronized boolean putIfAbsent(long hash1, long hash2, long now) {
+    Utils.checkState(segments != null, "Index is closed");
+    if (hash1 == 0 && hash2 == 0) {
+      hash2 = 1;
+    }
+    if (timeWindowMillis > 0) {
+      evictOlderThan(now - timeWindowMillis);
+    }
+    if (find(hash1, hash2) >= 0) {
+      return false;
+    }
+    if (ringSize == window) {
+      evictOldest();
+    }
+    insert(hash1, hash2);
+
+    long ringEntry = ringOffset + ((ringHead + ringSize) % window) * RING_ENTRY_SIZE;
+    putLong(ringEntry, hash1);
+    putLong(ringEntry + 8, hash2);
+    putLong(ringEntry + 16, now);
+    ringSize++;
+    return true;
+  }
+
+  /**
+   * Drops all hashes inserted at or before given timestamp.
+   */
+  public synchronized void evictOlderThan(long timestamp) {
+    while (ringSize > 0 && getLong(ringOffset + ringHead * RING_ENTRY_SIZE + 16) <= timestamp) {
+      evictOldest();
+    }
+  }
+
+  private void evictOldest() {
+    long ringEntry = ringOffset + ringHead * RING_ENTRY_SIZE;
+    remove(getLong(ringEntry), getLong(ringEntry + 8));
+    ringHead = (ringHead + 1) % window;
+    ringSize--;
+  }
+
+  private long slotOffset(long slot) {
+    return tableOffset + slot * SLOT_SIZE;
+  }
+
+  private long find(long hash1, long hash2) {
+    long slot = hash1 & mask;
+    while (true) {
+      long offset = slotOffset(slot);
+      long slotHash1 = getLong(offset);
+      long slotHash2 = getLong(offset + 8);
+      if (slotHash1 == 0 && slotHash2 == 0) {
+        return -1;
+      }
+      if (slotHash1 == hash1 && slotHash2 == hash2) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void insert(long hash1, long hash2) {
+    long slot = hash1 & mask;
+    while (true) {
+      long offset = slotOffset(slot);
+      if (getLong(offset) == 0 && getLong(offset + 8) == 0) {
+        putLong(offset, hash1);
+        putLong(offset + 8, hash2);
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void remove(long hash1, long hash2) {
+    long hole = find(hash1, hash2);
+    if (hole < 0) {
+      return;
+    }
+    // Backward shift: move following entries of the probe sequence into the hole unless their home slot lies
+    // cyclically in between the hole and their current position.
+    long slot = hole;
+    while (true) {
+      slot = (slot + 1) & mask;
+      long offset = slotOffset(slot);
+      long slotHash1 = getLong(offset);
+      long slotHash2 = getLong(offset + 8);
+      if (slotHash1 == 0 && slotHash2 == 0) {
+        break;
+      }
+      long home = slotHash1 & mask;
+      boolean inPlace = (hole <= slot) ? (hole < home && home <= slot) : (hole < home || home <= slot);
+      if (!inPlace) {
+        long holeOffset = slotOffset(hole);
+        putLong(holeOffset, slotHash1);
+        putLong(holeOffset + 8, slotHash2);
+        hole = slot;
+      }
+    }
+    long holeOffset = slotOffset(hole);
+    putLong(holeOffset, 0);
+    putLong(holeOffset + 8, 0);
+  }
+
+  public synchronized long size() {
+    return ringSize;
+  }
+
+  public long getWindow() {
+    return window;
+  }
+
+  /**
+   * Total number of bytes used by the index.
+   */
+  public long getMemory() {
+    return totalSize;
+  }
+
+  private void force() {
+    for (ByteBuffer segment : segments) {
+      if (segment instanceof MappedByteBuffer) {
+        ((MappedByteBuffer) segment).force();
+      }
+    }
+  }
+
+  /**
+   * Releases the memory, mapped index is persisted and marked clean. Subsequent calls are no-op.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (segments == null) {
+      return;
+    }
+    if (file != null) {
+      putLong(RING_HEAD_OFFSET, ringHead);
+      putLong(RING_SIZE_OFFSET, ringSize);
+      force();
+      putLong(CLEAN_OFFSET, 1);
+      force();
+      file.close();
+    }
+    // Direct memory is returned once the buffers are garbage collected
+    segments = null;
+  }
+
+  private void closeQuietly() {
+    segments = null;
+    if (file != null) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        LOG.warn("Error while closing de-duplication window file: {}", e.toString(), e);
+      }
+    }
+  }
+}
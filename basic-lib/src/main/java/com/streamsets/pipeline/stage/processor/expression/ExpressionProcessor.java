@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.stage.processor.expression;
 
+import com.streamsets.datacollector.record.FieldPath;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
@@ -47,6 +48,9 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
   private ELVars expressionVars;
   private ELEval headerAttributeEval;
   private ELEval fieldAttributeEval;
+  // compiled fieldToSet paths, by config position; null for paths with wild cards
+  private FieldPath[] fieldToSetPaths;
+  private FieldPath[] fieldAttributePaths;
 
   public ExpressionProcessor(
       List<ExpressionProcessorConfig> expressionProcessorConfigs,
@@ -66,10 +70,13 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
     );
     expressionVars.addContextVariable(StringELConstants.MEMOIZED, memoizedVars);
     expressionEval = createExpressionEval(getContext());
-    for(ExpressionProcessorConfig expressionProcessorConfig : expressionProcessorConfigs) {
+    fieldToSetPaths = new FieldPath[expressionProcessorConfigs.size()];
+    for(int i = 0; i < expressionProcessorConfigs.size(); i++) {
+      ExpressionProcessorConfig expressionProcessorConfig = expressionProcessorConfigs.get(i);
       ELUtils.validateExpression(expressionEval, expressionVars, expressionProcessorConfig.expression, getContext(),
         Groups.EXPRESSIONS.name(), "expressionProcessorConfigs", Errors.EXPR_00,
         Object.class, issues);
+      fieldToSetPaths[i] = compileFieldPath(expressionProcessorConfig.fieldToSet);
     }
 
     if(headerAttributeConfigs != null && !headerAttributeConfigs.isEmpty()) {
@@ -82,7 +89,10 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
 
     if (fieldAttributeConfigs != null && !fieldAttributeConfigs.isEmpty()) {
       fieldAttributeEval = createFieldAttributeEval(getContext());
-      for (FieldAttributeConfig fieldAttributeConfig : fieldAttributeConfigs) {
+      fieldAttributePaths = new FieldPath[fieldAttributeConfigs.size()];
+      for (int i = 0; i < fieldAttributeConfigs.size(); i++) {
+        FieldAttributeConfig fieldAttributeConfig = fieldAttributeConfigs.get(i);
+        fieldAttributePaths[i] = compileFieldPath(fieldAttributeConfig.fieldToSet);
         ELUtils.validateExpression(
             fieldAttributeEval,
             expressionVars,
@@ -100,6 +110,19 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
     return issues;
   }
 
+  // Parses the path once for all records, returns null when it must be resolved per record as before
+  private static FieldPath compileFieldPath(String fieldPath) {
+    if (fieldPath == null || fieldPath.isEmpty() || FieldRegexUtil.hasWildCards(fieldPath)) {
+      return null;
+    }
+    try {
+      return FieldPath.compile(fieldPath);
+    } catch (IllegalArgumentException e) {
+      // invalid paths keep failing on the first record
+      return null;
+    }
+  }
+
   private ELEval createExpressionEval(ELContext elContext) {
     return elContext.createELEval("expression");
   }
@@ -117,7 +140,8 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
     RecordEL.setRecordInContext(expressionVars, record);
     TimeNowEL.setTimeNowInContext(expressionVars, new Date());
 
-    for(ExpressionProcessorConfig expressionProcessorConfig : expressionProcessorConfigs) {
+    for(int i = 0; i < expressionProcessorConfigs.size(); i++) {
+      ExpressionProcessorConfig expressionProcessorConfig = expressionProcessorConfigs.get(i);
       String fieldToSet = expressionProcessorConfig.fieldToSet;
       if(fieldToSet == null || fieldToSet.isEmpty()) {
         continue;
@@ -130,10 +154,12 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
                                          record.getHeader().getSourceId(), e.toString(), e);
       }
 
+      FieldPath fieldPath = fieldToSetPaths[i];
       Field newField = null;
       // we want to preserve existing type info if we have it iff the result value is null.
-      if (result == null && record.has(fieldToSet)) {
-        newField = Field.create(record.get(fieldToSet).getType(), null);
+      Field existing = (result == null) ? (fieldPath != null ? fieldPath.get(record) : record.get(fieldToSet)) : null;
+      if (existing != null) {
+        newField = Field.create(existing.getType(), null);
       } else {
         // otherwise, deduce type from result, even if it's null (which will result in coercion to string)
         newField = Field.create(getTypeFromObject(result), result);
@@ -144,18 +170,21 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
           record.set(field, newField);
         }
       } else {
-        if (record.has(fieldToSet)) {
-          record.set(fieldToSet, newField);
+        if (fieldPath == null) {
+          fieldPath = FieldPath.of(fieldToSet);
+        }
+        if (fieldPath.has(record)) {
+          fieldPath.set(record, newField);
         } else {
           //A new field will be created only if the parent field exists and supports creation of a new child field.
           //For a new field can be created in the parent field which is a map or if the parent field is an array.
           try {
-            record.set(fieldToSet, newField);
+            fieldPath.set(record, newField);
           } catch (IllegalArgumentException e) {
             throw new OnRecordErrorException(record, Errors.EXPR_04, record.getHeader().getSourceId(),
                 expressionProcessorConfig.fieldToSet, e.toString());
           }
-          if (!record.has(fieldToSet)) {
+          if (!fieldPath.has(record)) {
             throw new OnRecordErrorException(Errors.EXPR_02, record.getHeader().getSourceId(),
               expressionProcessorConfig.fieldToSet);
           }
@@ -181,12 +210,14 @@ public class ExpressionProcessor extends SingleLaneRecordProcessor {
     }
 
     if (fieldAttributeConfigs != null && !fieldAttributeConfigs.isEmpty()) {
-      for (FieldAttributeConfig fieldAttributeConfig : fieldAttributeConfigs) {
+      for (int i = 0; i < fieldAttributeConfigs.size(); i++) {
+        FieldAttributeConfig fieldAttributeConfig = fieldAttributeConfigs.get(i);
         String attributeToSet = fieldAttributeConfig.attributeToSet;
         if (attributeToSet == null || attributeToSet.isEmpty()) {
           continue;
         }
-        Field field = record.get(fieldAttributeConfig.fieldToSet);
+        FieldPath fieldPath = fieldAttributePaths[i];
+        Field field = (fieldPath != null) ? fieldPath.get(record) : record.get(fieldAttributeConfig.fieldToSet);
         if (field == null) {
           throw new OnRecordErrorException(
               Errors.EXPR_05,
@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.stage.processor.fieldmask;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.streamsets.datacollector.record.FieldPath;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
@@ -132,14 +133,15 @@ public class FieldMaskProcessor extends SingleLaneRecordProcessor {
             record,
             fieldPaths
         )) {
-          if (record.has(matchingFieldPath)) {
-            Field field = record.get(matchingFieldPath);
+          FieldPath fieldPath = FieldPath.of(matchingFieldPath);
+          if (fieldPath.has(record)) {
+            Field field = fieldPath.get(record);
             if (field.getType() != Field.Type.STRING) {
               nonStringFields.add(matchingFieldPath);
             } else {
               if (field.getValue() != null) {
                 Field newField = Field.create(maskField(field, fieldMaskConfig));
-                record.set(matchingFieldPath, newField);
+                fieldPath.set(record, newField);
               }
             }
           }
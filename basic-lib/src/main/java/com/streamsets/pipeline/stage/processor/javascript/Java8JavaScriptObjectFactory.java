@@ -59,7 +59,9 @@ public class Java8JavaScriptObjectFactory extends ScriptObjectFactory {
   @SuppressWarnings("unchecked")
   protected Field scriptToField(Object scriptObject, Record record, String path) {
     Field field;
-    if (scriptObject != null) {
+    if (scriptObject instanceof FieldView) {
+      field = ((FieldView) scriptObject).toField(record, path);
+    } else if (scriptObject != null) {
       if (SCRIPT_OBJECT_MIRROR_CLASS.isInstance(scriptObject)) {
         try {
           Set set = (Set) ENTRY_SET_METHOD.invoke(scriptObject);
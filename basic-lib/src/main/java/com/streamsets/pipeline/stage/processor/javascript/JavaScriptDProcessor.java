@@ -28,7 +28,7 @@ import com.streamsets.pipeline.stage.processor.scripting.ProcessingMode;
 import com.streamsets.pipeline.stage.processor.scripting.ProcessingModeChooserValues;
 
 @StageDef(
-    version = 2,
+    version = 3,
     label = "JavaScript Evaluator",
     description = "Processes records using JavaScript",
     icon = "javascript.png",
@@ -249,9 +249,22 @@ public class JavaScriptDProcessor extends DProcessor {
   )
   public String destroyScript = "";
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Script Engines",
+      description = "Number of JavaScript engines that process parts of each batch concurrently. Each engine runs the " +
+          "init and destroy scripts and has its own state",
+      displayPosition = 50,
+      group = "JAVASCRIPT",
+      min = 1
+  )
+  public int numEngines = 1;
+
   @Override
   protected Processor createProcessor() {
-    return new JavaScriptProcessor(processingMode, script, initScript, destroyScript);
+    return new JavaScriptProcessor(processingMode, script, initScript, destroyScript, numEngines);
   }
 
 }
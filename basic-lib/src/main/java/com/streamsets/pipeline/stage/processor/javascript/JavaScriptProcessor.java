@@ -27,8 +27,27 @@ public class JavaScriptProcessor extends AbstractScriptingProcessor {
 
   public static final String JAVASCRIPT_ENGINE = "javascript";
 
+  public JavaScriptProcessor(
+      ProcessingMode processingMode,
+      String script,
+      String initScript,
+      String destroyScript,
+      int numEngines
+  ) {
+    super(
+        LOG,
+        JAVASCRIPT_ENGINE,
+        Groups.JAVASCRIPT.name(),
+        processingMode,
+        script,
+        initScript,
+        destroyScript,
+        numEngines
+    );
+  }
+
   public JavaScriptProcessor(ProcessingMode processingMode, String script, String initScript, String destroyScript) {
-    super(LOG, JAVASCRIPT_ENGINE, Groups.JAVASCRIPT.name(), processingMode, script, initScript, destroyScript);
+    this(processingMode, script, initScript, destroyScript, 1);
   }
 
   public JavaScriptProcessor(ProcessingMode processingMode, String script) {
@@ -27,12 +27,14 @@ import com.streamsets.pipeline.sdk.StageRunner;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class TestDeDupProcessor {
 
@@ -437,6 +439,127 @@ public class TestDeDupProcessor {
     }
   }
 
+  @Test
+  public void testOffHeapDupWithinRecordTail() throws Exception {
+    Processor processor = new DeDupProcessor(3, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST,
+        HashStorage.OFF_HEAP, false, null);
+    ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+        .addOutputLane("unique")
+        .addOutputLane("duplicate")
+        .build();
+    runner.runInit();
+    try {
+      List<Record> input = ImmutableList.of(
+          createRecordWithValue("a"),
+          createRecordWithValue("b"),
+          createRecordWithValue("a"),
+          createRecordWithValue("c"),
+          createRecordWithValue("d"),
+          createRecordWithValue("a")
+      );
+      StageRunner.Output output = runner.runProcess(input);
+      // second "a" is a duplicate, third one is outside of the 3 records window
+      Assert.assertEquals(5, output.getRecords().get("unique").size());
+      Assert.assertEquals(1, output.getRecords().get("duplicate").size());
+      Assert.assertEquals("a", output.getRecords().get("duplicate").get(0).get("/value").getValueAsString());
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testOffHeapDupOutsideTimeWindow() throws Exception {
+    Processor processor = new DeDupProcessor(4, 1, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST,
+        HashStorage.OFF_HEAP, false, null);
+    ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+        .addOutputLane("unique")
+        .addOutputLane("duplicate")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+      Assert.assertEquals(1, output.getRecords().get("unique").size());
+      output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+      Assert.assertEquals(1, output.getRecords().get("duplicate").size());
+
+      Thread.sleep(1001);
+
+      output = runner.runProcess(ImmutableList.of(createRecordWithValue("a")));
+      Assert.assertEquals(1, output.getRecords().get("unique").size());
+      Assert.assertEquals(0, output.getRecords().get("duplicate").size());
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testOffHeapPersistedWindow() throws Exception {
+    String windowDirectory = new File("target", UUID.randomUUID().toString()).getAbsolutePath();
+
+    Processor processor = new DeDupProcessor(10, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST,
+        HashStorage.OFF_HEAP, true, windowDirectory);
+    ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+        .addOutputLane("unique")
+        .addOutputLane("duplicate")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(ImmutableList.of(
+          createRecordWithValue("a"),
+          createRecordWithValue("b")
+      ));
+      Assert.assertEquals(2, output.getRecords().get("unique").size());
+    } finally {
+      runner.runDestroy();
+    }
+
+    // The window survives restart of the stage
+    processor = new DeDupProcessor(10, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST,
+        HashStorage.OFF_HEAP, true, windowDirectory);
+    runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+        .addOutputLane("unique")
+        .addOutputLane("duplicate")
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(ImmutableList.of(
+          createRecordWithValue("a"),
+          createRecordWithValue("c")
+      ));
+      Assert.assertEquals(1, output.getRecords().get("unique").size());
+      Assert.assertEquals(1, output.getRecords().get("duplicate").size());
+      Assert.assertEquals("a", output.getRecords().get("duplicate").get(0).get("/value").getValueAsString());
+    } finally {
+      runner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testOffHeapPreviewDoesNotAllocateWindow() throws Exception {
+    File windowDirectory = new File("target", UUID.randomUUID().toString());
+
+    Processor processor = new DeDupProcessor(10, 0, SelectFields.ALL_FIELDS, Collections.EMPTY_LIST,
+        HashStorage.OFF_HEAP, true, windowDirectory.getAbsolutePath());
+    ProcessorRunner runner = new ProcessorRunner.Builder(DeDupDProcessor.class, processor)
+        .addOutputLane("unique")
+        .addOutputLane("duplicate")
+        .setPreview(true)
+        .build();
+    runner.runInit();
+    try {
+      StageRunner.Output output = runner.runProcess(ImmutableList.of(
+          createRecordWithValue("a"),
+          createRecordWithValue("a")
+      ));
+      Assert.assertEquals(1, output.getRecords().get("unique").size());
+      Assert.assertEquals(1, output.getRecords().get("duplicate").size());
+    } finally {
+      runner.runDestroy();
+    }
+    // preview records don't end up in the persisted window
+    Assert.assertEquals(0, windowDirectory.list().length);
+  }
+
   private Record createRecord(String name, String anotherName) {
     Field name1 = Field.create(name);
     Field name2 = Field.create(anotherName);
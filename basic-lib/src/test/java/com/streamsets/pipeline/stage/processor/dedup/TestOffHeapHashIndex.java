@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.dedup;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+public class TestOffHeapHashIndex {
+
+  @Test
+  public void testCountWindow() throws Exception {
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(3, 0)) {
+      Assert.assertTrue(index.putIfAbsent(1, 1, 0));
+      Assert.assertTrue(index.putIfAbsent(2, 2, 0));
+      Assert.assertFalse(index.putIfAbsent(1, 1, 0));
+      Assert.assertTrue(index.putIfAbsent(3, 3, 0));
+      Assert.assertEquals(3, index.size());
+
+      // Evicts 1
+      Assert.assertTrue(index.putIfAbsent(4, 4, 0));
+      Assert.assertEquals(3, index.size());
+      Assert.assertFalse(index.putIfAbsent(2, 2, 0));
+      Assert.assertTrue(index.putIfAbsent(1, 1, 0));
+    }
+  }
+
+  @Test
+  public void testTimeWindow() throws Exception {
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(100, 1000)) {
+      Assert.assertTrue(index.putIfAbsent(1, 1, 1000));
+      Assert.assertTrue(index.putIfAbsent(2, 2, 1500));
+      Assert.assertFalse(index.putIfAbsent(1, 1, 1999));
+      // 1 expired, 2 didn't
+      Assert.assertTrue(index.putIfAbsent(1, 1, 2000));
+      Assert.assertFalse(index.putIfAbsent(2, 2, 2000));
+      index.evictOlderThan(2000);
+      Assert.assertEquals(0, index.size());
+    }
+  }
+
+  @Test
+  public void testZeroHash() throws Exception {
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(10, 0)) {
+      Assert.assertTrue(index.putIfAbsent(0, 0, 0));
+      Assert.assertFalse(index.putIfAbsent(0, 0, 0));
+      Assert.assertEquals(1, index.size());
+    }
+  }
+
+  @Test
+  public void testCollisionsAndRemoval() throws Exception {
+    // All hashes share the same home slot (and wrap around the table), so eviction has to shift the probe sequences
+    int window = 10;
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(window, 0)) {
+      for (int round = 0; round < 5; round++) {
+        for (long i = 0; i < window; i++) {
+          long hash1 = (i << 32) | 15;
+          Assert.assertTrue(index.putIfAbsent(hash1, round, 0));
+        }
+        for (long i = 0; i < window; i++) {
+          long hash1 = (i << 32) | 15;
+          Assert.assertFalse(index.putIfAbsent(hash1, round, 0));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRandomAgainstHashSet() throws Exception {
+    int window = 1000;
+    Random random = new Random(0);
+    long[] history = new long[window];
+    Set<Long> expected = new HashSet<>();
+    int position = 0;
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(window, 0)) {
+      for (int i = 0; i < 100_000; i++) {
+        long hash = random.nextInt(3000);
+        boolean added = index.putIfAbsent(hash * 31, hash, 0);
+        Assert.assertEquals(!expected.contains(hash), added);
+        if (added) {
+          if (expected.size() == window) {
+            expected.remove(history[position]);
+          }
+          history[position] = hash;
+          position = (position + 1) % window;
+          expected.add(hash);
+        }
+        Assert.assertEquals(expected.size(), index.size());
+      }
+    }
+  }
+
+  @Test
+  public void testMappedWindowSurvivesRestart() throws Exception {
+    File dir = new File("target", UUID.randomUUID().toString());
+    Assert.assertTrue(dir.mkdirs());
+    File file = new File(dir, "window");
+
+    try (OffHeapHashIndex index = OffHeapHashIndex.map(file, 10, 0)) {
+      Assert.assertTrue(index.putIfAbsent(1, 1, 0));
+      Assert.assertTrue(index.putIfAbsent(2, 2, 0));
+    }
+    Assert.assertEquals(OffHeapHashIndex.requiredMemory(10), file.length());
+
+    try (OffHeapHashIndex index = OffHeapHashIndex.map(file, 10, 0)) {
+      Assert.assertEquals(2, index.size());
+      Assert.assertFalse(index.putIfAbsent(1, 1, 0));
+      Assert.assertTrue(index.putIfAbsent(3, 3, 0));
+    }
+
+    // Different window size can't reuse the file
+    try (OffHeapHashIndex index = OffHeapHashIndex.map(file, 20, 0)) {
+      Assert.assertEquals(0, index.size());
+      Assert.assertTrue(index.putIfAbsent(1, 1, 0));
+    }
+  }
+
+  @Test
+  public void testMappedWindowNotClosedIsDiscarded() throws Exception {
+    File dir = new File("target", UUID.randomUUID().toString());
+    Assert.assertTrue(dir.mkdirs());
+    File file = new File(dir, "window");
+
+    OffHeapHashIndex crashed = OffHeapHashIndex.map(file, 10, 0);
+    Assert.assertTrue(crashed.putIfAbsent(1, 1, 0));
+
+    try (OffHeapHashIndex index = OffHeapHashIndex.map(file, 10, 0)) {
+      Assert.assertEquals(0, index.size());
+      Assert.assertTrue(index.putIfAbsent(1, 1, 0));
+    }
+  }
+
+  @Test
+  public void testMemory() throws Exception {
+    try (OffHeapHashIndex index = OffHeapHashIndex.allocate(1000, 0)) {
+      // 2048 slots of 16 bytes, 1000 ring entries of 24 bytes and header
+      Assert.assertEquals(64 + 2048 * 16 + 1000 * 24, index.getMemory());
+      Assert.assertEquals(index.getMemory(), OffHeapHashIndex.requiredMemory(1000));
+    }
+  }
+
+}
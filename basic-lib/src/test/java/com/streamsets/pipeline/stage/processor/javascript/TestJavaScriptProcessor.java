@@ -359,6 +359,73 @@ public class TestJavaScriptProcessor {
     ScriptingProcessorTestUtil.verifyNestedMap(JavaScriptDProcessor.class, processor);
   }
 
+  @Test
+  public void testUntouchedFields() throws Exception {
+    Processor processor = new JavaScriptProcessor(
+        ProcessingMode.RECORD,
+        "for (var i = 0; i < records.length; i++){\n" +
+            "  records[i].value['a'] = 'B';\n" +
+            "  output.write(records[i]);\n" +
+            "}"
+    );
+    ScriptingProcessorTestUtil.verifyUntouchedFields(JavaScriptDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFields() throws Exception {
+    Processor processor = new JavaScriptProcessor(
+        ProcessingMode.RECORD,
+        "for (var i = 0; i < records.length; i++){\n" +
+            "  records[i].value['b'] = records[i].value['a'];\n" +
+            "  var newRecord = sdcFunctions.createRecord('copy');\n" +
+            "  newRecord.value = records[i].value['a'];\n" +
+            "  output.write(records[i]);\n" +
+            "  output.write(newRecord);\n" +
+            "}"
+    );
+    ScriptingProcessorTestUtil.verifyCopiedFields(JavaScriptDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFieldsOfUnmodifiedRecord() throws Exception {
+    String script =
+        "for (var i = 0; i < records.length; i++){\n" +
+        "  var newRecord = sdcFunctions.createRecord('copy');\n" +
+        "  newRecord.value = records[i].value['a'];\n" +
+        "  output.write(%s);\n" +
+        "  output.write(%s);\n" +
+        "}";
+    Processor processor = new JavaScriptProcessor(
+        ProcessingMode.RECORD,
+        String.format(script, "records[i]", "newRecord")
+    );
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(JavaScriptDProcessor.class, processor);
+    processor = new JavaScriptProcessor(
+        ProcessingMode.RECORD,
+        String.format(script, "newRecord", "records[i]")
+    );
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(JavaScriptDProcessor.class, processor);
+  }
+
+  @Test
+  public void testMultipleEngines() throws Exception {
+    Processor processor = new JavaScriptProcessor(
+        ProcessingMode.BATCH,
+        "for (var i = 0; i < records.length; i++){\n" +
+            "  if (records[i].value['i'] % 3 == 0) {\n" +
+            "    error.write(records[i], 'multiple of 3');\n" +
+            "  } else {\n" +
+            "    records[i].value['engine'] = state['id'];\n" +
+            "    output.write(records[i]);\n" +
+            "  }\n" +
+            "}",
+        "state['id'] = java.util.UUID.randomUUID().toString();",
+        "",
+        4
+    );
+    ScriptingProcessorTestUtil.verifyMultipleEngines(JavaScriptDProcessor.class, processor, 4);
+  }
+
   @Test
   public void testChangeFieldTypeFromScripting() throws Exception {
     Processor processor = new JavaScriptProcessor(
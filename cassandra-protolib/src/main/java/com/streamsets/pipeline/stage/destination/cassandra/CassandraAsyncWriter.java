@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.cassandra;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.streamsets.pipeline.api.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes one statement per record with {@link Session#executeAsync(Statement)}.
+ *
+ * Bound statements of a prepared INSERT carry their routing key, so the token aware load balancing policy sends each
+ * of them straight to a replica of its partition instead of making one coordinator fan out a multi-partition batch.
+ * The number of requests in flight is bounded by a semaphore, {@link #write(Record, Statement)} blocks once the limit
+ * is reached. Failed writes are collected and handed back to the pipeline thread by {@link #flush()}, as the
+ * callbacks run on driver threads. A batch that doesn't get to {@link #flush()} must be {@link #discard() discarded}
+ * so that its failures are not reported with the next batch.
+ */
+class CassandraAsyncWriter {
+
+  static class FailedWrite {
+    final Record record;
+    final Throwable error;
+    final long batch;
+
+    FailedWrite(Record record, Throwable error, long batch) {
+      this.record = record;
+      this.error = error;
+      this.batch = batch;
+    }
+  }
+
+  private final Session session;
+  private final int maxConcurrentRequests;
+  private final Semaphore permits;
+  private final Queue<FailedWrite> failures = new ConcurrentLinkedQueue<>();
+  private final Meter writeMeter;
+  private final Timer latencyTimer;
+  private final Counter inFlightCounter;
+  // Only used by the pipeline thread, callbacks get the value of the batch their write belongs to
+  private long batch;
+
+  CassandraAsyncWriter(
+      Session session,
+      int maxConcurrentRequests,
+      Meter writeMeter,
+      Timer latencyTimer,
+      Counter inFlightCounter
+  ) {
+    this.session = session;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.permits = new Semaphore(maxConcurrentRequests);
+    this.writeMeter = writeMeter;
+    this.latencyTimer = latencyTimer;
+    this.inFlightCounter = inFlightCounter;
+  }
+
+  /**
+   * Starts writing given statement, waiting for a request in flight to finish if the limit was reached.
+   */
+  void write(Record record, Statement statement) throws InterruptedException {
+    permits.acquire();
+    long writeBatch = batch;
+    inFlightCounter.inc();
+    Timer.Context latency = latencyTimer.time();
+    ResultSetFuture future;
+    try {
+      future = session.executeAsync(statement);
+    } catch (RuntimeException e) {
+      complete(latency);
+      failures.add(new FailedWrite(record, e, writeBatch));
+      return;
+    }
+    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+      @Override
+      public void onSuccess(ResultSet result) {
+        complete(latency);
+        writeMeter.mark();
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        complete(latency);
+        failures.add(new FailedWrite(record, t, writeBatch));
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private void complete(Timer.Context latency) {
+    latency.stop();
+    inFlightCounter.dec();
+    permits.release();
+  }
+
+  /**
+   * Waits until all started writes finish and returns those that failed, in no particular order.
+   */
+  List<FailedWrite> flush() throws InterruptedException {
+    permits.acquire(maxConcurrentRequests);
+    permits.release(maxConcurrentRequests);
+    List<FailedWrite> failed = new ArrayList<>();
+    FailedWrite failure;
+    while ((failure = failures.poll()) != null) {
+      if (failure.batch == batch) {
+        failed.add(failure);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Drops the failures of the current batch, including those of writes still in flight, for a batch that failed
+   * before it was flushed.
+   */
+  void discard() {
+    batch++;
+    failures.clear();
+  }
+}
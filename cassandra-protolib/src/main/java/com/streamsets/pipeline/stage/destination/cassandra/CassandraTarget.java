@@ -32,6 +32,8 @@ import com.datastax.driver.core.exceptions.AuthenticationException;
 import com.datastax.driver.core.exceptions.CodecNotFoundException;
 import com.datastax.driver.core.exceptions.InvalidTypeException;
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import com.datastax.driver.dse.auth.DseGSSAPIAuthProvider;
 import com.datastax.driver.dse.auth.DsePlainTextAuthProvider;
 import com.google.common.base.Function;
@@ -103,6 +105,7 @@ public class CassandraTarget extends BaseTarget {
   private SortedMap<String, String> columnMappings;
   private LoadingCache<SortedSet<String>, PreparedStatement> statementCache;
   private ErrorRecordHandler errorRecordHandler;
+  private CassandraAsyncWriter asyncWriter;
 
   public CassandraTarget(CassandraTargetConfig conf) {
     this.conf = conf;
@@ -222,6 +225,16 @@ public class CassandraTarget extends BaseTarget {
                   }
                 }
             );
+
+        if (conf.useAsyncWrites) {
+          asyncWriter = new CassandraAsyncWriter(
+              session,
+              conf.maxConcurrentRequests,
+              context.createMeter("asyncWrites"),
+              context.createTimer("asyncWriteLatency"),
+              context.createCounter("asyncWritesInFlight")
+          );
+        }
       } catch (NoHostAvailableException | AuthenticationException | IllegalStateException | StageException e) {
         LOG.error(Errors.CASSANDRA_03.getMessage(), e.toString(), e);
         issues.add(context.createConfigIssue(null, null, Errors.CASSANDRA_03, e.toString()));
@@ -295,8 +308,52 @@ public class CassandraTarget extends BaseTarget {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public void write(Batch batch) throws StageException {
+    if (conf.useAsyncWrites) {
+      writeAsync(batch);
+    } else {
+      writeBatches(batch);
+    }
+  }
+
+  private void writeAsync(Batch batch) throws StageException {
+    Iterator<Record> records = batch.getRecords();
+    boolean flushed = false;
+    try {
+      while (records.hasNext()) {
+        final Record record = records.next();
+        BoundStatement boundStmt = recordToBoundStatement(record);
+        // null means the record was already handled as an error record
+        if (boundStmt != null) {
+          asyncWriter.write(record, boundStmt);
+        }
+      }
+      // All writes of the batch must be done before it's committed
+      List<CassandraAsyncWriter.FailedWrite> failures = asyncWriter.flush();
+      flushed = true;
+      for (CassandraAsyncWriter.FailedWrite failure : failures) {
+        errorRecordHandler.onError(
+            new OnRecordErrorException(
+                failure.record,
+                Errors.CASSANDRA_11,
+                failure.record.getHeader().getSourceId(),
+                failure.error.toString(),
+                failure.error
+            )
+        );
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StageException(Errors.CASSANDRA_07, e.toString(), e);
+    } finally {
+      if (!flushed) {
+        // Failures of the writes started by the aborted batch must not be reported with the next one
+        asyncWriter.discard();
+      }
+    }
+  }
+
+  private void writeBatches(Batch batch) throws StageException {
     // The batch holding the current batch to INSERT.
     BatchStatement batchedStatement = new BatchStatement(conf.batchType);
 
@@ -406,6 +463,8 @@ public class CassandraTarget extends BaseTarget {
         .withAuthProvider(getAuthProvider())
         .withProtocolVersion(conf.protocolVersion)
         .withPort(conf.port)
+        // Routes statements to a replica of their partition, async writes rely on it
+        .withLoadBalancingPolicy(new TokenAwarePolicy(DCAwareRoundRobinPolicy.builder().build()))
         .withCodecRegistry(new CodecRegistry().register(SDC_CODECS))
         .build();
   }
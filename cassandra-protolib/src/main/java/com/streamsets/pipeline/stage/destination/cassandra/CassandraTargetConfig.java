@@ -85,13 +85,26 @@ public class CassandraTargetConfig {
   @ValueChooserModel(CompressionChooserValues.class)
   public CassandraCompressionCodec compression = CassandraCompressionCodec.LZ4;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Write Asynchronously",
+      description = "Writes each record with its own asynchronous request routed to a replica of its partition, " +
+          "instead of grouping records into batch statements.",
+      displayPosition = 55
+  )
+  public boolean useAsyncWrites = false;
+
   @ConfigDef(
       required = true,
       type = ConfigDef.Type.MODEL,
       defaultValue = "LOGGED",
       label = "Batch Type",
       description = "Un-logged batches do not use the Cassandra distributed batch log and as such as nonatomic.",
-      displayPosition = 60
+      displayPosition = 60,
+      dependsOn = "useAsyncWrites",
+      triggeredByValue = "false"
   )
   @ValueChooserModel(BatchTypeChooserValues.class)
   public BatchStatement.Type batchType = BatchStatement.Type.LOGGED;
@@ -104,10 +117,25 @@ public class CassandraTargetConfig {
       max = 65535,
       label = "Max Batch Size",
       description = "Maximum statements to batch prior to submission.",
-      displayPosition = 70
+      displayPosition = 70,
+      dependsOn = "useAsyncWrites",
+      triggeredByValue = "false"
   )
   public int maxBatchSize = 65535;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "100",
+      min = 1,
+      label = "Max Concurrent Requests",
+      description = "Maximum number of asynchronous write requests in flight. Writing blocks when reached.",
+      displayPosition = 75,
+      dependsOn = "useAsyncWrites",
+      triggeredByValue = "true"
+  )
+  public int maxConcurrentRequests = 100;
+
   @ConfigDef(
       required = true,
       type = ConfigDef.Type.STRING,
@@ -33,6 +33,7 @@ public enum Errors implements ErrorCode {
   CASSANDRA_08("Invalid column mappings specified. Table doesn't have columns: {}"),
   CASSANDRA_09("Could not insert batch which included record: '{}': {}"),
   CASSANDRA_10("Requested Auth Provider '{}' not available. Please ensure you have the DSE driver jar installed."),
+  CASSANDRA_11("Could not write record '{}': {}"),
   ;
   private final String msg;
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.cassandra;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TestCassandraAsyncWriter {
+
+  private static class TestResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+    @Override
+    public boolean set(ResultSet value) {
+      return super.set(value);
+    }
+
+    @Override
+    public boolean setException(Throwable t) {
+      return super.setException(t);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+      try {
+        return Uninterruptibles.getUninterruptibly(this);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+      try {
+        return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private LinkedBlockingQueue<TestResultSetFuture> futures;
+  private Session session;
+  private Meter writeMeter;
+  private Counter inFlightCounter;
+
+  @Before
+  public void setUp() {
+    futures = new LinkedBlockingQueue<>();
+    session = Mockito.mock(Session.class);
+    Mockito.when(session.executeAsync(Mockito.any(Statement.class))).thenAnswer(invocation -> {
+      TestResultSetFuture future = new TestResultSetFuture();
+      futures.add(future);
+      return future;
+    });
+    writeMeter = new Meter();
+    inFlightCounter = new Counter();
+  }
+
+  private CassandraAsyncWriter createWriter(int maxConcurrentRequests) {
+    return new CassandraAsyncWriter(session, maxConcurrentRequests, writeMeter, new Timer(), inFlightCounter);
+  }
+
+  @Test
+  public void testFailuresAreMappedToRecords() throws Exception {
+    CassandraAsyncWriter writer = createWriter(10);
+    Record success = RecordCreator.create();
+    Record failure = RecordCreator.create();
+    writer.write(success, Mockito.mock(Statement.class));
+    writer.write(failure, Mockito.mock(Statement.class));
+    Assert.assertEquals(2, inFlightCounter.getCount());
+
+    RuntimeException error = new RuntimeException("write timeout");
+    futures.take().set(Mockito.mock(ResultSet.class));
+    futures.take().setException(error);
+
+    List<CassandraAsyncWriter.FailedWrite> failed = writer.flush();
+    Assert.assertEquals(1, failed.size());
+    Assert.assertSame(failure, failed.get(0).record);
+    Assert.assertSame(error, failed.get(0).error);
+    Assert.assertEquals(0, inFlightCounter.getCount());
+    Assert.assertEquals(1, writeMeter.getCount());
+
+    // Failures are reported only once
+    Assert.assertTrue(writer.flush().isEmpty());
+  }
+
+  @Test
+  public void testDiscardedFailuresAreNotReported() throws Exception {
+    CassandraAsyncWriter writer = createWriter(10);
+    writer.write(RecordCreator.create(), Mockito.mock(Statement.class));
+    writer.write(RecordCreator.create(), Mockito.mock(Statement.class));
+    futures.take().setException(new RuntimeException("failed before the batch was aborted"));
+
+    // Batch aborted midway, its second write is still in flight
+    writer.discard();
+    Record record = RecordCreator.create();
+    writer.write(record, Mockito.mock(Statement.class));
+    futures.take().setException(new RuntimeException("failed after the batch was aborted"));
+    RuntimeException error = new RuntimeException("write timeout");
+    futures.take().setException(error);
+
+    List<CassandraAsyncWriter.FailedWrite> failed = writer.flush();
+    Assert.assertEquals(1, failed.size());
+    Assert.assertSame(record, failed.get(0).record);
+    Assert.assertSame(error, failed.get(0).error);
+    Assert.assertEquals(0, inFlightCounter.getCount());
+  }
+
+  @Test
+  public void testConcurrentRequestsAreBounded() throws Exception {
+    CassandraAsyncWriter writer = createWriter(2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<CassandraAsyncWriter.FailedWrite>> written = executor.submit(() -> {
+        for (int i = 0; i < 3; i++) {
+          writer.write(RecordCreator.create(), Mockito.mock(Statement.class));
+        }
+        return writer.flush();
+      });
+
+      TestResultSetFuture first = futures.take();
+      TestResultSetFuture second = futures.take();
+      // Third write has to wait for one of the first two requests
+      Assert.assertNull(futures.poll(200, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(2, inFlightCounter.getCount());
+
+      first.set(Mockito.mock(ResultSet.class));
+      futures.take().set(Mockito.mock(ResultSet.class));
+      // flush waits for the second request as well
+      Assert.assertFalse(written.isDone());
+      Assert.assertEquals(1, inFlightCounter.getCount());
+      Mockito.verify(session, Mockito.times(3)).executeAsync(Mockito.any(Statement.class));
+
+      second.set(Mockito.mock(ResultSet.class));
+      Assert.assertTrue(written.get(10, TimeUnit.SECONDS).isEmpty());
+      Assert.assertEquals(0, inFlightCounter.getCount());
+      Assert.assertEquals(3, writeMeter.getCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -568,6 +568,63 @@ public class TestCassandraTarget {
     Assert.assertEquals(1000, allRows.size());
   }
 
+  @Test
+  public void testAsyncWrites() throws Exception {
+    final String tableName = "test.trips";
+    List<CassandraFieldMappingConfig> fieldMappings = ImmutableList.of(
+        new CassandraFieldMappingConfig("[0]", "driver_id"),
+        new CassandraFieldMappingConfig("[1]", "trip_id"),
+        new CassandraFieldMappingConfig("[2]", "time"),
+        new CassandraFieldMappingConfig("[3]", "x"),
+        new CassandraFieldMappingConfig("[4]", "y"),
+        new CassandraFieldMappingConfig("[5]", "time_id"),
+        new CassandraFieldMappingConfig("[6]", "unique_id")
+    );
+
+    CassandraTargetConfig conf = new CassandraTargetConfig();
+    conf.contactPoints.add("localhost");
+    conf.port = CASSANDRA_NATIVE_PORT;
+    conf.protocolVersion = ProtocolVersion.V4;
+    conf.authProviderOption = AuthProviderOption.NONE;
+    conf.compression = CassandraCompressionCodec.NONE;
+    conf.columnNames = fieldMappings;
+    conf.qualifiedTableName = tableName;
+    conf.useAsyncWrites = true;
+    conf.maxConcurrentRequests = 8;
+
+    Target target = new CassandraTarget(conf);
+    TargetRunner targetRunner = new TargetRunner.Builder(CassandraDTarget.class, target)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .build();
+
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Record record = RecordCreator.create();
+      List<Field> fields = new ArrayList<>();
+      // every 100th record has a double driver id and can't be bound
+      fields.add(i % 100 == 0 ? Field.create(1.3) : Field.create(i));
+      fields.add(Field.create(2));
+      fields.add(Field.create(3));
+      fields.add(Field.create(4.0));
+      fields.add(Field.create(5.0));
+      fields.add(Field.create(SAMPLE_TIMEUUID));
+      fields.add(Field.create(SAMPLE_UUID));
+      record.set(Field.create(fields));
+      records.add(record);
+    }
+    targetRunner.runInit();
+    targetRunner.runWrite(records);
+
+    Assert.assertEquals(10, targetRunner.getErrorRecords().size());
+    Assert.assertTrue(targetRunner.getErrors().isEmpty());
+
+    targetRunner.runDestroy();
+
+    ResultSet resultSet = session.execute("SELECT * FROM test.trips");
+    List<Row> allRows = resultSet.all();
+    Assert.assertEquals(990, allRows.size());
+  }
+
   @Test
   public void testWriteNullValuedColumns() throws Exception {
     final String tableName = "test.test_null_values";
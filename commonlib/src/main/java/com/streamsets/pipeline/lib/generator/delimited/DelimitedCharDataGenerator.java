@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.lib.generator.delimited;
 
+import com.streamsets.datacollector.record.FieldTreeReader;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.config.CsvHeader;
@@ -92,7 +93,7 @@ public class DelimitedCharDataGenerator implements DataGenerator {
   }
 
   private void writeHeader(Record record, String key) throws DataGeneratorException, IOException {
-    Field field = record.get();
+    Field field = FieldTreeReader.peek(record);
 
     if (field.getType() == Field.Type.LIST) {
       writeLine(record, key);
@@ -108,7 +109,7 @@ public class DelimitedCharDataGenerator implements DataGenerator {
   }
 
   private void writeLine(Record record, String key) throws IOException, DataGeneratorException{
-    Field field = record.get();
+    Field field = FieldTreeReader.peek(record);
 
     if (field.getType() != Field.Type.LIST && field.getType() != Field.Type.LIST_MAP) {
       throw new DataGeneratorException(Errors.DELIMITED_GENERATOR_00, record.getHeader().getSourceId(), field.getType());
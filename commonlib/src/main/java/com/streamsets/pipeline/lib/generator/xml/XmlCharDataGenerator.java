@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.lib.generator.xml;
 
 import com.google.common.base.Preconditions;
+import com.streamsets.datacollector.record.FieldTreeReader;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.impl.Utils;
@@ -196,7 +197,7 @@ public class XmlCharDataGenerator implements DataGenerator {
 
   protected Document recordToXmlDocument(Record record) throws DataGeneratorException {
     Preconditions.checkNotNull(record, "record cannot be NULL");
-    Field field = record.get();
+    Field field = FieldTreeReader.peek(record);
     if (field == null) {
       throw new DataGeneratorException(Errors.XML_GENERATOR_03);
     }
@@ -28,6 +28,9 @@ import com.streamsets.pipeline.lib.parser.Errors;
 import com.streamsets.pipeline.lib.util.AvroSchemaHelper;
 import com.streamsets.pipeline.lib.util.SchemaRegistryException;
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
 
 import java.io.File;
 import java.io.IOException;
@@ -79,6 +82,29 @@ public class AvroDataParserFactory extends DataParserFactory {
   private final AvroSchemaHelper schemaHelper;
   private Schema schema;
   LoadingCache<Integer, Schema> schemas;
+  // Weak keys compare schemas by identity, which is what the schema cache above hands out
+  private final LoadingCache<Schema, MessageSchema> messageSchemas = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build(new CacheLoader<Schema, MessageSchema>() {
+        @Override
+        public MessageSchema load(Schema schema) {
+          return new MessageSchema(schema);
+        }
+      });
+
+  /**
+   * Per schema state shared by parsers of all messages without embedded schema: the datum reader (thread safe, it
+   * keeps resolved decoders per thread) and the JSON of the schema that goes to every record header.
+   */
+  private static class MessageSchema {
+    private final DatumReader<GenericRecord> datumReader;
+    private final String json;
+
+    MessageSchema(Schema schema) {
+      this.datumReader = new GenericDatumReader<>(schema);
+      this.json = schema.toString();
+    }
+  }
 
   public AvroDataParserFactory(Settings settings) throws SchemaRegistryException {
     super(settings);
@@ -144,30 +170,51 @@ public class AvroDataParserFactory extends DataParserFactory {
   public DataParser getParser(String id, byte[] data) throws DataParserException {
     if (schemaSource == OriginAvroSchemaSource.REGISTRY) {
       Optional<Integer> detectedSchemaId = schemaHelper.detectSchemaId(data);
-      byte[] remaining;
+      int offset = 0;
       Schema recordSchema = schema;
       try {
         if (detectedSchemaId.isPresent()) {
           // Load the schema for this id from cache
           recordSchema = schemas.get(detectedSchemaId.get());
 
-          // Strip the embedded ID
-          remaining = Arrays.copyOfRange(data, MAGIC_BYTE_SIZE + ID_SIZE, data.length);
-        } else {
-          remaining = data;
+          // Skip the embedded ID
+          offset = MAGIC_BYTE_SIZE + ID_SIZE;
         }
-        return new AvroMessageParser(getSettings().getContext(), recordSchema, remaining, id, schemaSource);
+        return createMessageParser(id, recordSchema, data, offset);
       } catch (IOException | ExecutionException e) {
         throw new DataParserException(Errors.DATA_PARSER_03, e.toString(), e);
       }
     }
     try {
-      return new AvroMessageParser(getSettings().getContext(), schema, data, id, schemaSource);
+      if (schemaSource == OriginAvroSchemaSource.SOURCE) {
+        return new AvroMessageParser(getSettings().getContext(), schema, data, id, schemaSource);
+      }
+      return createMessageParser(id, schema, data, 0);
     } catch (IOException e) {
       throw new DataParserException(Errors.DATA_PARSER_01, e.toString(), e);
     }
   }
 
+  private DataParser createMessageParser(String id, Schema schema, byte[] data, int offset) throws IOException {
+    if (schema == null) {
+      // Neither configured nor embedded schema, nothing to share
+      byte[] message = offset == 0 ? data : Arrays.copyOfRange(data, offset, data.length);
+      return new AvroMessageParser(getSettings().getContext(), null, message, id, schemaSource);
+    }
+    MessageSchema messageSchema = messageSchemas.getUnchecked(schema);
+    return new AvroMessageParser(
+        getSettings().getContext(),
+        schema,
+        messageSchema.datumReader,
+        messageSchema.json,
+        data,
+        offset,
+        data.length - offset,
+        id,
+        schemaSource
+    );
+  }
+
   @Override
   public DataParser getParser(File file, String fileOffset)
     throws DataParserException {
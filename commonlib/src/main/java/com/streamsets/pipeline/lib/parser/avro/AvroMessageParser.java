@@ -32,7 +32,6 @@ import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 
@@ -46,6 +45,8 @@ public class AvroMessageParser extends AbstractDataParser {
   private boolean eof;
   private final ProtoConfigurableEntity.Context context;
   private final String messageId;
+  private final Schema schema;
+  private final String schemaJson;
 
   public AvroMessageParser(
       ProtoConfigurableEntity.Context context,
@@ -53,16 +54,39 @@ public class AvroMessageParser extends AbstractDataParser {
       final byte[] message,
       final String messageId,
       final OriginAvroSchemaSource schemaSource
+  ) throws IOException {
+    this(context, schema, new GenericDatumReader<>(schema), null, message, 0, message.length, messageId, schemaSource);
+  }
+
+  /**
+   * Creates parser of the message in given part of the array.
+   *
+   * @param datumReader Reader for the schema, can be shared by parsers of all messages with that schema
+   * @param schemaJson JSON representation of the schema for the record header, null to compute it for every record
+   */
+  AvroMessageParser(
+      ProtoConfigurableEntity.Context context,
+      final Schema schema,
+      final DatumReader<GenericRecord> datumReader,
+      final String schemaJson,
+      final byte[] message,
+      final int offset,
+      final int length,
+      final String messageId,
+      final OriginAvroSchemaSource schemaSource
   ) throws IOException {
     this.context = context;
     this.messageId = messageId;
     this.schemaSource = schemaSource;
+    this.schema = schema;
+    this.schemaJson = schemaJson;
+    this.datumReader = datumReader;
 
-    datumReader = new GenericDatumReader<>(schema); //Reader schema argument is optional
     if(schemaSource == OriginAvroSchemaSource.SOURCE) {
       dataFileReader = new DataFileReader<>(new SeekableByteArrayInput(message), datumReader);
     } else {
-      decoder = DecoderFactory.get().binaryDecoder(new ByteArrayInputStream(message), null);
+      // Decode straight from the message instead of through a buffered stream
+      decoder = DecoderFactory.get().binaryDecoder(message, offset, length, null);
       avroRecord = new GenericData.Record(schema);
     }
   }
@@ -79,7 +103,11 @@ public class AvroMessageParser extends AbstractDataParser {
     if(genericRecord != null) {
       record = context.createRecord(messageId);
       record.set(AvroTypeUtil.avroToSdcField(record, genericRecord.getSchema(), genericRecord));
-      record.getHeader().setAttribute(HeaderAttributeConstants.AVRO_SCHEMA, genericRecord.getSchema().toString());
+      Schema recordSchema = genericRecord.getSchema();
+      record.getHeader().setAttribute(
+          HeaderAttributeConstants.AVRO_SCHEMA,
+          schemaJson != null && recordSchema == schema ? schemaJson : recordSchema.toString()
+      );
     }
     return record;
   }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.parser.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.ProtoConfigurableEntity;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.io.ObjectLengthException;
+import com.streamsets.pipeline.api.ext.io.OverrunException;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import com.streamsets.pipeline.api.impl.Utils;
+import com.streamsets.pipeline.lib.parser.AbstractDataParser;
+import com.streamsets.pipeline.lib.parser.DataParserException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON parser for in-memory UTF-8 payloads (Kafka messages, HTTP bodies, ...).
+ *
+ * Unlike {@link JsonCharDataParser}, which decodes the bytes into chars and lets Jackson databind build
+ * <code>Map</code>/<code>List</code> trees that are then converted into fields, this parser tokenizes the bytes
+ * directly and creates the {@link Field} tree in a single pass.
+ *
+ * Offsets, record IDs, the maximum object length and the read limit behave exactly like in {@link JsonCharDataParser}:
+ * offsets are char (not byte) offsets, translated by {@link Utf8CharCounter}, so they can be used interchangeably.
+ */
+class JsonByteDataParser extends AbstractDataParser {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final ProtoConfigurableEntity.Context context;
+  private final String readerId;
+  private final Mode mode;
+  private final int maxObjectLen;
+  private final int readLimit;
+  private final JsonParser parser;
+  private final Utf8CharCounter chars;
+  // Jackson reports locations either relative to the beginning of the array or to the given offset
+  private final long baseOffset;
+
+  private boolean starting = true;
+  private boolean closed;
+  private boolean overrun;
+  private boolean eof;
+  // MULTIPLE_OBJECTS mode, first token of the next root value
+  private JsonToken nextToken;
+  // MULTIPLE_OBJECTS mode, the position of the last token is off by one once the end of the data is reached
+  private long posCorrection;
+  // ARRAY_OBJECTS mode, the parsing context of the array elements
+  private JsonStreamContext rootContext;
+
+  private long objectStartByte;
+  private long objectStartChar;
+
+  JsonByteDataParser(
+      ProtoConfigurableEntity.Context context,
+      String readerId,
+      byte[] data,
+      int offset,
+      int len,
+      Utf8CharCounter chars,
+      Mode mode,
+      int maxObjectLen,
+      int readLimit
+  ) throws IOException {
+    this.context = context;
+    this.readerId = readerId;
+    this.mode = mode;
+    this.maxObjectLen = maxObjectLen;
+    this.readLimit = readLimit;
+    this.chars = chars;
+    parser = JSON_FACTORY.createParser(data, offset, len);
+    baseOffset = parser.getCurrentLocation().getByteOffset();
+  }
+
+  @Override
+  public Record parse() throws IOException, DataParserException {
+    long offset = getReaderPosition();
+    Field field = read(offset);
+    if (field == null) {
+      eof = true;
+      return null;
+    }
+    Record record = context.createRecord(readerId + "::" + offset);
+    record.set(field);
+    return record;
+  }
+
+  private Field read(long offset) throws IOException, DataParserException {
+    if (closed) {
+      throw new IOException("The parser is closed");
+    }
+    Utils.checkState(!overrun, "The underlying input stream had an overrun, the parser is not usable anymore");
+    try {
+      return (mode == Mode.ARRAY_OBJECTS) ? readFromArray() : readFromStream();
+    } catch (ObjectLengthException ex) {
+      throw new DataParserException(Errors.JSON_PARSER_02, readerId, offset, maxObjectLen);
+    }
+  }
+
+  private Field readFromArray() throws IOException {
+    startObject();
+    if (starting) {
+      starting = false;
+      JsonToken token = parser.nextToken();
+      rootContext = parser.getParsingContext();
+      if (token != JsonToken.START_ARRAY) {
+        throw new JsonParseException(
+            parser,
+            Utils.format("JSON array expected but stream starts with '{}'", token)
+        );
+      }
+    }
+    Field value = null;
+    JsonToken token = parser.nextToken();
+    if (token != null && token != JsonToken.END_ARRAY) {
+      try {
+        value = readRootField(token);
+      } catch (ObjectLengthException ex) {
+        // skip the rest of the element, the next read starts with the next element of the array
+        token = parser.getCurrentToken();
+        if (token == null) {
+          token = parser.nextToken();
+        }
+        while (token != null && parser.getParsingContext() != rootContext) {
+          token = parser.nextToken();
+        }
+        throw ex;
+      }
+      checkReadLimit();
+    }
+    return value;
+  }
+
+  private Field readFromStream() throws IOException {
+    startObject();
+    if (starting) {
+      starting = false;
+      nextToken = parser.nextToken();
+    }
+    Field value = null;
+    if (nextToken != null) {
+      try {
+        value = readRootField(nextToken);
+      } catch (ObjectLengthException ex) {
+        // skip the rest of the object, the next read starts with the next root value
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+          token = parser.nextToken();
+        }
+        while (token != null && !parser.getParsingContext().inRoot()) {
+          token = parser.nextToken();
+        }
+        nextToken = parser.nextToken();
+        throw ex;
+      }
+      checkReadLimit();
+      nextToken = parser.nextToken();
+      if (nextToken == null) {
+        // at the end of the data the token location stays at the last token, adjust by 1 to be after it
+        posCorrection++;
+      }
+    }
+    return value;
+  }
+
+  // Like the reader based parser, a null root value is returned as null, which the callers take as end of data
+  private Field readRootField(JsonToken token) throws IOException {
+    return (token == JsonToken.VALUE_NULL) ? null : readField(token);
+  }
+
+  private Field readField(JsonToken token) throws IOException {
+    if (token == null) {
+      throw new JsonParseException(parser, "Unexpected end-of-input");
+    }
+    Field field;
+    switch (token) {
+      case START_OBJECT:
+        Map<String, Field> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          map.put(name, readField(parser.nextToken()));
+          checkObjectLength();
+        }
+        field = Field.create(map);
+        break;
+      case START_ARRAY:
+        List<Field> list = new ArrayList<>();
+        JsonToken element = parser.nextToken();
+        while (element != JsonToken.END_ARRAY) {
+          list.add(readField(element));
+          checkObjectLength();
+          element = parser.nextToken();
+        }
+        field = Field.create(list);
+        break;
+      case VALUE_STRING:
+        field = Field.create(parser.getText());
+        break;
+      case VALUE_NUMBER_INT:
+        switch (parser.getNumberType()) {
+          case INT:
+            field = Field.create(parser.getIntValue());
+            break;
+          case LONG:
+            field = Field.create(parser.getLongValue());
+            break;
+          default:
+            field = Field.create(new BigDecimal(parser.getBigIntegerValue()));
+            break;
+        }
+        break;
+      case VALUE_NUMBER_FLOAT:
+        field = Field.create(parser.getDoubleValue());
+        break;
+      case VALUE_TRUE:
+        field = Field.create(true);
+        break;
+      case VALUE_FALSE:
+        field = Field.create(false);
+        break;
+      case VALUE_NULL:
+        field = Field.create(Field.Type.STRING, null);
+        break;
+      default:
+        throw new JsonParseException(parser, Utils.format("Unexpected token '{}'", token));
+    }
+    return field;
+  }
+
+  private void startObject() {
+    objectStartByte = parser.getCurrentLocation().getByteOffset() - baseOffset;
+    objectStartChar = chars.toCharOffset(objectStartByte);
+  }
+
+  // A char never takes less bytes than its UTF-16 representation, so the char length of the object is only computed
+  // if its byte length is above the limit.
+  private long getObjectCharLength(long limit) {
+    long current = parser.getCurrentLocation().getByteOffset() - baseOffset;
+    return (current - objectStartByte > limit) ? chars.toCharOffset(current) - objectStartChar : 0;
+  }
+
+  private void checkObjectLength() throws ObjectLengthException {
+    if (maxObjectLen > -1 && getObjectCharLength(maxObjectLen) > maxObjectLen) {
+      throw new ObjectLengthException(
+          Utils.format("JSON Object at offset '{}' exceeds max length '{}'", objectStartChar, maxObjectLen),
+          objectStartChar
+      );
+    }
+  }
+
+  private void checkReadLimit() throws OverrunException {
+    if (getObjectCharLength(readLimit) > readLimit) {
+      overrun = true;
+      throw new OverrunException(
+          Utils.format("Reader exceeded the read limit '{}'", readLimit),
+          objectStartChar + readLimit
+      );
+    }
+  }
+
+  private long getReaderPosition() {
+    long tokenOffset = parser.getTokenLocation().getByteOffset();
+    long position = (tokenOffset < baseOffset) ? 0 : chars.toCharOffset(tokenOffset - baseOffset);
+    return (mode == Mode.ARRAY_OBJECTS) ? position : position + posCorrection;
+  }
+
+  @Override
+  public String getOffset() {
+    return eof ? String.valueOf(-1) : String.valueOf(getReaderPosition());
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    parser.close();
+  }
+
+}
@@ -26,6 +26,7 @@ import com.streamsets.pipeline.lib.parser.DataParserFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -36,10 +37,50 @@ public class JsonDataParserFactory extends DataParserFactory {
   @SuppressWarnings("umchecked")
   public static final Set<Class<? extends Enum>> MODES = ImmutableSet.of(JsonMode.class);
 
+  // jackson-core is a provided dependency, stage libraries that don't package it use the reader based parser only
+  private static final boolean BYTE_PARSER_AVAILABLE = isJacksonAvailable();
+
   public JsonDataParserFactory(Settings settings) {
     super(settings);
   }
 
+  /**
+   * UTF-8 payloads that are already in memory are tokenized directly from the bytes, without decoding them into a
+   * reader first. Anything the byte parser can't reproduce exactly (other charsets, control character removal,
+   * byte order marks or malformed UTF-8) goes through the reader based parser.
+   */
+  @Override
+  public DataParser getParser(String id, byte[] data, int offset, int len) throws DataParserException {
+    if (BYTE_PARSER_AVAILABLE && StandardCharsets.UTF_8.equals(getSettings().getCharset()) &&
+        !getSettings().getRemoveCtrlChars() && !hasByteOrderMark(data, offset, len)) {
+      Utf8CharCounter chars = Utf8CharCounter.create(data, offset, len);
+      if (chars != null) {
+        try {
+          return new JsonByteDataParser(getSettings().getContext(), id, data, offset, len, chars,
+              getSettings().getMode(JsonMode.class).getFormat(), getSettings().getMaxRecordLen(),
+              OverrunReader.getDefaultReadLimit());
+        } catch (IOException ex) {
+          throw new DataParserException(Errors.JSON_PARSER_00, id, 0, ex.toString(), ex);
+        }
+      }
+    }
+    return super.getParser(id, data, offset, len);
+  }
+
+  private static boolean isJacksonAvailable() {
+    try {
+      Class.forName("com.fasterxml.jackson.core.JsonFactory", false, JsonDataParserFactory.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError ex) {
+      return false;
+    }
+  }
+
+  private static boolean hasByteOrderMark(byte[] data, int offset, int len) {
+    return len >= 3 &&
+        data[offset] == (byte) 0xEF && data[offset + 1] == (byte) 0xBB && data[offset + 2] == (byte) 0xBF;
+  }
+
   @Override
   public DataParser getParser(String id, InputStream is, String offset) throws DataParserException {
     return createParser(id, createReader(is), Long.parseLong(offset));
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.parser.json;
+
+/**
+ * Translates byte offsets of a UTF-8 encoded buffer into the char offsets a {@link java.io.Reader} decoding the same
+ * buffer would report, so that parsers working directly on bytes can keep char based offsets.
+ *
+ * The translation is incremental: parsers ask for offsets in (mostly) increasing order, so each call only scans the
+ * bytes between the previous and the requested offset. Pure ASCII buffers are detected upfront and not scanned at all.
+ */
+final class Utf8CharCounter {
+  private final byte[] data;
+  private final int start;
+  private final boolean ascii;
+  private int bytePos;
+  private long charPos;
+
+  private Utf8CharCounter(byte[] data, int start, boolean ascii) {
+    this.data = data;
+    this.start = start;
+    this.ascii = ascii;
+  }
+
+  /**
+   * Returns a counter for the given buffer or null if the buffer is not well-formed UTF-8, in which case a decoding
+   * reader would replace the malformed sequences and the offsets would not match.
+   */
+  static Utf8CharCounter create(byte[] data, int offset, int len) {
+    boolean ascii = true;
+    int end = offset + len;
+    int i = offset;
+    while (i < end) {
+      int b = data[i] & 0xFF;
+      if (b < 0x80) {
+        i++;
+        continue;
+      }
+      ascii = false;
+      int continuations;
+      int min = 0x80;
+      int max = 0xBF;
+      if (b >= 0xC2 && b <= 0xDF) {
+        continuations = 1;
+      } else if (b >= 0xE0 && b <= 0xEF) {
+        continuations = 2;
+        if (b == 0xE0) {
+          min = 0xA0;
+        } else if (b == 0xED) {
+          // surrogates are not allowed in UTF-8
+          max = 0x9F;
+        }
+      } else if (b >= 0xF0 && b <= 0xF4) {
+        continuations = 3;
+        if (b == 0xF0) {
+          min = 0x90;
+        } else if (b == 0xF4) {
+          max = 0x8F;
+        }
+      } else {
+        return null;
+      }
+      if (i + continuations >= end) {
+        return null;
+      }
+      int second = data[i + 1] & 0xFF;
+      if (second < min || second > max) {
+        return null;
+      }
+      for (int j = 2; j <= continuations; j++) {
+        if ((data[i + j] & 0xC0) != 0x80) {
+          return null;
+        }
+      }
+      i += continuations + 1;
+    }
+    return new Utf8CharCounter(data, offset, ascii);
+  }
+
+  /**
+   * Returns the char offset of the given byte offset, both relative to the start of the buffer. The byte offset must
+   * point to the beginning of a character.
+   */
+  long toCharOffset(long byteOffset) {
+    if (ascii || byteOffset <= 0) {
+      return Math.max(byteOffset, 0);
+    }
+    int target = (int) byteOffset;
+    while (bytePos < target) {
+      charPos += width(data[start + bytePos]);
+      bytePos++;
+    }
+    while (bytePos > target) {
+      bytePos--;
+      charPos -= width(data[start + bytePos]);
+    }
+    return charPos;
+  }
+
+  // Number of UTF-16 chars started by the given byte, supplementary characters are decoded into surrogate pairs
+  private static int width(byte b) {
+    if ((b & 0xC0) == 0x80) {
+      return 0;
+    }
+    return ((b & 0xF8) == 0xF0) ? 2 : 1;
+  }
+
+}
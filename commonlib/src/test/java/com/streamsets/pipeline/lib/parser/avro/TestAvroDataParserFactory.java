@@ -25,6 +25,13 @@ import com.streamsets.pipeline.lib.parser.DataParserFactory;
 import com.streamsets.pipeline.lib.parser.DataParserFactoryBuilder;
 import com.streamsets.pipeline.lib.parser.DataParserFormat;
 import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import com.streamsets.pipeline.stage.common.HeaderAttributeConstants;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -32,12 +39,15 @@ import org.mockserver.client.server.MockServerClient;
 import org.mockserver.junit.MockServerRule;
 import org.mockserver.model.Header;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import static com.streamsets.pipeline.config.OriginAvroSchemaSource.INLINE;
 import static com.streamsets.pipeline.config.OriginAvroSchemaSource.REGISTRY;
+import static com.streamsets.pipeline.lib.util.AvroSchemaHelper.SCHEMA_KEY;
 import static com.streamsets.pipeline.lib.util.AvroSchemaHelper.SCHEMA_REPO_URLS_KEY;
 import static com.streamsets.pipeline.lib.util.AvroSchemaHelper.SCHEMA_SOURCE_KEY;
 import static org.mockserver.matchers.Times.exactly;
@@ -129,4 +139,41 @@ public class TestAvroDataParserFactory {
       throw e;
     }
   }
+
+  @Test
+  public void testInlineSchemaMessages() throws Exception {
+    String schemaJson = "{\"type\":\"record\",\"name\":\"myrecord\",\"fields\":[{\"name\":\"f1\",\"type\":\"string\"}]}";
+    Schema schema = new Schema.Parser().parse(schemaJson);
+
+    Stage.Context context = ContextInfoCreator.createTargetContext("i", false, OnRecordError.TO_ERROR);
+    DataParserFactory dataParserFactory = new DataParserFactoryBuilder(context, DataParserFormat.AVRO)
+        .setConfig(SCHEMA_SOURCE_KEY, INLINE)
+        .setConfig(SCHEMA_KEY, schemaJson)
+        .setMaxDataLen(1024 * 1024)
+        .build();
+
+    // Parsers of subsequent messages share the datum reader, each of them has to start at its own message
+    for (int message = 0; message < 3; message++) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(baos, null);
+      GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(schema);
+      for (int i = 0; i < 2; i++) {
+        GenericRecord avroRecord = new GenericData.Record(schema);
+        avroRecord.put("f1", "value" + message + i);
+        writer.write(avroRecord, encoder);
+      }
+      encoder.flush();
+
+      try (DataParser parser = dataParserFactory.getParser(ID, baos.toByteArray())) {
+        for (int i = 0; i < 2; i++) {
+          Record record = parser.parse();
+          Assert.assertNotNull(record);
+          Assert.assertEquals("value" + message + i, record.get("/f1").getValue());
+          Assert.assertEquals(schema.toString(), record.getHeader().getAttribute(HeaderAttributeConstants.AVRO_SCHEMA));
+        }
+        Assert.assertNull(parser.parse());
+        Assert.assertEquals("-1", parser.getOffset());
+      }
+    }
+  }
 }
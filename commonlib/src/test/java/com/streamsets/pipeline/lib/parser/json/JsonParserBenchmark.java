@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.parser.json;
+
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.config.JsonMode;
+import com.streamsets.pipeline.lib.parser.DataParser;
+import com.streamsets.pipeline.lib.parser.DataParserFactory;
+import com.streamsets.pipeline.lib.parser.DataParserFactoryBuilder;
+import com.streamsets.pipeline.lib.parser.DataParserFormat;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing of in-memory JSON payloads through the reader based {@link JsonCharDataParser} with the
+ * {@link JsonByteDataParser} on a small message (a typical Kafka record) and a large document.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParserBenchmark {
+
+  @Param({"small", "large"})
+  public String document;
+
+  @Param({"false", "true"})
+  public boolean bytes;
+
+  private DataParserFactory factory;
+  private byte[] data;
+
+  @Setup
+  public void setUp() {
+    factory = new DataParserFactoryBuilder(
+        ContextInfoCreator.createSourceContext("i", false, OnRecordError.TO_ERROR, Collections.emptyList()),
+        DataParserFormat.JSON
+    )
+        .setMaxDataLen(-1)
+        .setMode(JsonMode.MULTIPLE_OBJECTS)
+        .build();
+    data = ("small".equals(document) ? createDocument(1) : createDocument(500)).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String createDocument(int items) {
+    StringBuilder sb = new StringBuilder("{\"id\":12345,\"timestamp\":1530000000000,");
+    sb.append("\"source\":\"sensor-ü\",\"items\":[");
+    for (int i = 0; i < items; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"name\":\"item").append(i).append("\",\"price\":").append(i).append(".99")
+          .append(",\"tags\":[\"a\",\"b\",\"c\"],\"available\":").append(i % 2 == 0)
+          .append(",\"location\":{\"lat\":37.7749,\"lon\":-122.4194,\"city\":\"San Francisco\"},\"note\":null}");
+    }
+    return sb.append("]}").toString();
+  }
+
+  @Benchmark
+  public Record parse() throws Exception {
+    DataParser parser = bytes
+        ? factory.getParser("id", data)
+        : factory.getParser("id", new ByteArrayInputStream(data), "0");
+    Record record;
+    Record last = null;
+    while ((record = parser.parse()) != null) {
+      last = record;
+    }
+    parser.close();
+    return last;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonParserBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
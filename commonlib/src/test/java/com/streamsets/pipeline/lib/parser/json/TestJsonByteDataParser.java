@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.lib.parser.json;
+
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.ext.io.OverrunReader;
+import com.streamsets.pipeline.config.JsonMode;
+import com.streamsets.pipeline.lib.parser.DataParser;
+import com.streamsets.pipeline.lib.parser.DataParserException;
+import com.streamsets.pipeline.lib.parser.DataParserFactory;
+import com.streamsets.pipeline.lib.parser.DataParserFactoryBuilder;
+import com.streamsets.pipeline.lib.parser.DataParserFormat;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestJsonByteDataParser {
+
+  private static final String[] MULTIPLE_OBJECTS = {
+      "",
+      "   ",
+      "[\"Hello\"]\n[\"Bye\"]",
+      "{\"a\":1}{\"a\":2}\n\n  {\"a\":3}\n",
+      "{\"int\":1,\"long\":12345678901,\"big\":123456789012345678901234567890,\"double\":1.5e3,\"null\":null," +
+          "\"true\":true,\"false\":false,\"string\":\"a\\\"b\\u00fc\",\"list\":[1,[2,{\"x\":[]}],{}]}",
+      "{\"dup\":1,\"other\":2,\"dup\":3}",
+      "1 \"two\" 3.0 true null 4",
+      "{\"ümläut\":\"été\"} {\"emoji\":\"😀😀\"}\n{\"b\":\"中文\"}",
+      "{\"a\":\"this value is longer than the maximum\"} {\"b\":1} {\"c\":[\"üüüüüüü\"]}",
+      "{\"a\":[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,19,20]} {\"b\":1}",
+      "{\"a\":1} {\"b\":",
+      "{\"a\":1} xyz {\"b\":2}",
+  };
+
+  private static final String[] ARRAY_OBJECTS = {
+      "[]",
+      "[[\"Hello\"],[\"Bye\"]]",
+      " [ {\"a\":1} , {\"a\":2},\n{\"a\":3} ] trailing",
+      "[1, \"two\", 3.0, null, true, 123456789012345678901234567890]",
+      "[{\"ümläut\":\"été\"},{\"emoji\":\"😀\"},{\"b\":\"中文\"}]",
+      "[{\"a\":\"this value is longer than the maximum\"},{\"b\":1},{\"c\":[\"üüüüüüü\"]}]",
+      "[{\"a\":{\"b\":{\"c\":\"deeply nested value that is too long\"}}},{\"d\":1}]",
+      "[{\"a\":1},{\"b\":",
+  };
+
+  private Stage.Context getContext() {
+    return ContextInfoCreator.createSourceContext("i", false, OnRecordError.TO_ERROR, Collections.emptyList());
+  }
+
+  private DataParserFactory createFactory(JsonMode mode, int maxObjectLen) {
+    return new DataParserFactoryBuilder(getContext(), DataParserFormat.JSON)
+        .setMaxDataLen(maxObjectLen)
+        .setMode(mode)
+        .build();
+  }
+
+  // Records, errors and offsets returned by the parser, in order
+  private List<Object> parseAll(DataParser parser) throws Exception {
+    List<Object> result = new ArrayList<>();
+    try {
+      result.add(parser.getOffset());
+      for (int i = 0; i < 100; i++) {
+        try {
+          Record record = parser.parse();
+          if (record == null) {
+            break;
+          }
+          result.add(record.getHeader().getSourceId());
+          result.add(record.get());
+        } catch (DataParserException ex) {
+          result.add(ex.getErrorCode());
+        }
+        result.add(parser.getOffset());
+      }
+      result.add(parser.getOffset());
+    } catch (IOException ex) {
+      // Jackson reports byte instead of char locations in the message
+      result.add(IOException.class);
+    } finally {
+      parser.close();
+    }
+    return result;
+  }
+
+  private void assertSameAsReaderParser(JsonMode mode, int maxObjectLen, String json) throws Exception {
+    DataParserFactory factory = createFactory(mode, maxObjectLen);
+    byte[] data = json.getBytes(StandardCharsets.UTF_8);
+    List<Object> expected = parseAll(factory.getParser("id", new ByteArrayInputStream(data), "0"));
+    Assert.assertEquals(json, expected, parseAll(factory.getParser("id", data)));
+
+    // the payload doesn't have to start at the beginning of the array
+    byte[] padded = new byte[data.length + 6];
+    System.arraycopy(data, 0, padded, 3, data.length);
+    Assert.assertEquals(json, expected, parseAll(factory.getParser("id", padded, 3, data.length)));
+  }
+
+  @Test
+  public void testMultipleObjects() throws Exception {
+    for (String json : MULTIPLE_OBJECTS) {
+      assertSameAsReaderParser(JsonMode.MULTIPLE_OBJECTS, 1000, json);
+      assertSameAsReaderParser(JsonMode.MULTIPLE_OBJECTS, 30, json);
+    }
+  }
+
+  @Test
+  public void testArrayObjects() throws Exception {
+    for (String json : ARRAY_OBJECTS) {
+      assertSameAsReaderParser(JsonMode.ARRAY_OBJECTS, 1000, json);
+      assertSameAsReaderParser(JsonMode.ARRAY_OBJECTS, 30, json);
+    }
+  }
+
+  @Test
+  public void testArrayExpected() throws Exception {
+    DataParser parser = createFactory(JsonMode.ARRAY_OBJECTS, 1000).getParser("id", "{\"a\":1}".getBytes());
+    try {
+      parser.parse();
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().contains("JSON array expected"));
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Test
+  public void testReadLimit() throws Exception {
+    StringBuilder json = new StringBuilder("{\"a\":\"");
+    for (int i = 0; i <= OverrunReader.getDefaultReadLimit(); i++) {
+      json.append('x');
+    }
+    json.append("\"} {\"b\":1}");
+    DataParser parser = createFactory(JsonMode.MULTIPLE_OBJECTS, -1).getParser("id", json.toString().getBytes());
+    try {
+      parser.parse();
+      Assert.fail();
+    } catch (IOException ex) {
+      // expected
+    }
+    try {
+      parser.parse();
+      Assert.fail();
+    } catch (IllegalStateException ex) {
+      // the parser is not usable after an overrun
+    } finally {
+      parser.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testClose() throws Exception {
+    DataParser parser = createFactory(JsonMode.MULTIPLE_OBJECTS, 1000).getParser("id", "{\"a\":1}".getBytes());
+    parser.close();
+    parser.parse();
+  }
+
+  @Test
+  public void testFallbackToReaderParser() throws Exception {
+    // byte order mark
+    assertSameAsReaderParser(JsonMode.MULTIPLE_OBJECTS, 1000, "\uFEFF{\"a\":1}");
+
+    // malformed UTF-8 is decoded with replacement characters by the reader
+    byte[] data = {'[', '"', (byte) 0xC3, '"', ']', ' ', '{', '}'};
+    DataParserFactory factory = createFactory(JsonMode.MULTIPLE_OBJECTS, 1000);
+    Assert.assertEquals(
+        parseAll(factory.getParser("id", new ByteArrayInputStream(data), "0")),
+        parseAll(factory.getParser("id", data))
+    );
+  }
+
+  @Test
+  public void testUtf8Validation() throws Exception {
+    Assert.assertNotNull(Utf8CharCounter.create(new byte[0], 0, 0));
+    Assert.assertNotNull(Utf8CharCounter.create("aü中😀".getBytes(StandardCharsets.UTF_8), 0, 10));
+    // overlong encoding
+    Assert.assertNull(Utf8CharCounter.create(new byte[] {(byte) 0xC0, (byte) 0x80}, 0, 2));
+    // encoded surrogate
+    Assert.assertNull(Utf8CharCounter.create(new byte[] {(byte) 0xED, (byte) 0xA0, (byte) 0x80}, 0, 3));
+    // truncated sequence
+    Assert.assertNull(Utf8CharCounter.create(new byte[] {'a', (byte) 0xE4, (byte) 0xB8}, 0, 3));
+    // above U+10FFFF
+    Assert.assertNull(Utf8CharCounter.create(new byte[] {(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}, 0, 4));
+  }
+
+  @Test
+  public void testCharOffsets() throws Exception {
+    byte[] data = "aü中😀b".getBytes(StandardCharsets.UTF_8);
+    Utf8CharCounter counter = Utf8CharCounter.create(data, 0, data.length);
+    Assert.assertEquals(6, counter.toCharOffset(11));
+    Assert.assertEquals(1, counter.toCharOffset(1));
+    Assert.assertEquals(3, counter.toCharOffset(6));
+    Assert.assertEquals(5, counter.toCharOffset(10));
+    Assert.assertEquals(0, counter.toCharOffset(0));
+  }
+
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.el;
+
+import com.streamsets.pipeline.api.el.ELVars;
+import org.apache.commons.el.BinaryOperator;
+import org.apache.commons.el.BinaryOperatorExpression;
+import org.apache.commons.el.Coercions;
+import org.apache.commons.el.ConditionalExpression;
+import org.apache.commons.el.Constants;
+import org.apache.commons.el.Expression;
+import org.apache.commons.el.ExpressionEvaluatorImpl;
+import org.apache.commons.el.ExpressionString;
+import org.apache.commons.el.FunctionInvocation;
+import org.apache.commons.el.Literal;
+import org.apache.commons.el.NamedValue;
+import org.apache.commons.el.UnaryOperator;
+import org.apache.commons.el.UnaryOperatorExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.jsp.el.ELException;
+import javax.servlet.jsp.el.FunctionMapper;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiles expressions parsed by commons-el into trees of pre-resolved nodes.
+ *
+ * Constants are inlined, EL functions are bound once to {@link MethodHandle}s and called without reflection, and
+ * variables are read straight from the {@link ELVars} without creating a <code>VariableResolver</code> per
+ * evaluation. Operators, argument coercion and result coercion are delegated to the very same commons-el classes the
+ * interpreter uses, so results and error messages are identical. Any expression construct the compiler does not know
+ * about (e.g. property and index suffixes) is evaluated by the commons-el interpreter.
+ *
+ * Compiled expressions are cached per compiler instance, lookups do not synchronize.
+ */
+class ELCompiler {
+  private static final Logger LOG = LoggerFactory.getLogger(ELCompiler.class);
+
+  // same configuration as the commons-el ExpressionEvaluatorImpl logger, errors are thrown as ELExceptions
+  private static final org.apache.commons.el.Logger EL_LOGGER = new org.apache.commons.el.Logger(System.out);
+
+  static final int MAX_CACHED_EXPRESSIONS = 5000;
+
+  private final Map<String, Object> constants;
+  private final FunctionMapper functionMapper;
+  private final ConcurrentMap<String, CompiledExpression> cache;
+
+  ELCompiler(Map<String, Object> constants, FunctionMapper functionMapper) {
+    this.constants = constants;
+    this.functionMapper = functionMapper;
+    cache = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the compiled form of the given expression, parsing and compiling it if it is not cached yet.
+   *
+   * @throws ELException if the expression cannot be parsed
+   */
+  CompiledExpression compile(ExpressionEvaluatorImpl evaluator, String expression) throws ELException {
+    CompiledExpression compiled = cache.get(expression);
+    if (compiled == null) {
+      compiled = new CompiledExpression(compileParsed(evaluator.parseExpressionString(expression)));
+      if (cache.size() >= MAX_CACHED_EXPRESSIONS) {
+        cache.clear();
+      }
+      cache.putIfAbsent(expression, compiled);
+      LOG.trace("Compiled EL '{}'", expression);
+    }
+    return compiled;
+  }
+
+  int getCachedCount() {
+    return cache.size();
+  }
+
+  private Node compileParsed(Object parsed) {
+    Node node;
+    if (parsed instanceof Expression) {
+      node = compileExpression((Expression) parsed);
+    } else if (parsed instanceof ExpressionString) {
+      Object[] elements = ((ExpressionString) parsed).getElements();
+      Node[] nodes = new Node[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        if (elements[i] instanceof Expression) {
+          nodes[i] = compileExpression((Expression) elements[i]);
+        } else {
+          nodes[i] = new ConstantNode(elements[i]);
+        }
+      }
+      node = new ConcatNode(nodes);
+    } else {
+      // static string
+      node = new ConstantNode(parsed);
+    }
+    return node;
+  }
+
+  private Node compileExpression(Expression expression) {
+    if (expression instanceof Literal) {
+      return new ConstantNode(((Literal) expression).getValue());
+    } else if (expression instanceof NamedValue) {
+      return compileNamedValue((NamedValue) expression);
+    } else if (expression instanceof FunctionInvocation) {
+      return compileFunction((FunctionInvocation) expression);
+    } else if (expression instanceof BinaryOperatorExpression) {
+      return compileBinary((BinaryOperatorExpression) expression);
+    } else if (expression instanceof UnaryOperatorExpression) {
+      return compileUnary((UnaryOperatorExpression) expression);
+    } else if (expression instanceof ConditionalExpression) {
+      ConditionalExpression conditional = (ConditionalExpression) expression;
+      return new ConditionalNode(
+          compileExpression(conditional.getCondition()),
+          compileExpression(conditional.getTrueBranch()),
+          compileExpression(conditional.getFalseBranch())
+      );
+    }
+    return new InterpretedNode(expression);
+  }
+
+  private Node compileNamedValue(NamedValue namedValue) {
+    String name = namedValue.getName();
+    if (constants.containsKey(name)) {
+      return new ConstantVariableNode(name, constants.get(name));
+    }
+    return new VariableNode(name);
+  }
+
+  private Node compileFunction(FunctionInvocation invocation) {
+    String functionName = invocation.getFunctionName();
+    int index = functionName.indexOf(':');
+    String prefix = (index == -1) ? "" : functionName.substring(0, index);
+    String localName = (index == -1) ? functionName : functionName.substring(index + 1);
+    Method method = functionMapper.resolveFunction(prefix, localName);
+    List arguments = invocation.getArgumentList();
+    if (method == null || method.getParameterTypes().length != arguments.size()) {
+      // let the interpreter report the error at evaluation time
+      return new InterpretedNode(invocation);
+    }
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+    } catch (IllegalAccessException ex) {
+      LOG.debug("Cannot compile EL function '{}', using the interpreter: {}", functionName, ex.toString(), ex);
+      return new InterpretedNode(invocation);
+    }
+    Node[] args = new Node[arguments.size()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = compileExpression((Expression) arguments.get(i));
+    }
+    Class<?>[] params = method.getParameterTypes();
+    switch (args.length) {
+      case 0:
+        return new Function0Node(functionName, handle.asType(MethodType.genericMethodType(0)));
+      case 1:
+        return new Function1Node(functionName, handle.asType(MethodType.genericMethodType(1)), params, args);
+      case 2:
+        return new Function2Node(functionName, handle.asType(MethodType.genericMethodType(2)), params, args);
+      case 3:
+        return new Function3Node(functionName, handle.asType(MethodType.genericMethodType(3)), params, args);
+      default:
+        return new FunctionNNode(
+            functionName,
+            handle.asSpreader(Object[].class, args.length).asType(MethodType.methodType(Object.class, Object[].class)),
+            params,
+            args
+        );
+    }
+  }
+
+  private Node compileBinary(BinaryOperatorExpression expression) {
+    List operators = expression.getOperators();
+    List expressions = expression.getExpressions();
+    BinaryOperator[] ops = new BinaryOperator[operators.size()];
+    Node[] operands = new Node[operators.size()];
+    for (int i = 0; i < ops.length; i++) {
+      ops[i] = (BinaryOperator) operators.get(i);
+      operands[i] = compileExpression((Expression) expressions.get(i));
+    }
+    return new BinaryNode(compileExpression(expression.getExpression()), ops, operands);
+  }
+
+  private Node compileUnary(UnaryOperatorExpression expression) {
+    UnaryOperator[] ops;
+    if (expression.getOperator() != null) {
+      ops = new UnaryOperator[] {expression.getOperator()};
+    } else {
+      // operators are applied right to left
+      List operators = expression.getOperators();
+      ops = new UnaryOperator[operators.size()];
+      for (int i = 0; i < ops.length; i++) {
+        ops[i] = (UnaryOperator) operators.get(ops.length - 1 - i);
+      }
+    }
+    return new UnaryNode(compileExpression(expression.getExpression()), ops);
+  }
+
+  /**
+   * A compiled expression, thread safe.
+   */
+  class CompiledExpression {
+    private final Node root;
+
+    private CompiledExpression(Node root) {
+      this.root = root;
+    }
+
+    Object evaluate(ELVars vars, Class<?> expectedType) throws ELException {
+      return Coercions.coerce(root.evaluate(vars), expectedType, EL_LOGGER);
+    }
+  }
+
+  private abstract static class Node {
+    abstract Object evaluate(ELVars vars) throws ELException;
+  }
+
+  private static class ConstantNode extends Node {
+    private final Object value;
+
+    ConstantNode(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) {
+      return value;
+    }
+  }
+
+  private static class ConcatNode extends Node {
+    private final Node[] elements;
+
+    ConcatNode(Node[] elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      StringBuilder sb = new StringBuilder();
+      for (Node element : elements) {
+        Object value = element.evaluate(vars);
+        if (value != null) {
+          sb.append(value.toString());
+        }
+      }
+      return sb.toString();
+    }
+  }
+
+  // a variable shadowing a constant, the constant value is inlined
+  private static class ConstantVariableNode extends Node {
+    private final String name;
+    private final Object constant;
+
+    ConstantVariableNode(String name, Object constant) {
+      this.name = name;
+      this.constant = constant;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) {
+      return vars.hasVariable(name) ? vars.getVariable(name) : constant;
+    }
+  }
+
+  private static class VariableNode extends Node {
+    private final String name;
+
+    VariableNode(String name) {
+      this.name = name;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      if (!vars.hasVariable(name)) {
+        throw new ELException(ELEvaluator.unresolvedVariableMessage(name));
+      }
+      return vars.getVariable(name);
+    }
+  }
+
+  private abstract static class FunctionNode extends Node {
+    final String functionName;
+
+    FunctionNode(String functionName) {
+      this.functionName = functionName;
+    }
+
+    // same reporting as the interpreter does for exceptions thrown by the function
+    Object functionFailed(Throwable ex) throws ELException {
+      EL_LOGGER.logError(Constants.FUNCTION_INVOCATION_ERROR, ex, functionName);
+      return null;
+    }
+  }
+
+  private static class Function0Node extends FunctionNode {
+    private final MethodHandle handle;
+
+    Function0Node(String functionName, MethodHandle handle) {
+      super(functionName);
+      this.handle = handle;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      try {
+        return (Object) handle.invokeExact();
+      } catch (Throwable ex) {
+        return functionFailed(ex);
+      }
+    }
+  }
+
+  private static class Function1Node extends FunctionNode {
+    private final MethodHandle handle;
+    private final Class<?> param0;
+    private final Node arg0;
+
+    Function1Node(String functionName, MethodHandle handle, Class<?>[] params, Node[] args) {
+      super(functionName);
+      this.handle = handle;
+      param0 = params[0];
+      arg0 = args[0];
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object value0 = Coercions.coerce(arg0.evaluate(vars), param0, EL_LOGGER);
+      try {
+        return (Object) handle.invokeExact(value0);
+      } catch (Throwable ex) {
+        return functionFailed(ex);
+      }
+    }
+  }
+
+  private static class Function2Node extends FunctionNode {
+    private final MethodHandle handle;
+    private final Class<?> param0;
+    private final Class<?> param1;
+    private final Node arg0;
+    private final Node arg1;
+
+    Function2Node(String functionName, MethodHandle handle, Class<?>[] params, Node[] args) {
+      super(functionName);
+      this.handle = handle;
+      param0 = params[0];
+      param1 = params[1];
+      arg0 = args[0];
+      arg1 = args[1];
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object value0 = Coercions.coerce(arg0.evaluate(vars), param0, EL_LOGGER);
+      Object value1 = Coercions.coerce(arg1.evaluate(vars), param1, EL_LOGGER);
+      try {
+        return (Object) handle.invokeExact(value0, value1);
+      } catch (Throwable ex) {
+        return functionFailed(ex);
+      }
+    }
+  }
+
+  private static class Function3Node extends FunctionNode {
+    private final MethodHandle handle;
+    private final Class<?> param0;
+    private final Class<?> param1;
+    private final Class<?> param2;
+    private final Node arg0;
+    private final Node arg1;
+    private final Node arg2;
+
+    Function3Node(String functionName, MethodHandle handle, Class<?>[] params, Node[] args) {
+      super(functionName);
+      this.handle = handle;
+      param0 = params[0];
+      param1 = params[1];
+      param2 = params[2];
+      arg0 = args[0];
+      arg1 = args[1];
+      arg2 = args[2];
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object value0 = Coercions.coerce(arg0.evaluate(vars), param0, EL_LOGGER);
+      Object value1 = Coercions.coerce(arg1.evaluate(vars), param1, EL_LOGGER);
+      Object value2 = Coercions.coerce(arg2.evaluate(vars), param2, EL_LOGGER);
+      try {
+        return (Object) handle.invokeExact(value0, value1, value2);
+      } catch (Throwable ex) {
+        return functionFailed(ex);
+      }
+    }
+  }
+
+  private static class FunctionNNode extends FunctionNode {
+    private final MethodHandle handle;
+    private final Class<?>[] params;
+    private final Node[] args;
+
+    FunctionNNode(String functionName, MethodHandle handle, Class<?>[] params, Node[] args) {
+      super(functionName);
+      this.handle = handle;
+      this.params = params;
+      this.args = args;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object[] values = new Object[args.length];
+      for (int i = 0; i < args.length; i++) {
+        values[i] = Coercions.coerce(args[i].evaluate(vars), params[i], EL_LOGGER);
+      }
+      try {
+        return (Object) handle.invokeExact(values);
+      } catch (Throwable ex) {
+        return functionFailed(ex);
+      }
+    }
+  }
+
+  private static class BinaryNode extends Node {
+    private final Node first;
+    private final BinaryOperator[] operators;
+    private final Node[] operands;
+
+    BinaryNode(Node first, BinaryOperator[] operators, Node[] operands) {
+      this.first = first;
+      this.operators = operators;
+      this.operands = operands;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object value = first.evaluate(vars);
+      for (int i = 0; i < operators.length; i++) {
+        BinaryOperator operator = operators[i];
+        if (operator.shouldCoerceToBoolean()) {
+          value = Coercions.coerceToBoolean(value, EL_LOGGER);
+        }
+        if (operator.shouldEvaluate(value)) {
+          value = operator.apply(value, operands[i].evaluate(vars), EL_LOGGER);
+        }
+      }
+      return value;
+    }
+  }
+
+  private static class UnaryNode extends Node {
+    private final Node expression;
+    private final UnaryOperator[] operators;
+
+    UnaryNode(Node expression, UnaryOperator[] operators) {
+      this.expression = expression;
+      this.operators = operators;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      Object value = expression.evaluate(vars);
+      for (UnaryOperator operator : operators) {
+        value = operator.apply(value, EL_LOGGER);
+      }
+      return value;
+    }
+  }
+
+  private static class ConditionalNode extends Node {
+    private final Node condition;
+    private final Node trueBranch;
+    private final Node falseBranch;
+
+    ConditionalNode(Node condition, Node trueBranch, Node falseBranch) {
+      this.condition = condition;
+      this.trueBranch = trueBranch;
+      this.falseBranch = falseBranch;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      if (Coercions.coerceToBoolean(condition.evaluate(vars), EL_LOGGER)) {
+        return trueBranch.evaluate(vars);
+      } else {
+        return falseBranch.evaluate(vars);
+      }
+    }
+  }
+
+  // anything the compiler does not handle is evaluated by commons-el
+  private class InterpretedNode extends Node {
+    private final Expression expression;
+
+    InterpretedNode(Expression expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    Object evaluate(ELVars vars) throws ELException {
+      return expression.evaluate(new ELEvaluator.ELVariableResolver(constants, vars), functionMapper, EL_LOGGER);
+    }
+  }
+
+}
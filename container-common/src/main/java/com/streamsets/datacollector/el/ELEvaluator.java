@@ -44,9 +44,16 @@ public class ELEvaluator extends ELEval {
   private final List<ElConstantDefinition> elConstantDefinitions;
   private final ELDefinitionExtractor elDefinitionExtractor;
 
+  private final ELCompiler compiler;
+
   // ExpressionEvaluatorImpl can be used as a singleton
   private static final LruExpressionEvaluatorImpl EVALUATOR = new LruExpressionEvaluatorImpl();
 
+  /**
+   * System property to opt-in to compiled EL evaluation, see {@link ELCompiler}.
+   */
+  public static final String COMPILE_EXPRESSIONS_PROPERTY = "com.streamsets.datacollector.el.ELEvaluator.compile";
+
   public ELEvaluator(String configName, boolean explicit, Map<String, Object> constants, ELDefinitionExtractor elDefinitionExtractor, List<Class> elFuncConstDefClasses) {
     this(configName, explicit, constants, elDefinitionExtractor, elFuncConstDefClasses.toArray(new Class[elFuncConstDefClasses.size()]));
   }
@@ -60,6 +67,7 @@ public class ELEvaluator extends ELEval {
     this.elDefinitionExtractor = elDefinitionExtractor;
     populateConstantsAndFunctions(explicit, elFuncConstDefClasses);
     this.functionMapper = new FunctionMapperImpl();
+    this.compiler = Boolean.getBoolean(COMPILE_EXPRESSIONS_PROPERTY) ? new ELCompiler(this.constants, functionMapper) : null;
   }
 
   public ELEvaluator(String configName, ELDefinitionExtractor elDefinitionExtractor, Class<?>... elFuncConstDefClasses) {
@@ -128,23 +136,11 @@ public class ELEvaluator extends ELEval {
   @Override
   @SuppressWarnings("unchecked")
   public <T> T evaluate (final ELVars vars, String expression, Class<T> returnType) throws ELEvalException {
-    VariableResolver variableResolver = new VariableResolver() {
-
-      @Override
-      public Object resolveVariable(String name) throws ELException {
-        Object value = constants.get(name);
-        if (!vars.hasVariable(name)) {
-          if (value == null && !constants.containsKey(name)) {
-            throw new ELException(Utils.format("Constants/Variable '{}' cannot be resolved", name));
-          }
-        } else {
-          value = vars.getVariable(name);
-        }
-        return value;
-      }
-    };
     try {
-      return (T) EVALUATOR.evaluate(expression, returnType, variableResolver, functionMapper);
+      if (compiler != null && expression != null) {
+        return (T) compiler.compile(EVALUATOR, expression).evaluate(vars, returnType);
+      }
+      return (T) EVALUATOR.evaluate(expression, returnType, new ELVariableResolver(constants, vars), functionMapper);
     } catch (ELException e) {
       // Apache evaluator is not using the getCause exception chaining that is available in Java but rather a custom
       // chaining mechanism. This doesn't work well for us as we're effectively swallowing the cause that is not
@@ -161,6 +157,34 @@ public class ELEvaluator extends ELEval {
     }
   }
 
+  static String unresolvedVariableMessage(String name) {
+    return Utils.format("Constants/Variable '{}' cannot be resolved", name);
+  }
+
+  // resolves variables first and then constants
+  static class ELVariableResolver implements VariableResolver {
+    private final Map<String, Object> constants;
+    private final ELVars vars;
+
+    ELVariableResolver(Map<String, Object> constants, ELVars vars) {
+      this.constants = constants;
+      this.vars = vars;
+    }
+
+    @Override
+    public Object resolveVariable(String name) throws ELException {
+      Object value = constants.get(name);
+      if (!vars.hasVariable(name)) {
+        if (value == null && !constants.containsKey(name)) {
+          throw new ELException(unresolvedVariableMessage(name));
+        }
+      } else {
+        value = vars.getVariable(name);
+      }
+      return value;
+    }
+  }
+
   private class FunctionMapperImpl implements FunctionMapper {
 
     @Override
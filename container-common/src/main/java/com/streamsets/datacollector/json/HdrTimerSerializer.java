@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.streamsets.datacollector.metrics.HdrHistogramReservoir;
+import com.streamsets.datacollector.metrics.HdrTimer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes {@link HdrTimer} with the same fields as regular timers plus the full percentile distribution.
+ */
+public class HdrTimerSerializer extends JsonSerializer<HdrTimer> {
+  private final String rateUnit;
+  private final double rateFactor;
+  private final String durationUnit;
+  private final double durationFactor;
+
+  private static String calculateRateUnit(TimeUnit unit, String name) {
+    String s = unit.toString().toLowerCase(Locale.US);
+    return name + '/' + s.substring(0, s.length() - 1);
+  }
+
+  public HdrTimerSerializer(TimeUnit rateUnit, TimeUnit durationUnit) {
+    this.rateFactor = (double)rateUnit.toSeconds(1L);
+    this.rateUnit = calculateRateUnit(rateUnit, "calls");
+    this.durationFactor = 1.0 / durationUnit.toNanos(1L);
+    this.durationUnit = durationUnit.toString().toLowerCase(Locale.US);
+  }
+
+  @Override
+  public void serialize(HdrTimer timer, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+    HdrHistogramReservoir.HdrSnapshot snapshot = timer.getSnapshot();
+    jgen.writeStartObject();
+    jgen.writeNumberField("count", timer.getCount());
+    jgen.writeNumberField("max", snapshot.getMax() * this.durationFactor);
+    jgen.writeNumberField("mean", snapshot.getMean() * this.durationFactor);
+    jgen.writeNumberField("min", snapshot.getMin() * this.durationFactor);
+    jgen.writeNumberField("p50", snapshot.getMedian() * this.durationFactor);
+    jgen.writeNumberField("p75", snapshot.get75thPercentile() * this.durationFactor);
+    jgen.writeNumberField("p95", snapshot.get95thPercentile() * this.durationFactor);
+    jgen.writeNumberField("p98", snapshot.get98thPercentile() * this.durationFactor);
+    jgen.writeNumberField("p99", snapshot.get99thPercentile() * this.durationFactor);
+    jgen.writeNumberField("p999", snapshot.get999thPercentile() * this.durationFactor);
+    jgen.writeNumberField("stddev", snapshot.getStdDev() * this.durationFactor);
+    jgen.writeNumberField("m15_rate", timer.getFifteenMinuteRate() * this.rateFactor);
+    jgen.writeNumberField("m1_rate", timer.getOneMinuteRate() * this.rateFactor);
+    jgen.writeNumberField("m5_rate", timer.getFiveMinuteRate() * this.rateFactor);
+    jgen.writeNumberField("mean_rate", timer.getMeanRate() * this.rateFactor);
+    jgen.writeStringField("duration_units", this.durationUnit);
+    jgen.writeStringField("rate_units", this.rateUnit);
+    jgen.writeObjectFieldStart("percentiles");
+    for (Map.Entry<Double, Long> entry : snapshot.getPercentiles().entrySet()) {
+      jgen.writeNumberField(String.valueOf(entry.getKey()), entry.getValue() * this.durationFactor);
+    }
+    jgen.writeEndObject();
+    jgen.writeEndObject();
+  }
+
+}
@@ -24,6 +24,7 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import com.streamsets.datacollector.metrics.ExtendedMeter;
+import com.streamsets.datacollector.metrics.HdrTimer;
 
 import java.math.BigDecimal;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +44,7 @@ public class MetricsObjectMapperFactory {
     objectMapper.registerModule(new MetricsModule(TimeUnit.SECONDS, TimeUnit.SECONDS, false, MetricFilter.ALL));
     SimpleModule module = new SimpleModule();
     module.addSerializer(ExtendedMeter.class, new ExtendedMeterSerializer(TimeUnit.SECONDS));
+    module.addSerializer(HdrTimer.class, new HdrTimerSerializer(TimeUnit.SECONDS, TimeUnit.SECONDS));
     module.addSerializer(BigDecimal.class, new ToStringSerializer());
     objectMapper.registerModule(module);
     if (indent) {
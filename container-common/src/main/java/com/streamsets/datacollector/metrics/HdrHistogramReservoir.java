@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reservoir backed by HdrHistogram.
+ *
+ * Values are recorded into a {@link Recorder}, which is wait-free for writers, so unlike the decaying and sliding
+ * window reservoirs recording only takes a lock when the time slot changes. The recorded values are harvested into a
+ * ring of histograms covering the configured time window, either by readers or by the first update of a new slot, so
+ * that every value is accounted to the slot it was recorded in. The snapshot is the union of the ring. Values are recorded with two significant
+ * digits, so every percentile (including p99.9 and above) is accurate to 1% regardless of the number of values.
+ *
+ * The reservoir also keeps everything recorded since the last {@link #getIntervalSnapshot()} call, so reporters can
+ * get non overlapping interval distributions without affecting the windowed snapshot.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+  private static final int SIGNIFICANT_DIGITS = 2;
+  private static final int WINDOW_SLOTS = 4;
+  // Percentile ticks per half distance used for the full percentile distribution
+  private static final int PERCENTILE_TICKS = 1;
+
+  private final Clock clock;
+  private final long lowestDiscernibleValue;
+  private final long highestTrackableValue;
+  private final long slotDuration;
+  private final Recorder recorder;
+  // Values recorded since the last harvest
+  private final LongAdder unharvested;
+  // Slot of the values recorded since the last harvest
+  private volatile long recordingSlotId;
+
+  // Guarded by this
+  private final Histogram[] slots;
+  private final long[] slotIds;
+  private final Histogram sinceLastInterval;
+  private Histogram harvested;
+
+  /**
+   * Reservoir for durations in nanoseconds, values are tracked with microsecond resolution up to one hour.
+   */
+  public HdrHistogramReservoir(long window, TimeUnit windowUnit) {
+    this(window, windowUnit, TimeUnit.MICROSECONDS.toNanos(1), TimeUnit.HOURS.toNanos(1), Clock.defaultClock());
+  }
+
+  public HdrHistogramReservoir(
+      long window,
+      TimeUnit windowUnit,
+      long lowestDiscernibleValue,
+      long highestTrackableValue,
+      Clock clock
+  ) {
+    this.clock = clock;
+    this.lowestDiscernibleValue = lowestDiscernibleValue;
+    this.highestTrackableValue = highestTrackableValue;
+    this.slotDuration = Math.max(1, windowUnit.toNanos(window) / WINDOW_SLOTS);
+    this.recorder = new Recorder(lowestDiscernibleValue, highestTrackableValue, SIGNIFICANT_DIGITS);
+    this.unharvested = new LongAdder();
+    this.recordingSlotId = currentSlotId();
+    this.slots = new Histogram[WINDOW_SLOTS];
+    this.slotIds = new long[WINDOW_SLOTS];
+    for (int i = 0; i < WINDOW_SLOTS; i++) {
+      slots[i] = createHistogram();
+      slotIds[i] = Long.MIN_VALUE;
+    }
+    this.sinceLastInterval = createHistogram();
+  }
+
+  private long currentSlotId() {
+    return Math.floorDiv(clock.getTick(), slotDuration);
+  }
+
+  private Histogram createHistogram() {
+    return new Histogram(lowestDiscernibleValue, highestTrackableValue, SIGNIFICANT_DIGITS);
+  }
+
+  @Override
+  public void update(long value) {
+    if (currentSlotId() != recordingSlotId) {
+      rotate();
+    }
+    // Out of range values would throw, durations can't be negative and anything above the range is a stall anyway
+    recorder.recordValue(Math.max(0, Math.min(value, highestTrackableValue)));
+    unharvested.increment();
+  }
+
+  private synchronized void rotate() {
+    if (currentSlotId() != recordingSlotId) {
+      harvest();
+    }
+  }
+
+  /**
+   * Number of values recorded within the time window.
+   */
+  @Override
+  public synchronized int size() {
+    long currentSlotId = currentSlotId();
+    long size = 0;
+    if (recordingSlotId > currentSlotId - WINDOW_SLOTS) {
+      // Can be briefly negative while a harvest races with an update
+      size += Math.max(0, unharvested.sum());
+    }
+    for (int i = 0; i < WINDOW_SLOTS; i++) {
+      if (slotIds[i] > currentSlotId - WINDOW_SLOTS) {
+        size += slots[i].getTotalCount();
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size);
+  }
+
+  /**
+   * Values recorded within the time window.
+   */
+  @Override
+  public synchronized HdrSnapshot getSnapshot() {
+    long currentSlotId = harvest();
+    Histogram window = createHistogram();
+    for (int i = 0; i < WINDOW_SLOTS; i++) {
+      if (slotIds[i] > currentSlotId - WINDOW_SLOTS) {
+        window.add(slots[i]);
+      }
+    }
+    return new HdrSnapshot(window);
+  }
+
+  /**
+   * Values recorded since the previous call of this method (or since creation of the reservoir).
+   */
+  public synchronized HdrSnapshot getIntervalSnapshot() {
+    harvest();
+    Histogram interval = sinceLastInterval.copy();
+    sinceLastInterval.reset();
+    return new HdrSnapshot(interval);
+  }
+
+  // Must be called while holding the lock, returns id of the current slot
+  private long harvest() {
+    harvested = recorder.getIntervalHistogram(harvested);
+    unharvested.add(-harvested.getTotalCount());
+    // The values were recorded in the recording slot, update() harvests before recording into a new one
+    long slotId = recordingSlotId;
+    int index = (int) Math.floorMod(slotId, (long) WINDOW_SLOTS);
+    if (slotIds[index] != slotId) {
+      slots[index].reset();
+      slotIds[index] = slotId;
+    }
+    slots[index].add(harvested);
+    sinceLastInterval.add(harvested);
+    long currentSlotId = currentSlotId();
+    recordingSlotId = currentSlotId;
+    return currentSlotId;
+  }
+
+  /**
+   * Snapshot over a private copy of the histogram.
+   */
+  public static class HdrSnapshot extends Snapshot {
+    private final Histogram histogram;
+
+    HdrSnapshot(Histogram histogram) {
+      this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+        throw new IllegalArgumentException(quantile + " is not in [0..1]");
+      }
+      return histogram.getValueAtPercentile(quantile * 100);
+    }
+
+    /**
+     * Full percentile distribution, percentile (0-100) to value. The distance between reported percentiles halves
+     * towards the tail, so the far tail (p99.9, p99.99, ...) is always part of the distribution.
+     */
+    public Map<Double, Long> getPercentiles() {
+      Map<Double, Long> percentiles = new LinkedHashMap<>();
+      for (HistogramIterationValue value : histogram.percentiles(PERCENTILE_TICKS)) {
+        percentiles.put(value.getPercentileLevelIteratedTo(), value.getValueIteratedTo());
+      }
+      return percentiles;
+    }
+
+    @Override
+    public long[] getValues() {
+      long[] values = new long[size()];
+      int i = 0;
+      for (HistogramIterationValue value : histogram.recordedValues()) {
+        for (long c = 0; c < value.getCountAtValueIteratedTo() && i < values.length; c++) {
+          values[i++] = value.getValueIteratedTo();
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+    }
+
+    @Override
+    public long getMax() {
+      return histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue();
+    }
+
+    @Override
+    public double getMean() {
+      return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+    }
+
+    @Override
+    public long getMin() {
+      return histogram.getTotalCount() == 0 ? 0 : histogram.getMinValue();
+    }
+
+    @Override
+    public double getStdDev() {
+      return histogram.getTotalCount() == 0 ? 0 : histogram.getStdDeviation();
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+        for (long value : getValues()) {
+          out.printf("%d%n", value);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer that keeps its durations in an {@link HdrHistogramReservoir} instead of a sliding or decaying reservoir.
+ */
+public class HdrTimer extends Timer {
+  private final HdrHistogramReservoir reservoir;
+
+  public HdrTimer(long window, TimeUnit windowUnit) {
+    this(new HdrHistogramReservoir(window, windowUnit), Clock.defaultClock());
+  }
+
+  public HdrTimer(HdrHistogramReservoir reservoir, Clock clock) {
+    super(reservoir, clock);
+    this.reservoir = reservoir;
+  }
+
+  @Override
+  public HdrHistogramReservoir.HdrSnapshot getSnapshot() {
+    return (HdrHistogramReservoir.HdrSnapshot) super.getSnapshot();
+  }
+
+  /**
+   * Durations recorded since the previous call of this method.
+   */
+  public HdrHistogramReservoir.HdrSnapshot getIntervalSnapshot() {
+    return reservoir.getIntervalSnapshot();
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.streamsets.datacollector.restapi.bean;
 
+import java.util.Map;
+
 public class TimerJson {
   long count;
   double max;
@@ -33,6 +35,8 @@ public class TimerJson {
   double mean_rate;
   String duration_units;
   String rate_units;
+  // Only present for timers backed by HdrHistogram, percentile (0-100) to duration
+  Map<String, Double> percentiles;
 
   public TimerJson() {
 
@@ -173,4 +177,12 @@ public class TimerJson {
   public void setRate_units(String rate_units) {
     this.rate_units = rate_units;
   }
+
+  public Map<String, Double> getPercentiles() {
+    return percentiles;
+  }
+
+  public void setPercentiles(Map<String, Double> percentiles) {
+    this.percentiles = percentiles;
+  }
 }
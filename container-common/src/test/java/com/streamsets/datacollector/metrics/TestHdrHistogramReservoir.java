@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import com.streamsets.datacollector.json.MetricsObjectMapperFactory;
+import com.streamsets.datacollector.restapi.bean.TimerJson;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class TestHdrHistogramReservoir {
+
+  private static class ManualClock extends Clock {
+    long tick;
+
+    @Override
+    public long getTick() {
+      return tick;
+    }
+  }
+
+  private final ManualClock clock = new ManualClock();
+
+  private HdrHistogramReservoir createReservoir() {
+    return new HdrHistogramReservoir(60, TimeUnit.SECONDS, 1, TimeUnit.HOURS.toNanos(1), clock);
+  }
+
+  @Test
+  public void testPercentiles() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    for (int i = 1; i <= 100_000; i++) {
+      reservoir.update(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(100_000, snapshot.size());
+    assertWithinPercent(micros(50_000), snapshot.getMedian());
+    assertWithinPercent(micros(99_900), snapshot.get999thPercentile());
+    assertWithinPercent(micros(100_000), snapshot.getMax());
+    assertWithinPercent(micros(1), snapshot.getMin());
+  }
+
+  private static long micros(long value) {
+    return TimeUnit.MICROSECONDS.toNanos(value);
+  }
+
+  private static void assertWithinPercent(long expected, double actual) {
+    Assert.assertEquals(expected, actual, 0.01 * expected);
+  }
+
+  @Test
+  public void testFullDistributionContainsTail() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    for (int i = 0; i < 10_000; i++) {
+      reservoir.update(1_000);
+    }
+    // A single stall must be visible in the distribution
+    reservoir.update(TimeUnit.SECONDS.toNanos(10));
+    Map<Double, Long> percentiles = reservoir.getSnapshot().getPercentiles();
+    Assert.assertFalse(percentiles.isEmpty());
+    Assert.assertEquals(100.0, percentiles.keySet().stream().mapToDouble(Double::doubleValue).max().getAsDouble(), 0);
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(10), percentiles.get(100.0), 0.01 * TimeUnit.SECONDS.toNanos(10));
+  }
+
+  @Test
+  public void testOutOfRangeValues() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    reservoir.update(-5);
+    reservoir.update(TimeUnit.DAYS.toNanos(1));
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(2, snapshot.size());
+    Assert.assertEquals(0, snapshot.getMin());
+    Assert.assertEquals(TimeUnit.HOURS.toNanos(1), snapshot.getMax(), 0.01 * TimeUnit.HOURS.toNanos(1));
+  }
+
+  @Test
+  public void testWindow() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    reservoir.update(10);
+    Assert.assertEquals(1, reservoir.getSnapshot().size());
+
+    clock.tick += TimeUnit.SECONDS.toNanos(30);
+    reservoir.update(20);
+    Assert.assertEquals(2, reservoir.getSnapshot().size());
+
+    // The first value is out of the window while the second one is still in
+    clock.tick += TimeUnit.SECONDS.toNanos(40);
+    Assert.assertEquals(1, reservoir.getSnapshot().size());
+
+    clock.tick += TimeUnit.SECONDS.toNanos(60);
+    Assert.assertEquals(0, reservoir.getSnapshot().size());
+    Assert.assertEquals(0, reservoir.getSnapshot().getMax());
+  }
+
+  @Test
+  public void testWindowWithoutReads() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    reservoir.update(10);
+
+    // Nobody read the reservoir for hours, the first value must still be out of the window
+    clock.tick += TimeUnit.HOURS.toNanos(2);
+    reservoir.update(20);
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(1, snapshot.size());
+    Assert.assertEquals(20, snapshot.getMax(), 1);
+  }
+
+  @Test
+  public void testSize() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    reservoir.update(10);
+    reservoir.update(20);
+    Assert.assertEquals(2, reservoir.size());
+    Assert.assertEquals(2, reservoir.getSnapshot().size());
+    Assert.assertEquals(2, reservoir.size());
+
+    clock.tick += TimeUnit.SECONDS.toNanos(70);
+    Assert.assertEquals(0, reservoir.size());
+  }
+
+  @Test
+  public void testIntervalSnapshot() {
+    HdrHistogramReservoir reservoir = createReservoir();
+    reservoir.update(10);
+    reservoir.update(20);
+    // Reading the windowed snapshot doesn't consume the interval
+    Assert.assertEquals(2, reservoir.getSnapshot().size());
+    Assert.assertEquals(2, reservoir.getIntervalSnapshot().size());
+
+    reservoir.update(30);
+    Snapshot interval = reservoir.getIntervalSnapshot();
+    Assert.assertEquals(1, interval.size());
+    Assert.assertEquals(30, interval.getMax(), 1);
+    Assert.assertEquals(0, reservoir.getIntervalSnapshot().size());
+    Assert.assertEquals(3, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testTimerSerialization() throws Exception {
+    HdrTimer timer = new HdrTimer(new HdrHistogramReservoir(60, TimeUnit.SECONDS), clock);
+    timer.update(10, TimeUnit.MILLISECONDS);
+    timer.update(2, TimeUnit.SECONDS);
+
+    String json = MetricsObjectMapperFactory.get().writeValueAsString(timer);
+    TimerJson timerJson = MetricsObjectMapperFactory.get().readValue(json, TimerJson.class);
+    Assert.assertEquals(2, timerJson.getCount());
+    Assert.assertEquals(2.0, timerJson.getMax(), 0.02);
+    Assert.assertEquals("seconds", timerJson.getDuration_units());
+    Assert.assertNotNull(timerJson.getPercentiles());
+    Assert.assertEquals(2.0, timerJson.getPercentiles().get("100.0"), 0.02);
+  }
+
+}
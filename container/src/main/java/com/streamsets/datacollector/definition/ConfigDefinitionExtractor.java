@@ -55,7 +55,8 @@ public abstract class ConfigDefinitionExtractor {
 
   private static final ConfigDefinitionExtractor EXTRACTOR = new ConfigDefinitionExtractor() {};
 
-  private Set<String> cycles = new HashSet<>();
+  // The extractor is a singleton used by the parallel stage library loading, cycles of each thread are kept apart
+  private final ThreadLocal<Set<String>> cycles = ThreadLocal.withInitial(HashSet::new);
 
   public static ConfigDefinitionExtractor get() {
     return EXTRACTOR;
@@ -72,7 +73,7 @@ public abstract class ConfigDefinitionExtractor {
 
   @VisibleForTesting
   Set<String> getCycles() {
-    return cycles;
+    return cycles.get();
   }
 
   private List<ErrorMessage> validate(String configPrefix, Class klass, List<String> stageGroups,
@@ -228,6 +229,7 @@ public abstract class ConfigDefinitionExtractor {
       isFullyProcessed.put(def.getName(), false);
     }
 
+    Set<String> cycles = this.cycles.get();
     cycles.clear();
 
     for (ConfigDefinition def : defs) {
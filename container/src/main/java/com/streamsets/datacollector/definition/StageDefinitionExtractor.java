@@ -194,7 +194,20 @@ public abstract class StageDefinitionExtractor {
   }
 
   public StageDefinition extract(StageLibraryDefinition libraryDef, Class<? extends Stage> klass, Object contextMsg) {
-    List<ErrorMessage> errors = validate(libraryDef, klass, contextMsg);
+    return extract(libraryDef, klass, true, contextMsg);
+  }
+
+  /**
+   * Extracts the definition without validating it first when <code>validate</code> is false, only for classes that
+   * already passed validation (unchanged since the stage library definition index was written).
+   */
+  public StageDefinition extract(
+      StageLibraryDefinition libraryDef,
+      Class<? extends Stage> klass,
+      boolean validate,
+      Object contextMsg
+  ) {
+    List<ErrorMessage> errors = validate ? validate(libraryDef, klass, contextMsg) : Collections.emptyList();
     if (errors.isEmpty()) {
       try {
         contextMsg = Utils.formatL("{} Stage='{}'", contextMsg, klass.getSimpleName());
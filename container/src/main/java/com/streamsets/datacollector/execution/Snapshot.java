@@ -26,4 +26,14 @@ public interface Snapshot extends Closeable {
 
   public InputStream getOutput() throws PipelineException;
 
+  /**
+   * Returns part of the snapshot in the same JSON format as {@link #getOutput()}.
+   *
+   * @param batch Index of the captured batch or -1 for all batches
+   * @param stageInstanceName Instance name of the stage or null for all stages
+   * @param offset Index of the first record returned from each lane, error records and event records
+   * @param len Max number of records returned from each lane, error records and event records or -1 for all records
+   */
+  public InputStream getOutput(int batch, String stageInstanceName, int offset, int len) throws PipelineException;
+
 }
@@ -35,6 +35,10 @@ public class Constants {
   public static final int MAX_ERROR_RECORDS_PER_STAGE_DEFAULT = 100;
   public static final String MAX_PIPELINE_ERRORS_KEY = "production.maxPipelineErrors";
   public static final int MAX_PIPELINE_ERRORS_DEFAULT = 100;
+  public static final String OFFSET_JOURNAL_ENABLED_KEY = "production.offsetJournal.enabled";
+  public static final boolean OFFSET_JOURNAL_ENABLED_DEFAULT = true;
+  public static final String OFFSET_JOURNAL_MAX_SIZE_KEY = "production.offsetJournal.maxSize";
+  public static final long OFFSET_JOURNAL_MAX_SIZE_DEFAULT = 4 * 1024 * 1024;
   public static final String OBSERVER_QUEUE_SIZE_KEY = "observer.queue.size";
   public static final int OBSERVER_QUEUE_SIZE_DEFAULT = 100;
   public static final String SNAPSHOT_MAX_BATCH_SIZE_KEY = "snapshot.maxBatchSize";
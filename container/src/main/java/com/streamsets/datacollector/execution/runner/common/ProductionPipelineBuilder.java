@@ -117,7 +117,21 @@ public class ProductionPipelineBuilder {
       sourceOffsetTracker = new ProductionSourceOffsetCommitterOffsetTracker(name, rev, runtimeInfo,
         (OffsetCommitter) pipeline.getSource());
     } else {
-      sourceOffsetTracker = new ProductionSourceOffsetTracker(name, rev, runtimeInfo);
+      ProductionSourceOffsetTracker productionOffsetTracker;
+      if (configuration.get(Constants.OFFSET_JOURNAL_ENABLED_KEY, Constants.OFFSET_JOURNAL_ENABLED_DEFAULT)) {
+        productionOffsetTracker = new ProductionSourceOffsetTracker(
+            name,
+            rev,
+            runtimeInfo,
+            runner.getMetrics(),
+            configuration.get(Constants.OFFSET_JOURNAL_MAX_SIZE_KEY, Constants.OFFSET_JOURNAL_MAX_SIZE_DEFAULT)
+        );
+      } else {
+        productionOffsetTracker = new ProductionSourceOffsetTracker(name, rev, runtimeInfo);
+      }
+      // This run owns the offsets, pick up whatever a previous run left in the journal
+      productionOffsetTracker.recover();
+      sourceOffsetTracker = productionOffsetTracker;
     }
     runner.setOffsetTracker(sourceOffsetTracker);
     runner.setPipelineStartTime(startTime);
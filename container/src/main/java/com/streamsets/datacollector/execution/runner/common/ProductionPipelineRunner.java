@@ -68,6 +68,7 @@ import com.streamsets.datacollector.runner.StagePipe;
 import com.streamsets.datacollector.runner.StageRuntime;
 import com.streamsets.datacollector.runner.production.BadRecordsHandler;
 import com.streamsets.datacollector.runner.production.PipelineErrorNotificationRequest;
+import com.streamsets.datacollector.runner.production.ProductionSourceOffsetTracker;
 import com.streamsets.datacollector.runner.production.ReportErrorDelegate;
 import com.streamsets.datacollector.runner.production.StatsAggregationHandler;
 import com.streamsets.datacollector.util.AggregatorUtil;
@@ -148,6 +149,7 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
   private final Counter batchErrorMessagesCounter;
   private final Counter memoryConsumedCounter;
   private final Histogram runnersHistogram;
+  private final Histogram runnerWaitTimeHistogram;
   private MetricRegistryJson metricRegistryJson;
   private Long rateLimit;
 
@@ -211,7 +213,7 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
     this.errorListeners = new ArrayList<>();
 
     MetricsConfigurator.registerPipeline(pipelineName, revision);
-    batchProcessingTimer = MetricsConfigurator.createTimer(metrics, "pipeline.batchProcessing", pipelineName, revision);
+    batchProcessingTimer = MetricsConfigurator.createHdrTimer(metrics, "pipeline.batchProcessing", pipelineName, revision);
     batchCountMeter = MetricsConfigurator.createMeter(metrics, "pipeline.batchCount", pipelineName, revision);
     batchCountCounter = MetricsConfigurator.createCounter(metrics, "pipeline.batchCount", pipelineName, revision);
     batchInputRecordsHistogram = MetricsConfigurator.createHistogram5Min(metrics, "pipeline.inputRecordsPerBatch",
@@ -241,6 +243,8 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
     memoryConsumedCounter = MetricsConfigurator.createCounter(metrics, "pipeline.memoryConsumed", pipelineName,
       revision);
     runnersHistogram = MetricsConfigurator.createHistogram5Min(metrics, "pipeline.runners", pipelineName, revision);
+    runnerWaitTimeHistogram = MetricsConfigurator.createHdrHistogram5Min(metrics, "pipeline.runnerWaitTime", pipelineName,
+      revision);
   }
 
   public void setObserveRequests(BlockingQueue<Object> observeRequests) {
@@ -379,7 +383,12 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
     this.pipes = pipes;
     this.badRecordsHandler = badRecordsHandler;
     this.statsAggregationHandler = statsAggregationHandler;
-    this.runnerPool = new RunnerPool<>(pipes, pipeContext.getRuntimeStats(), runnersHistogram);
+    this.runnerPool = new RunnerPool<>(
+      pipes,
+      pipeContext.getRuntimeStats(),
+      runnersHistogram,
+      runnerWaitTimeHistogram
+    );
 
     // And we're officially running!
     this.running = true;
@@ -746,6 +755,10 @@ public class ProductionPipelineRunner implements PipelineRunner, PushSourceConte
       }
     } finally {
         destroyLock.unlock();
+        // Compact journaled offsets into the offset file now that no runner can commit anymore
+        if (offsetTracker instanceof ProductionSourceOffsetTracker) {
+          ((ProductionSourceOffsetTracker) offsetTracker).close();
+        }
     }
   }
 
@@ -15,17 +15,29 @@
  */
 package com.streamsets.datacollector.execution.snapshot.common;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.streamsets.datacollector.execution.Snapshot;
 import com.streamsets.datacollector.execution.SnapshotInfo;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
 import com.streamsets.datacollector.runner.PipelineRuntimeException;
 import com.streamsets.datacollector.util.ContainerError;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
 
+/**
+ * Snapshot stored as a single JSON document. Reading only part of such snapshot requires parsing the whole document,
+ * snapshots stored in the binary format are read more efficiently.
+ */
 public class SnapshotImpl implements Snapshot, Closeable {
 
   private SnapshotInfo snapshotInfo;
@@ -56,6 +68,68 @@ public class SnapshotImpl implements Snapshot, Closeable {
     return null;
   }
 
+  @Override
+  public InputStream getOutput(int batch, String stageInstanceName, int offset, int len)
+      throws PipelineRuntimeException {
+    if (batch < 0 && stageInstanceName == null && offset <= 0 && len < 0) {
+      return getOutput();
+    }
+    if (snapshotFile == null) {
+      return null;
+    }
+    ObjectMapper json = ObjectMapperFactory.get();
+    try (InputStream in = new FileInputStream(snapshotFile)) {
+      // Records are filtered as JSON trees, there is no need to convert them to records and back
+      JsonNode snapshotBatches = json.readTree(in).path("snapshotBatches");
+      ArrayNode result = json.createArrayNode();
+      for (int i = 0; i < snapshotBatches.size(); i++) {
+        if (batch >= 0 && batch != i) {
+          continue;
+        }
+        ArrayNode stageOutputs = result.addArray();
+        for (JsonNode stageOutput : snapshotBatches.get(i)) {
+          if (stageInstanceName == null || stageInstanceName.equals(stageOutput.path("instanceName").asText())) {
+            stageOutputs.add(window(json, (ObjectNode) stageOutput, offset, len));
+          }
+        }
+      }
+      ObjectNode root = json.createObjectNode();
+      root.set("snapshotBatches", result);
+      output = new ByteArrayInputStream(json.writeValueAsBytes(root));
+      return output;
+    } catch (Exception ex) {
+      throw new PipelineRuntimeException(ContainerError.CONTAINER_0600, snapshotInfo.getId(), snapshotInfo.getName(),
+        snapshotInfo.getRev(), ex.toString(), ex);
+    }
+  }
+
+  private static ObjectNode window(ObjectMapper json, ObjectNode stageOutput, int offset, int len) {
+    JsonNode output = stageOutput.get("output");
+    if (output != null && output.isObject()) {
+      Iterator<Map.Entry<String, JsonNode>> lanes = output.fields();
+      while (lanes.hasNext()) {
+        Map.Entry<String, JsonNode> lane = lanes.next();
+        lane.setValue(window(json, lane.getValue(), offset, len));
+      }
+    }
+    stageOutput.set("errorRecords", window(json, stageOutput.get("errorRecords"), offset, len));
+    stageOutput.set("eventRecords", window(json, stageOutput.get("eventRecords"), offset, len));
+    return stageOutput;
+  }
+
+  private static JsonNode window(ObjectMapper json, JsonNode records, int offset, int len) {
+    if (records == null || !records.isArray()) {
+      return records;
+    }
+    int from = Math.min(Math.max(0, offset), records.size());
+    int to = len < 0 ? records.size() : (int) Math.min(records.size(), (long) from + len);
+    ArrayNode windowed = json.createArrayNode();
+    for (int i = from; i < to; i++) {
+      windowed.add(records.get(i));
+    }
+    return windowed;
+  }
+
   @Override
   public void close() throws IOException {
     snapshotInfo = null;
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.execution.snapshot.file;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
+import com.streamsets.datacollector.record.io.RecordWriterReaderFactory;
+import com.streamsets.datacollector.runner.StageOutput;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.RecordReader;
+import com.streamsets.pipeline.api.impl.ErrorMessage;
+import com.streamsets.pipeline.api.impl.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Random access reader of the binary snapshot format written by {@link BinarySnapshotWriter}. Only the index is kept
+ * in memory, stage outputs are decoded on request and only the records within the requested window are materialized.
+ */
+class BinarySnapshotReader implements Closeable {
+  private static final TypeReference<List<ErrorMessage>> ERROR_MESSAGES_TYPE =
+      new TypeReference<List<ErrorMessage>>() {};
+
+  static class IndexEntry {
+    private final String instanceName;
+    private final long offset;
+    private final long length;
+
+    IndexEntry(String instanceName, long offset, long length) {
+      this.instanceName = instanceName;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    String getInstanceName() {
+      return instanceName;
+    }
+
+    long getOffset() {
+      return offset;
+    }
+
+    long getLength() {
+      return length;
+    }
+  }
+
+  private final ObjectMapper json = ObjectMapperFactory.get();
+  private final FileChannel channel;
+  private final List<List<IndexEntry>> index;
+
+  BinarySnapshotReader(File file) throws IOException {
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      index = readIndex();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private List<List<IndexEntry>> readIndex() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(8);
+    readFully(header, 0);
+    if (header.getInt(0) != BinarySnapshotWriter.MAGIC) {
+      throw new IOException("Not a binary snapshot file");
+    }
+    if (header.getInt(4) != BinarySnapshotWriter.VERSION) {
+      throw new IOException(Utils.format("Unsupported binary snapshot version '{}'", header.getInt(4)));
+    }
+    ByteBuffer trailer = ByteBuffer.allocate(8);
+    readFully(trailer, channel.size() - 8);
+    long indexOffset = trailer.getLong(0);
+
+    DataInputStream in = openStream(indexOffset, channel.size() - 8 - indexOffset);
+    int batches = in.readInt();
+    List<List<IndexEntry>> entries = new ArrayList<>(batches);
+    for (int i = 0; i < batches; i++) {
+      int stages = in.readInt();
+      List<IndexEntry> batch = new ArrayList<>(stages);
+      for (int j = 0; j < stages; j++) {
+        batch.add(new IndexEntry(in.readUTF(), in.readLong(), in.readLong()));
+      }
+      entries.add(Collections.unmodifiableList(batch));
+    }
+    return Collections.unmodifiableList(entries);
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Truncated binary snapshot file");
+      }
+    }
+  }
+
+  private DataInputStream openStream(long offset, long length) throws IOException {
+    channel.position(offset);
+    return new DataInputStream(new BufferedInputStream(ByteStreams.limit(Channels.newInputStream(channel), length)));
+  }
+
+  int getBatchCount() {
+    return index.size();
+  }
+
+  List<IndexEntry> getStages(int batch) {
+    return index.get(batch);
+  }
+
+  /**
+   * Decodes one stage output. The records of each lane, the error records and the event records are limited to the
+   * window starting at offset with at most len records (all of them if len is negative).
+   */
+  StageOutput read(IndexEntry entry, int offset, int len) throws IOException {
+    // The stream is not closed on purpose, closing it would close the channel
+    DataInputStream in = new DataInputStream(
+        new InflaterInputStream(openStream(entry.getOffset(), entry.getLength()))
+    );
+    String instanceName = in.readUTF();
+    Map<String, List<Record>> output = null;
+    int lanes = in.readInt();
+    if (lanes >= 0) {
+      output = new LinkedHashMap<>();
+      for (int i = 0; i < lanes; i++) {
+        String lane = in.readUTF();
+        output.put(lane, readRecords(in, offset, len));
+      }
+    }
+    List<Record> errorRecords = readRecords(in, offset, len);
+    List<Record> eventRecords = readRecords(in, offset, len);
+    List<ErrorMessage> stageErrors = null;
+    int stageErrorsLength = in.readInt();
+    if (stageErrorsLength >= 0) {
+      byte[] bytes = new byte[stageErrorsLength];
+      in.readFully(bytes);
+      stageErrors = json.readValue(bytes, ERROR_MESSAGES_TYPE);
+    }
+    return new StageOutput(instanceName, output, errorRecords, stageErrors, eventRecords);
+  }
+
+  private List<Record> readRecords(DataInputStream in, int offset, int len) throws IOException {
+    int count = in.readInt();
+    if (count < 0) {
+      return null;
+    }
+    int length = in.readInt();
+    int from = Math.min(offset, count);
+    int to = len < 0 ? count : (int) Math.min(count, (long) from + len);
+    if (from >= to) {
+      ByteStreams.skipFully(in, length);
+      return new ArrayList<>();
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    List<Record> records = new ArrayList<>(to - from);
+    RecordReader reader = RecordWriterReaderFactory.createRecordReader(new ByteArrayInputStream(bytes), 0, -1);
+    try {
+      for (int i = 0; i < to; i++) {
+        Record record = reader.readRecord();
+        if (i >= from) {
+          records.add(record);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return records;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.execution.snapshot.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.CountingOutputStream;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
+import com.streamsets.datacollector.record.io.RecordEncoding;
+import com.streamsets.datacollector.record.io.RecordWriterReaderFactory;
+import com.streamsets.datacollector.restapi.bean.BeanHelper;
+import com.streamsets.datacollector.runner.StageOutput;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.RecordWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes snapshot data in the binary snapshot format.
+ *
+ * File layout:
+ * <pre>
+ *   int magic, int version
+ *   block*                 one deflate compressed block per stage output of each captured batch
+ *   index                  int batches, per batch: int stages, per stage: UTF instanceName, long offset, long length
+ *   long indexOffset
+ * </pre>
+ *
+ * Block layout (before compression):
+ * <pre>
+ *   UTF instanceName
+ *   int lanes, per lane: UTF lane, records
+ *   records                error records
+ *   records                event records
+ *   int length, bytes      stage errors as JSON
+ * </pre>
+ * where records is <code>int count, int length, bytes</code> with the bytes written by a JSON record writer. Null
+ * collections are written with count/length -1. JSON is used rather than Kryo, whose encoding depends on the layout
+ * of the record classes and could leave snapshots unreadable after an upgrade.
+ *
+ * Because every stage output is compressed separately and the index is at the end of the file, a reader can decode
+ * the output of a single stage in a single batch without touching the rest of the file.
+ */
+class BinarySnapshotWriter {
+  static final int MAGIC = 0x53444353; // SDCS
+  static final int VERSION = 1;
+
+  private final ObjectMapper json = ObjectMapperFactory.getOneLine();
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+
+  void write(OutputStream os, List<List<StageOutput>> snapshotBatches) throws IOException {
+    CountingOutputStream counting = new CountingOutputStream(os);
+    DataOutputStream out = new DataOutputStream(counting);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    List<List<BinarySnapshotReader.IndexEntry>> index = new ArrayList<>(snapshotBatches.size());
+    for (List<StageOutput> batch : snapshotBatches) {
+      List<BinarySnapshotReader.IndexEntry> batchIndex = new ArrayList<>(batch.size());
+      for (StageOutput stageOutput : batch) {
+        long offset = counting.getCount();
+        writeBlock(counting, stageOutput);
+        batchIndex.add(new BinarySnapshotReader.IndexEntry(
+            stageOutput.getInstanceName(),
+            offset,
+            counting.getCount() - offset
+        ));
+      }
+      index.add(batchIndex);
+    }
+
+    long indexOffset = counting.getCount();
+    out.writeInt(index.size());
+    for (List<BinarySnapshotReader.IndexEntry> batchIndex : index) {
+      out.writeInt(batchIndex.size());
+      for (BinarySnapshotReader.IndexEntry entry : batchIndex) {
+        out.writeUTF(entry.getInstanceName());
+        out.writeLong(entry.getOffset());
+        out.writeLong(entry.getLength());
+      }
+    }
+    out.writeLong(indexOffset);
+    out.flush();
+  }
+
+  private void writeBlock(OutputStream os, StageOutput stageOutput) throws IOException {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      // Not closed as that would close the file
+      DeflaterOutputStream deflated = new DeflaterOutputStream(os, deflater, 64 * 1024);
+      DataOutputStream out = new DataOutputStream(deflated);
+      out.writeUTF(stageOutput.getInstanceName());
+      Map<String, List<Record>> output = stageOutput.getOutput();
+      if (output == null) {
+        out.writeInt(-1);
+      } else {
+        out.writeInt(output.size());
+        for (Map.Entry<String, List<Record>> entry : output.entrySet()) {
+          out.writeUTF(entry.getKey());
+          writeRecords(out, entry.getValue());
+        }
+      }
+      writeRecords(out, stageOutput.getErrorRecords());
+      writeRecords(out, stageOutput.getEventRecords());
+      if (stageOutput.getStageErrors() == null) {
+        out.writeInt(-1);
+      } else {
+        byte[] stageErrors = json.writeValueAsBytes(BeanHelper.wrapErrorMessages(stageOutput.getStageErrors()));
+        out.writeInt(stageErrors.length);
+        out.write(stageErrors);
+      }
+      out.flush();
+      deflated.finish();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private void writeRecords(DataOutputStream out, List<Record> records) throws IOException {
+    if (records == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(records.size());
+    recordBuffer.reset();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(RecordEncoding.JSON1, recordBuffer);
+    for (Record record : records) {
+      writer.write(record);
+    }
+    writer.close();
+    out.writeInt(recordBuffer.size());
+    recordBuffer.writeTo(out);
+  }
+
+}
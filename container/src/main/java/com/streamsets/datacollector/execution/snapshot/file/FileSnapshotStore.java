@@ -19,13 +19,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.streamsets.datacollector.execution.Snapshot;
 import com.streamsets.datacollector.execution.SnapshotInfo;
 import com.streamsets.datacollector.execution.SnapshotStore;
-import com.streamsets.datacollector.execution.snapshot.common.SnapshotData;
 import com.streamsets.datacollector.execution.snapshot.common.SnapshotImpl;
 import com.streamsets.datacollector.execution.snapshot.common.SnapshotInfoImpl;
 import com.streamsets.datacollector.io.DataStore;
 import com.streamsets.datacollector.json.ObjectMapperFactory;
 import com.streamsets.datacollector.main.RuntimeInfo;
-import com.streamsets.datacollector.restapi.bean.SnapshotDataJson;
 import com.streamsets.datacollector.restapi.bean.SnapshotInfoJson;
 import com.streamsets.datacollector.runner.PipelineRuntimeException;
 import com.streamsets.datacollector.runner.StageOutput;
@@ -48,7 +46,9 @@ import java.util.Collections;
 import java.util.List;
 
 public class FileSnapshotStore implements SnapshotStore {
+  // Snapshots written by older versions, still readable
   private static final String SNAPSHOT_FILE_NAME = "snapshot.json";
+  private static final String BINARY_SNAPSHOT_FILE_NAME = "snapshot.bin";
   private static final String INFO_FILE_NAME = "info.json";
   private final LockCache<String> lockCache;
   private final RuntimeInfo runtimeInfo;
@@ -131,6 +131,9 @@ public class FileSnapshotStore implements SnapshotStore {
     synchronized (lockCache.getLock(name)) {
       SnapshotInfo info = getInfo(name, rev, id);
       File data = getData(name, rev, id);
+      if (data != null && data.getName().equals(BINARY_SNAPSHOT_FILE_NAME)) {
+        return new BinarySnapshot(info, data);
+      }
       return new SnapshotImpl(info, data);
     }
   }
@@ -193,7 +196,10 @@ public class FileSnapshotStore implements SnapshotStore {
   }
 
   File getData(String name, String rev, String id) throws PipelineRuntimeException {
-    File dataFile = getPipelineSnapshotFile(name, rev, id);
+    File dataFile = getPipelineSnapshotFile(name, rev, id, BINARY_SNAPSHOT_FILE_NAME);
+    if (!dataFile.exists()) {
+      dataFile = getPipelineSnapshotFile(name, rev, id, SNAPSHOT_FILE_NAME);
+    }
     if(dataFile.exists()) {
       return dataFile;
     } else {
@@ -201,9 +207,9 @@ public class FileSnapshotStore implements SnapshotStore {
     }
   }
 
-  private File getPipelineSnapshotFile(String pipelineName, String rev, String snapshotName) {
+  private File getPipelineSnapshotFile(String pipelineName, String rev, String snapshotName, String fileName) {
     return new File(PipelineDirectoryUtil.getPipelineSnapshotDir(runtimeInfo, pipelineName, rev, snapshotName),
-      SNAPSHOT_FILE_NAME);
+      fileName);
   }
 
   private File getPipelineSnapshotInfoFile(String name, String rev, String id) {
@@ -227,10 +233,15 @@ public class FileSnapshotStore implements SnapshotStore {
 
   private void persistSnapshot(String name, String rev, String id, List<List<StageOutput>> snapshotBatches)
     throws PipelineRuntimeException {
-    DataStore dataStore = new DataStore(getPipelineSnapshotFile(name, rev, id));
+    DataStore dataStore = new DataStore(getPipelineSnapshotFile(name, rev, id, BINARY_SNAPSHOT_FILE_NAME));
     try (OutputStream out = dataStore.getOutputStream()) {
-      json.writeValue(out, new SnapshotDataJson(new SnapshotData(snapshotBatches)));
+      new BinarySnapshotWriter().write(out, snapshotBatches);
       dataStore.commit(out);
+      // Don't leave behind data of the same snapshot written by an older version
+      File legacyFile = getPipelineSnapshotFile(name, rev, id, SNAPSHOT_FILE_NAME);
+      if (legacyFile.exists() && !legacyFile.delete()) {
+        throw new IOException("Can't delete " + legacyFile);
+      }
     } catch (IOException e) {
       throw new PipelineRuntimeException(ContainerError.CONTAINER_0603, id, name, rev, e.toString(), e);
     } finally {
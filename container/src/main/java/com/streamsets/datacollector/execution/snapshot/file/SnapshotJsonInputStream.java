@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.execution.snapshot.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
+import com.streamsets.datacollector.restapi.bean.StageOutputJson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Renders a binary snapshot as the JSON document of {@link com.streamsets.datacollector.restapi.bean.SnapshotDataJson}
+ * while it's being read. Only one stage output is decoded and serialized at a time, so memory use doesn't depend on
+ * the size of the snapshot.
+ */
+class SnapshotJsonInputStream extends InputStream {
+  private static final byte[] PREFIX = "{\"snapshotBatches\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectMapper json = ObjectMapperFactory.getOneLine();
+  private final BinarySnapshotReader reader;
+  private final int lastBatch;
+  private final String stageInstanceName;
+  private final int offset;
+  private final int len;
+  private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+  private byte[] buffer;
+  private int position;
+  private int batch;
+  private int stage;
+  private boolean firstBatch = true;
+  private boolean batchWritten;
+  private boolean done;
+
+  /**
+   * @param batch Index of the batch to render or -1 to render all batches
+   * @param stageInstanceName Instance name of the stage to render or null to render all stages
+   * @param offset Index of the first record of each record list to render
+   * @param len Max number of records of each record list to render, all records if negative
+   */
+  SnapshotJsonInputStream(BinarySnapshotReader reader, int batch, String stageInstanceName, int offset, int len) {
+    this.reader = reader;
+    this.batch = batch < 0 ? 0 : batch;
+    this.lastBatch = batch < 0 ? reader.getBatchCount() - 1 : Math.min(batch, reader.getBatchCount() - 1);
+    this.stageInstanceName = stageInstanceName;
+    this.offset = Math.max(0, offset);
+    this.len = len;
+    this.buffer = PREFIX;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureData()) {
+      return -1;
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!ensureData()) {
+      return -1;
+    }
+    int n = Math.min(length, buffer.length - position);
+    System.arraycopy(buffer, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  private boolean ensureData() throws IOException {
+    while (position >= buffer.length) {
+      if (done) {
+        return false;
+      }
+      nextChunk();
+    }
+    return true;
+  }
+
+  // Renders the next stage output (with the batch delimiters around it) or the end of the document
+  private void nextChunk() throws IOException {
+    chunk.reset();
+    while (chunk.size() == 0) {
+      if (batch > lastBatch) {
+        chunk.write(SUFFIX);
+        done = true;
+        break;
+      }
+      List<BinarySnapshotReader.IndexEntry> stages = reader.getStages(batch);
+      if (stage == 0) {
+        if (!firstBatch) {
+          chunk.write(',');
+        }
+        chunk.write('[');
+        firstBatch = false;
+      }
+      while (stage < stages.size()) {
+        BinarySnapshotReader.IndexEntry entry = stages.get(stage++);
+        if (stageInstanceName == null || stageInstanceName.equals(entry.getInstanceName())) {
+          if (batchWritten) {
+            chunk.write(',');
+          }
+          json.writeValue(chunk, new StageOutputJson(reader.read(entry, offset, len)));
+          batchWritten = true;
+          break;
+        }
+      }
+      if (stage >= stages.size()) {
+        chunk.write(']');
+        batch++;
+        stage = 0;
+        batchWritten = false;
+      }
+    }
+    buffer = chunk.toByteArray();
+    position = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.streamsets.datacollector.record.FieldTreeReader;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.ext.JsonRecordWriter;
@@ -57,7 +58,7 @@ public class JsonRecordWriterImpl implements JsonRecordWriter {
     if (closed) {
       throw new IOException("generator has been closed");
     }
-    writeFieldToJsonObject(record.get());
+    writeFieldToJsonObject(FieldTreeReader.peek(record));
   }
 
   @Override
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.codahale.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+
+/**
+ * Attributes bytes allocated and CPU time consumed by the current thread to a stage.
+ *
+ * Unlike {@link MemoryUsageCollector} this doesn't walk the heap, it only reads two per-thread counters that the JVM
+ * maintains anyway before and after each stage invocation, so it's cheap enough to stay enabled in production. Each
+ * pipeline runner has its own instance (they are not thread safe), the counters are shared by all runners of the
+ * stage while the gauge map carries the totals of each runner separately.
+ */
+public class ThreadResourceSampler {
+  private static final Logger LOG = LoggerFactory.getLogger(ThreadResourceSampler.class);
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+  private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN;
+  private static final boolean ALLOCATION_SUPPORTED;
+  private static final boolean CPU_TIME_SUPPORTED;
+
+  static {
+    ALLOCATION_MX_BEAN = THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean ?
+        (com.sun.management.ThreadMXBean) THREAD_MX_BEAN : null;
+    ALLOCATION_SUPPORTED = ALLOCATION_MX_BEAN != null && enableAllocatedMemory();
+    CPU_TIME_SUPPORTED = enableCpuTime();
+    LOG.debug("Thread allocation accounting supported '{}', CPU time accounting supported '{}'",
+        ALLOCATION_SUPPORTED, CPU_TIME_SUPPORTED);
+  }
+
+  private static boolean enableAllocatedMemory() {
+    try {
+      if (!ALLOCATION_MX_BEAN.isThreadAllocatedMemorySupported()) {
+        return false;
+      }
+      if (!ALLOCATION_MX_BEAN.isThreadAllocatedMemoryEnabled()) {
+        ALLOCATION_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+      }
+      return true;
+    } catch (UnsupportedOperationException | SecurityException e) {
+      LOG.warn("Can't enable thread allocation accounting: {}", e.toString());
+      return false;
+    }
+  }
+
+  private static boolean enableCpuTime() {
+    try {
+      if (!THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()) {
+        return false;
+      }
+      if (!THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+        THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+      }
+      return true;
+    } catch (UnsupportedOperationException | SecurityException e) {
+      LOG.warn("Can't enable thread CPU time accounting: {}", e.toString());
+      return false;
+    }
+  }
+
+  public static boolean isAllocationSupported() {
+    return ALLOCATION_SUPPORTED;
+  }
+
+  public static boolean isCpuTimeSupported() {
+    return CPU_TIME_SUPPORTED;
+  }
+
+  /**
+   * Bytes allocated so far by the current thread or -1 if the JVM doesn't support it.
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    return ALLOCATION_SUPPORTED ? ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+  }
+
+  /**
+   * CPU time in nanoseconds consumed so far by the current thread or -1 if the JVM doesn't support it.
+   */
+  public static long getCurrentThreadCpuTime() {
+    return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+  }
+
+  private final Counter allocatedBytesCounter;
+  private final Counter cpuTimeCounter;
+  private final Map<String, Object> runnerUsage;
+  private final String allocatedBytesKey;
+  private final String cpuTimeKey;
+
+  private long startAllocatedBytes;
+  private long startCpuTime;
+  private long runnerAllocatedBytes;
+  private long runnerCpuTime;
+
+  /**
+   * @param allocatedBytesCounter Counter of bytes allocated by the stage
+   * @param cpuTimeCounter Counter of CPU time consumed by the stage in nanoseconds
+   * @param runnerUsage Gauge map the totals of this runner are published to
+   * @param runnerId Id of the pipeline runner this sampler belongs to
+   */
+  public ThreadResourceSampler(
+      Counter allocatedBytesCounter,
+      Counter cpuTimeCounter,
+      Map<String, Object> runnerUsage,
+      int runnerId
+  ) {
+    this.allocatedBytesCounter = allocatedBytesCounter;
+    this.cpuTimeCounter = cpuTimeCounter;
+    this.runnerUsage = runnerUsage;
+    this.allocatedBytesKey = "Runner " + runnerId + " Allocated Bytes";
+    this.cpuTimeKey = "Runner " + runnerId + " CPU Time (ns)";
+  }
+
+  /**
+   * Samples the current thread before the stage is invoked.
+   */
+  public void start() {
+    startAllocatedBytes = getCurrentThreadAllocatedBytes();
+    startCpuTime = getCurrentThreadCpuTime();
+  }
+
+  /**
+   * Samples the current thread after the stage returned (or failed) and attributes the difference to the stage, must
+   * be called from the same thread as {@link #start()}.
+   */
+  public void stop() {
+    if (ALLOCATION_SUPPORTED) {
+      long allocated = getCurrentThreadAllocatedBytes() - startAllocatedBytes;
+      allocatedBytesCounter.inc(allocated);
+      runnerAllocatedBytes += allocated;
+      runnerUsage.put(allocatedBytesKey, runnerAllocatedBytes);
+    }
+    if (CPU_TIME_SUPPORTED) {
+      long cpuTime = getCurrentThreadCpuTime() - startCpuTime;
+      cpuTimeCounter.inc(cpuTime);
+      runnerCpuTime += cpuTime;
+      runnerUsage.put(cpuTimeKey, runnerCpuTime);
+    }
+  }
+
+}
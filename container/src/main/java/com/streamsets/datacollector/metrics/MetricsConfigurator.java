@@ -15,6 +15,7 @@
  */
 package com.streamsets.datacollector.metrics;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.ExponentiallyDecayingReservoir;
 import com.codahale.metrics.Gauge;
@@ -113,6 +114,28 @@ public class MetricsConfigurator {
     );
   }
 
+  /**
+   * Timer backed by HdrHistogram, recording doesn't lock and percentiles are accurate up to the far tail.
+   */
+  public static Timer createStageHdrTimer(MetricRegistry metrics, String nameSuffix, final String pipelineName, final String pipelineRev) {
+    String name = metricName(nameSuffix, TIMER_SUFFIX);
+    if(metrics.getTimers().containsKey(name)) {
+      return metrics.getTimers().get(name);
+    }
+
+    return createHdrTimer(metrics, nameSuffix, pipelineName, pipelineRev);
+  }
+
+  public static Timer createHdrTimer(MetricRegistry metrics, String name, final String pipelineName, final String pipelineRev) {
+    return create(
+      metrics,
+      new HdrTimer(60, TimeUnit.SECONDS),
+      metricName(name, TIMER_SUFFIX),
+      pipelineName,
+      pipelineRev
+    );
+  }
+
   public static Meter createStageMeter(MetricRegistry metrics, String nameSuffix, final String pipelineName, final String pipelineRev) {
     String name = metricName(nameSuffix, METER_SUFFIX);
     if(metrics.getMeters().containsKey(name)) {
@@ -170,6 +193,20 @@ public class MetricsConfigurator {
     );
   }
 
+  /**
+   * Histogram over the last 5 minutes backed by HdrHistogram. Meant for durations, values above one hour in
+   * nanoseconds are recorded as that maximum.
+   */
+  public static Histogram createHdrHistogram5Min(MetricRegistry metrics, String name, final String pipelineName, final String pipelineRev) {
+    return create(
+      metrics,
+      new Histogram(new HdrHistogramReservoir(5, TimeUnit.MINUTES, 1, TimeUnit.HOURS.toNanos(1), Clock.defaultClock())),
+      metricName(name, HISTOGRAM_M5_SUFFIX),
+      pipelineName,
+      pipelineRev
+    );
+  }
+
   public static Gauge<Map<String, Object>> createFrameworkGauge(MetricRegistry metricRegistry, String componentName, String metricName, Comparator<String> comparator) {
     String fullName = JMX_FRAMEWORK_PREFIX + componentName + "." + metricName + GAUGE_SUFFIX;
     Gauge<Map<String, Object>> gauge = new MapGauge(comparator);
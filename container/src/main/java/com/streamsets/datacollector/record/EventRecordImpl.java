@@ -33,8 +33,8 @@ public class EventRecordImpl extends RecordImpl implements EventRecord {
     setEventAtributes(type, version);
   }
 
-  private EventRecordImpl(RecordImpl record) {
-    super(record);
+  private EventRecordImpl(RecordImpl record, boolean deep) {
+    super(record, deep);
   }
 
   private void setEventAtributes(String type, int version) {
@@ -46,7 +46,12 @@ public class EventRecordImpl extends RecordImpl implements EventRecord {
 
   @Override
   public EventRecordImpl clone() {
-    return new EventRecordImpl(this);
+    return new EventRecordImpl(this, false);
+  }
+
+  @Override
+  public EventRecordImpl deepClone() {
+    return new EventRecordImpl(this, true);
   }
 
 
@@ -26,6 +26,8 @@ import com.streamsets.pipeline.api.impl.LocalizableString;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.impl.Utils;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -60,6 +62,33 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
   //Note: additional fields should also define in ScriptRecord
 
   private Map<String, Object> map;
+  // True while the map is shared with clones of this header, it has to be copied before it is modified
+  private transient boolean shared;
+
+  // The attributes that change on every stage hop are kept outside of the map while the record moves through the
+  // pipeline: the stages path is an interned StagePath and tracking ids are built only when somebody reads them. When
+  // set, these take precedence over the map entries. The map is updated before it's exposed or serialized (see
+  // syncAttributes()), so the serialized form of the header doesn't change.
+  private transient StagePath stagePath;
+  private transient Object trackingId;
+  private transient Object previousTrackingId;
+  private transient boolean mapOutdated;
+
+  // Tracking id built from the source id and stages path at the time it was created
+  private static final class TrackingId {
+    private final String sourceId;
+    private final StagePath stagePath;
+
+    private TrackingId(String sourceId, StagePath stagePath) {
+      this.sourceId = sourceId;
+      this.stagePath = stagePath;
+    }
+
+    @Override
+    public String toString() {
+      return sourceId + "::" + stagePath;
+    }
+  }
 
   public HeaderImpl() {
     map = new HashMap<>();
@@ -68,7 +97,21 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
   // for clone() purposes
   private HeaderImpl(HeaderImpl header) {
-    this.map = new HashMap<>(header.map);
+    this.map = header.map;
+    this.shared = true;
+    header.shared = true;
+    this.stagePath = header.stagePath;
+    this.trackingId = header.trackingId;
+    this.previousTrackingId = header.previousTrackingId;
+    this.mapOutdated = header.mapOutdated;
+  }
+
+  private Map<String, Object> writableMap() {
+    if (shared) {
+      map = new HashMap<>(map);
+      shared = false;
+    }
+    return map;
   }
 
   // Predicate interface
@@ -92,17 +135,17 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
   @Override
   public String getStagesPath() {
-    return (String) map.get(STAGES_PATH_ATTR);
+    return (stagePath != null) ? stagePath.toString() : (String) map.get(STAGES_PATH_ATTR);
   }
 
   @Override
   public String getTrackingId() {
-    return (String) map.get(TRACKING_ID_ATTR);
+    return (trackingId != null) ? trackingId.toString() : (String) map.get(TRACKING_ID_ATTR);
   }
 
   @Override
   public String getPreviousTrackingId() {
-    return (String) map.get(PREVIOUS_TRACKING_ID_ATTR);
+    return (previousTrackingId != null) ? previousTrackingId.toString() : (String) map.get(PREVIOUS_TRACKING_ID_ATTR);
   }
 
   @Override
@@ -185,14 +228,14 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
     Preconditions.checkNotNull(name, "name cannot be null");
     Preconditions.checkArgument(!name.startsWith(RESERVED_PREFIX), RESERVED_PREFIX_EXCEPTION_MSG);
     Preconditions.checkNotNull(value, "value cannot be null");
-    map.put(name, value);
+    writableMap().put(name, value);
   }
 
   @Override
   public void deleteAttribute(String name) {
     Preconditions.checkNotNull(name, "name cannot be null");
     Preconditions.checkArgument(!name.startsWith(RESERVED_PREFIX), RESERVED_PREFIX_EXCEPTION_MSG);
-    map.remove(name);
+    writableMap().remove(name);
   }
 
   // For Json serialization
@@ -253,42 +296,96 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
   public void setStageCreator(String stateCreator) {
     Preconditions.checkNotNull(stateCreator, "stateCreator cannot be null");
-    map.put(STAGE_CREATOR_INSTANCE_ATTR, stateCreator);
+    writableMap().put(STAGE_CREATOR_INSTANCE_ATTR, stateCreator);
   }
 
   public void setSourceId(String sourceId) {
     Preconditions.checkNotNull(sourceId, "sourceId cannot be null");
-    map.put(RECORD_SOURCE_ID_ATTR, sourceId);
+    writableMap().put(RECORD_SOURCE_ID_ATTR, sourceId);
   }
 
   public void setStagesPath(String stagePath) {
     Preconditions.checkNotNull(stagePath, "stagePath cannot be null");
-    map.put(STAGES_PATH_ATTR, stagePath);
+    this.stagePath = null;
+    writableMap().put(STAGES_PATH_ATTR, stagePath);
   }
 
   public void setTrackingId(String trackingId) {
     Preconditions.checkNotNull(trackingId, "trackingId cannot be null");
-    map.put(TRACKING_ID_ATTR, trackingId);
+    this.trackingId = null;
+    writableMap().put(TRACKING_ID_ATTR, trackingId);
   }
 
   public void setPreviousTrackingId(String previousTrackingId) {
     Preconditions.checkNotNull(previousTrackingId, "previousTrackingId cannot be null");
-    map.put(PREVIOUS_TRACKING_ID_ATTR, previousTrackingId);
+    this.previousTrackingId = null;
+    writableMap().put(PREVIOUS_TRACKING_ID_ATTR, previousTrackingId);
+  }
+
+  /**
+   * Appends the given stage to the stages path, without copying the stages already in the path.
+   */
+  public void addStageToStagePath(String stage) {
+    Preconditions.checkNotNull(stage, "stage cannot be null");
+    stagePath = getStagePath().append(stage);
+    mapOutdated = true;
+  }
+
+  /**
+   * Sets the tracking id to <code>sourceId::stagesPath</code> and moves the current tracking id, if any, to the
+   * previous tracking id. The tracking ids are built only when read.
+   */
+  public void createTrackingId() {
+    Object current = (trackingId != null) ? trackingId : map.get(TRACKING_ID_ATTR);
+    if (current != null) {
+      previousTrackingId = current;
+    }
+    trackingId = new TrackingId(getSourceId(), getStagePath());
+    mapOutdated = true;
+  }
+
+  private StagePath getStagePath() {
+    return (stagePath != null) ? stagePath : StagePath.of((String) map.get(STAGES_PATH_ATTR));
+  }
+
+  /**
+   * Writes the stages path and tracking ids into the attribute map, must be called before the map is exposed or the
+   * header is serialized field by field (Kryo).
+   */
+  public void syncAttributes() {
+    if (mapOutdated) {
+      Map<String, Object> attributes = writableMap();
+      if (stagePath != null) {
+        attributes.put(STAGES_PATH_ATTR, stagePath.toString());
+      }
+      if (trackingId != null) {
+        attributes.put(TRACKING_ID_ATTR, trackingId.toString());
+      }
+      if (previousTrackingId != null) {
+        attributes.put(PREVIOUS_TRACKING_ID_ATTR, previousTrackingId.toString());
+      }
+      mapOutdated = false;
+    }
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    syncAttributes();
+    out.defaultWriteObject();
   }
 
   public void setRaw(byte[] raw) {
     Preconditions.checkNotNull(raw, "raw cannot be null");
-    map.put(RAW_DATA_ATTR, raw.clone());
+    writableMap().put(RAW_DATA_ATTR, raw.clone());
   }
 
   public void setRawMimeType(String rawMime) {
     Preconditions.checkNotNull(rawMime, "rawMime cannot be null");
-    map.put(RAW_MIME_TYPE_ATTR, rawMime);
+    writableMap().put(RAW_MIME_TYPE_ATTR, rawMime);
   }
 
   public void setErrorJobId(String errorJobId) {
     Preconditions.checkNotNull(errorJobId, "errorJobId cannot be null");
-    map.put(ERROR_JOB_ID, errorJobId);
+    writableMap().put(ERROR_JOB_ID, errorJobId);
   }
 
   public void setError(String errorStage, String errorStageName, ErrorMessage errorMessage) {
@@ -316,8 +413,8 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
   }
 
   public void setErrorContext(String datacollector, String pipelineName) {
-    map.put(ERROR_DATACOLLECTOR_ID_ATTR, datacollector);
-    map.put(ERROR_PIPELINE_NAME_ATTR, pipelineName);
+    writableMap().put(ERROR_DATACOLLECTOR_ID_ATTR, datacollector);
+    writableMap().put(ERROR_PIPELINE_NAME_ATTR, pipelineName);
   }
 
   private void setError(
@@ -328,16 +425,16 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
     long errorTimestamp,
     String errorStackTrace
   ) {
-    map.put(ERROR_STAGE_ATTR, errorStage);
-    map.put(ERROR_STAGE_LABEL_ATTR, errorStageName);
-    map.put(ERROR_CODE_ATTR, errorCode);
-    map.put(ERROR_MESSAGE_ATTR, errorMessage);
-    map.put(ERROR_TIMESTAMP_ATTR, errorTimestamp);
-    map.put(ERROR_STACKTRACE, errorStackTrace);
+    writableMap().put(ERROR_STAGE_ATTR, errorStage);
+    writableMap().put(ERROR_STAGE_LABEL_ATTR, errorStageName);
+    writableMap().put(ERROR_CODE_ATTR, errorCode);
+    writableMap().put(ERROR_MESSAGE_ATTR, errorMessage);
+    writableMap().put(ERROR_TIMESTAMP_ATTR, errorTimestamp);
+    writableMap().put(ERROR_STACKTRACE, errorStackTrace);
   }
 
   public void setSourceRecord(Record record) {
-    map.put(SOURCE_RECORD_ATTR, record);
+    writableMap().put(SOURCE_RECORD_ATTR, record);
   }
 
   public Record getSourceRecord() {
@@ -348,6 +445,7 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
   @Override
   public int hashCode() {
+    syncAttributes();
     return map.hashCode();
   }
 
@@ -355,6 +453,8 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
   public boolean equals(Object obj) {
     boolean eq = this == obj;
     if (!eq && obj != null && obj instanceof HeaderImpl) {
+      syncAttributes();
+      ((HeaderImpl) obj).syncAttributes();
       Map<String, Object> otherMap = ((HeaderImpl) obj).map;
       eq = map.size() == otherMap.size();
       if (eq) {
@@ -401,6 +501,7 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
   // ImmutableMap can't have null values and our map could have, so use unmodifiable map
   public Map<String, Object> getAllAttributes() {
+    syncAttributes();
     return Collections.unmodifiableMap(map);
   }
 
@@ -409,6 +510,7 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
   }
 
   private Map<String, Object> getSystemAttributes() {
+    syncAttributes();
     Map<String, Object> existingSystemAttr = new HashMap<>();
 
     //Need to do this way due to valid null values
@@ -449,8 +551,13 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
     }
 
     // ImmutableMap can't have null values and our map could have, so use unmodifiable map
+    syncAttributes();
     Map<String, Object> old = Collections.unmodifiableMap(map);
     map = new HashMap<>(newAttrs);
+    shared = false;
+    stagePath = null;
+    trackingId = null;
+    previousTrackingId = null;
     return old;
   }
 
@@ -467,6 +574,7 @@ public class HeaderImpl implements Record.Header, Predicate<String>, Cloneable,
 
     //Set current map to just the Reserved System Attributes
     map = getSystemAttributes();
+    shared = false;
     // Add and validate each of the new user attributes
     newAttributes.forEach((k,v) -> setAttribute(k, v.toString()));
     return old;
@@ -28,15 +28,37 @@ import com.streamsets.pipeline.api.impl.Utils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 
-public class RecordImpl implements Record, Cloneable {
+/**
+ * Record implementation used by the data collector.
+ *
+ * Cloning a record is O(1): the clone and the original share the field tree and copy it lazily (copy-on-write). While
+ * the tree is shared, accessing a field through {@link #get(String)}, {@link #set(String, Field)} or
+ * {@link #delete(String)} copies only the containers along the field path plus the accessed field itself, every
+ * other subtree stays shared. Fields handed out by the record are always private to it, so they can be modified the
+ * same way as before. {@link #get()} and {@link #forEachField(FieldVisitor)} expose the whole tree and copy
+ * everything that is still shared, read only consumers should use {@link #peek()} instead which never copies.
+ *
+ * The lazy copy relies on nobody holding references to fields of the original record obtained before the clone, use
+ * {@link #deepClone()} when that can't be guaranteed (for example when the record is still owned by a stage).
+ */
+public class RecordImpl implements Record, FieldTreeReader, FieldPathResolver, Cloneable {
   private final HeaderImpl header;
   private Field value;
+  // Copy-on-write state. While the field tree is shared, the sets contain the containers that were already copied by
+  // this record (their children may still be shared) and the fields whose whole subtree is private to this record.
+  // The sets are created on first use so that a clone that is never modified stays cheap.
+  private transient boolean shared;
+  private transient Set<Field> ownedContainers;
+  private transient Set<Field> ownedFields;
   //Default true: so as to denote the record is just created
   //and initialized in a stage and did not pass through any other stage.
   private boolean isInitialRecord = true;
@@ -76,25 +98,69 @@ public class RecordImpl implements Record, Cloneable {
   // for clone() purposes
 
   protected RecordImpl(RecordImpl record) {
+    this(record, false);
+  }
+
+  protected RecordImpl(RecordImpl record, boolean deep) {
     Preconditions.checkNotNull(record, "record cannot be null");
     header = record.header.clone();
-    value = (record.value != null) ? record.value.clone() : null;
+    if (deep) {
+      value = (record.value != null) ? record.value.clone() : null;
+    } else {
+      value = record.value;
+      if (value != null) {
+        // the original doesn't own its tree anymore either
+        record.shareFieldTree();
+        shareFieldTree();
+      }
+    }
     isInitialRecord = record.isInitialRecord();
   }
 
+  private void shareFieldTree() {
+    shared = true;
+    ownedContainers = null;
+    ownedFields = null;
+  }
+
+  private void ownFieldTree() {
+    shared = false;
+    ownedContainers = null;
+    ownedFields = null;
+  }
+
+  boolean isFieldTreeShared() {
+    return shared;
+  }
+
+  private boolean isOwnedContainer(Field field) {
+    return ownedContainers != null && ownedContainers.contains(field);
+  }
+
+  private boolean isOwnedField(Field field) {
+    return ownedFields != null && ownedFields.contains(field);
+  }
+
+  private void addOwnedContainer(Field field) {
+    if (ownedContainers == null) {
+      ownedContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+    ownedContainers.add(field);
+  }
+
+  private void addOwnedField(Field field) {
+    if (ownedFields == null) {
+      ownedFields = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+    ownedFields.add(field);
+  }
+
   public void addStageToStagePath(String stage) {
-    Preconditions.checkNotNull(stage, "stage cannot be null");
-    String currentPath = (header.getStagesPath() == null) ? "" : header.getStagesPath() + ":";
-    header.setStagesPath(currentPath + stage);
+    header.addStageToStagePath(stage);
   }
 
   public void createTrackingId() {
-    String currentTrackingId = header.getTrackingId();
-    String newTrackingId = getHeader().getSourceId() + "::" + getHeader().getStagesPath();
-    if (currentTrackingId != null) {
-      header.setPreviousTrackingId(currentTrackingId);
-    }
-    header.setTrackingId(newTrackingId);
+    header.createTrackingId();
   }
 
   public boolean isInitialRecord() {
@@ -112,16 +178,172 @@ public class RecordImpl implements Record, Cloneable {
 
   @Override
   public Field get() {
+    if (isFieldTreeShared()) {
+      value = (value != null) ? copyShared(value) : null;
+      ownFieldTree();
+    }
+    return value;
+  }
+
+  @Override
+  public Field peek() {
     return value;
   }
 
   @Override
   public Field set(Field field) {
     Field oldData = value;
+    if (isFieldTreeShared() && oldData != null) {
+      oldData = copyShared(oldData);
+    }
     value = field;
+    ownFieldTree();
     return oldData;
   }
 
+  /**
+   * Returns copy of the given field of this record in which nothing is shared with other records anymore.
+   */
+  private Field copyShared(Field field) {
+    if (field == null || isOwnedField(field)) {
+      return field;
+    }
+    if (!isOwnedContainer(field)) {
+      return field.clone();
+    }
+    // this record already copied the container, only its children may still be shared
+    switch (field.getType()) {
+      case MAP:
+      case LIST_MAP:
+        for (Map.Entry<String, Field> entry : field.getValueAsMap().entrySet()) {
+          entry.setValue(copyShared(entry.getValue()));
+        }
+        break;
+      case LIST:
+        ListIterator<Field> iterator = field.getValueAsList().listIterator();
+        while (iterator.hasNext()) {
+          iterator.set(copyShared(iterator.next()));
+        }
+        break;
+      default:
+        break;
+    }
+    return field;
+  }
+
+  /**
+   * Copies the shared fields along the given path, up to the parent of the field the path points to or up to and
+   * including the field itself. Containers on the way are copied shallowly, the field itself (when included) is copied
+   * with its whole subtree.
+   */
+  private void copyPath(FieldPath fieldPath, boolean includeField) {
+    List<PathElement> elements = fieldPath.getElements();
+    int last = includeField ? elements.size() - 1 : elements.size() - 2;
+    Field parent = null;
+    for (int i = 0; i <= last; i++) {
+      PathElement element = elements.get(i);
+      Field field = childOf(parent, element);
+      if (field == null || isOwnedField(field)) {
+        // unreachable or private from here on
+        return;
+      }
+      Field copy = field;
+      if (i == last && includeField) {
+        // a container copied by an earlier access may already be referenced from outside, keep it
+        copy = isOwnedContainer(field) ? copyShared(field) : field.clone();
+        addOwnedField(copy);
+      } else if (!isOwnedContainer(field)) {
+        copy = copyContainer(field);
+      }
+      if (copy != field) {
+        replaceChild(parent, element, copy);
+      }
+      parent = copy;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Field copyContainer(Field field) {
+    Object copy;
+    if (field.getValue() == null) {
+      copy = null;
+    } else {
+      switch (field.getType()) {
+        case MAP:
+        case LIST_MAP:
+          copy = new LinkedHashMap<>((Map<String, Field>) field.getValue());
+          break;
+        case LIST:
+          copy = new ArrayList<>((List<Field>) field.getValue());
+          break;
+        default:
+          // not a container, the path can't continue below it so no need to bother
+          Field clone = field.clone();
+          addOwnedField(clone);
+          return clone;
+      }
+    }
+    Field container = Field.create(field.getType(), copy);
+    Map<String, String> attributes = field.getAttributes();
+    if (attributes != null) {
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        container.setAttribute(attribute.getKey(), attribute.getValue());
+      }
+    }
+    addOwnedContainer(container);
+    return container;
+  }
+
+  // same resolution as FieldPath, a null parent stands for the record itself
+  private Field childOf(Field parent, PathElement element) {
+    Field child = null;
+    switch (element.getType()) {
+      case ROOT:
+        child = (parent == null) ? value : parent;
+        break;
+      case MAP:
+        if (parent != null && parent.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+          Map<String, Field> map = parent.getValueAsMap();
+          child = (map != null) ? map.get(element.getName()) : null;
+        }
+        break;
+      case LIST:
+        if (parent != null && parent.getType().isOneOf(Field.Type.LIST, Field.Type.LIST_MAP)) {
+          List<Field> list = parent.getValueAsList();
+          child = (list != null && list.size() > element.getIndex()) ? list.get(element.getIndex()) : null;
+        }
+        break;
+      default:
+        break;
+    }
+    return child;
+  }
+
+  private void replaceChild(Field parent, PathElement element, Field child) {
+    switch (element.getType()) {
+      case ROOT:
+        value = child;
+        break;
+      case MAP:
+        parent.getValueAsMap().put(element.getName(), child);
+        break;
+      case LIST:
+        if (parent.getType() == Field.Type.LIST_MAP) {
+          // list view of a list-map is a copy, replace the map entry at the index instead
+          Iterator<Map.Entry<String, Field>> iterator = parent.getValueAsMap().entrySet().iterator();
+          for (int i = 0; i < element.getIndex(); i++) {
+            iterator.next();
+          }
+          iterator.next().setValue(child);
+        } else {
+          parent.getValueAsList().set(element.getIndex(), child);
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unexpected path element type " + element.getType());
+    }
+  }
+
   private static class FieldWithPath {
     private final String sqPath; //Single Quote escaped path
     private final String dqPath; //Double Quote escaped path
@@ -268,106 +490,50 @@ public class RecordImpl implements Record, Cloneable {
   }
 
   public FieldWithPath getValue() {
-    return createFieldWithPath("", "", get());
+    return createFieldWithPath("", "", value);
   }
 
-  List<PathElement> parse(String fieldPath) {
-    return PathElement.parse(fieldPath, true);
+  @Override
+  public Field get(String fieldPath) {
+    return get(FieldPath.of(fieldPath));
   }
 
-  private List<Field> get(List<PathElement> elements) {
-    List<Field> fields = new ArrayList<>(elements.size());
-    if (value != null) {
-      Field current = value;
-      for (int i = 0; current != null &&  i < elements.size(); i++) {
-        Field next = null;
-        PathElement element = elements.get(i);
-        switch (element.getType()) {
-          case ROOT:
-            fields.add(current);
-            next = current;
-            break;
-          case MAP:
-            if (current.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
-              String name = element.getName();
-              Map<String, Field> map = current.getValueAsMap();
-              if (map != null) {
-                Field field = map.get(name);
-                if (field != null) {
-                  fields.add(field);
-                  next = field;
-                }
-              }
-            }
-            break;
-          case LIST:
-            if (current.getType().isOneOf(Field.Type.LIST, Field.Type.LIST_MAP)) {
-              int index = element.getIndex();
-              List<Field> list = current.getValueAsList();
-              if (list != null) {
-                if (list.size() > index) {
-                  Field field = list.get(index);
-                  fields.add(field);
-                  next = field;
-                }
-              }
-            }
-            break;
-          case FIELD_EXPRESSION:
-          default:
-            break;
-        }
-        current = next;
-      }
+  @Override
+  public Field get(FieldPath path) {
+    Field field = path.get(value);
+    if (field != null && isFieldTreeShared() && !isOwnedField(field)) {
+      copyPath(path, true);
+      field = path.get(value);
     }
-    return fields;
+    return field;
   }
 
   @Override
-  public Field get(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
-    List<Field> fields = get(elements);
-    return (elements.size() == fields.size()) ? fields.get(fields.size() - 1) : null;
+  public Field delete(String fieldPath) {
+    return delete(FieldPath.of(fieldPath));
   }
 
-
   @Override
-  public Field delete(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
-    List<Field> fields = get(elements);
-    Field deleted = null;
-    int fieldPos = fields.size();
-    if (elements.size() == fieldPos) {
-      fieldPos--;
-
-      if (fieldPos == 0) {
-        // the field to delete must be a primitive. delete it directly.
-        deleted = value;
-        value = null;
-      } else {
-        // the field to delete is a map or list element, so to delete, you must remove it from the parent collection.
-        PathElement element = elements.get(fieldPos);
-        switch (element.getType()) {
-          case MAP:
-            deleted = fields.get(fieldPos - 1).getValueAsMap().remove(element.getName());
-            break;
-          case LIST:
-            deleted = fields.get(fieldPos - 1).getValueAsList().remove(element.getIndex());
-            break;
-          case FIELD_EXPRESSION:
-          default:
-            throw new IllegalStateException("Unexpected field type " + element.getType());
-        }
-      }
+  public Field delete(FieldPath path) {
+    if (!isFieldTreeShared()) {
+      return path.delete(this, value);
+    }
+    if (!path.has(value)) {
+      return null;
     }
-    return deleted;
+    copyPath(path, false);
+    Field deleted = path.delete(this, value);
+    return (deleted == null || isOwnedField(deleted)) ? deleted : deleted.clone();
   }
 
   @Override
   public boolean has(String fieldPath) {
-    List<PathElement> elements = parse(fieldPath);
-    List<Field> fields = get(elements);
-    return (elements.size() == fields.size());
+    return has(FieldPath.of(fieldPath));
+  }
+
+  @Override
+  public boolean has(FieldPath path) {
+    return path.has(value);
   }
 
   @Override
@@ -518,77 +684,50 @@ public class RecordImpl implements Record, Cloneable {
     return eq;
   }
 
+  /**
+   * Returns copy of the record sharing its field tree with this record, see the class documentation.
+   */
   @Override
   public RecordImpl clone() {
     return new RecordImpl(this);
   }
 
+  /**
+   * Returns copy of the record that doesn't share anything with this record.
+   */
+  public RecordImpl deepClone() {
+    return new RecordImpl(this, true);
+  }
+
   @Override
   public Field set(String fieldPath, Field newField) {
-    //get all the elements present in the fieldPath, including the newest element
-    //For example, if the existing record has /a/b/c and the argument fieldPath is /a/b/d the parser returns three
-    // elements - a, b and d
-    List<PathElement> elements = parse(fieldPath);
-    //return all *existing* fields form the list of elements
-    //In the above case it is going to return only field a and field b. Field d does not exist.
-    List<Field> fields = get(elements);
-    Field fieldToReplace;
-    int fieldPos = fields.size();
-    if (elements.size() == fieldPos) {
-      //The number of elements in the path is same as the number of fields => set use case
-      fieldPos--;
-      fieldToReplace = doSet(fieldPos, newField, elements, fields);
-    } else if (elements.size() -1 == fieldPos) {
-      //The number of elements in the path is on more than the number of fields => add use case
-      fieldToReplace = doSet(fieldPos, newField, elements, fields);
-    } else {
-      throw new IllegalArgumentException(Utils.format("Field-path '{}' not reachable", fieldPath));
-    }
-    return fieldToReplace;
+    return set(FieldPath.of(fieldPath), newField);
   }
 
-  private Field doSet(int fieldPos, Field newField, List<PathElement> elements, List<Field> fields) {
-    Field fieldToReplace = null;
-    if (fieldPos == 0) {
-      //root element
-      fieldToReplace = value;
-      value = newField;
-    } else {
-      //get the type of the element based on the output of the parser.
-      //Note that this is not the real type of the field, this is how the parser interpreted the fieldPath argument
-      //to the set API above. For example if fieldPath is /a/b parser interprets a as type map, if fieldPath is a[0]/b
-      //parser interprets a as of type list
-      switch (elements.get(fieldPos).getType()) {
-        case MAP:
-          //get the name of the field which must be added
-          String elementName = elements.get(fieldPos).getName();
-          //attempt to get the parent as a map type.
-          fieldToReplace = fields.get(fieldPos - 1).getValueAsMap().put(elementName, newField);
-          break;
-        case LIST:
-          int elementIndex = elements.get(fieldPos).getIndex();
-          Field parentField = fields.get(fieldPos - 1);
-          if(elementIndex == parentField.getValueAsList().size()){
-            //add at end
-            parentField.getValueAsList().add(newField);
-          } else {
-            //replace existing value
-            fieldToReplace = parentField.getValueAsList().set(elementIndex, newField);
-          }
-          break;
-        case FIELD_EXPRESSION:
-        case ROOT:
-          break;
-      }
+  @Override
+  public Field set(FieldPath path, Field newField) {
+    if (!isFieldTreeShared()) {
+      return path.set(this, value, newField);
+    }
+    copyPath(path, false);
+    Field replaced = path.set(this, value, newField);
+    if (!isFieldTreeShared()) {
+      // the root field was replaced, set(Field) already took care of the old one
+      return replaced;
     }
-    return fieldToReplace;
+    if (newField != null) {
+      addOwnedField(newField);
+    }
+    return (replaced == null || isOwnedField(replaced)) ? replaced : replaced.clone();
   }
 
   @Override
   public void forEachField(FieldVisitor visitor) throws StageException {
     RecordFieldImpl recordField = new RecordFieldImpl(this);
-    if (value != null) {
-      visitFieldsInternal(recordField, visitor, "", "", value);
+    // the visitor can modify any field
+    Field root = get();
+    if (root != null) {
+      visitFieldsInternal(recordField, visitor, "", "", root);
     }
   }
 
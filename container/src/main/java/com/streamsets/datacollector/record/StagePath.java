@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stages path of a record header, the colon separated list of stage instances the record went through.
+ *
+ * Paths are immutable and share their prefix with the path they were appended to, so adding a stage doesn't copy the
+ * stages that are already in the path. Paths built by appending stages to {@link #EMPTY} are interned: all records
+ * that went through the same stages share a single instance and its string form is built only once.
+ */
+final class StagePath {
+
+  // Upper bound on the number of interned children of a path, protects against unbounded distinct stage names
+  static final int MAX_INTERNED_CHILDREN = 1000;
+
+  /**
+   * Path of a record that didn't go through any stage yet, its string form is <code>null</code>.
+   */
+  static final StagePath EMPTY = new StagePath(null, null, null, true);
+
+  private final StagePath parent;
+  private final String stage;
+  private final boolean interned;
+  private volatile String path;
+  private volatile ConcurrentMap<String, StagePath> children;
+
+  private StagePath(StagePath parent, String stage, String path, boolean interned) {
+    this.parent = parent;
+    this.stage = stage;
+    this.path = path;
+    this.interned = interned;
+  }
+
+  /**
+   * Returns path with the given string form, the path is not interned.
+   */
+  static StagePath of(String path) {
+    return (path == null) ? EMPTY : new StagePath(null, null, path, false);
+  }
+
+  /**
+   * Returns this path followed by the given stage.
+   */
+  StagePath append(String stage) {
+    if (!interned) {
+      return new StagePath(this, stage, null, false);
+    }
+    ConcurrentMap<String, StagePath> map = children;
+    if (map == null) {
+      synchronized (this) {
+        map = children;
+        if (map == null) {
+          children = map = new ConcurrentHashMap<>();
+        }
+      }
+    }
+    StagePath child = map.get(stage);
+    if (child == null) {
+      boolean intern = map.size() < MAX_INTERNED_CHILDREN;
+      child = new StagePath(this, stage, null, intern);
+      if (intern) {
+        StagePath existing = map.putIfAbsent(stage, child);
+        if (existing != null) {
+          child = existing;
+        }
+      }
+    }
+    return child;
+  }
+
+  boolean isInterned() {
+    return interned;
+  }
+
+  @Override
+  public String toString() {
+    String string = path;
+    if (string == null && parent != null) {
+      String prefix = parent.toString();
+      string = (prefix == null) ? stage : prefix + ":" + stage;
+      path = string;
+    }
+    return string;
+  }
+
+}
@@ -17,6 +17,8 @@ package com.streamsets.datacollector.record.io;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.streamsets.datacollector.record.HeaderImpl;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.ext.RecordWriter;
 import com.streamsets.pipeline.api.impl.Utils;
@@ -31,6 +33,14 @@ public class KryoRecordWriter implements RecordWriter {
 
   public KryoRecordWriter(OutputStream outputStream) throws IOException {
     kryo = new Kryo();
+    // Same field serializer Kryo would use, the header just writes its lazily tracked attributes into the map first
+    kryo.addDefaultSerializer(HeaderImpl.class, new FieldSerializer<HeaderImpl>(kryo, HeaderImpl.class) {
+      @Override
+      public void write(Kryo kryo, Output output, HeaderImpl header) {
+        header.syncAttributes();
+        super.write(kryo, output, header);
+      }
+    });
     output = new Output(outputStream);
   }
 
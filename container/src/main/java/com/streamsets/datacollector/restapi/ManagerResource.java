@@ -72,6 +72,7 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import java.io.InputStream;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -680,19 +681,24 @@ public class ManagerResource {
       @PathParam("pipelineId") String pipelineId,
       @PathParam("snapshotName") String snapshotName,
       @QueryParam("rev") @DefaultValue("0") String rev,
-      @QueryParam("attachment") @DefaultValue("false") Boolean attachment
+      @QueryParam("attachment") @DefaultValue("false") Boolean attachment,
+      @QueryParam("batch") @DefaultValue("-1") int batch,
+      @QueryParam("stageInstanceName") String stageInstanceName,
+      @QueryParam("offset") @DefaultValue("0") int offset,
+      @QueryParam("len") @DefaultValue("-1") int len
   ) throws PipelineException {
     PipelineInfo pipelineInfo = store.getInfo(pipelineId);
     RestAPIUtils.injectPipelineInMDC(pipelineInfo.getTitle(), pipelineInfo.getPipelineId());
     Runner runner = manager.getRunner(pipelineId, rev);
     if(runner != null) {
+      InputStream output = runner.getSnapshot(snapshotName).getOutput(batch, stageInstanceName, offset, len);
       if (attachment) {
         String fileName = pipelineId + "_" + snapshotName;
         return Response.ok().
             header("Content-Disposition", "attachment; filename=\"" + fileName + ".json\"").
-            type(MediaType.APPLICATION_JSON).entity(runner.getSnapshot(snapshotName).getOutput()).build();
+            type(MediaType.APPLICATION_JSON).entity(output).build();
       } else {
-        return Response.ok().type(MediaType.APPLICATION_JSON).entity(runner.getSnapshot(snapshotName).getOutput()).build();
+        return Response.ok().type(MediaType.APPLICATION_JSON).entity(output).build();
       }
     }
     return Response.noContent().build();
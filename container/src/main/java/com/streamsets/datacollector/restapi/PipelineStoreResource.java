@@ -16,7 +16,6 @@
 package com.streamsets.datacollector.restapi;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.BaseEncoding;
@@ -64,6 +63,7 @@ import com.streamsets.datacollector.restapi.bean.UserJson;
 import com.streamsets.datacollector.stagelibrary.StageLibraryTask;
 import com.streamsets.datacollector.store.AclStoreTask;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
 import com.streamsets.datacollector.store.impl.AclPipelineStoreTask;
@@ -116,7 +116,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -314,105 +313,60 @@ public class PipelineStoreResource {
   ) throws PipelineException {
     RestAPIUtils.injectPipelineInMDC("*");
 
-    final List<PipelineInfo> pipelineInfoList = store.getPipelines();
     final Map<String, PipelineState> pipelineStateCache = new HashMap<>();
 
-    Collection<PipelineInfo> filteredCollection = Collections2.filter(pipelineInfoList, pipelineInfo -> {
-      String title = pipelineInfo.getTitle() != null ? pipelineInfo.getTitle() : pipelineInfo.getPipelineId();
-      if (filterText != null && !title.toLowerCase().contains(filterText.toLowerCase())) {
-        return false;
-      }
-      if (label != null) {
-        try {
-          Map<String, Object> metadata = pipelineInfo.getMetadata();
-          switch (label) {
-            case SYSTEM_ALL_PIPELINES:
-              return true;
-            case SYSTEM_EDGE_PIPELINES:
-              PipelineState state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              return state.getExecutionMode().equals(ExecutionMode.EDGE);
-            case SYSTEM_MICROSERVICE_PIPELINES:
-              return metadata != null && metadata.containsKey(MICROSERVICE);
-            case SYSTEM_RUNNING_PIPELINES:
-              state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              return state.getStatus().isActive();
-            case SYSTEM_NON_RUNNING_PIPELINES:
-              state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              return !state.getStatus().isActive();
-            case SYSTEM_INVALID_PIPELINES:
-              return !pipelineInfo.isValid();
-            case SYSTEM_ERROR_PIPELINES:
-              state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              PipelineStatus status = state.getStatus();
-              return status == PipelineStatus.START_ERROR ||
-                  status == PipelineStatus.RUNNING_ERROR ||
-                  status == PipelineStatus.RUN_ERROR ||
-                  status == PipelineStatus.CONNECT_ERROR;
-            case SYSTEM_PUBLISHED_PIPELINES:
-              state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              return !isRemotePipeline(state) && metadata != null && metadata.containsKey(DPM_PIPELINE_ID);
-            case SYSTEM_DPM_CONTROLLED_PIPELINES:
-              state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
-              pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
-              return isRemotePipeline(state);
-            case SYSTEM_LOCAL_PIPELINES:
-              return metadata == null || !metadata.containsKey(DPM_PIPELINE_ID);
-            case SHARED_WITH_ME_PIPELINES:
-              return !pipelineInfo.getCreator().equals(user);
-            default:
-              if (metadata != null && metadata.containsKey("labels")) {
-                List<String> labels = (List<String>) metadata.get("labels");
-                if (!labels.contains(label)) {
-                  return false;
-                }
-              } else {
-                return false;
-              }
+    // Filtering by pipeline labels, sorting and paging is done by the store's index, only system labels that depend
+    // on the pipeline state and sorting by status need to look at every pipeline
+    PipelineInfoIndex.Query query = new PipelineInfoIndex.Query().withFilterText(filterText);
+    if (label != null && !label.equals(SYSTEM_ALL_PIPELINES)) {
+      if (DPM_ENABLED_SYSTEM_PIPELINE_LABELS.contains(label)) {
+        query.withFilter(pipelineInfo -> {
+          try {
+            return hasSystemLabel(pipelineInfo, label, pipelineStateCache);
+          } catch (PipelineException e) {
+            LOG.error("Failed to get Pipeline State - " + e.getLocalizedMessage(), e);
+            return true;
           }
-        } catch (PipelineException e) {
-          e.printStackTrace();
-        }
-      }
-      return true;
-    });
-
-    List<PipelineInfo> filteredList = new ArrayList<>(filteredCollection);
-
-    filteredList.sort((p1, p2) -> {
-      if (order.equals(Order.DESC)) {
-        PipelineInfo tmp = p1;
-        p1 = p2;
-        p2 = tmp;
-      }
-
-      if (orderBy.equals(PipelineOrderByFields.NAME)) {
-        return p1.getPipelineId().compareTo(p2.getPipelineId());
-      }
-
-      if (orderBy.equals(PipelineOrderByFields.TITLE)) {
-        String p1Title = p1.getTitle() != null ? p1.getTitle() : p1.getPipelineId();
-        String p2Title = p2.getTitle() != null ? p2.getTitle() : p2.getPipelineId();
-        return p1Title.compareTo(p2Title);
-      }
-
-      if (orderBy.equals(PipelineOrderByFields.LAST_MODIFIED)) {
-        return p2.getLastModified().compareTo(p1.getLastModified());
-      }
-
-      if (orderBy.equals(PipelineOrderByFields.CREATED)) {
-        return p2.getCreated().compareTo(p1.getCreated());
-      }
-
-      if (orderBy.equals(PipelineOrderByFields.CREATOR)) {
-        return p1.getCreator().compareTo(p2.getCreator());
+        });
+      } else {
+        query.withLabel(label);
       }
+    }
 
-      if (orderBy.equals(PipelineOrderByFields.STATUS)) {
+    boolean descending = order.equals(Order.DESC);
+    PipelineInfoIndex.SortKey sortKey;
+    switch (orderBy) {
+      case TITLE:
+        sortKey = PipelineInfoIndex.SortKey.TITLE;
+        break;
+      case LAST_MODIFIED:
+        // Most recent first in the ascending order
+        sortKey = PipelineInfoIndex.SortKey.LAST_MODIFIED;
+        descending = !descending;
+        break;
+      case CREATED:
+        sortKey = PipelineInfoIndex.SortKey.CREATED;
+        descending = !descending;
+        break;
+      case CREATOR:
+        sortKey = PipelineInfoIndex.SortKey.CREATOR;
+        break;
+      default:
+        sortKey = PipelineInfoIndex.SortKey.ID;
+        break;
+    }
+    query.withOrder(sortKey, orderBy.equals(PipelineOrderByFields.STATUS) ? false : descending);
+
+    List<PipelineInfo> filteredList;
+    int totalCount;
+    if (orderBy.equals(PipelineOrderByFields.STATUS)) {
+      filteredList = new ArrayList<>(store.getPipelines(query).getPipelines());
+      filteredList.sort((p1, p2) -> {
+        if (order.equals(Order.DESC)) {
+          PipelineInfo tmp = p1;
+          p1 = p2;
+          p2 = tmp;
+        }
         try {
           PipelineState p1State = null;
           PipelineState p2State = null;
@@ -438,19 +392,22 @@ public class PipelineStoreResource {
         } catch (PipelineException e) {
           LOG.debug("Failed to get Pipeline State - " + e.getLocalizedMessage());
         }
-      }
-
-      return 0;
-    });
+        return 0;
+      });
+      totalCount = filteredList.size();
+      int fromIndex = Math.min(Math.max(0, offset), totalCount);
+      int toIndex = len < 0 ? totalCount : (int) Math.min(totalCount, (long) fromIndex + len);
+      filteredList = filteredList.subList(fromIndex, toIndex);
+    } else {
+      PipelineInfoIndex.Page page = store.getPipelines(query.withPage(offset, len));
+      filteredList = page.getPipelines();
+      totalCount = page.getTotalCount();
+    }
 
     Object responseData;
 
     if (filteredList.size() > 0) {
-      int endIndex = offset + len;
-      if (len == -1 || endIndex > filteredList.size()) {
-        endIndex = filteredList.size();
-      }
-      List<PipelineInfoJson> subList = BeanHelper.wrapPipelineInfo(filteredList.subList(offset, endIndex));
+      List<PipelineInfoJson> subList = BeanHelper.wrapPipelineInfo(filteredList);
       if (includeStatus) {
         List<PipelineStateJson> statusList = new ArrayList<>(subList.size());
         for (PipelineInfoJson pipelineInfoJson: subList) {
@@ -478,10 +435,61 @@ public class PipelineStoreResource {
     return Response.ok()
         .type(MediaType.APPLICATION_JSON)
         .entity(responseData)
-        .header("TOTAL_COUNT", filteredList.size())
+        .header("TOTAL_COUNT", totalCount)
         .build();
   }
 
+  private boolean hasSystemLabel(
+      PipelineInfo pipelineInfo,
+      String label,
+      Map<String, PipelineState> pipelineStateCache
+  ) throws PipelineException {
+    Map<String, Object> metadata = pipelineInfo.getMetadata();
+    PipelineState state;
+    switch (label) {
+      case SYSTEM_ALL_PIPELINES:
+        return true;
+      case SYSTEM_EDGE_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        return state.getExecutionMode().equals(ExecutionMode.EDGE);
+      case SYSTEM_MICROSERVICE_PIPELINES:
+        return metadata != null && metadata.containsKey(MICROSERVICE);
+      case SYSTEM_RUNNING_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        return state.getStatus().isActive();
+      case SYSTEM_NON_RUNNING_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        return !state.getStatus().isActive();
+      case SYSTEM_INVALID_PIPELINES:
+        return !pipelineInfo.isValid();
+      case SYSTEM_ERROR_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        PipelineStatus status = state.getStatus();
+        return status == PipelineStatus.START_ERROR ||
+            status == PipelineStatus.RUNNING_ERROR ||
+            status == PipelineStatus.RUN_ERROR ||
+            status == PipelineStatus.CONNECT_ERROR;
+      case SYSTEM_PUBLISHED_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        return !isRemotePipeline(state) && metadata != null && metadata.containsKey(DPM_PIPELINE_ID);
+      case SYSTEM_DPM_CONTROLLED_PIPELINES:
+        state = manager.getPipelineState(pipelineInfo.getPipelineId(), pipelineInfo.getLastRev());
+        pipelineStateCache.put(pipelineInfo.getPipelineId(), state);
+        return isRemotePipeline(state);
+      case SYSTEM_LOCAL_PIPELINES:
+        return metadata == null || !metadata.containsKey(DPM_PIPELINE_ID);
+      case SHARED_WITH_ME_PIPELINES:
+        return !pipelineInfo.getCreator().equals(user);
+      default:
+        return true;
+    }
+  }
+
   @Path("/pipelines/delete")
   @POST
   @ApiOperation(value = "Deletes Pipelines", response = PipelineInfoJson.class,
@@ -93,7 +93,7 @@ public class BatchContextImpl implements BatchContext {
   }
 
   private void toError(Record record, ErrorMessage errorMessage) {
-    RecordImpl recordImpl = ((RecordImpl) record).clone();
+    RecordImpl recordImpl = ((RecordImpl) record).deepClone();
     if (recordImpl.isInitialRecord()) {
       recordImpl.getHeader().setSourceRecord(recordImpl);
       recordImpl.setInitialRecord(false);
@@ -104,7 +104,7 @@ public class BatchContextImpl implements BatchContext {
 
   @Override
   public void toEvent(EventRecord record) {
-    EventRecordImpl recordImpl = ((EventRecordImpl) record).clone();
+    EventRecordImpl recordImpl = ((EventRecordImpl) record).deepClone();
     if (recordImpl.isInitialRecord()) {
       recordImpl.getHeader().setSourceRecord(recordImpl);
       recordImpl.setInitialRecord(false);
@@ -91,8 +91,9 @@ public class BatchMakerImpl implements BatchMaker {
 
   @VisibleForTesting
   RecordImpl getRecordForBatchMaker(Record record) {
-    // in the constructor we figured out if we can do recordByRef or not
-    return (recordByRef) ? (RecordImpl) record: ((RecordImpl) record).clone();
+    // in the constructor we figured out if we can do recordByRef or not, if not the stage may still hold and modify
+    // fields of the record so the copy must not share them
+    return (recordByRef) ? (RecordImpl) record: ((RecordImpl) record).deepClone();
   }
 
   @Override
@@ -110,6 +111,8 @@ public class BatchMakerImpl implements BatchMaker {
     recordCopy.addStageToStagePath(instanceName);
     recordCopy.createTrackingId();
 
+    // From here on nobody else has access to the fields of recordCopy, so the copies below share its field tree and
+    // copy only what gets modified later on
     if (recordCopy.isInitialRecord()) {
       RecordImpl recordSource = recordCopy.clone();
       recordCopy.getHeader().setSourceRecord(recordSource);
@@ -17,46 +17,71 @@ package com.streamsets.datacollector.runner;
 
 import com.codahale.metrics.Histogram;
 import com.streamsets.datacollector.util.ContainerError;
-import org.jetbrains.annotations.NotNull;
 
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Small abstraction on top of blocking queue to model a pool of runners.
+ * Pool of runners shared by all origin threads of a multithreaded pipeline.
+ *
+ * Available runners are kept in a lock-free bounded FIFO queue (ring buffer with per slot sequence numbers), so the
+ * runner returned first is borrowed first. That keeps the "least recently used first" order that idle runner detection
+ * relies on without ordering by timestamps. Each runner has one pool item allocated upfront that is reused on every
+ * return. A semaphore counts the available runners so that borrowers block when all runners are in use; when a runner
+ * is available both borrowing and returning are a few CAS operations.
  */
 public class RunnerPool <T> {
 
   /**
-   * Wrapper for the pool items to remember when they were inserted (what time).
+   * Wrapper for the pool items to remember when they were returned to the pool.
    */
-  private static class QueueItem<T> implements Comparable<QueueItem> {
+  private static class PoolItem<T> {
     /**
-     * Timestamp of the insertion to the queue.
+     * Runner instance itself.
      */
-    long timestamp;
+    final T runner;
 
     /**
-     * Runner instance itself.
+     * Whether the runner is currently in the pool, guards against returning the same runner twice.
      */
-    T runner;
+    final AtomicBoolean pooled = new AtomicBoolean(true);
 
-    QueueItem(T runner) {
-      this.runner = runner;
-      this.timestamp = System.currentTimeMillis();
-    }
+    /**
+     * System.nanoTime() of the last return to the pool, published to the borrower by the slot sequence.
+     */
+    long returnedNanos;
 
-    @Override
-    public int compareTo(@NotNull QueueItem other) {
-      return (int) (this.timestamp - other.timestamp);
+    PoolItem(T runner, long returnedNanos) {
+      this.runner = runner;
+      this.returnedNanos = returnedNanos;
     }
   }
 
   /**
-   * Internal blocking queue with all available runners
+   * Pool item of each runner, read only after construction.
+   */
+  private final Map<T, PoolItem<T>> items;
+
+  /**
+   * Ring buffer with available runners, slot sequences and positions of the next borrow (head) and return (tail).
    */
-  private final PriorityBlockingQueue<QueueItem<T>> queue;
+  private final AtomicReferenceArray<PoolItem<T>> buffer;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong head;
+  private final AtomicLong tail;
+
+  /**
+   * Number of runners that can be borrowed, always released after the runner is in the queue.
+   */
+  private final Semaphore available;
 
   /**
    * Runtime stats to keep info about available runners.
@@ -68,6 +93,11 @@ public class RunnerPool <T> {
    */
   private final Histogram histogram;
 
+  /**
+   * Histogram with time (in microseconds) spent waiting for a runner, can be null.
+   */
+  private final Histogram waitTimeHistogram;
+
   /**
    * Internal flag keeping state of the runner.
    */
@@ -79,13 +109,40 @@ public class RunnerPool <T> {
    * @param runners Runners that this pool object should manage
    */
   public RunnerPool(List<T> runners, RuntimeStats runtimeStats, Histogram histogram) {
-    queue = new PriorityBlockingQueue<>(runners.size());
-    runners.forEach(runner -> queue.add(new QueueItem<>(runner)));
+    this(runners, runtimeStats, histogram, null);
+  }
+
+  /**
+   * Create new runner pool.
+   *
+   * @param runners Runners that this pool object should manage
+   * @param waitTimeHistogram Histogram to record how long (in microseconds) callers of getRunner() waited
+   */
+  public RunnerPool(List<T> runners, RuntimeStats runtimeStats, Histogram histogram, Histogram waitTimeHistogram) {
+    int capacity = Integer.highestOneBit(Math.max(runners.size(), 1) * 2 - 1);
+    buffer = new AtomicReferenceArray<>(capacity);
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    mask = capacity - 1;
+    head = new AtomicLong();
+    tail = new AtomicLong();
+
+    long now = System.nanoTime();
+    items = new IdentityHashMap<>(runners.size());
+    for (T runner : runners) {
+      PoolItem<T> item = new PoolItem<>(runner, now);
+      items.put(runner, item);
+      offer(item);
+    }
+    available = new Semaphore(runners.size());
 
     this.runtimeStats = runtimeStats;
-    this.runtimeStats.setTotalRunners(queue.size());
-    this.runtimeStats.setAvailableRunners(queue.size());
+    this.runtimeStats.setTotalRunners(runners.size());
+    this.runtimeStats.setAvailableRunners(runners.size());
     this.histogram = histogram;
+    this.waitTimeHistogram = waitTimeHistogram;
     this.destroyed = new AtomicBoolean(false);
   }
 
@@ -98,13 +155,17 @@ public class RunnerPool <T> {
   public T getRunner() throws PipelineRuntimeException {
     validateNotDestroyed();
 
+    long start = System.nanoTime();
     try {
-      return queue.take().runner;
+      available.acquire();
+      return poll(false, 0).runner;
     } catch (InterruptedException e) {
       throw new PipelineRuntimeException(ContainerError.CONTAINER_0801, e);
     } finally {
-      runtimeStats.setAvailableRunners(queue.size());
-      histogram.update(queue.size());
+      if (waitTimeHistogram != null) {
+        waitTimeHistogram.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+      }
+      updateStats();
     }
   }
 
@@ -115,22 +176,20 @@ public class RunnerPool <T> {
    * @return First runner that fits such criteria or null if there is no such runner
    */
   public T getIdleRunner(long idleTime) {
-    // Take the first runner
-    QueueItem<T> item = queue.poll();
-
     // All runners might be currently in use, which is fine in this case.
-    if(item == null) {
+    if (!available.tryAcquire()) {
       return null;
     }
 
-    // If the runner wasn't idle for the expected time, we need to put it back to the queue (it will be added to the
-    // begging again).
-    if((System.currentTimeMillis() - item.timestamp) < idleTime) {
-      queue.add(item);
+    // Only the least recently used runner is considered, if it wasn't idle for the expected time it stays where it is
+    PoolItem<T> item = poll(true, TimeUnit.MILLISECONDS.toNanos(idleTime));
+    if (item == null) {
+      available.release();
       return null;
     }
 
     // Otherwise we do have runner that hasn't been used for at least idleTime, so we can return it now
+    updateStats();
     return item.runner;
   }
 
@@ -142,9 +201,17 @@ public class RunnerPool <T> {
   public void returnRunner(T runner) throws PipelineRuntimeException {
     validateNotDestroyed();
 
-    queue.add(new QueueItem<>(runner));
-    runtimeStats.setAvailableRunners(queue.size());
-    histogram.update(queue.size());
+    PoolItem<T> item = items.get(runner);
+    if (item == null) {
+      throw new IllegalArgumentException("Runner doesn't belong to this pool: " + runner);
+    }
+    if (!item.pooled.compareAndSet(false, true)) {
+      throw new IllegalStateException("Runner was returned to the pool more than once: " + runner);
+    }
+    item.returnedNanos = System.nanoTime();
+    offer(item);
+    available.release();
+    updateStats();
   }
 
   /**
@@ -161,8 +228,12 @@ public class RunnerPool <T> {
 
     // Validate that this thread pool have all runners back, otherwise we're missing something and that is sign of
     // a trouble.
-    if(queue.size() < runtimeStats.getTotalRunners()) {
-      throw new PipelineRuntimeException(ContainerError.CONTAINER_0802, queue.size(), runtimeStats.getTotalRunners());
+    if(available.availablePermits() < runtimeStats.getTotalRunners()) {
+      throw new PipelineRuntimeException(
+          ContainerError.CONTAINER_0802,
+          available.availablePermits(),
+          runtimeStats.getTotalRunners()
+      );
     }
   }
 
@@ -173,7 +244,68 @@ public class RunnerPool <T> {
    */
   private void validateNotDestroyed() throws PipelineRuntimeException {
     if(destroyed.get()) {
-      throw new PipelineRuntimeException(ContainerError.CONTAINER_0803, queue.size(), runtimeStats.getTotalRunners());
+      throw new PipelineRuntimeException(
+          ContainerError.CONTAINER_0803,
+          available.availablePermits(),
+          runtimeStats.getTotalRunners()
+      );
+    }
+  }
+
+  private void updateStats() {
+    int availableRunners = available.availablePermits();
+    runtimeStats.setAvailableRunners(availableRunners);
+    histogram.update(availableRunners);
+  }
+
+  /**
+   * Appends the item to the queue. The queue has a slot for every runner, so it's never full.
+   */
+  private void offer(PoolItem<T> item) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long diff = sequences.get(index) - position;
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          buffer.lazySet(index, item);
+          // Publishes the item (and its timestamp) to the borrower
+          sequences.set(index, position + 1);
+          return;
+        }
+      } else if (diff < 0) {
+        // The runner that was in this slot was already borrowed, but the slot isn't released yet
+        Thread.yield();
+      }
+      position = tail.get();
+    }
+  }
+
+  /**
+   * Removes the head of the queue, the caller must hold a permit so that there is an item for it. If onlyIdle is true,
+   * the head is removed only if it was returned at least idleNanos ago, otherwise null is returned.
+   */
+  private PoolItem<T> poll(boolean onlyIdle, long idleNanos) {
+    long position = head.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long diff = sequences.get(index) - (position + 1);
+      if (diff == 0) {
+        PoolItem<T> item = buffer.get(index);
+        if (onlyIdle && System.nanoTime() - item.returnedNanos < idleNanos) {
+          return null;
+        }
+        if (head.compareAndSet(position, position + 1)) {
+          buffer.lazySet(index, null);
+          sequences.set(index, position + mask + 1);
+          item.pooled.set(false);
+          return item;
+        }
+      } else if (diff < 0) {
+        // A runner returned concurrently got an earlier slot but isn't published yet
+        Thread.yield();
+      }
+      position = head.get();
     }
   }
 }
@@ -405,7 +405,7 @@ public class StageContext extends ProtoContext implements
 
   private void toError(Record record, ErrorMessage errorMessage) {
     String jobId = (String) getPipelineConstants().get(JOB_ID);
-    RecordImpl recordImpl = ((RecordImpl) record).clone();
+    RecordImpl recordImpl = ((RecordImpl) record).deepClone();
     if (recordImpl.isInitialRecord()) {
       recordImpl.getHeader().setSourceRecord(recordImpl);
       recordImpl.setInitialRecord(false);
@@ -501,7 +501,7 @@ public class StageContext extends ProtoContext implements
 
   @Override
   public void toEvent(EventRecord record) {
-    EventRecordImpl recordImpl = ((EventRecordImpl) record).clone();
+    EventRecordImpl recordImpl = ((EventRecordImpl) record).deepClone();
     if (recordImpl.isInitialRecord()) {
       recordImpl.getHeader().setSourceRecord(recordImpl);
       recordImpl.setInitialRecord(false);
@@ -564,7 +564,7 @@ public class StageContext extends ProtoContext implements
   //Processor.Context
   @Override
   public Record cloneRecord(Record record) {
-    RecordImpl clonedRecord = ((RecordImpl) record).clone();
+    RecordImpl clonedRecord = ((RecordImpl) record).deepClone();
     HeaderImpl header = clonedRecord.getHeader();
     header.setStagesPath("");
     return clonedRecord;
@@ -573,7 +573,7 @@ public class StageContext extends ProtoContext implements
   //Processor.Context
   @Override
   public Record cloneRecord(Record record, String sourceIdPostfix) {
-    RecordImpl clonedRecord = ((RecordImpl) record).clone();
+    RecordImpl clonedRecord = ((RecordImpl) record).deepClone();
     HeaderImpl header = clonedRecord.getHeader();
     header.setSourceId(header.getSourceId() + "_" + sourceIdPostfix);
     header.setStagesPath("");
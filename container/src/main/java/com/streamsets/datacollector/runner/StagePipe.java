@@ -25,6 +25,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.streamsets.datacollector.memory.MemoryMonitor;
 import com.streamsets.datacollector.memory.MemoryUsageCollector;
 import com.streamsets.datacollector.memory.MemoryUsageCollectorResourceBundle;
+import com.streamsets.datacollector.memory.ThreadResourceSampler;
 import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.restapi.bean.CounterJson;
 import com.streamsets.datacollector.restapi.bean.HistogramJson;
@@ -49,8 +50,14 @@ public class StagePipe extends Pipe<StagePipe.Context> {
   private static final Logger LOG = LoggerFactory.getLogger(StagePipe.class);
   //Runtime stat gauge name
   public static final String RUNTIME_STATS_GAUGE = "RuntimeStatsGauge";
+  // Cheap per-thread allocation and CPU time accounting, unlike monitor.memory it's meant to stay enabled
+  public static final String MONITOR_RESOURCES_KEY = "monitor.stageResources";
+  public static final boolean MONITOR_RESOURCES_DEFAULT = true;
   private Timer processingTimer;
   private Counter memoryConsumedCounter;
+  private Counter allocatedBytesCounter;
+  private Counter cpuTimeCounter;
+  private ThreadResourceSampler resourceSampler;
   private Meter inputRecordsMeter;
   private Meter outputRecordsMeter;
   private Meter errorRecordsMeter;
@@ -124,7 +131,7 @@ public class StagePipe extends Pipe<StagePipe.Context> {
     if(issues.isEmpty()) {
       MetricRegistry metrics = getStage().getContext().getMetrics();
       String metricsKey = "stage." + getStage().getConfiguration().getInstanceName();
-      processingTimer = MetricsConfigurator.createStageTimer(metrics, metricsKey + ".batchProcessing", name, rev);
+      processingTimer = MetricsConfigurator.createStageHdrTimer(metrics, metricsKey + ".batchProcessing", name, rev);
       memoryConsumedCounter = MetricsConfigurator.createStageCounter(metrics, metricsKey + ".memoryConsumed", name, rev);
       inputRecordsMeter = MetricsConfigurator.createStageMeter(metrics, metricsKey + ".inputRecords", name, rev);
       outputRecordsMeter = MetricsConfigurator.createStageMeter(metrics, metricsKey + ".outputRecords", name, rev);
@@ -215,6 +222,9 @@ public class StagePipe extends Pipe<StagePipe.Context> {
             .setMemoryUsageCollectorResourceBundle(memoryUsageCollectorResourceBundle)
             .setStageRuntime(getStage()).build()));
       }
+      if (configuration.get(MONITOR_RESOURCES_KEY, MONITOR_RESOURCES_DEFAULT)) {
+        createResourceSampler(metrics, metricsKey);
+      }
       createRuntimeStatsGauge(metrics);
 
       predicates = new FilterRecordBatch.Predicate[2];
@@ -241,16 +251,26 @@ public class StagePipe extends Pipe<StagePipe.Context> {
     Batch batch = new FilterRecordBatch(batchImpl, predicates, getStage().getContext());
 
     long start = System.currentTimeMillis();
-    String newOffset = getStage().execute(
-        previousOffset,
-        pipeBatch.getBatchSize(),
-        batch,
-        batchMaker,
-        errorSink,
-        eventSink,
-        processedSink,
-        sourceResponseSink
-    );
+    if (resourceSampler != null) {
+      resourceSampler.start();
+    }
+    String newOffset;
+    try {
+      newOffset = getStage().execute(
+          previousOffset,
+          pipeBatch.getBatchSize(),
+          batch,
+          batchMaker,
+          errorSink,
+          eventSink,
+          processedSink,
+          sourceResponseSink
+      );
+    } finally {
+      if (resourceSampler != null) {
+        resourceSampler.stop();
+      }
+    }
     if (isSource()) {
       pipeBatch.setNewOffset(newOffset);
     }
@@ -363,10 +383,47 @@ public class StagePipe extends Pipe<StagePipe.Context> {
     return memoryConsumedCounter.getCount();
   }
 
+  public long getAllocatedBytes() {
+    return allocatedBytesCounter == null ? 0 : allocatedBytesCounter.getCount();
+  }
+
+  public long getCpuTime() {
+    return cpuTimeCounter == null ? 0 : cpuTimeCounter.getCount();
+  }
+
   public Map<String, Object> getBatchMetrics() {
     return batchMetrics;
   }
 
+  private void createResourceSampler(MetricRegistry metrics, String metricsKey) {
+    if (!ThreadResourceSampler.isAllocationSupported() && !ThreadResourceSampler.isCpuTimeSupported()) {
+      return;
+    }
+    allocatedBytesCounter = MetricsConfigurator.createStageCounter(metrics, metricsKey + ".allocatedBytes", name, rev);
+    cpuTimeCounter = MetricsConfigurator.createStageCounter(metrics, metricsKey + ".cpuTime", name, rev);
+    if (metricRegistryJson != null) {
+      // Metrics of pipelines that ran before the accounting existed don't have these counters
+      CounterJson allocatedBytesJson =
+        metricRegistryJson.getCounters().get(metricsKey + ".allocatedBytes" + MetricsConfigurator.COUNTER_SUFFIX);
+      if (allocatedBytesJson != null) {
+        allocatedBytesCounter.inc(allocatedBytesJson.getCount());
+      }
+      CounterJson cpuTimeJson =
+        metricRegistryJson.getCounters().get(metricsKey + ".cpuTime" + MetricsConfigurator.COUNTER_SUFFIX);
+      if (cpuTimeJson != null) {
+        cpuTimeCounter.inc(cpuTimeJson.getCount());
+      }
+    }
+    Gauge<Map<String, Object>> runnerUsage =
+      MetricsConfigurator.createStageGauge(metrics, metricsKey + ".resourceUsage", null, name, rev);
+    resourceSampler = new ThreadResourceSampler(
+      allocatedBytesCounter,
+      cpuTimeCounter,
+      runnerUsage.getValue(),
+      getStage().getContext().getRunnerId()
+    );
+  }
+
   @SuppressWarnings("unchecked")
   private Gauge<Object> createRuntimeStatsGauge(MetricRegistry metricRegistry) {
     Gauge<Object> runtimeStatsGauge = MetricsConfigurator.getGauge(metricRegistry, RUNTIME_STATS_GAUGE);
@@ -16,6 +16,7 @@
 package com.streamsets.datacollector.runner.production;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.util.concurrent.Striped;
 import com.streamsets.datacollector.io.DataStore;
 import com.streamsets.datacollector.json.ObjectMapperFactory;
 import com.streamsets.datacollector.main.RuntimeInfo;
@@ -31,14 +32,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 public class OffsetFileUtil {
   private static final Logger LOG = LoggerFactory.getLogger(ProductionSourceOffsetTracker.class);
 
   private static final String OFFSET_FILE = "offset.json";
+  private static final String OFFSET_JOURNAL_FILE = "offset.journal";
   private static final Map<String, String> DEFAULT_OFFSET = Collections.emptyMap();
   private static final int MAX_RETRIES = 5;
+  // Guards the offset file together with the offset journal, so that nobody reads them while the journal is being
+  // compacted into the offset file
+  private static final Striped<Lock> LOCKS = Striped.lazyWeakLock(64);
 
   private OffsetFileUtil() {}
 
@@ -46,13 +53,26 @@ public class OffsetFileUtil {
     return new File(PipelineDirectoryUtil.getPipelineDir(runtimeInfo, pipelineName, rev), OFFSET_FILE);
   }
 
+  public static File getPipelineOffsetJournalFile(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
+    return new File(PipelineDirectoryUtil.getPipelineDir(runtimeInfo, pipelineName, rev), OFFSET_JOURNAL_FILE);
+  }
+
+  /**
+   * Returns the lock that must be held while reading or replacing the offset file and offset journal of the pipeline.
+   */
+  public static Lock getLock(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
+    return LOCKS.get(getPipelineOffsetFile(runtimeInfo, pipelineName, rev).getAbsolutePath());
+  }
+
   public static Map<String, String> saveIfEmpty(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
     File pipelineOffsetFile =  getPipelineOffsetFile(runtimeInfo, pipelineName, rev);
     SourceOffset sourceOffset;
     DataStore ds = new DataStore(pipelineOffsetFile);
+    Lock lock = getLock(runtimeInfo, pipelineName, rev);
+    lock.lock();
     try {
       if (ds.exists()) {
-        return readSourceOffsetFromDataStore(ds).getOffsets();
+        return applyOffsetJournal(runtimeInfo, pipelineName, rev, readSourceOffsetFromDataStore(ds)).getOffsets();
       } else {
         sourceOffset = new SourceOffset(SourceOffset.CURRENT_VERSION, DEFAULT_OFFSET);
         try (OutputStream os = ds.getOutputStream()) {
@@ -64,6 +84,8 @@ public class OffsetFileUtil {
       }
     } catch (IOException e) {
       throw new IllegalStateException(e);
+    } finally {
+      lock.unlock();
     }
     return sourceOffset.getOffsets();
   }
@@ -85,20 +107,45 @@ public class OffsetFileUtil {
   public static void saveSourceOffset(RuntimeInfo runtimeInfo, String pipelineName, String rev, SourceOffset offset) {
     // Assumes that the argument offset confirms to the format on disk. hence just writes it to offset file
     LOG.debug("Saving offset {} for pipeline {}", offset, pipelineName);
-    DataStore dataStore = new DataStore(OffsetFileUtil.getPipelineOffsetFile(runtimeInfo, pipelineName, rev));
-    try (OutputStream os = dataStore.getOutputStream()) {
-      ObjectMapperFactory.get().writeValue(os, offset);
-      dataStore.commit(os);
-    } catch (IOException e) {
-      LOG.error("Failed to save offset={}. Reason {}", offset, e.toString(), e);
-      throw new IllegalStateException(e);
+    Lock lock = getLock(runtimeInfo, pipelineName, rev);
+    lock.lock();
+    try {
+      deleteOffsetJournal(runtimeInfo, pipelineName, rev);
+      DataStore dataStore = new DataStore(OffsetFileUtil.getPipelineOffsetFile(runtimeInfo, pipelineName, rev));
+      try (OutputStream os = dataStore.getOutputStream()) {
+        ObjectMapperFactory.get().writeValue(os, offset);
+        dataStore.commit(os);
+      } catch (IOException e) {
+        LOG.error("Failed to save offset={}. Reason {}", offset, e.toString(), e);
+        throw new IllegalStateException(e);
+      } finally {
+        dataStore.release();
+      }
     } finally {
-      dataStore.release();
+      lock.unlock();
     }
   }
 
   public static void resetOffsets(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
-    saveOffsets(runtimeInfo, pipelineName, rev, DEFAULT_OFFSET);
+    Lock lock = getLock(runtimeInfo, pipelineName, rev);
+    lock.lock();
+    try {
+      deleteOffsetJournal(runtimeInfo, pipelineName, rev);
+      saveOffsets(runtimeInfo, pipelineName, rev, DEFAULT_OFFSET);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drops journaled offset changes, must be called before the offset file is replaced by offsets that don't come from
+   * the journal itself (otherwise the stale journal would be replayed over them).
+   */
+  static void deleteOffsetJournal(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
+    File journalFile = getPipelineOffsetJournalFile(runtimeInfo, pipelineName, rev);
+    if (journalFile.exists() && !journalFile.delete()) {
+      throw new IllegalStateException(Utils.format("Failed to delete offset journal '{}'", journalFile));
+    }
   }
 
   public static Map<String, String> getOffsets(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
@@ -127,13 +174,15 @@ public class OffsetFileUtil {
 
   public static SourceOffset getOffset(RuntimeInfo runtimeInfo, String pipelineName, String rev) {
     int retries = 0;
+    Lock lock = getLock(runtimeInfo, pipelineName, rev);
     while (retries < MAX_RETRIES) {
+      lock.lock();
       try {
         File pipelineOffsetFile = getPipelineOffsetFile(runtimeInfo, pipelineName, rev);
         if (pipelineOffsetFile.exists()) {
           DataStore ds = new DataStore(pipelineOffsetFile);
           if (ds.exists()) {
-            return readSourceOffsetFromDataStore(ds);
+            return applyOffsetJournal(runtimeInfo, pipelineName, rev, readSourceOffsetFromDataStore(ds));
           }
         }
 
@@ -141,12 +190,30 @@ public class OffsetFileUtil {
       } catch (IOException e) {
         // this could fail if offset file is also being written to the same time
         LOG.warn(Utils.format("Retrieving offset failed with attempt {} due to {}", retries, e), e);
+      } finally {
+        lock.unlock();
       }
       retries++;
     }
     throw new IllegalStateException(Utils.format("Retrieving offset failed for last attempt {}", retries));
   }
 
+  // Offsets committed by a running pipeline might not have been compacted into the offset file yet
+  private static SourceOffset applyOffsetJournal(
+      RuntimeInfo runtimeInfo,
+      String pipelineName,
+      String rev,
+      SourceOffset sourceOffset
+  ) throws IOException {
+    File journalFile = getPipelineOffsetJournalFile(runtimeInfo, pipelineName, rev);
+    if (journalFile.exists()) {
+      Map<String, String> offsets = new HashMap<>(sourceOffset.getOffsets());
+      OffsetJournal.replay(journalFile, offsets);
+      sourceOffset.setOffsets(offsets);
+    }
+    return sourceOffset;
+  }
+
   private static SourceOffset readSourceOffsetFromDataStore(DataStore ds) throws IOException {
     try (InputStream is = ds.getInputStream()) {
       SourceOffsetJson sourceOffsetJson = ObjectMapperFactory.get().readValue(is, SourceOffsetJson.class);
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import com.streamsets.pipeline.api.impl.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of offset changes for a single pipeline.
+ *
+ * Every committed offset is appended as a small binary entry containing only the changed entity, so the cost of a
+ * commit does not depend on how many entities the origin tracks. Entries appended by several runner threads between
+ * two syncs are written and forced to disk together (group commit): whichever thread syncs first becomes the leader
+ * and makes the entries of all waiting threads durable with a single fsync.
+ *
+ * The journal is always interpreted on top of the JSON offset file. Once it grows too large, the owner compacts it by
+ * writing the full offset map into the JSON file and truncating the journal. Replaying a journal over a JSON file that
+ * already contains its entries is harmless, so a crash in between the two steps doesn't lose or corrupt offsets.
+ *
+ * Entry layout: <code>int length, int crc32, byte operation, int keyLength, key, [int valueLength, value]</code>.
+ * A torn entry at the end of the file (crash during append) fails the length or checksum verification and is ignored
+ * together with anything that follows it.
+ */
+public class OffsetJournal implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(OffsetJournal.class);
+
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final int ENTRY_HEADER_SIZE = 8;
+  // Offsets are small strings, anything bigger than this is garbage from a torn write
+  private static final int MAX_ENTRY_SIZE = 64 * 1024 * 1024;
+
+  private final File file;
+  private final FileChannel channel;
+  private final Object syncLock = new Object();
+
+  // Guarded by this
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long appendedSequence;
+
+  // Guarded by syncLock
+  private long syncedSequence;
+  private volatile long size;
+
+  /**
+   * Opens the journal for appending, dropping a torn entry at the end of the file if there is one.
+   */
+  public OffsetJournal(File file) throws IOException {
+    this.file = file;
+    long validSize = replay(file, null);
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    if (channel.size() > validSize) {
+      LOG.warn("Offset journal '{}' has torn entry at position {}, truncating", file, validSize);
+      channel.truncate(validSize);
+    }
+    channel.position(validSize);
+    this.size = validSize;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Current size of the journal on disk in bytes.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Buffers change of given entity and returns sequence that has to be passed to {@link #sync(long)} to make the
+   * change durable. A null offset records removal of the entity.
+   */
+  public synchronized long append(String entity, String offset) {
+    Utils.checkNotNull(entity, "entity");
+    try {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(body);
+      out.writeByte(offset == null ? REMOVE : PUT);
+      writeString(out, entity);
+      if (offset != null) {
+        writeString(out, offset);
+      }
+      out.flush();
+
+      CRC32 crc = new CRC32();
+      crc.update(body.toByteArray());
+      DataOutputStream entry = new DataOutputStream(pending);
+      entry.writeInt(body.size());
+      entry.writeInt((int) crc.getValue());
+      body.writeTo(entry);
+      entry.flush();
+    } catch (IOException e) {
+      // Writing into memory doesn't throw
+      throw new IllegalStateException(e);
+    }
+    return ++appendedSequence;
+  }
+
+  /**
+   * Makes all entries up to and including the given sequence durable. Entries appended by other threads in the
+   * meantime are written with the same fsync, so threads that were waiting for the leader usually return immediately.
+   */
+  public void sync(long sequence) throws IOException {
+    synchronized (syncLock) {
+      if (syncedSequence >= sequence) {
+        return;
+      }
+      byte[] data;
+      long sequenceToSync;
+      synchronized (this) {
+        data = pending.toByteArray();
+        pending = new ByteArrayOutputStream(Math.max(32, data.length));
+        sequenceToSync = appendedSequence;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+      size += data.length;
+      syncedSequence = sequenceToSync;
+    }
+  }
+
+  /**
+   * Makes all appended entries durable.
+   */
+  public void sync() throws IOException {
+    long sequence;
+    synchronized (this) {
+      sequence = appendedSequence;
+    }
+    sync(sequence);
+  }
+
+  /**
+   * Discards all entries, must be called only after their content was persisted somewhere else and while no other
+   * thread is appending.
+   */
+  public void truncate() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        pending.reset();
+        syncedSequence = appendedSequence;
+      }
+      channel.truncate(0);
+      channel.position(0);
+      channel.force(false);
+      size = 0;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Applies all valid entries from given journal file to the offsets map.
+   *
+   * @param file Journal file, doesn't have to exist
+   * @param offsets Map to apply the entries to, can be null to only verify the journal
+   * @return Size in bytes of the valid part of the journal
+   */
+  public static long replay(File file, Map<String, String> offsets) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+    long position = 0;
+    int entries = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        byte[] body;
+        int crc;
+        try {
+          int length = in.readInt();
+          if (length <= 0 || length > MAX_ENTRY_SIZE) {
+            break;
+          }
+          crc = in.readInt();
+          body = new byte[length];
+          in.readFully(body);
+        } catch (EOFException e) {
+          break;
+        }
+        CRC32 actual = new CRC32();
+        actual.update(body);
+        if ((int) actual.getValue() != crc) {
+          break;
+        }
+        if (offsets != null) {
+          apply(body, offsets);
+        }
+        position += ENTRY_HEADER_SIZE + body.length;
+        entries++;
+      }
+    }
+    if (position < file.length()) {
+      LOG.warn("Offset journal '{}' is valid only up to position {} out of {}", file, position, file.length());
+    }
+    LOG.debug("Offset journal '{}' contains {} entries", file, entries);
+    return position;
+  }
+
+  private static void apply(byte[] body, Map<String, String> offsets) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte operation = in.readByte();
+    String entity = readString(in);
+    switch (operation) {
+      case PUT:
+        offsets.put(entity, readString(in));
+        break;
+      case REMOVE:
+        offsets.remove(entity);
+        break;
+      default:
+        throw new IOException(Utils.format("Unknown offset journal operation '{}'", operation));
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -15,7 +15,11 @@
  */
 package com.streamsets.datacollector.runner.production;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.streamsets.datacollector.main.RuntimeInfo;
+import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.runner.SourceOffsetTracker;
 
 import com.streamsets.pipeline.api.Source;
@@ -24,11 +28,15 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
-public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
+public class ProductionSourceOffsetTracker implements SourceOffsetTracker, Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductionSourceOffsetTracker.class);
   private Map<String, String> offsets;
@@ -37,6 +45,11 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
   private final String pipelineName;
   private final String rev;
   private final RuntimeInfo runtimeInfo;
+  private final long maxJournalSize;
+  private final boolean useJournal;
+  private volatile OffsetJournal journal;
+  private Timer commitTimer;
+  private Counter journalSizeCounter;
 
   @Inject
   public ProductionSourceOffsetTracker(
@@ -47,9 +60,74 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
     this.pipelineName = pipelineName;
     this.rev = rev;
     this.runtimeInfo = runtimeInfo;
+    this.maxJournalSize = 0;
+    this.useJournal = false;
     this.offsets = new HashMap<>(getSourceOffset(pipelineName, rev));
   }
 
+  /**
+   * Creates tracker that appends committed offsets to an offset journal rather than rewriting the whole offset file
+   * on every commit. The journal is compacted into the offset file whenever it grows beyond maxJournalSize bytes and
+   * when the tracker is closed. The journal is only opened by {@link #recover()}.
+   */
+  public ProductionSourceOffsetTracker(
+      String pipelineName,
+      String rev,
+      RuntimeInfo runtimeInfo,
+      MetricRegistry metrics,
+      long maxJournalSize
+  ) {
+    this.pipelineName = pipelineName;
+    this.rev = rev;
+    this.runtimeInfo = runtimeInfo;
+    this.maxJournalSize = maxJournalSize;
+    this.useJournal = true;
+    this.offsets = new HashMap<>(getSourceOffset(pipelineName, rev));
+    this.commitTimer = MetricsConfigurator.createTimer(metrics, "pipeline.offsetCommit", pipelineName, rev);
+    this.journalSizeCounter = MetricsConfigurator.createCounter(
+        metrics,
+        "pipeline.offsetJournalSize",
+        pipelineName,
+        rev
+    );
+  }
+
+  /**
+   * Takes over the offsets for a run of the pipeline: compacts an offset journal left behind by a previous run that
+   * didn't shut down cleanly into the offset file and starts a new journal if this tracker journals its commits.
+   * Only the production pipeline run may call this, trackers created to read or reset offsets must leave the journal
+   * of a running pipeline alone.
+   */
+  public void recover() {
+    File journalFile = OffsetFileUtil.getPipelineOffsetJournalFile(runtimeInfo, pipelineName, rev);
+    Lock lock = OffsetFileUtil.getLock(runtimeInfo, pipelineName, rev);
+    synchronized (offsets) {
+      lock.lock();
+      try {
+        if (OffsetJournal.replay(journalFile, offsets) > 0) {
+          LOG.info("Recovered offsets for pipeline {} from offset journal '{}'", pipelineName, journalFile);
+          saveOffset(pipelineName, rev, offsets);
+        }
+        if (useJournal) {
+          journal = new OffsetJournal(journalFile);
+          // Recovered entries are already part of the offset file
+          journal.truncate();
+        } else {
+          deleteJournal();
+        }
+      } catch (IOException e) {
+        LOG.error("Failed to recover offset journal '{}'. Reason {}", journalFile, e.toString(), e);
+        throw new IllegalStateException(e);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private void deleteJournal() {
+    OffsetFileUtil.deleteOffsetJournal(runtimeInfo, pipelineName, rev);
+  }
+
   @Override
   public boolean isFinished() {
     return finished;
@@ -71,19 +149,103 @@ public class ProductionSourceOffsetTracker implements SourceOffsetTracker {
       finished = newOffset == null;
     }
 
+    if (journal != null) {
+      commitToJournal(entity, newOffset);
+      return;
+    }
+
     // This object can be called from multiple threads, so we have to synchronize access to the offset map
     synchronized (offsets) {
-      if (newOffset == null) {
-        offsets.remove(entity);
-      } else {
-        offsets.put(entity, newOffset);
-      }
+      updateOffsets(entity, newOffset);
 
       // Finally write new variant of the offset file
       saveOffset(pipelineName, rev, offsets);
     }
   }
 
+  private void updateOffsets(String entity, String newOffset) {
+    if (newOffset == null) {
+      offsets.remove(entity);
+    } else {
+      offsets.put(entity, newOffset);
+    }
+  }
+
+  private void commitToJournal(String entity, String newOffset) {
+    Timer.Context timerContext = commitTimer.time();
+    try {
+      // Only the in-memory part is serialized, the disk write happens outside of the monitor so that concurrent
+      // commits from multiple runners are grouped into a single sync.
+      OffsetJournal currentJournal;
+      long sequence;
+      synchronized (offsets) {
+        updateOffsets(entity, newOffset);
+        currentJournal = journal;
+        if (currentJournal == null) {
+          // Tracker was closed in the meantime
+          saveOffset(pipelineName, rev, offsets);
+          return;
+        }
+        sequence = currentJournal.append(entity, newOffset);
+      }
+      currentJournal.sync(sequence);
+
+      if (currentJournal.size() > maxJournalSize) {
+        synchronized (offsets) {
+          // Some other thread might have compacted the journal in the meantime
+          if (journal != null && journal.size() > maxJournalSize) {
+            compact();
+          }
+        }
+      }
+      journalSizeCounter.inc(currentJournal.size() - journalSizeCounter.getCount());
+    } catch (IOException e) {
+      LOG.error("Failed to commit offset {} for entity {}. Reason {}", newOffset, entity, e.toString(), e);
+      throw new IllegalStateException(e);
+    } finally {
+      timerContext.stop();
+    }
+  }
+
+  // Must be called while holding monitor on offsets
+  private void compact() throws IOException {
+    LOG.debug("Compacting offset journal of size {} for pipeline {}", journal.size(), pipelineName);
+    journal.sync();
+    Lock lock = OffsetFileUtil.getLock(runtimeInfo, pipelineName, rev);
+    lock.lock();
+    try {
+      saveOffset(pipelineName, rev, offsets);
+      journal.truncate();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Compacts the offset journal (if any) into the offset file and releases it. Offsets committed after the tracker was
+   * closed are saved directly to the offset file.
+   */
+  @Override
+  public void close() {
+    synchronized (offsets) {
+      if (journal == null) {
+        return;
+      }
+      Lock lock = OffsetFileUtil.getLock(runtimeInfo, pipelineName, rev);
+      lock.lock();
+      try {
+        compact();
+        journal.close();
+        deleteJournal();
+      } catch (IOException e) {
+        LOG.error("Failed to close offset journal for pipeline {}. Reason {}", pipelineName, e.toString(), e);
+      } finally {
+        journal = null;
+        lock.unlock();
+      }
+    }
+  }
+
   @Override
   public Map<String, String> getOffsets() {
     return Collections.unmodifiableMap(offsets);
@@ -15,6 +15,8 @@
  */
 package com.streamsets.datacollector.stagelibrary;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
@@ -24,6 +26,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.datacollector.classpath.ClasspathValidator;
 import com.streamsets.datacollector.classpath.ClasspathValidatorResult;
 import com.streamsets.datacollector.config.CredentialStoreDefinition;
@@ -76,15 +79,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -92,6 +98,9 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class ClassLoaderStageLibraryTask extends AbstractTask implements StageLibraryTask {
@@ -102,6 +111,15 @@ public class ClassLoaderStageLibraryTask extends AbstractTask implements StageLi
   public static final String JAVA_UNSUPPORTED_REGEXP = "java.unsupported.regexp";
   public static final String MIN_SDC_VERSION = "min.sdc.version";
 
+  public static final String LOAD_THREADS_KEY = "stagelibs.load.threads";
+  // 0 means one thread per available processor
+  public static final int LOAD_THREADS_DEFAULT = 0;
+
+  public static final String DEFINITION_INDEX_KEY = "stagelibs.definition.index.enable";
+  public static final boolean DEFINITION_INDEX_DEFAULT = true;
+
+  public static final String LOAD_TIME_GAUGE = "sdc.stageLibraries.loadTime";
+
   private static final String CONFIG_LIBRARY_ALIAS_PREFIX = "library.alias.";
   private static final String CONFIG_STAGE_ALIAS_PREFIX = "stage.alias.";
 
@@ -446,8 +464,25 @@ public class ClassLoaderStageLibraryTask extends AbstractTask implements StageLi
     return list;
   }
 
+  /**
+   * Everything loaded from one stage library, libraries are loaded in parallel and merged in their original order.
+   */
+  private static class LibraryDefinitions {
+    private final StageLibraryDefinition libDef;
+    private final List<StageDefinition> stages = new ArrayList<>();
+    private final List<LineagePublisherDefinition> lineagePublishers = new ArrayList<>();
+    private final List<CredentialStoreDefinition> credentialStores = new ArrayList<>();
+    private final List<ServiceDefinition> services = new ArrayList<>();
+    private final List<InterceptorDefinition> interceptors = new ArrayList<>();
+    private final List<StageLibraryDelegateDefinitition> delegates = new ArrayList<>();
+    private long loadTimeMillis;
+
+    private LibraryDefinitions(StageLibraryDefinition libDef) {
+      this.libDef = libDef;
+    }
+  }
+
   @VisibleForTesting
-  @SuppressWarnings("unchecked")
   void loadStages() {
     String javaVersion = System.getProperty("java.version");
     Version sdcVersion = new Version(buildInfo.getVersion());
@@ -466,131 +501,279 @@ public class ClassLoaderStageLibraryTask extends AbstractTask implements StageLi
         Utils.format("Could not load runtime configuration, '{}'", e.toString()), e);
     }
 
+    int libs = 0;
+    int stages = 0;
+    int lineagePublishers = 0;
+    int credentialStores = 0;
+    int services = 0;
+    int interceptors = 0;
+    int delegates = 0;
+    long start = System.currentTimeMillis();
+
+    // Extracting the definitions is mostly reflection and class loading on independent class loaders, so the
+    // libraries are scanned in parallel
+    int threads = configuration.get(LOAD_THREADS_KEY, LOAD_THREADS_DEFAULT);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    threads = Math.max(1, Math.min(threads, stageClassLoaders.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(
+        threads,
+        new ThreadFactoryBuilder().setNameFormat("stage-library-loader-%d").setDaemon(true).build()
+    );
+    StageLibraryDefinitionIndex definitionIndex = null;
+    if (configuration.get(DEFINITION_INDEX_KEY, DEFINITION_INDEX_DEFAULT) && runtimeInfo.getDataDir() != null) {
+      definitionIndex = new StageLibraryDefinitionIndex(
+          new File(runtimeInfo.getDataDir(), StageLibraryDefinitionIndex.INDEX_DIR),
+          buildInfo.getVersion()
+      );
+    }
+    Map<String, Long> loadTimes = new LinkedHashMap<>();
     try {
-      int libs = 0;
-      int stages = 0;
-      int lineagePublishers = 0;
-      int credentialStores = 0;
-      int services = 0;
-      int interceptors = 0;
-      int delegates = 0;
-      long start = System.currentTimeMillis();
-      LocaleInContext.set(Locale.getDefault());
+      List<Future<LibraryDefinitions>> futures = new ArrayList<>(stageClassLoaders.size());
       for (ClassLoader cl : stageClassLoaders) {
-        try {
-          // Before loading any stages, let's verify that given stage library is compatible with our current JVM version
-          String unsupportedJvmVersion = getPropertyFromLibraryProperties(cl, JAVA_UNSUPPORTED_REGEXP, null);
-          if(!StringUtils.isEmpty(unsupportedJvmVersion)) {
-            if(javaVersion.matches(unsupportedJvmVersion)) {
-              LOG.warn("Can't load stages from {} since they are not compatible with current JVM version", StageLibraryUtils.getLibraryName(cl));
-              continue;
-            } else {
-              LOG.debug("Stage lib {} passed java compatibility test for '{}'", StageLibraryUtils.getLibraryName(cl), unsupportedJvmVersion);
-            }
-          }
-
-          // And that this SDC is at least on requested version
-          String minSdcVersion = getPropertyFromLibraryProperties(cl, MIN_SDC_VERSION, null);
-          if(!StringUtils.isEmpty(minSdcVersion)) {
-            if(!sdcVersion.isGreaterOrEqualTo(minSdcVersion)) {
-              throw new IllegalArgumentException(
-                  Utils.format("Can't load stage library '{}' as it requires at least SDC version {} whereas current version is {}",
-                  StageLibraryUtils.getLibraryName(cl),
-                  minSdcVersion,
-                  buildInfo.getVersion()
-                ));
-            }
-          }
+        StageLibraryDefinitionIndex index = definitionIndex;
+        futures.add(executor.submit(() -> loadLibrary(cl, javaVersion, sdcVersion, index)));
+      }
 
-          // Load stages from the stage library
-          StageLibraryDefinition libDef = StageLibraryDefinitionExtractor.get().extract(cl);
-          LOG.debug("Loading stages and plugins from library '{}'", libDef.getName());
-          stageLibraries.add(libDef);
-          libs++;
-
-          // Load Stages
-          for(Class klass : loadClassesFromResource(libDef, cl, STAGES_DEFINITION_RESOURCE)) {
-            stages++;
-            StageDefinition stage = StageDefinitionExtractor.get().extract(libDef, klass, Utils.formatL("Library='{}'", libDef.getName()));
-            String key = createKey(libDef.getName(), stage.getName());
-            LOG.debug("Loaded stage '{}'  version {}", key, stage.getVersion());
-            stageList.add(stage);
-            stageMap.put(key, stage);
-          }
+      for (Future<LibraryDefinitions> future : futures) {
+        LibraryDefinitions library = getLibraryDefinitions(future);
+        if (library == null) {
+          continue;
+        }
+        StageLibraryDefinition libDef = library.libDef;
+        stageLibraries.add(libDef);
+        libs++;
+        loadTimes.put(libDef.getName(), library.loadTimeMillis);
+
+        for (StageDefinition stage : library.stages) {
+          stages++;
+          stageList.add(stage);
+          stageMap.put(createKey(libDef.getName(), stage.getName()), stage);
+        }
+        for (LineagePublisherDefinition lineage : library.lineagePublishers) {
+          lineagePublishers++;
+          lineagePublisherDefinitions.add(lineage);
+          lineagePublisherDefinitionMap.put(createKey(libDef.getName(), lineage.getName()), lineage);
+        }
+        for (CredentialStoreDefinition def : library.credentialStores) {
+          credentialStores++;
+          credentialStoreDefinitions.add(def);
+        }
+        for (ServiceDefinition def : library.services) {
+          services++;
+          serviceList.add(def);
+          serviceMap.put(def.getProvides(), def);
+        }
+        for (InterceptorDefinition def : library.interceptors) {
+          interceptors++;
+          interceptorList.add(def);
+        }
+        for (StageLibraryDelegateDefinitition def : library.delegates) {
+          delegates++;
+          delegateList.add(def);
+          delegateMap.put(createKey(libDef.getName(), def.getExportedInterface().getCanonicalName()), def);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
 
-          // Load Lineage publishers
-          for(Class klass : loadClassesFromResource(libDef, cl, LINEAGE_PUBLISHERS_DEFINITION_RESOURCE)) {
-            lineagePublishers++;
-            LineagePublisherDefinition lineage = LineagePublisherDefinitionExtractor.get().extract(libDef, klass);
-            String key = createKey(libDef.getName(), lineage.getName());
-            LOG.debug("Loaded lineage plugin '{}'", key);
-            lineagePublisherDefinitions.add(lineage);
-            lineagePublisherDefinitionMap.put(key, lineage);
-          }
+    long total = System.currentTimeMillis() - start;
+    LOG.info(
+      "Loaded '{}' libraries with a total of '{}' stages, '{}' lineage publishers, '{}' services, '{}' interceptors, '{}' delegates and '{}' credentialStores in '{}ms' using '{}' threads",
+      libs,
+      stages,
+      lineagePublishers,
+      services,
+      interceptors,
+      delegates,
+      credentialStores,
+      total,
+      threads
+    );
+    registerLoadTimeGauge(total, loadTimes);
+  }
 
-          // Load Credential stores
-          for(Class klass : loadClassesFromResource(libDef, cl, CREDENTIAL_STORE_DEFINITION_RESOURCE)) {
-            credentialStores++;
-            CredentialStoreDefinition def = CredentialStoreDefinitionExtractor.get().extract(libDef, klass);
-            String key = createKey(libDef.getName(), def.getName());
-            LOG.debug("Loaded credential store '{}'", key);
-            credentialStoreDefinitions.add(def);
-          }
+  private static LibraryDefinitions getLibraryDefinitions(Future<LibraryDefinitions> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while loading stage libraries", e);
+    } catch (ExecutionException e) {
+      // Keep the exceptions thrown while loading a library as they were with sequential loading
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
 
-          // Load Services
-          for(Class klass : loadClassesFromResource(libDef, cl, SERVICE_DEFINITION_RESOURCE)) {
-            services++;
-            ServiceDefinition def = ServiceDefinitionExtractor.get().extract(libDef, klass);
-            LOG.debug("Loaded service for '{}'", def.getProvides().getCanonicalName());
-            serviceList.add(def);
-            serviceMap.put(def.getProvides(), def);
-          }
+  /**
+   * Exposes the load time of each library (and the total) in milliseconds as SDC metric.
+   */
+  private void registerLoadTimeGauge(long total, Map<String, Long> loadTimes) {
+    MetricRegistry metrics = runtimeInfo.getMetrics();
+    if (metrics == null) {
+      return;
+    }
+    Map<String, Object> value = new LinkedHashMap<>();
+    value.put("total", total);
+    value.putAll(loadTimes);
+    Map<String, Object> gaugeValue = Collections.unmodifiableMap(value);
+    metrics.remove(LOAD_TIME_GAUGE);
+    metrics.register(LOAD_TIME_GAUGE, (Gauge<Map<String, Object>>) () -> gaugeValue);
+  }
 
-          // Load Interceptors
-          for(Class klass : loadClassesFromResource(libDef, cl, INTERCEPTOR_DEFINITION_RESOURCE)) {
-            interceptors++;
-            InterceptorDefinition def = InterceptorDefinitionExtractor.get().extract(libDef, klass);
-            LOG.debug("Loaded interceptor '{}'", def.getKlass().getCanonicalName());
-            interceptorList.add(def);
-          }
+  /**
+   * Loads all definitions from given stage library, returns null if the library is not compatible with this JVM.
+   */
+  @SuppressWarnings("unchecked")
+  private LibraryDefinitions loadLibrary(
+      ClassLoader cl,
+      String javaVersion,
+      Version sdcVersion,
+      StageLibraryDefinitionIndex definitionIndex
+  ) {
+    long start = System.currentTimeMillis();
+    LocaleInContext.set(Locale.getDefault());
+    try {
+      // Before loading any stages, let's verify that given stage library is compatible with our current JVM version
+      String unsupportedJvmVersion = getPropertyFromLibraryProperties(cl, JAVA_UNSUPPORTED_REGEXP, null);
+      if(!StringUtils.isEmpty(unsupportedJvmVersion)) {
+        if(javaVersion.matches(unsupportedJvmVersion)) {
+          LOG.warn("Can't load stages from {} since they are not compatible with current JVM version", StageLibraryUtils.getLibraryName(cl));
+          return null;
+        } else {
+          LOG.debug("Stage lib {} passed java compatibility test for '{}'", StageLibraryUtils.getLibraryName(cl), unsupportedJvmVersion);
+        }
+      }
 
-          // Load Delegates
-          for(Class klass : loadClassesFromResource(libDef, cl, DELEGATE_DEFINITION_RESOURCE)) {
-            delegates++;
-            StageLibraryDelegateDefinitition def = StageLibraryDelegateDefinitionExtractor.get().extract(libDef, klass);
-            String key = createKey(libDef.getName(), def.getExportedInterface().getCanonicalName());
-            LOG.debug("Loaded delegate '{}'", def.getKlass().getCanonicalName());
-            delegateList.add(def);
-            delegateMap.put(key, def);
-          }
-        } catch (IOException | ClassNotFoundException ex) {
-          throw new RuntimeException(
-              Utils.format("Could not load stages definition from '{}', {}", cl, ex.toString()), ex);
+      // And that this SDC is at least on requested version
+      String minSdcVersion = getPropertyFromLibraryProperties(cl, MIN_SDC_VERSION, null);
+      if(!StringUtils.isEmpty(minSdcVersion)) {
+        if(!sdcVersion.isGreaterOrEqualTo(minSdcVersion)) {
+          throw new IllegalArgumentException(
+              Utils.format("Can't load stage library '{}' as it requires at least SDC version {} whereas current version is {}",
+              StageLibraryUtils.getLibraryName(cl),
+              minSdcVersion,
+              buildInfo.getVersion()
+            ));
         }
       }
+
+      // Load stages from the stage library
+      StageLibraryDefinition libDef = StageLibraryDefinitionExtractor.get().extract(cl);
+      LOG.debug("Loading stages and plugins from library '{}'", libDef.getName());
+      LibraryDefinitions library = new LibraryDefinitions(libDef);
+
+      // Classes already validated for the current library jars are taken from the definition index
+      String checksum = (definitionIndex == null) ? null : definitionIndex.getChecksum(cl);
+      Map<String, List<String>> indexed = (checksum == null) ? null : definitionIndex.read(libDef.getName(), checksum);
+      boolean validate = indexed == null;
+      Map<String, List<String>> classNames = new LinkedHashMap<>();
+
+      // Load Stages
+      for(Class klass : loadClasses(libDef, cl, STAGES_DEFINITION_RESOURCE, indexed, classNames)) {
+        StageDefinition stage = StageDefinitionExtractor.get().extract(libDef, klass, validate, Utils.formatL("Library='{}'", libDef.getName()));
+        LOG.debug("Loaded stage '{}'  version {}", createKey(libDef.getName(), stage.getName()), stage.getVersion());
+        library.stages.add(stage);
+      }
+
+      // Load Lineage publishers
+      for(Class klass : loadClasses(libDef, cl, LINEAGE_PUBLISHERS_DEFINITION_RESOURCE, indexed, classNames)) {
+        LineagePublisherDefinition lineage = LineagePublisherDefinitionExtractor.get().extract(libDef, klass);
+        LOG.debug("Loaded lineage plugin '{}'", createKey(libDef.getName(), lineage.getName()));
+        library.lineagePublishers.add(lineage);
+      }
+
+      // Load Credential stores
+      for(Class klass : loadClasses(libDef, cl, CREDENTIAL_STORE_DEFINITION_RESOURCE, indexed, classNames)) {
+        CredentialStoreDefinition def = CredentialStoreDefinitionExtractor.get().extract(libDef, klass);
+        LOG.debug("Loaded credential store '{}'", createKey(libDef.getName(), def.getName()));
+        library.credentialStores.add(def);
+      }
+
+      // Load Services
+      for(Class klass : loadClasses(libDef, cl, SERVICE_DEFINITION_RESOURCE, indexed, classNames)) {
+        ServiceDefinition def = ServiceDefinitionExtractor.get().extract(libDef, klass);
+        LOG.debug("Loaded service for '{}'", def.getProvides().getCanonicalName());
+        library.services.add(def);
+      }
+
+      // Load Interceptors
+      for(Class klass : loadClasses(libDef, cl, INTERCEPTOR_DEFINITION_RESOURCE, indexed, classNames)) {
+        InterceptorDefinition def = InterceptorDefinitionExtractor.get().extract(libDef, klass);
+        LOG.debug("Loaded interceptor '{}'", def.getKlass().getCanonicalName());
+        library.interceptors.add(def);
+      }
+
+      // Load Delegates
+      for(Class klass : loadClasses(libDef, cl, DELEGATE_DEFINITION_RESOURCE, indexed, classNames)) {
+        StageLibraryDelegateDefinitition def = StageLibraryDelegateDefinitionExtractor.get().extract(libDef, klass);
+        LOG.debug("Loaded delegate '{}'", def.getKlass().getCanonicalName());
+        library.delegates.add(def);
+      }
+
+      if (definitionIndex != null && indexed == null) {
+        definitionIndex.write(libDef.getName(), checksum, classNames);
+      }
+
+      library.loadTimeMillis = System.currentTimeMillis() - start;
       LOG.info(
-        "Loaded '{}' libraries with a total of '{}' stages, '{}' lineage publishers, '{}' services, '{}' interceptors, '{}' delegates and '{}' credentialStores in '{}ms'",
-        libs,
-        stages,
-        lineagePublishers,
-        services,
-        interceptors,
-        delegates,
-        credentialStores,
-        System.currentTimeMillis() - start
+          "Loaded library '{}' with '{}' stages in '{}ms'{}",
+          libDef.getName(),
+          library.stages.size(),
+          library.loadTimeMillis,
+          validate ? "" : " from the definition index"
       );
+      return library;
+    } catch (IOException | ClassNotFoundException ex) {
+      throw new RuntimeException(
+          Utils.format("Could not load stages definition from '{}', {}", cl, ex.toString()), ex);
     } finally {
       LocaleInContext.set(null);
     }
   }
 
-  private <T> List<Class<? extends T>> loadClassesFromResource(
+  /**
+   * Loads the classes listed in the given resource, or in the index entry of that resource when the library is indexed.
+   * The class names are collected in <code>classNames</code> to write the index entry of the library.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> List<Class<? extends T>> loadClasses(
     StageLibraryDefinition libDef,
     ClassLoader cl,
-    String resourceName
+    String resourceName,
+    Map<String, List<String>> indexed,
+    Map<String, List<String>> classNames
   ) throws IOException, ClassNotFoundException {
+    List<String> names;
+    if (indexed != null) {
+      names = indexed.getOrDefault(resourceName, Collections.emptyList());
+    } else {
+      names = loadClassNamesFromResource(libDef, cl, resourceName);
+    }
+    classNames.put(resourceName, names);
+
+    List<Class<? extends T>> list = new ArrayList<>(names.size());
+    for (String className : names) {
+      list.add((Class<? extends T>) cl.loadClass(className));
+    }
+    return list;
+  }
+
+  private List<String> loadClassNamesFromResource(
+    StageLibraryDefinition libDef,
+    ClassLoader cl,
+    String resourceName
+  ) throws IOException {
     Set<String> dedup = new HashSet<>();
-    List<Class<? extends T>> list = new ArrayList<>();
+    List<String> list = new ArrayList<>();
 
     // Load all resource files with given name
     Enumeration<URL> resources = cl.getResources(resourceName);
@@ -606,7 +789,7 @@ public class ClassLoaderStageLibraryTask extends AbstractTask implements StageLi
               libDef.getName(), className));
           }
           dedup.add(className);
-          list.add((Class<? extends T>) cl.loadClass(className));
+          list.add(className);
         }
       }
     }
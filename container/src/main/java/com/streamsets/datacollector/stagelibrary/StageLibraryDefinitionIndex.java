@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.stagelibrary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.streamsets.datacollector.io.DataStore;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
+import com.streamsets.pipeline.SDCClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * On-disk index of the definition classes of each stage library.
+ *
+ * An entry is keyed by a checksum of the library jars, built from the CRC and size of every jar entry as recorded in
+ * the jar central directory (so the jars don't have to be read in full) and from the SDC version. While the checksum
+ * matches, the library classes are taken from the index and their definitions are not validated again, they passed
+ * validation when the entry was written. Any change to the library jars or an SDC upgrade invalidates the entry.
+ */
+public class StageLibraryDefinitionIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(StageLibraryDefinitionIndex.class);
+
+  static final String INDEX_DIR = "stage-library-index";
+
+  private static final String CHECKSUM = "checksum";
+  private static final String CLASSES = "classes";
+
+  private final File dir;
+  private final String sdcVersion;
+  private final ObjectMapper json;
+
+  public StageLibraryDefinitionIndex(File dir, String sdcVersion) {
+    this.dir = dir;
+    this.sdcVersion = sdcVersion;
+    json = ObjectMapperFactory.get();
+  }
+
+  /**
+   * Returns the checksum of the library jars, or null if the library can't be indexed because it isn't loaded from
+   * jar files only.
+   */
+  public String getChecksum(ClassLoader cl) {
+    if (!(cl instanceof SDCClassLoader)) {
+      return null;
+    }
+    URL[] urls = ((SDCClassLoader) cl).getURLs();
+    if (urls.length == 0) {
+      return null;
+    }
+    List<File> jars = new ArrayList<>(urls.length);
+    for (URL url : urls) {
+      if (!"file".equals(url.getProtocol())) {
+        return null;
+      }
+      File jar;
+      try {
+        jar = new File(url.toURI());
+      } catch (URISyntaxException | IllegalArgumentException ex) {
+        return null;
+      }
+      // Directories have no checksum that changes with their contents
+      if (!jar.isFile()) {
+        return null;
+      }
+      jars.add(jar);
+    }
+    jars.sort((f1, f2) -> f1.getName().compareTo(f2.getName()));
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(sdcVersion, StandardCharsets.UTF_8);
+    for (File jar : jars) {
+      hasher.putString(jar.getName(), StandardCharsets.UTF_8);
+      try (ZipFile zip = new ZipFile(jar)) {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          hasher.putString(entry.getName(), StandardCharsets.UTF_8);
+          hasher.putLong(entry.getCrc());
+          hasher.putLong(entry.getSize());
+        }
+      } catch (IOException ex) {
+        LOG.warn("Could not compute the checksum of '{}', the library won't be indexed: {}", jar, ex.toString());
+        return null;
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the indexed class names of the library per definition resource, or null if there is no entry for the
+   * given checksum.
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, List<String>> read(String library, String checksum) {
+    if (checksum == null) {
+      return null;
+    }
+    DataStore ds = new DataStore(getFile(library));
+    try {
+      if (!ds.exists()) {
+        return null;
+      }
+      Map<String, Object> entry;
+      try (InputStream is = ds.getInputStream()) {
+        entry = json.readValue(is, Map.class);
+      }
+      if (!checksum.equals(entry.get(CHECKSUM)) || !(entry.get(CLASSES) instanceof Map)) {
+        LOG.debug("Definition index of library '{}' is out of date", library);
+        return null;
+      }
+      return (Map<String, List<String>>) entry.get(CLASSES);
+    } catch (IOException | RuntimeException ex) {
+      LOG.warn("Ignoring the definition index of library '{}': {}", library, ex.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Writes the entry of the library, a failure is logged and the library is simply loaded in full next time.
+   */
+  public void write(String library, String checksum, Map<String, List<String>> classes) {
+    if (checksum == null) {
+      return;
+    }
+    Map<String, Object> entry = new LinkedHashMap<>();
+    entry.put(CHECKSUM, checksum);
+    entry.put(CLASSES, Collections.unmodifiableMap(classes));
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      LOG.warn("Could not create the definition index directory '{}'", dir);
+      return;
+    }
+    DataStore ds = new DataStore(getFile(library));
+    try (OutputStream os = ds.getOutputStream()) {
+      json.writeValue(os, entry);
+      ds.commit(os);
+    } catch (IOException ex) {
+      LOG.warn("Could not write the definition index of library '{}': {}", library, ex.toString(), ex);
+    } finally {
+      ds.release();
+    }
+  }
+
+  File getFile(String library) {
+    return new File(dir, library + ".json");
+  }
+
+}
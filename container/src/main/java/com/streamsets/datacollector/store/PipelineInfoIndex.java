@@ -0,0 +1,385 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.store;
+
+import com.streamsets.pipeline.api.impl.Utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory index of pipeline infos kept sorted by every supported sort key and by label, so that a page of the
+ * pipeline listing can be served without looking at all pipelines. Queries without a filter text or custom filter
+ * cost O(offset + len) regardless of the number of pipelines.
+ *
+ * The index never modifies the infos; an updated info has to be put into the index again.
+ */
+public class PipelineInfoIndex {
+  private static final String LABELS = "labels";
+
+  public enum SortKey {
+    ID(Comparator.comparing(PipelineInfo::getPipelineId)),
+    TITLE(Comparator.comparing(PipelineInfoIndex::getTitle)),
+    LAST_MODIFIED(nullsFirst(PipelineInfo::getLastModified)),
+    CREATED(nullsFirst(PipelineInfo::getCreated)),
+    CREATOR(nullsFirst(PipelineInfo::getCreator)),
+    ;
+
+    private final Comparator<PipelineInfo> comparator;
+
+    SortKey(Comparator<PipelineInfo> comparator) {
+      // Pipeline ID makes the order total, infos with equal keys would replace each other in the sorted sets otherwise
+      this.comparator = comparator.thenComparing(PipelineInfo::getPipelineId);
+    }
+
+    public Comparator<PipelineInfo> getComparator() {
+      return comparator;
+    }
+  }
+
+  /**
+   * Describes one page of the pipeline listing.
+   */
+  public static class Query {
+    private String filterText;
+    private String label;
+    private Predicate<PipelineInfo> filter;
+    private SortKey sortKey = SortKey.ID;
+    private boolean descending;
+    private int offset;
+    private int len = -1;
+
+    public Query() {
+    }
+
+    private Query(Query query) {
+      this.filterText = query.filterText;
+      this.label = query.label;
+      this.filter = query.filter;
+      this.sortKey = query.sortKey;
+      this.descending = query.descending;
+      this.offset = query.offset;
+      this.len = query.len;
+    }
+
+    /**
+     * Case insensitive text the pipeline title (or ID if it has no title) has to contain.
+     */
+    public Query withFilterText(String filterText) {
+      this.filterText = filterText == null || filterText.isEmpty() ? null : filterText.toLowerCase();
+      return this;
+    }
+
+    /**
+     * Label the pipeline has to have in its metadata.
+     */
+    public Query withLabel(String label) {
+      this.label = label;
+      return this;
+    }
+
+    /**
+     * Additional condition the pipeline has to meet, combined with the already set one.
+     */
+    public Query withFilter(Predicate<PipelineInfo> filter) {
+      this.filter = this.filter == null ? filter : this.filter.and(filter);
+      return this;
+    }
+
+    public Query withOrder(SortKey sortKey, boolean descending) {
+      this.sortKey = Utils.checkNotNull(sortKey, "sortKey");
+      this.descending = descending;
+      return this;
+    }
+
+    /**
+     * Window of the matching pipelines to return, all of them from offset if len is negative.
+     */
+    public Query withPage(int offset, int len) {
+      this.offset = Math.max(0, offset);
+      this.len = len;
+      return this;
+    }
+
+    /**
+     * Returns copy of this query with given filter added, leaving this query untouched.
+     */
+    public Query and(Predicate<PipelineInfo> filter) {
+      return new Query(this).withFilter(filter);
+    }
+
+    public String getFilterText() {
+      return filterText;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    public SortKey getSortKey() {
+      return sortKey;
+    }
+
+    public boolean isDescending() {
+      return descending;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getLen() {
+      return len;
+    }
+
+    // Label is not checked here, candidates are taken from the label index instead
+    boolean matches(PipelineInfo info) {
+      if (filterText != null && !getTitle(info).toLowerCase().contains(filterText)) {
+        return false;
+      }
+      return filter == null || filter.test(info);
+    }
+
+    boolean isFiltered() {
+      return filterText != null || filter != null;
+    }
+  }
+
+  /**
+   * Result of a query, the requested page and the number of all matching pipelines.
+   */
+  public static class Page {
+    private final List<PipelineInfo> pipelines;
+    private final int totalCount;
+
+    public Page(List<PipelineInfo> pipelines, int totalCount) {
+      this.pipelines = Collections.unmodifiableList(pipelines);
+      this.totalCount = totalCount;
+    }
+
+    public List<PipelineInfo> getPipelines() {
+      return pipelines;
+    }
+
+    public int getTotalCount() {
+      return totalCount;
+    }
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, PipelineInfo> pipelines = new HashMap<>();
+  private final Map<SortKey, NavigableSet<PipelineInfo>> sorted = newSortedSets();
+  // Infos of every label, sorted by every sort key as well
+  private final Map<String, Map<SortKey, NavigableSet<PipelineInfo>>> labels = new HashMap<>();
+
+  public PipelineInfoIndex() {
+  }
+
+  public PipelineInfoIndex(Collection<PipelineInfo> infos) {
+    this();
+    for (PipelineInfo info : infos) {
+      put(info);
+    }
+  }
+
+  private static Map<SortKey, NavigableSet<PipelineInfo>> newSortedSets() {
+    Map<SortKey, NavigableSet<PipelineInfo>> sets = new EnumMap<>(SortKey.class);
+    for (SortKey key : SortKey.values()) {
+      sets.put(key, new TreeSet<>(key.getComparator()));
+    }
+    return sets;
+  }
+
+  private static <T extends Comparable<? super T>> Comparator<PipelineInfo> nullsFirst(
+      Function<PipelineInfo, T> key
+  ) {
+    return Comparator.comparing(key, Comparator.nullsFirst(Comparator.naturalOrder()));
+  }
+
+  private static String getTitle(PipelineInfo info) {
+    return info.getTitle() != null ? info.getTitle() : info.getPipelineId();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Collection<String> getLabels(PipelineInfo info) {
+    Map<String, Object> metadata = info.getMetadata();
+    if (metadata != null && metadata.get(LABELS) instanceof Collection) {
+      return (Collection<String>) metadata.get(LABELS);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Adds the info or replaces the info of the pipeline with the same ID.
+   */
+  public void put(PipelineInfo info) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(info.getPipelineId());
+      pipelines.put(info.getPipelineId(), info);
+      for (NavigableSet<PipelineInfo> set : sorted.values()) {
+        set.add(info);
+      }
+      for (String label : getLabels(info)) {
+        for (NavigableSet<PipelineInfo> set : labels.computeIfAbsent(label, l -> newSortedSets()).values()) {
+          set.add(info);
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String pipelineId) {
+    lock.writeLock().lock();
+    try {
+      removeInternal(pipelineId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void removeInternal(String pipelineId) {
+    PipelineInfo old = pipelines.remove(pipelineId);
+    if (old != null) {
+      for (NavigableSet<PipelineInfo> set : sorted.values()) {
+        set.remove(old);
+      }
+      for (String label : getLabels(old)) {
+        Map<SortKey, NavigableSet<PipelineInfo>> labeled = labels.get(label);
+        if (labeled != null) {
+          for (NavigableSet<PipelineInfo> set : labeled.values()) {
+            set.remove(old);
+          }
+          if (labeled.get(SortKey.ID).isEmpty()) {
+            labels.remove(label);
+          }
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      pipelines.clear();
+      for (NavigableSet<PipelineInfo> set : sorted.values()) {
+        set.clear();
+      }
+      labels.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public PipelineInfo get(String pipelineId) {
+    lock.readLock().lock();
+    try {
+      return pipelines.get(pipelineId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean contains(String pipelineId) {
+    return get(pipelineId) != null;
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return pipelines.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns all infos ordered by pipeline ID.
+   */
+  public List<PipelineInfo> getAll() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(sorted.get(SortKey.ID));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns all labels used by at least one pipeline.
+   */
+  public Set<String> getLabels() {
+    lock.readLock().lock();
+    try {
+      return new HashSet<>(labels.keySet());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public Page query(Query query) {
+    List<PipelineInfo> page = new ArrayList<>(query.getLen() < 0 ? 16 : Math.min(query.getLen(), 1024));
+    int offset = query.getOffset();
+    int len = query.getLen();
+    lock.readLock().lock();
+    try {
+      Map<SortKey, NavigableSet<PipelineInfo>> sets = sorted;
+      if (query.getLabel() != null) {
+        sets = labels.get(query.getLabel());
+        if (sets == null) {
+          return new Page(page, 0);
+        }
+      }
+      NavigableSet<PipelineInfo> all = sets.get(query.getSortKey());
+      Collection<PipelineInfo> candidates = query.isDescending() ? all.descendingSet() : all;
+
+      int matching = 0;
+      for (PipelineInfo info : candidates) {
+        if (!query.matches(info)) {
+          continue;
+        }
+        if (matching >= offset && (len < 0 || page.size() < len)) {
+          page.add(info);
+        }
+        matching++;
+        if (!query.isFiltered() && len >= 0 && page.size() == len) {
+          // All candidates match, no need to look at the rest just to count them
+          matching = candidates.size();
+          break;
+        }
+      }
+      return new Page(page, matching);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+}
@@ -44,6 +44,11 @@ public interface PipelineStoreTask extends Task {
 
   List<PipelineInfo> getPipelines() throws PipelineStoreException;
 
+  /**
+   * Returns one page of the pipelines matching the query, ordered as the query requests.
+   */
+  PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) throws PipelineStoreException;
+
   PipelineInfo getInfo(String name) throws PipelineException;
 
   List<PipelineRevInfo> getHistory(String name) throws PipelineException;
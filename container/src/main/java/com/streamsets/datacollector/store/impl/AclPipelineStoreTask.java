@@ -25,6 +25,7 @@ import com.streamsets.datacollector.execution.StateEventListener;
 import com.streamsets.datacollector.restapi.bean.UserJson;
 import com.streamsets.datacollector.store.AclStoreTask;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineRevInfo;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
@@ -113,6 +114,11 @@ public class AclPipelineStoreTask implements PipelineStoreTask {
     return new ArrayList<>(filterPipelineBasedOnReadAcl());
   }
 
+  @Override
+  public PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) throws PipelineStoreException {
+    return pipelineStore.getPipelines(query.and(this::isReadPermissionGranted));
+  }
+
   @Override
   public PipelineInfo getInfo(String name) throws PipelineException {
     aclStore.validateReadPermission(name, currentUser);
@@ -208,16 +214,20 @@ public class AclPipelineStoreTask implements PipelineStoreTask {
     return Collections2.filter(pipelineStore.getPipelines(), new Predicate<PipelineInfo>() {
       @Override
       public boolean apply(PipelineInfo pipelineInfo) {
-        try {
-          return aclStore.isPermissionGranted(pipelineInfo.getPipelineId(), EnumSet.of(Action.READ), currentUser);
-        } catch (PipelineException e) {
-          LOG.warn("Failed to validate ACL");
-        }
-        return false;
+        return isReadPermissionGranted(pipelineInfo);
       }
     });
   }
 
+  private boolean isReadPermissionGranted(PipelineInfo pipelineInfo) {
+    try {
+      return aclStore.isPermissionGranted(pipelineInfo.getPipelineId(), EnumSet.of(Action.READ), currentUser);
+    } catch (PipelineException e) {
+      LOG.warn("Failed to validate ACL");
+    }
+    return false;
+  }
+
   @Override
   public PipelineFragmentConfiguration createPipelineFragment(
       String user,
@@ -21,6 +21,7 @@ import com.streamsets.datacollector.config.PipelineFragmentConfiguration;
 import com.streamsets.datacollector.config.RuleDefinitions;
 import com.streamsets.datacollector.execution.StateEventListener;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineRevInfo;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
@@ -30,23 +31,20 @@ import com.streamsets.datacollector.util.PipelineException;
 import com.streamsets.pipeline.api.impl.Utils;
 
 import javax.inject.Inject;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 public class CachePipelineStoreTask implements PipelineStoreTask {
 
   private final PipelineStoreTask pipelineStore;
-  private final ConcurrentMap<String, PipelineInfo> pipelineInfoMap;
+  private final PipelineInfoIndex pipelineInfoIndex;
   private final LockCache<String> lockCache;
 
   @Inject
   public CachePipelineStoreTask(PipelineStoreTask pipelineStore, LockCache<String> lockCache) {
     this.pipelineStore = pipelineStore;
-    pipelineInfoMap = new ConcurrentHashMap<>();
+    pipelineInfoIndex = new PipelineInfoIndex();
     this.lockCache = lockCache;
   }
 
@@ -60,7 +58,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
     pipelineStore.init();
     try {
       for (PipelineInfo info: pipelineStore.getPipelines()) {
-        pipelineInfoMap.put(info.getPipelineId(), info);
+        pipelineInfoIndex.put(info);
       }
     } catch (PipelineStoreException e) {
       throw new RuntimeException(Utils.format("Cannot fetch list of pipelines due to: '{}'", e), e);
@@ -80,7 +78,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
   @Override
   public void stop() {
     pipelineStore.stop();
-    pipelineInfoMap.clear();
+    pipelineInfoIndex.clear();
   }
 
   @Override
@@ -101,7 +99,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
       PipelineConfiguration pipelineConf = pipelineStore
           .create(user, pipelineId, pipelineTitle, description, isRemote, draft);
       if (!draft) {
-        pipelineInfoMap.put(pipelineConf.getInfo().getPipelineId(), pipelineConf.getInfo());
+        pipelineInfoIndex.put(pipelineConf.getInfo());
       }
       return pipelineConf;
     }
@@ -111,18 +109,23 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
   public void delete(String name) throws PipelineException {
     synchronized (lockCache.getLock(name)) {
       pipelineStore.delete(name);
-      pipelineInfoMap.remove(name);
+      pipelineInfoIndex.remove(name);
     }
   }
 
   @Override
   public List<PipelineInfo> getPipelines() throws PipelineStoreException {
-    return Collections.unmodifiableList(new ArrayList<>(pipelineInfoMap.values()));
+    return Collections.unmodifiableList(pipelineInfoIndex.getAll());
+  }
+
+  @Override
+  public PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) {
+    return pipelineInfoIndex.query(query);
   }
 
   @Override
   public PipelineInfo getInfo(String name) throws PipelineStoreException {
-    PipelineInfo pipelineInfo = pipelineInfoMap.get(name);
+    PipelineInfo pipelineInfo = pipelineInfoIndex.get(name);
     if (pipelineInfo == null) {
       throw new PipelineStoreException(ContainerError.CONTAINER_0200, name);
     } else {
@@ -140,7 +143,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
     PipelineConfiguration pipeline) throws PipelineException {
     synchronized (lockCache.getLock(name)) {
       PipelineConfiguration pipelineConf = pipelineStore.save(user, name, tag, tagDescription, pipeline);
-      pipelineInfoMap.put(name, pipelineConf.getInfo());
+      pipelineInfoIndex.put(pipelineConf.getInfo());
       return pipelineConf;
     }
   }
@@ -152,7 +155,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
 
   @Override
   public boolean hasPipeline(String name) {
-    return pipelineInfoMap.containsKey(name);
+    return pipelineInfoIndex.contains(name);
   }
 
   @Override
@@ -194,7 +197,7 @@ public class CachePipelineStoreTask implements PipelineStoreTask {
   ) throws PipelineException {
     synchronized (lockCache.getLock(name)) {
       PipelineConfiguration pipelineConf = pipelineStore.saveMetadata(user, name, rev, metadata);
-      pipelineInfoMap.put(name, pipelineConf.getInfo());
+      pipelineInfoIndex.put(pipelineConf.getInfo());
       return pipelineConf;
     }
   }
@@ -39,11 +39,11 @@ import com.streamsets.datacollector.main.DataCollectorBuildInfo;
 import com.streamsets.datacollector.main.RuntimeInfo;
 import com.streamsets.datacollector.restapi.bean.BeanHelper;
 import com.streamsets.datacollector.restapi.bean.PipelineConfigurationJson;
-import com.streamsets.datacollector.restapi.bean.PipelineInfoJson;
 import com.streamsets.datacollector.restapi.bean.RuleDefinitionsJson;
 import com.streamsets.datacollector.runner.production.OffsetFileUtil;
 import com.streamsets.datacollector.stagelibrary.StageLibraryTask;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineRevInfo;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
@@ -98,6 +98,7 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
   private final PipelineStateStore pipelineStateStore;
   private final ConcurrentMap<String, RuleDefinitions> pipelineToRuleDefinitionMap;
   private StateEventListener stateEventListener;
+  private PipelineInfoManifest manifest;
 
   @Inject
   public FilePipelineStoreTask(RuntimeInfo runtimeInfo, StageLibraryTask stageLibrary,
@@ -131,6 +132,8 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
         throw new RuntimeException(Utils.format("Could not create directory '{}'", storeDir), e);
       }
     }
+    manifest = new PipelineInfoManifest(storeDir);
+    manifest.load();
     if (pipelineStateStore != null) {
       pipelineStateStore.init();
     }
@@ -138,6 +141,9 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
 
   @Override
   public void stopTask() {
+    if (manifest != null) {
+      manifest.save();
+    }
     if (pipelineStateStore != null) {
       pipelineStateStore.destroy();
     }
@@ -152,6 +158,10 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
     return getPipelineDir(name).resolve(INFO_FILE);
   }
 
+  private String getManifestKey(String name) {
+    return getPipelineDir(name).getFileName().toString();
+  }
+
   private Path getPipelineFile(String name) {
     return getPipelineDir(name).resolve(PIPELINE_FILE);
   }
@@ -242,6 +252,8 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
           json.writeValue(pipelineFile, BeanHelper.wrapPipelineConfiguration(pipeline));
         } catch (Exception ex) {
           throw new PipelineStoreException(ContainerError.CONTAINER_0202, pipelineId, ex.toString(), ex);
+        } finally {
+          manifest.remove(getManifestKey(pipelineId));
         }
         if (pipelineStateStore != null) {
           pipelineStateStore.edited(user, pipelineId, REV, ExecutionMode.STANDALONE, isRemote);
@@ -279,6 +291,7 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
         if (!cleanUp(name)) {
           throw new PipelineStoreException(ContainerError.CONTAINER_0203, name);
         }
+        manifest.remove(getManifestKey(name));
         PipelineState latestState = new PipelineStateImpl(
             currentState.getUser(),
             currentState.getPipelineId(),
@@ -319,27 +332,32 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
       throw new PipelineStoreException(ContainerError.CONTAINER_0213, storeDir, ex);
     }
 
+    // Only info files that changed since they were last seen are parsed
     for (String name : fileNames) {
-      PipelineInfoJson pipelineInfoJsonBean;
-      try (InputStream infoFile = Files.newInputStream(getInfoFile(name))){
-        pipelineInfoJsonBean = json.readValue(infoFile, PipelineInfoJson.class);
+      try {
+        pipelineInfoList.add(manifest.get(name, getInfoFile(name)));
       } catch (IOException e) {
         throw new PipelineStoreException(ContainerError.CONTAINER_0206, name, e);
       }
-      pipelineInfoList.add(pipelineInfoJsonBean.getPipelineInfo());
     }
+    manifest.retainAll(fileNames);
+    manifest.save();
     return Collections.unmodifiableList(pipelineInfoList);
   }
 
+  @Override
+  public PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) throws PipelineStoreException {
+    return new PipelineInfoIndex(getPipelines()).query(query);
+  }
+
   @Override
   public PipelineInfo getInfo(String name) throws PipelineStoreException {
     synchronized (lockCache.getLock(name)) {
       if (!hasPipeline(name)) {
         throw new PipelineStoreException(ContainerError.CONTAINER_0200, name);
       }
-      try (InputStream infoFile = Files.newInputStream(getInfoFile(name))) {
-        PipelineInfoJson pipelineInfoJsonBean = json.readValue(infoFile, PipelineInfoJson.class);
-        return pipelineInfoJsonBean.getPipelineInfo();
+      try {
+        return manifest.get(getManifestKey(name), getInfoFile(name));
       } catch (Exception ex) {
         throw new PipelineStoreException(ContainerError.CONTAINER_0206, name, ex);
       }
@@ -401,6 +419,8 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
 
       } catch (Exception ex) {
         throw new PipelineStoreException(ContainerError.CONTAINER_0204, name, ex.toString(), ex);
+      } finally {
+        manifest.remove(getManifestKey(name));
       }
       pipeline.setPipelineInfo(info);
       return pipeline;
@@ -605,6 +625,8 @@ public class FilePipelineStoreTask extends AbstractTask implements PipelineStore
         json.writeValue(pipelineFile, BeanHelper.wrapPipelineConfiguration(savedPipeline));
       } catch (Exception ex) {
         throw new PipelineStoreException(ContainerError.CONTAINER_0204, name, ex.toString(), ex);
+      } finally {
+        manifest.remove(getManifestKey(name));
       }
       return savedPipeline;
     }
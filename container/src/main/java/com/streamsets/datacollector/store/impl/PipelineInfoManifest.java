@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.store.impl;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.streamsets.datacollector.io.DataStore;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
+import com.streamsets.datacollector.restapi.bean.PipelineInfoJson;
+import com.streamsets.datacollector.store.PipelineInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed <code>info.json</code> files of all pipelines, persisted as a single manifest file in the pipeline store
+ * directory so that listing the pipelines after a restart doesn't have to parse every info file.
+ *
+ * An entry is used only while the info file has the size and modification time it had when the entry was created,
+ * so info files changed behind the store's back are parsed again. That also makes a stale manifest (e.g. after a
+ * crash) harmless.
+ */
+class PipelineInfoManifest {
+  private static final Logger LOG = LoggerFactory.getLogger(PipelineInfoManifest.class);
+
+  // Hidden, so that it's not listed as a pipeline directory
+  static final String MANIFEST_FILE = ".pipelines.manifest";
+
+  private static final TypeReference<Map<String, Entry>> MANIFEST_TYPE = new TypeReference<Map<String, Entry>>() {};
+
+  static class Entry {
+    private final long modified;
+    private final long size;
+    private final PipelineInfoJson info;
+
+    @JsonCreator
+    Entry(
+        @JsonProperty("modified") long modified,
+        @JsonProperty("size") long size,
+        @JsonProperty("info") PipelineInfoJson info
+    ) {
+      this.modified = modified;
+      this.size = size;
+      this.info = info;
+    }
+
+    public long getModified() {
+      return modified;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public PipelineInfoJson getInfo() {
+      return info;
+    }
+
+    @JsonIgnore
+    boolean isCurrent(BasicFileAttributes attributes) {
+      return modified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+    }
+  }
+
+  private final Path file;
+  private final ObjectMapper json;
+  // Keyed by pipeline directory name
+  private final ConcurrentMap<String, Entry> entries;
+  private volatile boolean dirty;
+
+  PipelineInfoManifest(Path storeDir) {
+    this.file = storeDir.resolve(MANIFEST_FILE);
+    this.json = ObjectMapperFactory.getOneLine();
+    this.entries = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Loads the persisted manifest, a missing or unreadable manifest just means that all info files will be parsed.
+   */
+  void load() {
+    entries.clear();
+    DataStore dataStore = new DataStore(file.toFile());
+    try {
+      if (dataStore.exists()) {
+        try (InputStream is = dataStore.getInputStream()) {
+          Map<String, Entry> loaded = json.readValue(is, MANIFEST_TYPE);
+          entries.putAll(loaded);
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      LOG.warn("Could not read pipeline manifest '{}', it will be rebuilt: {}", file, ex.toString(), ex);
+      entries.clear();
+    } finally {
+      dataStore.release();
+    }
+    dirty = false;
+  }
+
+  /**
+   * Returns the info stored in the given info file, parsing the file only if it changed since it was last seen.
+   */
+  PipelineInfo get(String dirName, Path infoFile) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(infoFile, BasicFileAttributes.class);
+    Entry entry = entries.get(dirName);
+    if (entry != null && entry.isCurrent(attributes)) {
+      return entry.getInfo().getPipelineInfo();
+    }
+    PipelineInfoJson info;
+    try (InputStream is = Files.newInputStream(infoFile)) {
+      info = json.readValue(is, PipelineInfoJson.class);
+    }
+    entries.put(dirName, new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), info));
+    dirty = true;
+    return info.getPipelineInfo();
+  }
+
+  /**
+   * Forgets the entry of given pipeline directory, must be called whenever the store writes the info file.
+   */
+  void remove(String dirName) {
+    if (entries.remove(dirName) != null) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * Drops the entries of pipeline directories that don't exist anymore.
+   */
+  void retainAll(Collection<String> dirNames) {
+    if (entries.keySet().retainAll(dirNames)) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * Persists the manifest if it changed since it was loaded or saved.
+   */
+  synchronized void save() {
+    if (!dirty) {
+      return;
+    }
+    dirty = false;
+    DataStore dataStore = new DataStore(file.toFile());
+    try (OutputStream os = dataStore.getOutputStream()) {
+      json.writeValue(os, new HashMap<>(entries));
+      dataStore.commit(os);
+    } catch (IOException ex) {
+      dirty = true;
+      LOG.warn("Could not write pipeline manifest '{}': {}", file, ex.toString(), ex);
+    } finally {
+      dataStore.release();
+    }
+  }
+
+}
@@ -20,6 +20,7 @@ import com.streamsets.datacollector.config.PipelineFragmentConfiguration;
 import com.streamsets.datacollector.config.RuleDefinitions;
 import com.streamsets.datacollector.execution.StateEventListener;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineRevInfo;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
@@ -58,6 +59,11 @@ public class SlavePipelineStoreTask  implements PipelineStoreTask {
     return pipelineStore.getPipelines();
   }
 
+  @Override
+  public PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) throws PipelineStoreException {
+    return pipelineStore.getPipelines(query);
+  }
+
   @Override
   public PipelineInfo getInfo(String name) throws PipelineException {
     return pipelineStore.getInfo(name);
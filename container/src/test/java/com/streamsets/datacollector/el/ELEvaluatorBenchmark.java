@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.el;
+
+import com.streamsets.datacollector.definition.ConcreteELDefinitionExtractor;
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.el.ELEvalException;
+import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.lib.el.StringEL;
+import com.streamsets.pipeline.lib.el.TimeEL;
+import com.streamsets.pipeline.lib.el.TimeNowEL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the commons-el interpreter with the opt-in {@link ELCompiler} on representative RecordEL, StringEL and
+ * TimeEL expressions. Run with <code>-t 8</code> to see the effect of the shared interpreter cache under contention.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ELEvaluatorBenchmark {
+
+  @Param({"false", "true"})
+  public boolean compiled;
+
+  @Param({
+      "${record:value('/name')}",
+      "${record:value('/address/zip') == '94105' && record:exists('/age')}",
+      "${str:toUpper(str:trim(record:value('/name')))}",
+      "${str:concat(record:value('/name'), str:substring(record:value('/address/city'), 0, 3))}",
+      "${time:extractStringFromDate(time:now(), 'yyyy-MM-dd')}",
+      "/data/${YYYY()}/${MM()}/${DD()}/${record:value('/address/city')}",
+  })
+  public String expression;
+
+  private ELEvaluator evaluator;
+  private ELVars variables;
+
+  @Setup
+  public void setUp() {
+    if (compiled) {
+      System.setProperty(ELEvaluator.COMPILE_EXPRESSIONS_PROPERTY, "true");
+    }
+    evaluator = new ELEvaluator(
+        "benchmark",
+        false,
+        ConcreteELDefinitionExtractor.get(),
+        RecordEL.class,
+        StringEL.class,
+        TimeEL.class,
+        TimeNowEL.class
+    );
+    System.clearProperty(ELEvaluator.COMPILE_EXPRESSIONS_PROPERTY);
+
+    Map<String, Field> address = new LinkedHashMap<>();
+    address.put("city", Field.create("San Francisco"));
+    address.put("zip", Field.create("94105"));
+    Map<String, Field> root = new LinkedHashMap<>();
+    root.put("name", Field.create("  streamsets  "));
+    root.put("age", Field.create(5));
+    root.put("address", Field.create(address));
+    Record record = new RecordImpl("stage", "id", null, null);
+    record.set(Field.create(root));
+
+    variables = evaluator.createVariables();
+    RecordEL.setRecordInContext(variables, record);
+    TimeNowEL.setTimeNowInContext(variables, new Date());
+    TimeEL.setCalendarInContext(variables, Calendar.getInstance());
+  }
+
+  @TearDown
+  public void tearDown() {
+    System.clearProperty(ELEvaluator.COMPILE_EXPRESSIONS_PROPERTY);
+  }
+
+  @Benchmark
+  public Object evaluate() throws ELEvalException {
+    return evaluator.eval(variables, expression, Object.class);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ELEvaluatorBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.el;
+
+import com.google.common.collect.ImmutableMap;
+import com.streamsets.datacollector.definition.ConcreteELDefinitionExtractor;
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.pipeline.api.ElConstant;
+import com.streamsets.pipeline.api.ElFunction;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.el.ELEvalException;
+import com.streamsets.pipeline.api.el.ELVars;
+import com.streamsets.pipeline.lib.el.RecordEL;
+import com.streamsets.pipeline.lib.el.StringEL;
+import com.streamsets.pipeline.lib.el.TimeNowEL;
+import org.apache.commons.el.ExpressionEvaluatorImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TestELCompiler {
+
+  private static final Class[] EL_CLASSES = {RecordEL.class, StringEL.class, TimeNowEL.class, TestEl.class};
+
+  private ELEvaluator interpreted;
+  private ELEvaluator compiled;
+  private ELVars variables;
+
+  public static class TestEl {
+    @ElConstant(name = "GREETING", description = "")
+    public static final String GREETING = "hello";
+
+    @ElFunction(prefix = "test", name = "add")
+    public static int add(int a, long b) {
+      return (int) (a + b);
+    }
+
+    @ElFunction(prefix = "test", name = "concat4")
+    public static String concat4(String a, String b, String c, String d) {
+      return a + b + c + d;
+    }
+
+    @ElFunction(prefix = "test", name = "map")
+    public static Map<String, String> map() {
+      return ImmutableMap.of("k", "v");
+    }
+
+    @ElFunction(prefix = "test", name = "fail")
+    public static String fail() {
+      throw new IllegalStateException("failed");
+    }
+  }
+
+  @Before
+  public void setUp() {
+    interpreted = new ELEvaluator("interpreted", false, ConcreteELDefinitionExtractor.get(), EL_CLASSES);
+    System.setProperty(ELEvaluator.COMPILE_EXPRESSIONS_PROPERTY, "true");
+    compiled = new ELEvaluator("compiled", false, ConcreteELDefinitionExtractor.get(), EL_CLASSES);
+
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create("A"));
+    map.put("n", Field.create(5));
+    Record record = new RecordImpl("stage", "id", null, null);
+    record.set(Field.create(map));
+
+    variables = compiled.createVariables();
+    variables.addVariable("x", 3);
+    RecordEL.setRecordInContext(variables, record);
+    TimeNowEL.setTimeNowInContext(variables, new Date(0));
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(ELEvaluator.COMPILE_EXPRESSIONS_PROPERTY);
+  }
+
+  // returns the result or the error message, so coercion errors are compared as well
+  private Object evaluate(ELEvaluator evaluator, String expression, Class<?> returnType) {
+    try {
+      return evaluator.eval(variables, expression, returnType);
+    } catch (ELEvalException ex) {
+      return "ERROR: " + ex.getMessage();
+    }
+  }
+
+  private void assertSameResult(String expression, Class<?> returnType) {
+    Assert.assertEquals(
+        expression,
+        evaluate(interpreted, expression, returnType),
+        evaluate(compiled, expression, returnType)
+    );
+  }
+
+  private void assertSameError(String expression) {
+    Object result = evaluate(interpreted, expression, Object.class);
+    Assert.assertTrue(expression, result instanceof String && ((String) result).startsWith("ERROR: "));
+    Assert.assertEquals(expression, result, evaluate(compiled, expression, Object.class));
+  }
+
+  @Test
+  public void testSameResults() {
+    String[] expressions = {
+        "",
+        "static",
+        "${1 + 2}",
+        "${x}",
+        "${GREETING}",
+        "${record:value('/a')}",
+        "${record:value('/n') * x}",
+        "${record:exists('/b')}",
+        "prefix-${str:toUpper(record:value('/a'))}-${x}",
+        "${str:substring(GREETING, 1, x)}",
+        "${test:add(x, '4')}",
+        "${test:concat4('a', 'b', GREETING, x)}",
+        "${x > 2 && GREETING == 'hello'}",
+        "${!empty GREETING}",
+        "${-x}",
+        "${x > 2 ? 'yes' : 'no'}",
+        "${test:map()['k']}",
+        "${test:map().k}",
+        "${x == 3 or test:fail()}",
+        "${time:extractStringFromDate(time:now(), 'yyyy')}",
+    };
+    Class[] returnTypes = {Object.class, String.class, Integer.class, Long.class, Boolean.class};
+    for (String expression : expressions) {
+      for (Class returnType : returnTypes) {
+        assertSameResult(expression, returnType);
+      }
+    }
+  }
+
+  @Test
+  public void testSameErrors() {
+    assertSameError("${unknown}");
+    assertSameError("${test:fail()}");
+    assertSameError("${test:nope()}");
+    assertSameError("${test:add(1)}");
+    assertSameError("${1 +}");
+  }
+
+  @Test
+  public void testVariableShadowsConstant() throws ELEvalException {
+    Assert.assertEquals("hello", compiled.eval(variables, "${GREETING}", String.class));
+    variables.addVariable("GREETING", "bye");
+    Assert.assertEquals("bye", compiled.eval(variables, "${GREETING}", String.class));
+  }
+
+  @Test
+  public void testCompiledExpressionsAreCached() throws Exception {
+    ELCompiler compiler = new ELCompiler(
+        ImmutableMap.<String, Object>of(),
+        (prefix, name) -> null
+    );
+    ExpressionEvaluatorImpl evaluator = new ExpressionEvaluatorImpl();
+    ELCompiler.CompiledExpression expression = compiler.compile(evaluator, "${1}");
+    Assert.assertSame(expression, compiler.compile(evaluator, "${1}"));
+    Assert.assertEquals(1, compiler.getCachedCount());
+    for (int i = 0; i < ELCompiler.MAX_CACHED_EXPRESSIONS + 10; i++) {
+      compiler.compile(evaluator, "${" + i + "}");
+    }
+    Assert.assertTrue(compiler.getCachedCount() <= ELCompiler.MAX_CACHED_EXPRESSIONS);
+  }
+
+}
@@ -52,6 +52,7 @@ import com.streamsets.datacollector.runner.production.SourceOffsetUpgrader;
 import com.streamsets.datacollector.stagelibrary.StageLibraryTask;
 import com.streamsets.datacollector.store.AclStoreTask;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineRevInfo;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
@@ -767,6 +768,11 @@ public class TestRemoteDataCollector {
       return null;
     }
 
+    @Override
+    public PipelineInfoIndex.Page getPipelines(PipelineInfoIndex.Query query) throws PipelineStoreException {
+      return null;
+    }
+
     @Override
     public PipelineInfo getInfo(String name) throws PipelineStoreException {
       return new PipelineInfo(name, "title", null, null, null, null, null, null, null, false, null, null, null);
@@ -15,10 +15,22 @@
  */
 package com.streamsets.datacollector.execution.snapshot;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.streamsets.datacollector.execution.Snapshot;
+import com.streamsets.datacollector.execution.snapshot.common.SnapshotData;
+import com.streamsets.datacollector.execution.snapshot.file.BinarySnapshot;
 import com.streamsets.datacollector.execution.snapshot.file.FileSnapshotStore;
 import com.streamsets.datacollector.execution.snapshot.file.dagger.FileSnapshotStoreModule;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
 import com.streamsets.datacollector.main.RuntimeInfo;
 import com.streamsets.datacollector.main.RuntimeModule;
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.datacollector.restapi.bean.SnapshotDataJson;
+import com.streamsets.datacollector.runner.StageOutput;
+import com.streamsets.datacollector.util.PipelineDirectoryUtil;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.impl.ErrorMessage;
 
 import org.junit.BeforeClass;
 
@@ -33,8 +45,15 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class TestFileSnapshotStore extends TestSnapshotStore {
+  private RuntimeInfo runtimeInfo;
 
   @BeforeClass
   public static void beforeClass() {
@@ -52,6 +71,7 @@ public class TestFileSnapshotStore extends TestSnapshotStore {
     FileUtils.deleteDirectory(f);
     ObjectGraph objectGraph = ObjectGraph.create(FileSnapshotStoreModule.class);
     snapshotStore = objectGraph.get(FileSnapshotStore.class);
+    runtimeInfo = objectGraph.get(RuntimeInfo.class);
   }
 
   @After
@@ -64,4 +84,141 @@ public class TestFileSnapshotStore extends TestSnapshotStore {
     Assert.assertTrue(snapshotStore instanceof FileSnapshotStore);
   }
 
+  private static List<Record> createRecords(String stage, int count) {
+    List<Record> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Record record = new RecordImpl("s", stage + ":" + i, null, null);
+      record.set(Field.create(i));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static List<List<StageOutput>> createSnapshotBatches(int batches) {
+    List<List<StageOutput>> snapshotBatches = new ArrayList<>();
+    for (int i = 0; i < batches; i++) {
+      Map<String, List<Record>> sourceOutput = new LinkedHashMap<>();
+      sourceOutput.put("sourceLane", createRecords("source", 100));
+      Map<String, List<Record>> processorOutput = new LinkedHashMap<>();
+      processorOutput.put("processorLane1", createRecords("processor1", 50));
+      processorOutput.put("processorLane2", createRecords("processor2", 5));
+      List<StageOutput> batch = new ArrayList<>();
+      batch.add(new StageOutput("source", sourceOutput, new ArrayList<>(), null, createRecords("event", 1)));
+      batch.add(new StageOutput(
+          "processor",
+          processorOutput,
+          createRecords("error", 10),
+          Collections.singletonList(new ErrorMessage("CONTAINER_0001", "error", System.currentTimeMillis())),
+          null
+      ));
+      batch.add(new StageOutput("target", null, new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+      snapshotBatches.add(batch);
+    }
+    return snapshotBatches;
+  }
+
+  private static JsonNode readSnapshotBatches(InputStream is) throws IOException {
+    try {
+      return ObjectMapperFactory.get().readTree(is).get("snapshotBatches");
+    } finally {
+      is.close();
+    }
+  }
+
+  private Snapshot saveSnapshot(List<List<StageOutput>> snapshotBatches) throws Exception {
+    snapshotStore.create("user", "pipeline", "0", "snapshot", "label", false);
+    snapshotStore.save("pipeline", "0", "snapshot", 1, snapshotBatches);
+    return snapshotStore.get("pipeline", "0", "snapshot");
+  }
+
+  @Test
+  public void testBinarySnapshotRoundTrip() throws Exception {
+    Snapshot snapshot = saveSnapshot(createSnapshotBatches(3));
+    Assert.assertTrue(snapshot instanceof BinarySnapshot);
+
+    JsonNode batches = readSnapshotBatches(snapshot.getOutput());
+    Assert.assertEquals(3, batches.size());
+    for (JsonNode batch : batches) {
+      Assert.assertEquals(3, batch.size());
+      JsonNode source = batch.get(0);
+      Assert.assertEquals("source", source.get("instanceName").asText());
+      Assert.assertEquals(100, source.get("output").get("sourceLane").size());
+      JsonNode record = source.get("output").get("sourceLane").get(99);
+      Assert.assertEquals("99", record.get("value").get("value").asText());
+      Assert.assertEquals("source:99", record.get("header").get("sourceId").asText());
+      Assert.assertEquals(1, source.get("eventRecords").size());
+
+      JsonNode processor = batch.get(1);
+      Assert.assertEquals(50, processor.get("output").get("processorLane1").size());
+      Assert.assertEquals(5, processor.get("output").get("processorLane2").size());
+      Assert.assertEquals(10, processor.get("errorRecords").size());
+      Assert.assertEquals(1, processor.get("stageErrors").size());
+      Assert.assertEquals("error", processor.get("stageErrors").get(0).get("nonLocalized").asText());
+      Assert.assertTrue(processor.get("eventRecords").isNull());
+
+      JsonNode target = batch.get(2);
+      Assert.assertEquals("target", target.get("instanceName").asText());
+      Assert.assertTrue(target.get("output").isNull());
+      Assert.assertEquals(0, target.get("errorRecords").size());
+    }
+  }
+
+  @Test
+  public void testBinarySnapshotPagination() throws Exception {
+    Snapshot snapshot = saveSnapshot(createSnapshotBatches(3));
+
+    JsonNode batches = readSnapshotBatches(snapshot.getOutput(1, "processor", 45, 10));
+    Assert.assertEquals(1, batches.size());
+    Assert.assertEquals(1, batches.get(0).size());
+    JsonNode processor = batches.get(0).get(0);
+    Assert.assertEquals("processor", processor.get("instanceName").asText());
+    JsonNode lane1 = processor.get("output").get("processorLane1");
+    Assert.assertEquals(5, lane1.size());
+    Assert.assertEquals("processor1:45", lane1.get(0).get("header").get("sourceId").asText());
+    Assert.assertEquals(0, processor.get("output").get("processorLane2").size());
+    Assert.assertEquals(0, processor.get("errorRecords").size());
+    Assert.assertEquals(1, processor.get("stageErrors").size());
+
+    batches = readSnapshotBatches(snapshot.getOutput(-1, "target", 0, -1));
+    Assert.assertEquals(3, batches.size());
+    for (JsonNode batch : batches) {
+      Assert.assertEquals(1, batch.size());
+      Assert.assertEquals("target", batch.get(0).get("instanceName").asText());
+    }
+
+    batches = readSnapshotBatches(snapshot.getOutput(-1, null, 0, 2));
+    Assert.assertEquals(3, batches.size());
+    Assert.assertEquals(2, batches.get(2).get(0).get("output").get("sourceLane").size());
+    Assert.assertEquals(2, batches.get(2).get(1).get("errorRecords").size());
+
+    batches = readSnapshotBatches(snapshot.getOutput(5, null, 0, -1));
+    Assert.assertEquals(0, batches.size());
+  }
+
+  @Test
+  public void testLegacyJsonSnapshot() throws Exception {
+    List<List<StageOutput>> snapshotBatches = createSnapshotBatches(2);
+    saveSnapshot(snapshotBatches);
+    File snapshotDir = PipelineDirectoryUtil.getPipelineSnapshotDir(runtimeInfo, "pipeline", "0", "snapshot");
+    Assert.assertTrue(new File(snapshotDir, "snapshot.bin").delete());
+    ObjectMapperFactory.get().writeValue(
+        new File(snapshotDir, "snapshot.json"),
+        new SnapshotDataJson(new SnapshotData(snapshotBatches))
+    );
+
+    Snapshot snapshot = snapshotStore.get("pipeline", "0", "snapshot");
+    Assert.assertFalse(snapshot instanceof BinarySnapshot);
+    Assert.assertEquals(2, readSnapshotBatches(snapshot.getOutput()).size());
+
+    JsonNode batches = readSnapshotBatches(snapshot.getOutput(0, "source", 98, 10));
+    Assert.assertEquals(1, batches.size());
+    Assert.assertEquals(1, batches.get(0).size());
+    Assert.assertEquals(2, batches.get(0).get(0).get("output").get("sourceLane").size());
+
+    // Saving the snapshot again replaces the legacy file
+    snapshotStore.save("pipeline", "0", "snapshot", 1, snapshotBatches);
+    Assert.assertFalse(new File(snapshotDir, "snapshot.json").exists());
+    Assert.assertTrue(snapshotStore.get("pipeline", "0", "snapshot") instanceof BinarySnapshot);
+  }
+
 }
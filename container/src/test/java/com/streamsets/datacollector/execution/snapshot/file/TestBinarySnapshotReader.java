@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.execution.snapshot.file;
+
+import com.streamsets.datacollector.record.RecordImpl;
+import com.streamsets.datacollector.runner.StageOutput;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class TestBinarySnapshotReader {
+
+  private static List<List<StageOutput>> createSnapshotBatches() {
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      Record record = new RecordImpl("s", "source:" + i, null, null);
+      record.set(Field.create(i));
+      records.add(record);
+    }
+    Map<String, List<Record>> output = Collections.singletonMap("lane", records);
+    return Collections.singletonList(Collections.singletonList(
+        new StageOutput("source", output, new ArrayList<>(), null, null)
+    ));
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    File file = new File("target", UUID.randomUUID().toString());
+    try (OutputStream os = new FileOutputStream(file)) {
+      new BinarySnapshotWriter().write(os, createSnapshotBatches());
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      Assert.assertEquals(BinarySnapshotWriter.MAGIC, in.readInt());
+      Assert.assertEquals(BinarySnapshotWriter.VERSION, in.readInt());
+    }
+
+    try (BinarySnapshotReader reader = new BinarySnapshotReader(file)) {
+      Assert.assertEquals(1, reader.getBatchCount());
+      StageOutput stageOutput = reader.read(reader.getStages(0).get(0), 8, 5);
+      Assert.assertEquals("source", stageOutput.getInstanceName());
+      List<Record> records = stageOutput.getOutput().get("lane");
+      Assert.assertEquals(2, records.size());
+      Assert.assertEquals("source:8", records.get(0).getHeader().getSourceId());
+      Assert.assertEquals(9, records.get(1).get().getValueAsInteger());
+      Assert.assertNull(stageOutput.getEventRecords());
+    }
+  }
+
+}
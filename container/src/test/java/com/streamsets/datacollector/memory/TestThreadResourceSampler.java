@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.codahale.metrics.Counter;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestThreadResourceSampler {
+
+  private static byte[] sink;
+
+  @Test
+  public void testAllocationIsAttributed() {
+    Assume.assumeTrue(ThreadResourceSampler.isAllocationSupported());
+    Counter allocated = new Counter();
+    Counter cpuTime = new Counter();
+    Map<String, Object> runnerUsage = new HashMap<>();
+    ThreadResourceSampler sampler = new ThreadResourceSampler(allocated, cpuTime, runnerUsage, 3);
+
+    sampler.start();
+    sink = new byte[1024 * 1024];
+    sampler.stop();
+    Assert.assertTrue(allocated.getCount() >= sink.length);
+    Assert.assertEquals(allocated.getCount(), runnerUsage.get("Runner 3 Allocated Bytes"));
+
+    long afterFirst = allocated.getCount();
+    sampler.start();
+    sink = new byte[1024 * 1024];
+    sampler.stop();
+    Assert.assertTrue(allocated.getCount() >= afterFirst + sink.length);
+    Assert.assertEquals(allocated.getCount(), runnerUsage.get("Runner 3 Allocated Bytes"));
+  }
+
+  @Test
+  public void testCpuTimeIsAttributed() {
+    Assume.assumeTrue(ThreadResourceSampler.isCpuTimeSupported());
+    Counter allocated = new Counter();
+    Counter cpuTime = new Counter();
+    Map<String, Object> runnerUsage = new HashMap<>();
+    ThreadResourceSampler sampler = new ThreadResourceSampler(allocated, cpuTime, runnerUsage, 0);
+
+    sampler.start();
+    long start = ThreadResourceSampler.getCurrentThreadCpuTime();
+    long sum = 0;
+    while (ThreadResourceSampler.getCurrentThreadCpuTime() - start < 20_000_000L) {
+      sum += System.nanoTime();
+    }
+    sampler.stop();
+    Assert.assertNotEquals(0, sum);
+    Assert.assertTrue(cpuTime.getCount() >= 20_000_000L);
+    Assert.assertEquals(cpuTime.getCount(), runnerUsage.get("Runner 0 CPU Time (ns)"));
+  }
+
+  @Test
+  public void testSharedCountersAcrossRunners() {
+    Assume.assumeTrue(ThreadResourceSampler.isAllocationSupported());
+    Counter allocated = new Counter();
+    Counter cpuTime = new Counter();
+    Map<String, Object> runnerUsage = new HashMap<>();
+    ThreadResourceSampler runner0 = new ThreadResourceSampler(allocated, cpuTime, runnerUsage, 0);
+    ThreadResourceSampler runner1 = new ThreadResourceSampler(allocated, cpuTime, runnerUsage, 1);
+
+    runner0.start();
+    sink = new byte[1024];
+    runner0.stop();
+    runner1.start();
+    sink = new byte[1024 * 1024];
+    runner1.stop();
+
+    long runner0Bytes = (Long) runnerUsage.get("Runner 0 Allocated Bytes");
+    long runner1Bytes = (Long) runnerUsage.get("Runner 1 Allocated Bytes");
+    Assert.assertTrue(runner1Bytes > runner0Bytes);
+    Assert.assertEquals(allocated.getCount(), runner0Bytes + runner1Bytes);
+  }
+
+}
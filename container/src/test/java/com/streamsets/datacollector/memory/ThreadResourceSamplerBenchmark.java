@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.memory;
+
+import com.codahale.metrics.Counter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost {@link ThreadResourceSampler} adds to a single stage invocation. The simulated stage work
+ * (allocating and touching a batch of small objects) is done with and without sampling, the difference is the
+ * per batch overhead of keeping <code>monitor.stageResources</code> enabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadResourceSamplerBenchmark {
+
+  @Param({"1", "100", "1000"})
+  public int batchSize;
+
+  private ThreadResourceSampler sampler;
+
+  @Setup
+  public void setUp() {
+    sampler = new ThreadResourceSampler(new Counter(), new Counter(), new ConcurrentHashMap<>(), 0);
+  }
+
+  private void process(Blackhole blackhole) {
+    for (int i = 0; i < batchSize; i++) {
+      blackhole.consume(new Object[] {i, "record-" + i});
+    }
+  }
+
+  @Benchmark
+  public void baseline(Blackhole blackhole) {
+    process(blackhole);
+  }
+
+  @Benchmark
+  public void sampled(Blackhole blackhole) {
+    sampler.start();
+    try {
+      process(blackhole);
+    } finally {
+      sampler.stop();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ThreadResourceSamplerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
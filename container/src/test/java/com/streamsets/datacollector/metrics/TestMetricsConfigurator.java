@@ -26,6 +26,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class TestMetricsConfigurator {
 
@@ -40,6 +41,20 @@ public class TestMetricsConfigurator {
     Assert.assertEquals("a.timer", entry.getKey());
   }
 
+  @Test
+  public void testCreateHdrTimer() {
+    MetricRegistry metrics = new MetricRegistry();
+    Timer timer = MetricsConfigurator.createStageHdrTimer(metrics, "a", "name", "0");
+    Assert.assertTrue(timer instanceof HdrTimer);
+    Assert.assertSame(timer, MetricsConfigurator.createStageHdrTimer(metrics, "a", "name", "0"));
+    Assert.assertEquals(timer, metrics.getTimers().get("a.timer"));
+
+    timer.update(5, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(1, timer.getCount());
+    long expected = TimeUnit.MILLISECONDS.toNanos(5);
+    Assert.assertEquals(expected, timer.getSnapshot().getMax(), 0.01 * expected);
+  }
+
   @Test
   public void testCreateMeter() {
     MetricRegistry metrics = new MetricRegistry();
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares recording into the sliding window timers created by {@link MetricsConfigurator#createTimer} with the
+ * HdrHistogram backed {@link HdrTimer}. The timer is shared by all benchmark threads the same way a stage timer is
+ * shared by all pipeline runners, run with <code>-t 1</code> to see the uncontended cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TimerBenchmark {
+
+  @Param({"sliding", "hdr"})
+  public String type;
+
+  private Timer timer;
+
+  @Setup
+  public void setUp() {
+    MetricRegistry metrics = new MetricRegistry();
+    if ("hdr".equals(type)) {
+      timer = MetricsConfigurator.createHdrTimer(metrics, "benchmark", "benchmark", "0");
+    } else {
+      timer = MetricsConfigurator.createTimer(metrics, "benchmark", "benchmark", "0");
+    }
+    // A minute worth of batches of a busy multithreaded pipeline, so that snapshot() doesn't read an empty timer
+    for (int i = 0; i < 100_000; i++) {
+      update();
+    }
+  }
+
+  @Benchmark
+  public void update() {
+    timer.update(ThreadLocalRandom.current().nextLong(1, 10_000), TimeUnit.MICROSECONDS);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public double snapshot() {
+    return timer.getSnapshot().get999thPercentile();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TimerBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving field paths by re-parsing them on every access (the former {@link RecordImpl} behavior) against
+ * resolving them through compiled {@link FieldPath} handles, on records with nested maps and lists.
+ *
+ * Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldPathBenchmark {
+
+  @Param({"/level0/level1/level2/value", "/list[5]/map/list[3]/value"})
+  public String path;
+
+  private RecordImpl record;
+  private FieldPath fieldPath;
+
+  @Setup
+  public void setUp() {
+    record = new RecordImpl("stage", "source", null, null);
+    record.set(Field.create(new LinkedHashMap<String, Field>()));
+    record.set("/level0", Field.create(new LinkedHashMap<String, Field>()));
+    record.set("/level0/level1", Field.create(new LinkedHashMap<String, Field>()));
+    record.set("/level0/level1/level2", Field.create(new LinkedHashMap<String, Field>()));
+    record.set("/level0/level1/level2/value", Field.create("value"));
+    record.set("/list", Field.create(createList(10)));
+    record.set("/list[5]/map/list", Field.create(createList(5)));
+    record.set("/list[5]/map/list[3]/value", Field.create("value"));
+    fieldPath = FieldPath.of(path);
+  }
+
+  private static List<Field> createList(int size) {
+    List<Field> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Map<String, Field> map = new LinkedHashMap<>();
+      map.put("map", Field.create(new LinkedHashMap<String, Field>()));
+      map.put("i", Field.create(i));
+      list.add(Field.create(map));
+    }
+    return list;
+  }
+
+  @Benchmark
+  public Field parseOnEveryAccess() {
+    List<PathElement> elements = PathElement.parse(path, true);
+    List<Field> fields = new ArrayList<>(elements.size());
+    Field current = record.get();
+    for (int i = 0; current != null && i < elements.size(); i++) {
+      PathElement element = elements.get(i);
+      Field next = null;
+      switch (element.getType()) {
+        case ROOT:
+          next = current;
+          break;
+        case MAP:
+          next = current.getValueAsMap().get(element.getName());
+          break;
+        case LIST:
+          next = current.getValueAsList().get(element.getIndex());
+          break;
+        default:
+          break;
+      }
+      if (next != null) {
+        fields.add(next);
+      }
+      current = next;
+    }
+    return (elements.size() == fields.size()) ? fields.get(fields.size() - 1) : null;
+  }
+
+  @Benchmark
+  public Field recordGet() {
+    return record.get(path);
+  }
+
+  @Benchmark
+  public Field compiledFieldPath() {
+    return fieldPath.get(record);
+  }
+
+  @Benchmark
+  public boolean compiledFieldPathHas() {
+    return fieldPath.has(record);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FieldPathBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares copy-on-write {@link RecordImpl#clone()} with {@link RecordImpl#deepClone()} (the former clone behavior) on
+ * narrow and wide records. The <code>*Pipeline</code> benchmarks mimic what the framework does with a record that
+ * passes through a processor that modifies a single field: a copy for the source record and a copy for the snapshot.
+ *
+ * Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordCloneBenchmark {
+
+  @Param({"10", "500"})
+  public int fields;
+
+  private RecordImpl record;
+
+  @Setup
+  public void setUp() {
+    LinkedHashMap<String, Field> root = new LinkedHashMap<>();
+    for (int i = 0; i < fields; i++) {
+      root.put("field" + i, Field.create("value" + i));
+    }
+    LinkedHashMap<String, Field> nested = new LinkedHashMap<>();
+    nested.put("id", Field.create(1));
+    root.put("nested", Field.create(nested));
+    record = new RecordImpl("stage", "source", null, null);
+    record.set(Field.createListMap(root));
+  }
+
+  @Benchmark
+  public RecordImpl sharedClone() {
+    return record.clone();
+  }
+
+  @Benchmark
+  public RecordImpl deepClone() {
+    return record.deepClone();
+  }
+
+  @Benchmark
+  public RecordImpl sharedClonePipeline() {
+    RecordImpl copy = record.clone();
+    copy.getHeader().setSourceRecord(copy.clone());
+    copy.set("/nested/id", Field.create(2));
+    RecordImpl snapshot = copy.clone();
+    return snapshot;
+  }
+
+  @Benchmark
+  public RecordImpl deepClonePipeline() {
+    RecordImpl copy = record.deepClone();
+    copy.getHeader().setSourceRecord(copy.deepClone());
+    copy.set("/nested/id", Field.create(2));
+    RecordImpl snapshot = copy.deepClone();
+    return snapshot;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RecordCloneBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
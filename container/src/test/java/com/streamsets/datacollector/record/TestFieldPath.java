@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestFieldPath {
+
+  private static RecordImpl createRecord() {
+    Map<String, Field> inner = new LinkedHashMap<>();
+    inner.put("c", Field.create("C"));
+    List<Field> list = new ArrayList<>();
+    list.add(Field.create(1));
+    list.add(Field.create(inner));
+    Map<String, Field> root = new LinkedHashMap<>();
+    root.put("a", Field.create(list));
+    root.put("b/x", Field.create("B"));
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    record.set(Field.create(root));
+    return record;
+  }
+
+  @Test
+  public void testInterning() {
+    FieldPath path = FieldPath.of("/a[1]/c");
+    Assert.assertSame(path, FieldPath.of("/a[1]/c"));
+    Assert.assertNotSame(path, FieldPath.compile("/a[1]/c"));
+    Assert.assertEquals(path, FieldPath.compile("/a[1]/c"));
+    Assert.assertEquals("/a[1]/c", path.getPath());
+    Assert.assertEquals(4, path.getElements().size());
+    Assert.assertEquals(PathElement.ROOT, path.getElements().get(0));
+  }
+
+  @Test
+  public void testInternedCacheIsBounded() {
+    for (int i = 0; i < FieldPath.MAX_INTERNED_PATHS + 10; i++) {
+      FieldPath.of("/bounded" + i);
+    }
+    Assert.assertTrue(FieldPath.internedCount() <= FieldPath.MAX_INTERNED_PATHS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPath() {
+    FieldPath.of("a");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullPath() {
+    FieldPath.of(null);
+  }
+
+  @Test
+  public void testGetAndHas() {
+    RecordImpl record = createRecord();
+    Assert.assertEquals(record.get(), FieldPath.of("").get(record));
+    Assert.assertEquals(1, FieldPath.of("/a[0]").get(record).getValueAsInteger());
+    Assert.assertEquals("C", FieldPath.of("/a[1]/c").get(record).getValueAsString());
+    Assert.assertEquals("B", FieldPath.of("/'b/x'").get(record).getValueAsString());
+    Assert.assertTrue(FieldPath.of("/a[1]/c").has(record));
+    Assert.assertFalse(FieldPath.of("/a[2]").has(record));
+    Assert.assertNull(FieldPath.of("/a[2]").get(record));
+    Assert.assertFalse(FieldPath.of("/a/c").has(record));
+    Assert.assertFalse(FieldPath.of("/a[0]/c").has(record));
+    Assert.assertNull(FieldPath.of("/x/y/z").get(record));
+
+    RecordImpl empty = new RecordImpl("stage", "source", null, null);
+    Assert.assertFalse(FieldPath.of("").has(empty));
+    Assert.assertNull(FieldPath.of("/a").get(empty));
+  }
+
+  @Test
+  public void testSet() {
+    RecordImpl record = createRecord();
+    Assert.assertEquals("C", FieldPath.of("/a[1]/c").set(record, Field.create("D")).getValueAsString());
+    Assert.assertEquals("D", record.get("/a[1]/c").getValueAsString());
+
+    Assert.assertNull(FieldPath.of("/a[1]/d").set(record, Field.create("E")));
+    Assert.assertEquals("E", record.get("/a[1]/d").getValueAsString());
+
+    Assert.assertNull(FieldPath.of("/a[2]").set(record, Field.create(2)));
+    Assert.assertEquals(3, record.get("/a").getValueAsList().size());
+
+    try {
+      FieldPath.of("/x/y").set(record, Field.create(3));
+      Assert.fail();
+    } catch (IllegalArgumentException ex) {
+      //expected
+    }
+
+    Field root = record.get();
+    Field newRoot = Field.create("root");
+    Assert.assertSame(root, FieldPath.of("").set(record, newRoot));
+    Assert.assertSame(newRoot, record.get());
+  }
+
+  @Test
+  public void testDelete() {
+    RecordImpl record = createRecord();
+    Assert.assertEquals("C", FieldPath.of("/a[1]/c").delete(record).getValueAsString());
+    Assert.assertFalse(record.has("/a[1]/c"));
+    Assert.assertEquals(1, FieldPath.of("/a[0]").delete(record).getValueAsInteger());
+    Assert.assertEquals(1, record.get("/a").getValueAsList().size());
+    Assert.assertNull(FieldPath.of("/x").delete(record));
+
+    Field root = record.get();
+    Assert.assertSame(root, FieldPath.of("").delete(record));
+    Assert.assertNull(record.get());
+  }
+
+  @Test
+  public void testCompiledPathOnSharedRecord() {
+    RecordImpl record = createRecord();
+    RecordImpl clone = record.clone();
+    FieldPath path = FieldPath.compile("/a[1]/c");
+
+    Assert.assertEquals("C", path.set(clone, Field.create("D")).getValueAsString());
+    Assert.assertEquals("D", path.get(clone).getValueAsString());
+    Assert.assertEquals("C", path.get(record).getValueAsString());
+
+    Assert.assertEquals(1, FieldPath.compile("/a[0]").delete(clone).getValueAsInteger());
+    Assert.assertFalse(FieldPath.compile("/a[1]").has(clone));
+    Assert.assertTrue(FieldPath.compile("/a[1]").has(record));
+  }
+
+}
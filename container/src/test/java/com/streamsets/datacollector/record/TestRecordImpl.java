@@ -249,6 +249,238 @@ public class TestRecordImpl {
     Assert.assertNotSame(clone, record);
   }
 
+  private static RecordImpl createNestedRecord() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create("A"));
+    map.put("b", Field.create(new LinkedHashMap<>(ImmutableMap.of("c", Field.create("C"), "d", Field.create("D")))));
+    map.put("l", Field.create(new ArrayList<>(ImmutableList.of(Field.create(1), Field.create(2)))));
+    LinkedHashMap<String, Field> listMap = new LinkedHashMap<>();
+    listMap.put("x", Field.create("X"));
+    listMap.put("y", Field.create("Y"));
+    map.put("lm", Field.createListMap(listMap));
+    record.set(Field.create(map));
+    return record;
+  }
+
+  @Test
+  public void testCloneSharesFieldTree() {
+    RecordImpl record = createNestedRecord();
+    RecordImpl clone = record.clone();
+    Assert.assertTrue(record.isFieldTreeShared());
+    Assert.assertTrue(clone.isFieldTreeShared());
+
+    // modifying the clone copies only the path to the modified field
+    clone.set("/b/c", Field.create("CC"));
+    clone.get("/a").setAttribute("attr", "value");
+    clone.get("/l[1]").setAttribute("attr", "value");
+    clone.get("/lm[1]").setAttribute("attr", "value");
+    clone.delete("/b/d");
+    Assert.assertTrue(clone.isFieldTreeShared());
+
+    Assert.assertEquals("C", record.get("/b/c").getValueAsString());
+    Assert.assertEquals("CC", clone.get("/b/c").getValueAsString());
+    Assert.assertNull(record.get("/a").getAttributes());
+    Assert.assertEquals("value", clone.get("/a").getAttribute("attr"));
+    Assert.assertNull(record.get("/l[1]").getAttributes());
+    Assert.assertEquals("value", clone.get("/l[1]").getAttribute("attr"));
+    Assert.assertNull(record.get("/lm/y").getAttributes());
+    Assert.assertEquals("value", clone.get("/lm/y").getAttribute("attr"));
+    Assert.assertTrue(record.has("/b/d"));
+    Assert.assertFalse(clone.has("/b/d"));
+    Assert.assertEquals(Field.Type.LIST_MAP, clone.get("/lm").getType());
+
+    // fields returned by delete are not shared either
+    Field deleted = clone.delete("/b");
+    deleted.getValueAsMap().put("e", Field.create("E"));
+    Assert.assertFalse(record.has("/b/e"));
+  }
+
+  @Test
+  public void testCloneIsolation() throws StageException {
+    RecordImpl record = createNestedRecord();
+    RecordImpl clone = record.clone();
+    RecordImpl expected = record.deepClone();
+
+    // modifications through the whole tree
+    record.get().getValueAsMap().get("b").getValueAsMap().put("e", Field.create("E"));
+    record.get().getValueAsMap().remove("a");
+    Assert.assertFalse(record.isFieldTreeShared());
+    Assert.assertEquals(expected.get(), clone.get());
+    Assert.assertFalse(clone.isFieldTreeShared());
+
+    // modifications of the original through field paths
+    record = createNestedRecord();
+    clone = record.clone();
+    record.get("/b").getValueAsMap().clear();
+    record.get("/l").getValueAsList().add(Field.create(3));
+    record.set("/n", Field.create("N"));
+    Assert.assertEquals(expected.get(), clone.get());
+
+    // modifications through visitor
+    record = createNestedRecord();
+    clone = record.clone();
+    record.forEachField(recordField -> recordField.getField().setAttribute("visited", "true"));
+    Assert.assertEquals(expected.get(), clone.get());
+    Assert.assertNull(clone.get("/b/c").getAttributes());
+  }
+
+  @Test
+  public void testCloneChildThenParent() {
+    RecordImpl record = createNestedRecord();
+    RecordImpl clone = record.clone();
+    Field c = clone.get("/b/c");
+    Field b = clone.get("/b");
+    c.setAttribute("attr", "value");
+    b.getValueAsMap().put("e", Field.create("E"));
+    Field d = clone.get("/b/d");
+    clone.get();
+    d.setAttribute("attr", "value");
+
+    Assert.assertEquals("value", clone.get("/b/c").getAttribute("attr"));
+    Assert.assertEquals("value", clone.get("/b/d").getAttribute("attr"));
+    Assert.assertTrue(clone.has("/b/e"));
+    Assert.assertNull(record.get("/b/c").getAttributes());
+    Assert.assertNull(record.get("/b/d").getAttributes());
+    Assert.assertFalse(record.has("/b/e"));
+  }
+
+  @Test
+  public void testPeekDoesNotCopy() {
+    RecordImpl record = createNestedRecord();
+    Field root = record.peek();
+    RecordImpl clone = record.clone();
+    Assert.assertSame(root, clone.peek());
+    Assert.assertTrue(clone.isFieldTreeShared());
+    Assert.assertSame(root, FieldTreeReader.peek(record));
+    Assert.assertNotSame(root, clone.get());
+  }
+
+  @Test
+  public void testCloneOfClone() {
+    RecordImpl record = createNestedRecord();
+    RecordImpl clone1 = record.clone();
+    clone1.set("/a", Field.create("A1"));
+    RecordImpl clone2 = clone1.clone();
+    clone2.set("/a", Field.create("A2"));
+    clone1.get("/b").getValueAsMap().put("e", Field.create("E"));
+
+    Assert.assertEquals("A", record.get("/a").getValueAsString());
+    Assert.assertEquals("A1", clone1.get("/a").getValueAsString());
+    Assert.assertEquals("A2", clone2.get("/a").getValueAsString());
+    Assert.assertFalse(record.has("/b/e"));
+    Assert.assertTrue(clone1.has("/b/e"));
+    Assert.assertFalse(clone2.has("/b/e"));
+  }
+
+  @Test
+  public void testCloneHeaderIsolation() {
+    RecordImpl record = createNestedRecord();
+    record.getHeader().setAttribute("h", "H");
+    RecordImpl clone = record.clone();
+    clone.getHeader().setAttribute("h", "HH");
+    clone.getHeader().setStagesPath("p");
+    Assert.assertEquals("H", record.getHeader().getAttribute("h"));
+    Assert.assertNull(record.getHeader().getStagesPath());
+    record.getHeader().deleteAttribute("h");
+    Assert.assertEquals("HH", clone.getHeader().getAttribute("h"));
+  }
+
+  @Test
+  public void testDeepClone() {
+    RecordImpl record = createNestedRecord();
+    Field a = record.get("/a");
+    RecordImpl clone = record.deepClone();
+    Assert.assertFalse(record.isFieldTreeShared());
+    Assert.assertFalse(clone.isFieldTreeShared());
+    a.setAttribute("attr", "value");
+    Assert.assertNull(clone.get("/a").getAttributes());
+    Assert.assertEquals(record.get().getValueAsMap().keySet(), clone.get().getValueAsMap().keySet());
+  }
+
+  @Test
+  public void testStagePathAndTrackingIds() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    record.createTrackingId();
+    Assert.assertEquals("source::null", record.getHeader().getTrackingId());
+    Assert.assertNull(record.getHeader().getPreviousTrackingId());
+
+    record.addStageToStagePath("a");
+    record.createTrackingId();
+    record.addStageToStagePath("b");
+    Assert.assertEquals("a:b", record.getHeader().getStagesPath());
+    Assert.assertEquals("source::a", record.getHeader().getTrackingId());
+    Assert.assertEquals("source::null", record.getHeader().getPreviousTrackingId());
+
+    record.createTrackingId();
+    Assert.assertEquals("source::a:b", record.getHeader().getTrackingId());
+    Assert.assertEquals("source::a", record.getHeader().getPreviousTrackingId());
+
+    // the lazily tracked values are visible through the attribute map
+    Map<String, Object> attributes = record.getHeader().getAllAttributes();
+    Assert.assertEquals("a:b", attributes.get(RESERVED_PREFIX + "stagePath"));
+    Assert.assertEquals("source::a:b", attributes.get(RESERVED_PREFIX + "trackingId"));
+    Assert.assertEquals("source::a", attributes.get(RESERVED_PREFIX + "previousTrackingId"));
+
+    // explicitly set values replace the lazily tracked ones
+    record.getHeader().setStagesPath("x");
+    record.getHeader().setTrackingId("t");
+    record.addStageToStagePath("y");
+    record.createTrackingId();
+    Assert.assertEquals("x:y", record.getHeader().getStagesPath());
+    Assert.assertEquals("source::x:y", record.getHeader().getTrackingId());
+    Assert.assertEquals("t", record.getHeader().getPreviousTrackingId());
+
+    // an empty path keeps the separator, same as it always did
+    record.getHeader().setStagesPath("");
+    record.addStageToStagePath("z");
+    Assert.assertEquals(":z", record.getHeader().getStagesPath());
+  }
+
+  @Test
+  public void testStagePathAndTrackingIdsOfClones() {
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    record.addStageToStagePath("a");
+    record.createTrackingId();
+    RecordImpl clone = record.clone();
+    Assert.assertEquals(record, clone);
+    Assert.assertEquals(record.hashCode(), clone.hashCode());
+
+    clone.addStageToStagePath("b");
+    clone.createTrackingId();
+    Assert.assertEquals("a", record.getHeader().getStagesPath());
+    Assert.assertEquals("source::a", record.getHeader().getTrackingId());
+    Assert.assertNull(record.getHeader().getPreviousTrackingId());
+    Assert.assertEquals("a:b", clone.getHeader().getStagesPath());
+    Assert.assertEquals("source::a:b", clone.getHeader().getTrackingId());
+    Assert.assertEquals("source::a", clone.getHeader().getPreviousTrackingId());
+    Assert.assertNotEquals(record, clone);
+
+    // a record whose attributes were set explicitly is equal to one with lazily tracked attributes
+    RecordImpl other = new RecordImpl("stage", "source", null, null);
+    other.getHeader().setStagesPath("a:b");
+    other.getHeader().setTrackingId("source::a:b");
+    other.getHeader().setPreviousTrackingId("source::a");
+    Assert.assertEquals(other.getHeader(), clone.getHeader());
+    Assert.assertEquals(clone.getHeader(), other.getHeader());
+  }
+
+  @Test
+  public void testStagePathInterning() {
+    StagePath root = StagePath.EMPTY.append("origin");
+    Assert.assertTrue(root.isInterned());
+    Assert.assertSame(root, StagePath.EMPTY.append("origin"));
+    Assert.assertSame(root.append("processor"), StagePath.EMPTY.append("origin").append("processor"));
+    Assert.assertEquals("origin:processor", root.append("processor").toString());
+
+    // paths parsed from their string form aren't interned
+    StagePath parsed = StagePath.of("origin");
+    Assert.assertFalse(parsed.isInterned());
+    Assert.assertNotSame(parsed.append("processor"), parsed.append("processor"));
+    Assert.assertEquals("origin:processor", parsed.append("processor").toString());
+    Assert.assertSame(StagePath.EMPTY, StagePath.of(null));
+  }
+
   // tests for field-path expressions
 
   @Test
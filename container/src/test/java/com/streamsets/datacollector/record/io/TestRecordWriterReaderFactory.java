@@ -214,6 +214,47 @@ public  class TestRecordWriterReaderFactory {
     testRecordReaderWithOffset(RecordEncoding.KRYO1);
   }
 
+  private void testTrackedHeaderAttributes(RecordEncoding encoding) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    RecordWriter writer = RecordWriterReaderFactory.createRecordWriter(encoding, os);
+
+    // stages path and tracking ids maintained by the pipeline runner
+    RecordImpl record = new RecordImpl("stage", "source", null, null);
+    record.addStageToStagePath("s1");
+    record.createTrackingId();
+    record.addStageToStagePath("s2");
+    record.createTrackingId();
+    record.set(Field.create("Hello"));
+    writer.write(record);
+    writer.close();
+
+    RecordImpl expected = new RecordImpl("stage", "source", null, null);
+    expected.getHeader().setStagesPath("s1:s2");
+    expected.getHeader().setTrackingId("source::s1:s2");
+    expected.getHeader().setPreviousTrackingId("source::s1");
+    expected.set(Field.create("Hello"));
+
+    InputStream is = new ByteArrayInputStream(os.toByteArray());
+    RecordReader reader = RecordWriterReaderFactory.createRecordReader(is, 0, 1000);
+    Record read = reader.readRecord();
+    Assert.assertEquals(expected, read);
+    Assert.assertEquals("s1:s2", read.getHeader().getStagesPath());
+    Assert.assertEquals("source::s1:s2", read.getHeader().getTrackingId());
+    Assert.assertEquals("source::s1", read.getHeader().getPreviousTrackingId());
+    Assert.assertNull(reader.readRecord());
+    reader.close();
+  }
+
+  @Test
+  public void testJsonTrackedHeaderAttributes() throws IOException {
+    testTrackedHeaderAttributes(RecordEncoding.JSON1);
+  }
+
+  @Test
+  public void testKryoTrackedHeaderAttributes() throws IOException {
+    testTrackedHeaderAttributes(RecordEncoding.KRYO1);
+  }
+
   @Test
   public void testDecimal() throws IOException {
     // We've picked this number because if it's casted to double, then it will lead to 36.7147000000000000483...
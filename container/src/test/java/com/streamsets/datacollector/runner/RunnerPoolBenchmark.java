@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrow/return contention on the runner pool with 4, 16 and 64 origin threads, compared with the previous pool
+ * implementation (priority blocking queue ordered by return timestamp).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunnerPoolBenchmark {
+
+  @Param({"false", "true"})
+  public boolean lockFree;
+
+  @Param({"4", "32"})
+  public int runners;
+
+  private Pool pool;
+
+  private interface Pool {
+    Object get() throws Exception;
+    void put(Object runner) throws Exception;
+  }
+
+  private static class PriorityQueuePool implements Pool {
+    private static class QueueItem implements Comparable<QueueItem> {
+      final long timestamp = System.currentTimeMillis();
+      final Object runner;
+
+      QueueItem(Object runner) {
+        this.runner = runner;
+      }
+
+      @Override
+      public int compareTo(QueueItem other) {
+        return (int) (this.timestamp - other.timestamp);
+      }
+    }
+
+    private final PriorityBlockingQueue<QueueItem> queue = new PriorityBlockingQueue<>();
+    private final RuntimeStats runtimeStats = new RuntimeStats();
+    private final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir());
+
+    @Override
+    public Object get() throws Exception {
+      try {
+        return queue.take().runner;
+      } finally {
+        runtimeStats.setAvailableRunners(queue.size());
+        histogram.update(queue.size());
+      }
+    }
+
+    @Override
+    public void put(Object runner) {
+      queue.add(new QueueItem(runner));
+      runtimeStats.setAvailableRunners(queue.size());
+      histogram.update(queue.size());
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    List<Object> list = new ArrayList<>();
+    for (int i = 0; i < runners; i++) {
+      list.add(new Object());
+    }
+    if (lockFree) {
+      RunnerPool<Object> runnerPool = new RunnerPool<>(
+          list,
+          new RuntimeStats(),
+          new Histogram(new ExponentiallyDecayingReservoir()),
+          new Histogram(new ExponentiallyDecayingReservoir())
+      );
+      pool = new Pool() {
+        @Override
+        public Object get() throws Exception {
+          return runnerPool.getRunner();
+        }
+
+        @Override
+        public void put(Object runner) throws Exception {
+          runnerPool.returnRunner(runner);
+        }
+      };
+    } else {
+      PriorityQueuePool priorityQueuePool = new PriorityQueuePool();
+      list.forEach(priorityQueuePool::put);
+      pool = priorityQueuePool;
+    }
+  }
+
+  private void borrowAndReturn(Blackhole blackhole) throws Exception {
+    Object runner = pool.get();
+    // a tiny bit of work while the runner is borrowed
+    Blackhole.consumeCPU(100);
+    blackhole.consume(runner);
+    pool.put(runner);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void threads4(Blackhole blackhole) throws Exception {
+    borrowAndReturn(blackhole);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void threads16(Blackhole blackhole) throws Exception {
+    borrowAndReturn(blackhole);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void threads64(Blackhole blackhole) throws Exception {
+    borrowAndReturn(blackhole);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RunnerPoolBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
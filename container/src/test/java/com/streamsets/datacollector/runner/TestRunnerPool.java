@@ -22,6 +22,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 public class TestRunnerPool {
 
   private RunnerPool<String> runnerPool;
@@ -82,4 +89,75 @@ public class TestRunnerPool {
     Assert.assertEquals("a", runnerPool.getRunner());
     Assert.assertEquals("b", runnerPool.getRunner());
   }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReturnTwice() throws Exception {
+    String runner = runnerPool.getRunner();
+    runnerPool.returnRunner(runner);
+    runnerPool.returnRunner(runner);
+  }
+
+  @Test
+  public void testWaitTimeHistogram() throws Exception {
+    Histogram waitTime = new Histogram(new ExponentiallyDecayingReservoir());
+    RunnerPool<String> pool = new RunnerPool<>(
+      ImmutableList.of("a"),
+      new RuntimeStats(),
+      new Histogram(new ExponentiallyDecayingReservoir()),
+      waitTime
+    );
+    String runner = pool.getRunner();
+    Assert.assertEquals(1, waitTime.getCount());
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> future = executor.submit(pool::getRunner);
+      Thread.sleep(50);
+      pool.returnRunner(runner);
+      Assert.assertEquals("a", future.get());
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(2, waitTime.getCount());
+    Assert.assertTrue(waitTime.getSnapshot().getMax() >= 50_000);
+  }
+
+  @Test
+  public void testConcurrentBorrowing() throws Exception {
+    List<Integer> runners = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      runners.add(i);
+    }
+    RunnerPool<Integer> pool = new RunnerPool<>(
+      runners,
+      new RuntimeStats(),
+      new Histogram(new ExponentiallyDecayingReservoir())
+    );
+    AtomicIntegerArray borrowed = new AtomicIntegerArray(runners.size());
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final boolean idle = t == 0;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            Integer runner = idle ? pool.getIdleRunner(0) : pool.getRunner();
+            if (runner != null) {
+              Assert.assertEquals(1, borrowed.incrementAndGet(runner));
+              borrowed.decrementAndGet(runner);
+              pool.returnRunner(runner);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // all runners are back
+    pool.destroy();
+  }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.runner.production;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestOffsetJournal {
+
+  private File journalFile;
+
+  @Before
+  public void setUp() {
+    File dir = new File("target", UUID.randomUUID().toString());
+    Assert.assertTrue(dir.mkdirs());
+    journalFile = new File(dir, "offset.journal");
+  }
+
+  @Test
+  public void testAppendAndReplay() throws Exception {
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      journal.sync(journal.append("a", "1"));
+      journal.sync(journal.append("b", "2"));
+      journal.append("a", null);
+      journal.append("c", "\u00fcnicode");
+      journal.sync();
+      Assert.assertEquals(journalFile.length(), journal.size());
+    }
+
+    Map<String, String> offsets = new HashMap<>();
+    offsets.put("a", "0");
+    offsets.put("d", "4");
+    Assert.assertEquals(journalFile.length(), OffsetJournal.replay(journalFile, offsets));
+    Assert.assertEquals(3, offsets.size());
+    Assert.assertEquals("2", offsets.get("b"));
+    Assert.assertEquals("\u00fcnicode", offsets.get("c"));
+    Assert.assertEquals("4", offsets.get("d"));
+  }
+
+  @Test
+  public void testUnsyncedEntriesAreNotWritten() throws Exception {
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      journal.append("a", "1");
+      Assert.assertEquals(0, journal.size());
+    }
+    Map<String, String> offsets = new HashMap<>();
+    OffsetJournal.replay(journalFile, offsets);
+    Assert.assertTrue(offsets.isEmpty());
+  }
+
+  @Test
+  public void testTornEntryIsIgnored() throws Exception {
+    long validSize;
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      journal.sync(journal.append("a", "1"));
+      validSize = journal.size();
+      journal.sync(journal.append("b", "2"));
+    }
+    // Cut the last entry in half
+    try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+      file.setLength(file.length() - 3);
+    }
+
+    Map<String, String> offsets = new HashMap<>();
+    Assert.assertEquals(validSize, OffsetJournal.replay(journalFile, offsets));
+    Assert.assertEquals(1, offsets.size());
+
+    // Re-opening the journal drops the torn entry so that new entries are readable
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      Assert.assertEquals(validSize, journal.size());
+      journal.sync(journal.append("c", "3"));
+    }
+    offsets.clear();
+    OffsetJournal.replay(journalFile, offsets);
+    Assert.assertEquals(2, offsets.size());
+    Assert.assertEquals("3", offsets.get("c"));
+  }
+
+  @Test
+  public void testCorruptedEntryIsIgnored() throws Exception {
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      journal.sync(journal.append("a", "1"));
+    }
+    try (FileOutputStream os = new FileOutputStream(journalFile, true)) {
+      os.write(new byte[] {0, 0, 0, 4, 1, 2, 3, 4, 5, 6, 7, 8});
+    }
+    Map<String, String> offsets = new HashMap<>();
+    OffsetJournal.replay(journalFile, offsets);
+    Assert.assertEquals(1, offsets.size());
+  }
+
+  @Test
+  public void testTruncate() throws Exception {
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      journal.sync(journal.append("a", "1"));
+      journal.append("b", "2");
+      journal.truncate();
+      Assert.assertEquals(0, journal.size());
+      journal.sync();
+      Assert.assertEquals(0, journalFile.length());
+    }
+  }
+
+  @Test
+  public void testConcurrentCommits() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (OffsetJournal journal = new OffsetJournal(journalFile)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final String entity = "entity-" + t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 100; i++) {
+            journal.sync(journal.append(entity, String.valueOf(i)));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Map<String, String> offsets = new HashMap<>();
+    OffsetJournal.replay(journalFile, offsets);
+    Assert.assertEquals(8, offsets.size());
+    for (String offset : offsets.values()) {
+      Assert.assertEquals("99", offset);
+    }
+  }
+
+}
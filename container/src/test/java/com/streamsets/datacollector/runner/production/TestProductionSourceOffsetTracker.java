@@ -19,6 +19,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.streamsets.datacollector.main.RuntimeInfo;
 import com.streamsets.datacollector.main.RuntimeModule;
 import com.streamsets.datacollector.main.StandaloneRuntimeInfo;
+import com.streamsets.datacollector.metrics.MetricsConfigurator;
 import com.streamsets.datacollector.util.PipelineDirectoryUtil;
 import com.streamsets.pipeline.api.Source;
 import com.streamsets.pipeline.api.impl.Utils;
@@ -43,6 +44,7 @@ public class TestProductionSourceOffsetTracker {
   private static final String PIPELINE_NAME = "myPipeline";
   private static final String PIPELINE_REV = "2.0";
 
+  private static RuntimeInfo info;
   private static ProductionSourceOffsetTracker offsetTracker;
 
   @BeforeClass
@@ -64,7 +66,7 @@ public class TestProductionSourceOffsetTracker {
 
   @Before
   public void createOffsetTracker() throws Exception {
-    RuntimeInfo info = new StandaloneRuntimeInfo(
+    info = new StandaloneRuntimeInfo(
       RuntimeModule.SDC_PROPERTY_PREFIX,
       new MetricRegistry(),
       Arrays.asList(TestProductionSourceOffsetTracker.class.getClassLoader())
@@ -113,4 +115,114 @@ public class TestProductionSourceOffsetTracker {
     Assert.assertEquals(0, offsetTracker.getOffsets().size());
   }
 
+  @Test
+  public void testJournalCommitAndCompaction() {
+    MetricRegistry metrics = new MetricRegistry();
+    ProductionSourceOffsetTracker tracker = new ProductionSourceOffsetTracker(
+        PIPELINE_NAME,
+        PIPELINE_REV,
+        info,
+        metrics,
+        1024
+    );
+    tracker.recover();
+    File journalFile = OffsetFileUtil.getPipelineOffsetJournalFile(info, PIPELINE_NAME, PIPELINE_REV);
+
+    tracker.commitOffset("entity", "offset");
+    Assert.assertEquals("offset", tracker.getOffsets().get("entity"));
+    Assert.assertTrue(journalFile.length() > 0);
+    // Readers see journaled offsets even before they are compacted into the offset file
+    Assert.assertEquals("offset", OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).get("entity"));
+
+    // Enough commits to go over the journal limit, the journal gets compacted
+    for (int i = 0; i < 100; i++) {
+      tracker.commitOffset("entity-" + (i % 10), "offset-" + i);
+    }
+    Assert.assertTrue(journalFile.length() <= 1024);
+    Assert.assertEquals(11, OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).size());
+    Assert.assertEquals(101, MetricsConfigurator.getTimer(metrics, "pipeline.offsetCommit").getCount());
+    Assert.assertEquals(
+        journalFile.length(),
+        MetricsConfigurator.getCounter(metrics, "pipeline.offsetJournalSize").getCount()
+    );
+
+    tracker.commitOffset("entity", null);
+    tracker.close();
+    Assert.assertFalse(journalFile.exists());
+    Assert.assertEquals(10, OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).size());
+    Assert.assertEquals("offset-99", OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).get("entity-9"));
+
+    // Commits after close go directly to the offset file
+    tracker.commitOffset("entity", "late");
+    Assert.assertEquals("late", OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).get("entity"));
+  }
+
+  @Test
+  public void testJournalRecovery() throws Exception {
+    ProductionSourceOffsetTracker tracker = new ProductionSourceOffsetTracker(
+        PIPELINE_NAME,
+        PIPELINE_REV,
+        info,
+        new MetricRegistry(),
+        Long.MAX_VALUE
+    );
+    tracker.recover();
+    tracker.commitOffset("a", "1");
+    tracker.commitOffset("b", "2");
+    tracker.commitOffset("a", null);
+    // Simulate crash - the tracker is never closed and hence the offset file was never updated
+    File journalFile = OffsetFileUtil.getPipelineOffsetJournalFile(info, PIPELINE_NAME, PIPELINE_REV);
+    Assert.assertTrue(journalFile.exists());
+    Assert.assertEquals(1, OffsetFileUtil.saveIfEmpty(info, PIPELINE_NAME, PIPELINE_REV).size());
+
+    ProductionSourceOffsetTracker recovered = new ProductionSourceOffsetTracker(PIPELINE_NAME, PIPELINE_REV, info);
+    Assert.assertEquals(1, recovered.getOffsets().size());
+    Assert.assertEquals("2", recovered.getOffsets().get("b"));
+    // Only the pipeline run takes over the journal
+    Assert.assertTrue(journalFile.exists());
+    recovered.recover();
+    Assert.assertFalse(journalFile.exists());
+    Assert.assertEquals("2", OffsetFileUtil.saveIfEmpty(info, PIPELINE_NAME, PIPELINE_REV).get("b"));
+  }
+
+  @Test
+  public void testOtherTrackerLeavesJournalAlone() {
+    ProductionSourceOffsetTracker tracker = new ProductionSourceOffsetTracker(
+        PIPELINE_NAME,
+        PIPELINE_REV,
+        info,
+        new MetricRegistry(),
+        Long.MAX_VALUE
+    );
+    tracker.recover();
+    tracker.commitOffset("a", "1");
+    File journalFile = OffsetFileUtil.getPipelineOffsetJournalFile(info, PIPELINE_NAME, PIPELINE_REV);
+
+    // Trackers are also created to read offsets while the pipeline is running
+    ProductionSourceOffsetTracker reader = new ProductionSourceOffsetTracker(PIPELINE_NAME, PIPELINE_REV, info);
+    Assert.assertEquals("1", reader.getOffsets().get("a"));
+    Assert.assertTrue(journalFile.exists());
+
+    tracker.commitOffset("b", "2");
+    Assert.assertEquals("2", OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).get("b"));
+    tracker.close();
+    Assert.assertEquals(2, OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).size());
+  }
+
+  @Test
+  public void testResetOffsetDropsJournal() {
+    ProductionSourceOffsetTracker tracker = new ProductionSourceOffsetTracker(
+        PIPELINE_NAME,
+        PIPELINE_REV,
+        info,
+        new MetricRegistry(),
+        Long.MAX_VALUE
+    );
+    tracker.recover();
+    tracker.commitOffset("a", "1");
+    tracker.close();
+    tracker.resetOffset(PIPELINE_NAME, PIPELINE_REV);
+    Assert.assertTrue(OffsetFileUtil.getOffsets(info, PIPELINE_NAME, PIPELINE_REV).isEmpty());
+  }
+
 }
@@ -15,7 +15,10 @@
  */
 package com.streamsets.datacollector.stagelibrary;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.streamsets.datacollector.config.ConfigDefinition;
 import com.streamsets.datacollector.config.ServiceDefinition;
@@ -41,13 +44,19 @@ import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 public class TestClassLoaderStageLibraryTask {
 
@@ -122,6 +131,104 @@ public class TestClassLoaderStageLibraryTask {
     Assert.assertTrue(foundAutoC);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testParallelLoading() {
+    File configDir = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+    List<ClassLoader> classLoaders = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      classLoaders.add(new SDCClassLoader("library", "lib" + i, Collections.<URL>emptyList(),
+          getClass().getClassLoader(), new String[0], new SystemPackage(new String[0]),
+          new ApplicationPackage(new TreeSet<String>()), false, false, false));
+    }
+    MetricRegistry metrics = new MetricRegistry();
+    RuntimeInfo runtimeInfo = Mockito.mock(RuntimeInfo.class);
+    Mockito.when(runtimeInfo.getConfigDir()).thenReturn(configDir.getAbsolutePath());
+    Mockito.when(runtimeInfo.getStageLibraryClassLoaders()).thenReturn((List) classLoaders);
+    Mockito.when(runtimeInfo.getMetrics()).thenReturn(metrics);
+
+    Configuration configuration = new Configuration();
+    configuration.set(ClassLoaderStageLibraryTask.LOAD_THREADS_KEY, 2);
+    ClassLoaderStageLibraryTask library = new ClassLoaderStageLibraryTask(runtimeInfo, new DataCollectorBuildInfo(), configuration);
+    library.initTask();
+
+    // Definitions are merged in the order of the class loaders no matter which library finished loading first
+    Assert.assertEquals(3, library.getStages().size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("lib" + i, library.getStages().get(i).getLibrary());
+    }
+
+    Gauge gauge = metrics.getGauges().get(ClassLoaderStageLibraryTask.LOAD_TIME_GAUGE);
+    Assert.assertNotNull(gauge);
+    Map<String, Object> loadTimes = (Map<String, Object>) gauge.getValue();
+    Assert.assertEquals(ImmutableSet.of("total", "lib0", "lib1", "lib2"), loadTimes.keySet());
+  }
+
+  private static void writeJar(File jar, String content) throws IOException {
+    try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar))) {
+      jos.putNextEntry(new JarEntry("content.txt"));
+      jos.write(content.getBytes());
+      jos.closeEntry();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testDefinitionIndex() throws Exception {
+    File baseDir = new File("target", UUID.randomUUID().toString()).getAbsoluteFile();
+    Assert.assertTrue(baseDir.mkdirs());
+    File jar = new File(baseDir, "lib.jar");
+    writeJar(jar, "v1");
+    ClassLoader cl = new SDCClassLoader("library", "lib", ImmutableList.of(jar.toURI().toURL()),
+        getClass().getClassLoader(), new String[0], new SystemPackage(new String[0]),
+        new ApplicationPackage(new TreeSet<String>()), false, false, false);
+    RuntimeInfo runtimeInfo = Mockito.mock(RuntimeInfo.class);
+    Mockito.when(runtimeInfo.getConfigDir()).thenReturn(baseDir.getAbsolutePath());
+    Mockito.when(runtimeInfo.getDataDir()).thenReturn(baseDir.getAbsolutePath());
+    Mockito.when(runtimeInfo.getStageLibraryClassLoaders()).thenReturn((List) ImmutableList.of(cl));
+    BuildInfo buildInfo = new DataCollectorBuildInfo();
+
+    // First start validates the definitions and indexes the library
+    ClassLoaderStageLibraryTask library = new ClassLoaderStageLibraryTask(runtimeInfo, buildInfo, new Configuration());
+    library.initTask();
+    Assert.assertEquals(1, library.getStages().size());
+
+    StageLibraryDefinitionIndex index = new StageLibraryDefinitionIndex(
+        new File(baseDir, StageLibraryDefinitionIndex.INDEX_DIR),
+        buildInfo.getVersion()
+    );
+    String checksum = index.getChecksum(cl);
+    Assert.assertNotNull(checksum);
+    Map<String, List<String>> classes = index.read("lib", checksum);
+    Assert.assertNotNull(classes);
+    Assert.assertEquals(
+        library.getStages().get(0).getClassName(),
+        classes.get(StageLibraryTask.STAGES_DEFINITION_RESOURCE).get(0)
+    );
+
+    // Next start takes the classes from the index, an empty entry means no stages
+    index.write("lib", checksum, ImmutableMap.of());
+    library = new ClassLoaderStageLibraryTask(runtimeInfo, buildInfo, new Configuration());
+    library.initTask();
+    Assert.assertEquals(0, library.getStages().size());
+
+    // Disabled index
+    Configuration configuration = new Configuration();
+    configuration.set(ClassLoaderStageLibraryTask.DEFINITION_INDEX_KEY, false);
+    library = new ClassLoaderStageLibraryTask(runtimeInfo, buildInfo, configuration);
+    library.initTask();
+    Assert.assertEquals(1, library.getStages().size());
+
+    // Changing the library jars invalidates the entry
+    writeJar(jar, "v2");
+    Assert.assertNotEquals(checksum, index.getChecksum(cl));
+    Assert.assertNull(index.read("lib", index.getChecksum(cl)));
+    library = new ClassLoaderStageLibraryTask(runtimeInfo, buildInfo, new Configuration());
+    library.initTask();
+    Assert.assertEquals(1, library.getStages().size());
+    Assert.assertNotNull(index.read("lib", index.getChecksum(cl)));
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void testIncorrectSdcMinVersion() {
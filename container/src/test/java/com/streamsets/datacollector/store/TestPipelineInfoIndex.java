@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.store;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public class TestPipelineInfoIndex {
+
+  private PipelineInfoIndex index;
+
+  private static PipelineInfo createInfo(String id, String title, long created, String... labels) {
+    return new PipelineInfo(
+        id,
+        title,
+        null,
+        new Date(created),
+        new Date(created),
+        "user",
+        "user",
+        "0",
+        UUID.randomUUID(),
+        true,
+        labels.length == 0 ? null : ImmutableMap.<String, Object>of("labels", ImmutableList.copyOf(labels)),
+        null,
+        null
+    );
+  }
+
+  private static List<String> ids(PipelineInfoIndex.Page page) {
+    List<String> ids = new ArrayList<>();
+    for (PipelineInfo info : page.getPipelines()) {
+      ids.add(info.getPipelineId());
+    }
+    return ids;
+  }
+
+  @Before
+  public void setUp() {
+    index = new PipelineInfoIndex();
+    for (int i = 0; i < 10; i++) {
+      // created time decreases with the id so that the orders differ
+      index.put(createInfo("p" + i, "Title " + (9 - i), 1000 - i, i % 2 == 0 ? "even" : "odd"));
+    }
+  }
+
+  @Test
+  public void testPaging() {
+    PipelineInfoIndex.Page page = index.query(new PipelineInfoIndex.Query().withPage(2, 3));
+    Assert.assertEquals(ImmutableList.of("p2", "p3", "p4"), ids(page));
+    Assert.assertEquals(10, page.getTotalCount());
+
+    page = index.query(new PipelineInfoIndex.Query().withPage(8, 5));
+    Assert.assertEquals(ImmutableList.of("p8", "p9"), ids(page));
+    Assert.assertEquals(10, page.getTotalCount());
+
+    page = index.query(new PipelineInfoIndex.Query().withPage(20, 5));
+    Assert.assertTrue(page.getPipelines().isEmpty());
+    Assert.assertEquals(10, page.getTotalCount());
+
+    Assert.assertEquals(10, index.query(new PipelineInfoIndex.Query()).getPipelines().size());
+  }
+
+  @Test
+  public void testSorting() {
+    PipelineInfoIndex.Page page = index.query(new PipelineInfoIndex.Query()
+        .withOrder(PipelineInfoIndex.SortKey.TITLE, false)
+        .withPage(0, 2));
+    Assert.assertEquals(ImmutableList.of("p9", "p8"), ids(page));
+
+    page = index.query(new PipelineInfoIndex.Query()
+        .withOrder(PipelineInfoIndex.SortKey.CREATED, true)
+        .withPage(0, 2));
+    Assert.assertEquals(ImmutableList.of("p0", "p1"), ids(page));
+
+    page = index.query(new PipelineInfoIndex.Query().withOrder(PipelineInfoIndex.SortKey.ID, true).withPage(0, 1));
+    Assert.assertEquals(ImmutableList.of("p9"), ids(page));
+  }
+
+  @Test
+  public void testFiltering() {
+    PipelineInfoIndex.Page page = index.query(new PipelineInfoIndex.Query().withLabel("even").withPage(1, 2));
+    Assert.assertEquals(ImmutableList.of("p2", "p4"), ids(page));
+    Assert.assertEquals(5, page.getTotalCount());
+
+    page = index.query(new PipelineInfoIndex.Query().withFilterText("TITLE 1"));
+    Assert.assertEquals(ImmutableList.of("p8"), ids(page));
+    Assert.assertEquals(1, page.getTotalCount());
+
+    page = index.query(new PipelineInfoIndex.Query()
+        .withLabel("odd")
+        .withFilter(info -> !info.getPipelineId().equals("p1"))
+        .withPage(0, 2));
+    Assert.assertEquals(ImmutableList.of("p3", "p5"), ids(page));
+    Assert.assertEquals(4, page.getTotalCount());
+
+    Assert.assertEquals(0, index.query(new PipelineInfoIndex.Query().withLabel("unknown")).getTotalCount());
+  }
+
+  @Test
+  public void testLabelSorting() {
+    PipelineInfoIndex.Page page = index.query(new PipelineInfoIndex.Query()
+        .withLabel("even")
+        .withOrder(PipelineInfoIndex.SortKey.TITLE, false)
+        .withPage(0, 2));
+    Assert.assertEquals(ImmutableList.of("p8", "p6"), ids(page));
+    Assert.assertEquals(5, page.getTotalCount());
+
+    page = index.query(new PipelineInfoIndex.Query()
+        .withLabel("odd")
+        .withOrder(PipelineInfoIndex.SortKey.CREATED, true)
+        .withPage(1, 2));
+    Assert.assertEquals(ImmutableList.of("p3", "p5"), ids(page));
+
+    // Moving a pipeline to another label updates the sorted sets of both labels
+    index.put(createInfo("p8", "A", 992, "odd", "other"));
+    page = index.query(new PipelineInfoIndex.Query()
+        .withLabel("odd")
+        .withOrder(PipelineInfoIndex.SortKey.TITLE, false)
+        .withPage(0, 1));
+    Assert.assertEquals(ImmutableList.of("p8"), ids(page));
+    Assert.assertEquals(4, index.query(new PipelineInfoIndex.Query().withLabel("even")).getTotalCount());
+
+    index.remove("p8");
+    Assert.assertFalse(index.getLabels().contains("other"));
+    Assert.assertEquals(0, index.query(new PipelineInfoIndex.Query().withLabel("other")).getTotalCount());
+  }
+
+  @Test
+  public void testUpdateAndRemove() {
+    index.put(createInfo("p0", "A", 5000, "odd"));
+    Assert.assertEquals(10, index.size());
+    Assert.assertEquals("A", index.get("p0").getTitle());
+    Assert.assertEquals(
+        ImmutableList.of("p0"),
+        ids(index.query(new PipelineInfoIndex.Query().withOrder(PipelineInfoIndex.SortKey.TITLE, false).withPage(0, 1)))
+    );
+    Assert.assertEquals(4, index.query(new PipelineInfoIndex.Query().withLabel("even")).getTotalCount());
+    Assert.assertEquals(6, index.query(new PipelineInfoIndex.Query().withLabel("odd")).getTotalCount());
+
+    index.remove("p0");
+    index.remove("p2");
+    index.remove("unknown");
+    Assert.assertEquals(8, index.size());
+    Assert.assertFalse(index.contains("p0"));
+    Assert.assertEquals(3, index.query(new PipelineInfoIndex.Query().withLabel("even")).getTotalCount());
+    Assert.assertEquals(ImmutableList.of("p1", "p3"), ids(index.query(new PipelineInfoIndex.Query().withPage(0, 2))));
+
+    index.clear();
+    Assert.assertEquals(0, index.size());
+    Assert.assertTrue(index.getLabels().isEmpty());
+  }
+
+  @Test
+  public void testQueryDoesNotChange() {
+    PipelineInfoIndex.Query query = new PipelineInfoIndex.Query().withLabel("even");
+    PipelineInfoIndex.Query restricted = query.and(info -> info.getPipelineId().equals("p4"));
+    Assert.assertEquals(5, index.query(query).getTotalCount());
+    Assert.assertEquals(ImmutableList.of("p4"), ids(index.query(restricted)));
+  }
+
+}
@@ -16,6 +16,8 @@
 package com.streamsets.datacollector.store.impl;
 
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.streamsets.datacollector.config.DataRuleDefinition;
 import com.streamsets.datacollector.config.DriftRuleDefinition;
 import com.streamsets.datacollector.config.MetricElement;
@@ -26,11 +28,15 @@ import com.streamsets.datacollector.config.RuleDefinitions;
 import com.streamsets.datacollector.config.ThresholdType;
 import com.streamsets.datacollector.creation.RuleDefinitionsConfigBean;
 import com.streamsets.datacollector.execution.PipelineStateStore;
+import com.streamsets.datacollector.json.ObjectMapperFactory;
 import com.streamsets.datacollector.main.RuntimeInfo;
+import com.streamsets.datacollector.restapi.bean.BeanHelper;
+import com.streamsets.datacollector.restapi.bean.PipelineInfoJson;
 import com.streamsets.datacollector.runner.MockStages;
 import com.streamsets.datacollector.runner.preview.StageConfigurationBuilder;
 import com.streamsets.datacollector.stagelibrary.StageLibraryTask;
 import com.streamsets.datacollector.store.PipelineInfo;
+import com.streamsets.datacollector.store.PipelineInfoIndex;
 import com.streamsets.datacollector.store.PipelineStoreException;
 import com.streamsets.datacollector.store.PipelineStoreTask;
 import com.streamsets.datacollector.util.ContainerError;
@@ -47,6 +53,9 @@ import org.mockito.Mockito;
 
 import javax.annotation.Nullable;
 import javax.inject.Singleton;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -465,5 +474,91 @@ public class TestFilePipelineStoreTask {
     }
   }
 
+  @Test
+  public void testQueryPipelines() throws Exception {
+    try {
+      store.init();
+      for (int i = 0; i < 5; i++) {
+        store.create(SYSTEM_USER, "p" + i, "Title " + i, "", false, false);
+        if (i % 2 == 0) {
+          Map<String, Object> metadata = new HashMap<>();
+          metadata.put("labels", ImmutableList.of("even"));
+          store.saveMetadata(SYSTEM_USER, "p" + i, FilePipelineStoreTask.REV, metadata);
+        }
+      }
+
+      PipelineInfoIndex.Page page = store.getPipelines(new PipelineInfoIndex.Query().withPage(1, 2));
+      Assert.assertEquals(5, page.getTotalCount());
+      Assert.assertEquals(2, page.getPipelines().size());
+      Assert.assertEquals("p1", page.getPipelines().get(0).getPipelineId());
+      Assert.assertEquals("p2", page.getPipelines().get(1).getPipelineId());
+
+      page = store.getPipelines(new PipelineInfoIndex.Query()
+          .withLabel("even")
+          .withOrder(PipelineInfoIndex.SortKey.TITLE, true)
+          .withPage(0, 2));
+      Assert.assertEquals(3, page.getTotalCount());
+      Assert.assertEquals("p4", page.getPipelines().get(0).getPipelineId());
+      Assert.assertEquals("p2", page.getPipelines().get(1).getPipelineId());
+
+      page = store.getPipelines(new PipelineInfoIndex.Query().withFilterText("title 3"));
+      Assert.assertEquals(1, page.getTotalCount());
+      Assert.assertEquals("p3", page.getPipelines().get(0).getPipelineId());
+    } finally {
+      store.stop();
+    }
+  }
+
+  @Test
+  public void testPipelineInfoManifest() throws Exception {
+    RuntimeInfo runtimeInfo = Mockito.mock(RuntimeInfo.class);
+    Mockito.when(runtimeInfo.getDataDir()).thenReturn("target/" + UUID.randomUUID());
+    StageLibraryTask stageLibrary = MockStages.createStageLibrary();
+
+    FilePipelineStoreTask fileStore = new FilePipelineStoreTask(runtimeInfo, stageLibrary, null, new LockCache<>());
+    try {
+      fileStore.init();
+      fileStore.create(SYSTEM_USER, "a", "A", "", false, false);
+      fileStore.create(SYSTEM_USER, "b", "B", "", false, false);
+      Assert.assertEquals(2, fileStore.getPipelines().size());
+    } finally {
+      fileStore.stop();
+    }
+    Assert.assertTrue(Files.exists(fileStore.getStoreDir().resolve(PipelineInfoManifest.MANIFEST_FILE)));
+
+    // Info file changed behind the store's back is parsed again
+    Path infoFile = fileStore.getPipelineDir("b").resolve(FilePipelineStoreTask.INFO_FILE);
+    PipelineInfo info = ObjectMapperFactory.get()
+        .readValue(infoFile.toFile(), PipelineInfoJson.class)
+        .getPipelineInfo();
+    PipelineInfo changed = new PipelineInfo(
+        info,
+        "Changed",
+        info.getDescription(),
+        info.getLastModified(),
+        info.getLastModifier(),
+        info.getLastRev(),
+        info.getUuid(),
+        info.isValid(),
+        info.getMetadata(),
+        info.getSdcVersion(),
+        info.getSdcId()
+    );
+    ObjectMapperFactory.get().writeValue(infoFile.toFile(), BeanHelper.wrapPipelineInfo(changed));
+    Files.setLastModifiedTime(infoFile, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+
+    fileStore = new FilePipelineStoreTask(runtimeInfo, stageLibrary, null, new LockCache<>());
+    try {
+      fileStore.init();
+      Map<String, String> titles = new HashMap<>();
+      for (PipelineInfo pipelineInfo : fileStore.getPipelines()) {
+        titles.put(pipelineInfo.getPipelineId(), pipelineInfo.getTitle());
+      }
+      Assert.assertEquals(ImmutableMap.of("a", "A", "b", "Changed"), titles);
+      Assert.assertEquals("Changed", fileStore.getInfo("b").getTitle());
+    } finally {
+      fileStore.stop();
+    }
+  }
 
 }
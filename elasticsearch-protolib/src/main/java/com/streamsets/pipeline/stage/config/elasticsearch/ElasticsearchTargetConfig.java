@@ -151,4 +151,55 @@ public class ElasticsearchTargetConfig extends ElasticsearchConfig {
   )
   @ValueChooserModel(UnsupportedOperationActionChooserValues.class)
   public UnsupportedOperationAction unsupportedAction = UnsupportedOperationAction.DISCARD;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "10",
+      label = "Max Request Size (MB)",
+      description = "Maximum size of a single bulk request before compression. Larger batches are split into " +
+          "multiple requests.",
+      min = 1,
+      max = 1024,
+      displayPosition = 120,
+      group = "ELASTIC_SEARCH"
+  )
+  public int maxRequestSizeMB = 10;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "5000",
+      label = "Max Documents per Request",
+      description = "Maximum number of documents in a single bulk request. Larger batches are split into " +
+          "multiple requests.",
+      min = 1,
+      displayPosition = 130,
+      group = "ELASTIC_SEARCH"
+  )
+  public int maxRequestDocuments = 5000;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Max Concurrent Requests",
+      description = "Maximum number of bulk requests of a batch that are sent at the same time. Use 1 if the order " +
+          "of operations on the same document within a batch matters.",
+      min = 1,
+      displayPosition = 140,
+      group = "ELASTIC_SEARCH"
+  )
+  public int maxConcurrentRequests = 1;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Compress Requests",
+      description = "Compresses bulk requests with gzip",
+      displayPosition = 150,
+      group = "ELASTIC_SEARCH"
+  )
+  public boolean compressRequests = false;
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.elasticsearch;
+
+import com.codahale.metrics.Histogram;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.impl.Utils;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the body of <code>_bulk</code> requests directly as UTF-8 bytes in reusable buffers and sends it in
+ * sub-requests bounded by size and number of documents. Up to <code>maxConcurrentRequests</code> sub-requests are in
+ * flight at the same time, their responses are always handled on the calling thread and in the order the requests
+ * were sent, together with the records that were written into them.
+ *
+ * Not thread safe, meant to be used by the pipeline thread of a single stage instance.
+ */
+class BulkRequestWriter {
+
+  /**
+   * Sends the request asynchronously, the returned future completes with the response body.
+   */
+  interface Sender {
+    CompletableFuture<String> send(HttpEntity entity);
+  }
+
+  interface ResponseHandler {
+    void onResponse(List<Record> records, String response) throws StageException;
+
+    void onFailure(List<Record> records, Throwable error) throws StageException;
+  }
+
+  /**
+   * Byte buffer that gives access to its content without copying.
+   */
+  static class Buffer extends ByteArrayOutputStream {
+    Buffer(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+
+    void truncate(int size) {
+      Utils.checkArgument(size >= 0 && size <= count, Utils.formatL("Invalid size {}", size));
+      count = size;
+    }
+
+    /**
+     * Removes all new line characters written since given position, the content must be UTF-8 (or ASCII compatible).
+     */
+    void removeNewLines(int from) {
+      int to = from;
+      for (int i = from; i < count; i++) {
+        if (buf[i] != '\n') {
+          buf[to++] = buf[i];
+        }
+      }
+      count = to;
+    }
+
+    /**
+     * Converts everything written since given position from given charset to UTF-8 and removes new line characters.
+     */
+    void toUtf8(int from, Charset charset) throws IOException {
+      String content = new String(buf, from, count - from, charset);
+      count = from;
+      write(content.replace("\n", "").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static class InFlightRequest {
+    private final List<Record> records;
+    private final Buffer buffer;
+    private final CompletableFuture<String> response;
+
+    private InFlightRequest(List<Record> records, Buffer buffer, CompletableFuture<String> response) {
+      this.records = records;
+      this.buffer = buffer;
+      this.response = response;
+    }
+  }
+
+  private final int maxRequestBytes;
+  private final int maxDocuments;
+  private final boolean compress;
+  private final int maxConcurrentRequests;
+  private final Sender sender;
+  private final Histogram requestSize;
+  private final Histogram requestLatency;
+
+  private final Deque<Buffer> freeBuffers = new ArrayDeque<>();
+  private final Deque<InFlightRequest> inFlight = new ArrayDeque<>();
+
+  private Buffer buffer;
+  private List<Record> records = new ArrayList<>();
+  private int documentStart = -1;
+
+  BulkRequestWriter(
+      int maxRequestBytes,
+      int maxDocuments,
+      boolean compress,
+      int maxConcurrentRequests,
+      Sender sender,
+      Histogram requestSize,
+      Histogram requestLatency
+  ) {
+    Utils.checkArgument(maxRequestBytes > 0, "maxRequestBytes must be greater than zero");
+    Utils.checkArgument(maxDocuments > 0, "maxDocuments must be greater than zero");
+    Utils.checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be greater than zero");
+    this.maxRequestBytes = maxRequestBytes;
+    this.maxDocuments = maxDocuments;
+    this.compress = compress;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.sender = sender;
+    this.requestSize = requestSize;
+    this.requestLatency = requestLatency;
+  }
+
+  /**
+   * Starts a new document (action line and optional source line) for given record, the document has to be written
+   * into the returned buffer and finished with {@link #endDocument(ResponseHandler)} or
+   * {@link #abortDocument()}.
+   */
+  Buffer beginDocument(Record record) {
+    Utils.checkState(documentStart < 0, "Previous document was not finished");
+    if (buffer == null) {
+      buffer = acquireBuffer();
+    }
+    documentStart = buffer.size();
+    records.add(record);
+    return buffer;
+  }
+
+  /**
+   * Discards the document that is being written.
+   */
+  void abortDocument() {
+    if (documentStart >= 0) {
+      buffer.truncate(documentStart);
+      records.remove(records.size() - 1);
+      documentStart = -1;
+    }
+  }
+
+  /**
+   * Finishes the current document and sends the request if it reached one of the limits. A document that would make
+   * the request exceed the size limit is moved to the next request.
+   */
+  void endDocument(ResponseHandler handler) throws StageException {
+    Utils.checkState(documentStart >= 0, "No document was started");
+    int lastDocumentStart = documentStart;
+    documentStart = -1;
+    if (buffer.size() > maxRequestBytes && records.size() > 1) {
+      Buffer next = acquireBuffer();
+      next.write(buffer.getBuffer(), lastDocumentStart, buffer.size() - lastDocumentStart);
+      buffer.truncate(lastDocumentStart);
+      Record lastRecord = records.remove(records.size() - 1);
+      send(handler);
+      buffer = next;
+      records.add(lastRecord);
+    }
+    // A single document can be bigger than the limit, it's sent on its own
+    if (buffer.size() >= maxRequestBytes || records.size() >= maxDocuments) {
+      send(handler);
+    }
+  }
+
+  /**
+   * Sends the pending documents and waits for responses of all requests.
+   */
+  void flush(ResponseHandler handler) throws StageException {
+    if (!records.isEmpty()) {
+      send(handler);
+    }
+    StageException firstError = null;
+    while (!inFlight.isEmpty()) {
+      try {
+        complete(inFlight.poll(), handler);
+      } catch (StageException ex) {
+        // Keep waiting for the remaining requests so that none of them outlives the batch
+        if (firstError == null) {
+          firstError = ex;
+        }
+      }
+    }
+    if (firstError != null) {
+      throw firstError;
+    }
+  }
+
+  /**
+   * Drops pending documents and waits for all requests without handling their responses, used when a batch fails.
+   */
+  void reset() {
+    abortDocument();
+    if (buffer != null) {
+      releaseBuffer(buffer);
+      buffer = null;
+    }
+    records = new ArrayList<>();
+    while (!inFlight.isEmpty()) {
+      InFlightRequest request = inFlight.poll();
+      try {
+        request.response.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // Ignored, the batch failed already
+      }
+      releaseBuffer(request.buffer);
+    }
+  }
+
+  int getInFlightCount() {
+    return inFlight.size();
+  }
+
+  private void send(ResponseHandler handler) throws StageException {
+    while (inFlight.size() >= maxConcurrentRequests) {
+      complete(inFlight.poll(), handler);
+    }
+
+    Buffer body = buffer;
+    buffer = null;
+    List<Record> requestRecords = records;
+    records = new ArrayList<>();
+
+    ByteArrayEntity entity;
+    if (compress) {
+      Buffer compressed = acquireBuffer();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        body.writeTo(gzip);
+      } catch (IOException e) {
+        // Writing into memory doesn't throw
+        throw new IllegalStateException(e);
+      }
+      releaseBuffer(body);
+      body = compressed;
+      entity = new ByteArrayEntity(body.getBuffer(), 0, body.size(), ContentType.APPLICATION_JSON);
+      entity.setContentEncoding("gzip");
+    } else {
+      entity = new ByteArrayEntity(body.getBuffer(), 0, body.size(), ContentType.APPLICATION_JSON);
+    }
+
+    requestSize.update(body.size());
+    long start = System.nanoTime();
+    CompletableFuture<String> response;
+    try {
+      response = sender.send(entity);
+    } catch (RuntimeException e) {
+      response = new CompletableFuture<>();
+      response.completeExceptionally(e);
+    }
+    response.whenComplete((r, e) -> requestLatency.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    inFlight.add(new InFlightRequest(requestRecords, body, response));
+  }
+
+  private void complete(InFlightRequest request, ResponseHandler handler) throws StageException {
+    try {
+      String response;
+      try {
+        response = request.response.get();
+      } catch (ExecutionException e) {
+        handler.onFailure(request.records, e.getCause());
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        handler.onFailure(request.records, e);
+        return;
+      }
+      handler.onResponse(request.records, response);
+    } finally {
+      releaseBuffer(request.buffer);
+    }
+  }
+
+  private Buffer acquireBuffer() {
+    Buffer free = freeBuffers.poll();
+    return free != null ? free : new Buffer(Math.min(maxRequestBytes, 64 * 1024));
+  }
+
+  private void releaseBuffer(Buffer free) {
+    // Don't hold on to buffers that grew because of a single huge document
+    if (free.capacity() <= 2 * maxRequestBytes && freeBuffers.size() <= maxConcurrentRequests) {
+      free.reset();
+      freeBuffers.add(free);
+    }
+  }
+}
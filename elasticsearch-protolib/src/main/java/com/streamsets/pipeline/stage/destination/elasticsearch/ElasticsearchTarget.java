@@ -46,14 +46,14 @@ import com.streamsets.pipeline.stage.config.elasticsearch.ElasticsearchTargetCon
 import com.streamsets.pipeline.stage.config.elasticsearch.Errors;
 import com.streamsets.pipeline.stage.config.elasticsearch.Groups;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -65,6 +65,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 
 public class ElasticsearchTarget extends BaseTarget {
   private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchTarget.class);
@@ -80,6 +81,10 @@ public class ElasticsearchTarget extends BaseTarget {
   private DataGeneratorFactory generatorFactory;
   private ErrorRecordHandler errorRecordHandler;
   private ElasticsearchStageDelegate delegate;
+  private Charset charset;
+  private boolean utf8;
+  private BulkRequestWriter bulkWriter;
+  private Header[] headers;
 
   public ElasticsearchTarget(ElasticsearchTargetConfig conf) {
     this.conf = conf;
@@ -193,16 +198,25 @@ public class ElasticsearchTarget extends BaseTarget {
 
     issues = delegate.init("elasticSearchConfig", issues);
 
+    charset = Charset.forName(conf.charset);
+    utf8 = charset.equals(StandardCharsets.UTF_8);
     generatorFactory = new DataGeneratorFactoryBuilder(getContext(), DataGeneratorFormat.JSON)
         .setMode(Mode.MULTIPLE_OBJECTS)
-        .setCharset(Charset.forName(conf.charset))
+        .setCharset(charset)
         .build();
 
+    if (issues.isEmpty()) {
+      bulkWriter = createBulkWriter();
+    }
+
     return issues;
   }
 
   @Override
   public void destroy() {
+    if (bulkWriter != null) {
+      bulkWriter.reset();
+    }
     if(delegate != null) {
       delegate.destroy();
     }
@@ -235,121 +249,162 @@ public class ElasticsearchTarget extends BaseTarget {
     TimeNowEL.setTimeNowInContext(elVars, getBatchTime());
     Iterator<Record> it = batch.getRecords();
 
-    StringBuilder bulkRequest = new StringBuilder();
+    headers = delegate.getAuthenticationHeader(conf.securityConfig.securityUser.get());
+    BulkRequestWriter.ResponseHandler responseHandler = new BulkResponseHandler();
 
-    //we need to keep the records in order of appearance in case we have indexing errors
-    //and error handling is TO_ERROR
-    List<Record> records = new ArrayList<>();
+    try {
+      while (it.hasNext()) {
+        Record record = it.next();
 
-    while (it.hasNext()) {
-      Record record = it.next();
-      records.add(record);
+        try {
+          RecordEL.setRecordInContext(elVars, record);
+          String index = getRecordIndex(elVars, record);
+          String type = typeEval.eval(elVars, conf.typeTemplate, String.class);
+          String id = null;
+          if (!StringUtils.isEmpty(conf.docIdTemplate)) {
+            id = docIdEval.eval(elVars, conf.docIdTemplate, String.class);
+          }
+          String parent = null;
+          if (!StringUtils.isEmpty(conf.parentIdTemplate)) {
+            parent = parentIdEval.eval(elVars, conf.parentIdTemplate, String.class);
+          }
+          String routing = null;
+          if (!StringUtils.isEmpty(conf.routingTemplate)) {
+            routing = routingEval.eval(elVars, conf.routingTemplate, String.class);
+          }
 
-      try {
-        RecordEL.setRecordInContext(elVars, record);
-        String index = getRecordIndex(elVars, record);
-        String type = typeEval.eval(elVars, conf.typeTemplate, String.class);
-        String id = null;
-        if (!StringUtils.isEmpty(conf.docIdTemplate)) {
-          id = docIdEval.eval(elVars, conf.docIdTemplate, String.class);
-        }
-        String parent = null;
-        if (!StringUtils.isEmpty(conf.parentIdTemplate)) {
-          parent = parentIdEval.eval(elVars, conf.parentIdTemplate, String.class);
-        }
-        String routing = null;
-        if (!StringUtils.isEmpty(conf.routingTemplate)) {
-          routing = routingEval.eval(elVars, conf.routingTemplate, String.class);
-        }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        DataGenerator generator = generatorFactory.getGenerator(baos);
-        generator.write(record);
-        generator.close();
-
-        int opCode = -1;
-        String opType = record.getHeader().getAttribute(OperationType.SDC_OPERATION_TYPE);
-        String recordJson = new String(baos.toByteArray(), StandardCharsets.UTF_8).replace("\n", "");
-        // Check if the operation code from header attribute is valid
-        if (!StringUtils.isEmpty(opType)) {
-          try {
-            opCode = ElasticsearchOperationType.convertToIntCode(opType);
-          } catch (NumberFormatException | UnsupportedOperationException ex) {
-            // Operation obtained from header is not supported. Handle accordingly
-            switch (conf.unsupportedAction) {
-              case DISCARD:
-                LOG.debug("Discarding record with unsupported operation {}", opType);
-                break;
-              case SEND_TO_ERROR:
-                errorRecordHandler.onError(new OnRecordErrorException(record, Errors.ELASTICSEARCH_13, ex.getMessage(), ex));
-                break;
-              case USE_DEFAULT:
-                opCode = conf.defaultOperation.code;
-                break;
-              default: //unknown action
-                errorRecordHandler.onError(new OnRecordErrorException(record, Errors.ELASTICSEARCH_14, ex.getMessage(), ex));
+          int opCode = -1;
+          String opType = record.getHeader().getAttribute(OperationType.SDC_OPERATION_TYPE);
+          // Check if the operation code from header attribute is valid
+          if (!StringUtils.isEmpty(opType)) {
+            try {
+              opCode = ElasticsearchOperationType.convertToIntCode(opType);
+            } catch (NumberFormatException | UnsupportedOperationException ex) {
+              // Operation obtained from header is not supported. Handle accordingly
+              switch (conf.unsupportedAction) {
+                case DISCARD:
+                  LOG.debug("Discarding record with unsupported operation {}", opType);
+                  break;
+                case SEND_TO_ERROR:
+                  errorRecordHandler.onError(
+                      new OnRecordErrorException(record, Errors.ELASTICSEARCH_13, ex.getMessage(), ex)
+                  );
+                  break;
+                case USE_DEFAULT:
+                  opCode = conf.defaultOperation.code;
+                  break;
+                default: //unknown action
+                  errorRecordHandler.onError(
+                      new OnRecordErrorException(record, Errors.ELASTICSEARCH_14, ex.getMessage(), ex)
+                  );
+              }
             }
+          } else {
+            // No header attribute set. Use default.
+            opCode = conf.defaultOperation.code;
           }
-        } else {
-          // No header attribute set. Use default.
-          opCode = conf.defaultOperation.code;
+          if (opCode == -1) {
+            // Record was discarded or sent to error
+            continue;
+          }
+
+          BulkRequestWriter.Buffer buffer = bulkWriter.beginDocument(record);
+          writeOperation(buffer, index, type, id, parent, routing, record, opCode);
+          bulkWriter.endDocument(responseHandler);
+        } catch (IOException ex) {
+          bulkWriter.abortDocument();
+          errorRecordHandler.onError(
+              new OnRecordErrorException(
+                  record,
+                  Errors.ELASTICSEARCH_15,
+                  record.getHeader().getSourceId(),
+                  ex.toString(),
+                  ex
+              )
+          );
         }
-        bulkRequest.append(getOperation(index, type, id, parent, routing, recordJson, opCode));
-      } catch (IOException ex) {
-        errorRecordHandler.onError(
-            new OnRecordErrorException(
-                record,
-                Errors.ELASTICSEARCH_15,
-                record.getHeader().getSourceId(),
-                ex.toString(),
-                ex
-            )
-        );
       }
+
+      bulkWriter.flush(responseHandler);
+    } finally {
+      // No-op unless the batch failed half way
+      bulkWriter.reset();
     }
+  }
 
-    if (!records.isEmpty()) {
-      try {
-        HttpEntity entity = new StringEntity(bulkRequest.toString(), ContentType.APPLICATION_JSON);
-        Response response;
-        response = delegate.performRequest(
-            "POST",
-            "/_bulk",
-            conf.params,
-            entity,
-            delegate.getAuthenticationHeader(conf.securityConfig.securityUser.get())
-        );
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        response.getEntity().writeTo(baos);
-        JsonObject json = new JsonParser().parse(baos.toString()).getAsJsonObject();
-        baos.close();
-
-        // Handle errors in bulk requests individually.
-        boolean errors = json.get("errors").getAsBoolean();
-        if (errors) {
-          List<ErrorItem> errorItems;
-          switch (getContext().getOnErrorRecord()) {
-            case DISCARD:
-              break;
-            case TO_ERROR:
-              errorItems = extractErrorItems(json);
-              for (ErrorItem item : errorItems) {
-                Record record = records.get(item.index);
-                getContext().toError(record, Errors.ELASTICSEARCH_16, record.getHeader().getSourceId(), item.reason);
-              }
-              break;
-            case STOP_PIPELINE:
-              errorItems = extractErrorItems(json);
-              throw new StageException(Errors.ELASTICSEARCH_17, errorItems.size(), "One or more operations failed");
-            default:
-              throw new IllegalStateException(
-                  Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord())
-              );
-          }
+  private BulkRequestWriter createBulkWriter() {
+    return new BulkRequestWriter(
+        conf.maxRequestSizeMB * 1024 * 1024,
+        conf.maxRequestDocuments,
+        conf.compressRequests,
+        conf.maxConcurrentRequests,
+        this::sendBulkRequest,
+        getContext().createHistogram("Bulk Request Size (bytes)"),
+        getContext().createHistogram("Bulk Request Latency (ms)")
+    );
+  }
+
+  private CompletableFuture<String> sendBulkRequest(HttpEntity entity) {
+    CompletableFuture<String> future = new CompletableFuture<>();
+    delegate.performRequestAsync("POST", "/_bulk", conf.params, entity, new ResponseListener() {
+      @Override
+      public void onSuccess(Response response) {
+        try {
+          future.complete(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void onFailure(Exception exception) {
+        future.completeExceptionally(exception);
+      }
+    }, headers);
+    return future;
+  }
+
+  /**
+   * Handles responses of bulk sub-requests on the pipeline thread, items in a response are in the same order as the
+   * records written into the request.
+   */
+  private class BulkResponseHandler implements BulkRequestWriter.ResponseHandler {
+    @Override
+    public void onResponse(List<Record> records, String response) throws StageException {
+      JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+
+      // Handle errors in bulk requests individually.
+      boolean errors = json.get("errors").getAsBoolean();
+      if (errors) {
+        List<ErrorItem> errorItems;
+        switch (getContext().getOnErrorRecord()) {
+          case DISCARD:
+            break;
+          case TO_ERROR:
+            errorItems = extractErrorItems(json);
+            for (ErrorItem item : errorItems) {
+              Record record = records.get(item.index);
+              getContext().toError(record, Errors.ELASTICSEARCH_16, record.getHeader().getSourceId(), item.reason);
+            }
+            break;
+          case STOP_PIPELINE:
+            errorItems = extractErrorItems(json);
+            throw new StageException(Errors.ELASTICSEARCH_17, errorItems.size(), "One or more operations failed");
+          default:
+            throw new IllegalStateException(
+                Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord())
+            );
         }
-      } catch (IOException ex) {
-        errorRecordHandler.onError(records, new StageException(Errors.ELASTICSEARCH_17, records.size(), ex.toString(), ex));
       }
     }
+
+    @Override
+    public void onFailure(List<Record> records, Throwable error) throws StageException {
+      errorRecordHandler.onError(
+          records,
+          new StageException(Errors.ELASTICSEARCH_17, records.size(), error.toString(), error)
+      );
+    }
   }
 
   Date setBatchTime() {
@@ -361,47 +416,88 @@ public class ElasticsearchTarget extends BaseTarget {
     return batchTime;
   }
 
-  private String getOperation(String index, String type, String id, String parent, String routing, String record, int opCode) {
-    StringBuilder op = new StringBuilder();
+  private void writeOperation(
+      BulkRequestWriter.Buffer buffer,
+      String index,
+      String type,
+      String id,
+      String parent,
+      String routing,
+      Record record,
+      int opCode
+  ) throws IOException, StageException {
     switch (opCode) {
       case OperationType.UPSERT_CODE:
-        getOperationMetadata("index", index, type, id, parent, routing, op);
-        op.append(String.format("%s%n", record));
+        writeOperationMetadata(buffer, "index", index, type, id, parent, routing);
+        writeRecord(buffer, record);
+        writeUtf8(buffer, "\n");
         break;
       case OperationType.INSERT_CODE:
-        getOperationMetadata("create", index, type, id, parent, routing, op);
-        op.append(String.format("%s%n", record));
+        writeOperationMetadata(buffer, "create", index, type, id, parent, routing);
+        writeRecord(buffer, record);
+        writeUtf8(buffer, "\n");
         break;
       case OperationType.UPDATE_CODE:
-        getOperationMetadata("update", index, type, id, parent, routing, op);
-        op.append(String.format("{\"doc\":%s}%n", record));
+        writeOperationMetadata(buffer, "update", index, type, id, parent, routing);
+        writeUtf8(buffer, "{\"doc\":");
+        writeRecord(buffer, record);
+        writeUtf8(buffer, "}\n");
         break;
       case OperationType.MERGE_CODE:
-        getOperationMetadata("update", index, type, id, parent, routing, op);
-        op.append(String.format("{\"doc_as_upsert\": \"true\", \"doc\":%s}%n", record));
+        writeOperationMetadata(buffer, "update", index, type, id, parent, routing);
+        writeUtf8(buffer, "{\"doc_as_upsert\": \"true\", \"doc\":");
+        writeRecord(buffer, record);
+        writeUtf8(buffer, "}\n");
         break;
       case OperationType.DELETE_CODE:
-        getOperationMetadata("delete", index, type, id, parent, routing, op);
+        writeOperationMetadata(buffer, "delete", index, type, id, parent, routing);
         break;
       default:
         LOG.error("Operation {} not supported", opCode);
         throw new UnsupportedOperationException(String.format("Unsupported Operation: %s", opCode));
     }
-    return op.toString();
   }
 
-  private void getOperationMetadata(String operation, String index, String type, String id, String parent, String routing, StringBuilder sb) {
-    sb.append(String.format("{\"%s\":{\"_index\":\"%s\",\"_type\":\"%s\"", operation, index, type));
+  private void writeOperationMetadata(
+      BulkRequestWriter.Buffer buffer,
+      String operation,
+      String index,
+      String type,
+      String id,
+      String parent,
+      String routing
+  ) throws IOException {
+    StringBuilder sb = new StringBuilder(128);
+    sb.append("{\"").append(operation).append("\":{\"_index\":\"").append(index);
+    sb.append("\",\"_type\":\"").append(type).append('"');
     if (!StringUtils.isEmpty(id)) {
-      sb.append(String.format(",\"_id\":\"%s\"", id));
+      sb.append(",\"_id\":\"").append(id).append('"');
     }
     if (!StringUtils.isEmpty(parent)) {
-      sb.append(String.format(",\"parent\":\"%s\"", parent));
+      sb.append(",\"parent\":\"").append(parent).append('"');
     }
     if (!StringUtils.isEmpty(routing)) {
-      sb.append(String.format(",\"routing\":\"%s\"", routing));
+      sb.append(",\"routing\":\"").append(routing).append('"');
+    }
+    sb.append("}}\n");
+    writeUtf8(buffer, sb.toString());
+  }
+
+  // Generates the record JSON straight into the request buffer, the bulk API requires UTF-8 and one line per document
+  private void writeRecord(BulkRequestWriter.Buffer buffer, Record record) throws IOException, StageException {
+    int start = buffer.size();
+    try (DataGenerator generator = generatorFactory.getGenerator(buffer)) {
+      generator.write(record);
+    }
+    if (utf8) {
+      buffer.removeNewLines(start);
+    } else {
+      buffer.toUtf8(start, charset);
     }
-    sb.append(String.format("}}%n"));
+  }
+
+  private static void writeUtf8(BulkRequestWriter.Buffer buffer, String value) throws IOException {
+    buffer.write(value.getBytes(StandardCharsets.UTF_8));
   }
 
   private List<ErrorItem> extractErrorItems(JsonObject json) {
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.elasticsearch;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.stage.config.elasticsearch.Errors;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+public class TestBulkRequestWriter {
+
+  private List<String> requests;
+  private List<CompletableFuture<String>> responses;
+  private List<List<Record>> handledRecords;
+  private List<String> handledResponses;
+  private Histogram requestSize;
+  private Histogram requestLatency;
+  // Completes requests immediately unless the test asks for pending responses
+  private boolean completeImmediately;
+
+  private final BulkRequestWriter.ResponseHandler handler = new BulkRequestWriter.ResponseHandler() {
+    @Override
+    public void onResponse(List<Record> records, String response) throws StageException {
+      handledRecords.add(records);
+      handledResponses.add(response);
+    }
+
+    @Override
+    public void onFailure(List<Record> records, Throwable error) throws StageException {
+      handledRecords.add(records);
+      handledResponses.add("failure: " + error.getMessage());
+    }
+  };
+
+  @Before
+  public void setUp() {
+    requests = new ArrayList<>();
+    responses = new ArrayList<>();
+    handledRecords = new ArrayList<>();
+    handledResponses = new ArrayList<>();
+    requestSize = new Histogram(new UniformReservoir());
+    requestLatency = new Histogram(new UniformReservoir());
+    completeImmediately = true;
+  }
+
+  private BulkRequestWriter createWriter(int maxBytes, int maxDocuments, boolean compress, int maxConcurrent) {
+    return new BulkRequestWriter(
+        maxBytes,
+        maxDocuments,
+        compress,
+        maxConcurrent,
+        this::send,
+        requestSize,
+        requestLatency
+    );
+  }
+
+  private CompletableFuture<String> send(HttpEntity entity) {
+    try {
+      byte[] body = EntityUtils.toByteArray(entity);
+      if (entity.getContentEncoding() != null && "gzip".equals(entity.getContentEncoding().getValue())) {
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = gzip.read(chunk)) > 0) {
+          out.write(chunk, 0, read);
+        }
+        body = out.toByteArray();
+      }
+      requests.add(new String(body, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    CompletableFuture<String> response = new CompletableFuture<>();
+    if (completeImmediately) {
+      response.complete("response-" + requests.size());
+    }
+    responses.add(response);
+    return response;
+  }
+
+  private void write(BulkRequestWriter writer, String document) throws Exception {
+    BulkRequestWriter.Buffer buffer = writer.beginDocument(Mockito.mock(Record.class));
+    buffer.write(document.getBytes(StandardCharsets.UTF_8));
+    writer.endDocument(handler);
+  }
+
+  @Test
+  public void testSplitByDocuments() throws Exception {
+    BulkRequestWriter writer = createWriter(1024, 2, false, 1);
+    for (int i = 0; i < 5; i++) {
+      write(writer, i + "\n");
+    }
+    writer.flush(handler);
+
+    Assert.assertEquals(3, requests.size());
+    Assert.assertEquals("0\n1\n", requests.get(0));
+    Assert.assertEquals("2\n3\n", requests.get(1));
+    Assert.assertEquals("4\n", requests.get(2));
+    Assert.assertEquals(3, handledRecords.size());
+    Assert.assertEquals(2, handledRecords.get(0).size());
+    Assert.assertEquals(1, handledRecords.get(2).size());
+    Assert.assertEquals(3, requestSize.getCount());
+    Assert.assertEquals(3, requestLatency.getCount());
+  }
+
+  @Test
+  public void testSplitBySize() throws Exception {
+    BulkRequestWriter writer = createWriter(10, 100, false, 1);
+    write(writer, "aaaa\n");
+    write(writer, "bbbb\n");
+    // Doesn't fit into the first request anymore
+    write(writer, "cccc\n");
+    // Bigger than the limit on its own
+    write(writer, "dddddddddddd\n");
+    write(writer, "e\n");
+    writer.flush(handler);
+
+    Assert.assertEquals(4, requests.size());
+    Assert.assertEquals("aaaa\nbbbb\n", requests.get(0));
+    Assert.assertEquals("cccc\n", requests.get(1));
+    Assert.assertEquals("dddddddddddd\n", requests.get(2));
+    Assert.assertEquals("e\n", requests.get(3));
+    Assert.assertEquals(2, handledRecords.get(0).size());
+    Assert.assertEquals(1, handledRecords.get(1).size());
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    BulkRequestWriter writer = createWriter(1024, 100, true, 1);
+    write(writer, "{\"index\":{}}\n{\"a\":\"b\"}\n");
+    writer.flush(handler);
+
+    Assert.assertEquals(1, requests.size());
+    Assert.assertEquals("{\"index\":{}}\n{\"a\":\"b\"}\n", requests.get(0));
+  }
+
+  @Test
+  public void testConcurrentRequestsAreHandledInOrder() throws Exception {
+    completeImmediately = false;
+    BulkRequestWriter writer = createWriter(1024, 1, false, 2);
+    Record first = Mockito.mock(Record.class);
+    writer.beginDocument(first).write('1');
+    writer.endDocument(handler);
+    write(writer, "2");
+    Assert.assertEquals(2, writer.getInFlightCount());
+    Assert.assertTrue(handledRecords.isEmpty());
+
+    // Third request has to wait for the first one
+    responses.get(1).complete("second");
+    responses.get(0).complete("first");
+    write(writer, "3");
+    Assert.assertEquals(2, writer.getInFlightCount());
+    Assert.assertEquals(1, handledRecords.size());
+    Assert.assertSame(first, handledRecords.get(0).get(0));
+    Assert.assertEquals("first", handledResponses.get(0));
+
+    responses.get(2).completeExceptionally(new IOException("failed"));
+    writer.flush(handler);
+    Assert.assertEquals(0, writer.getInFlightCount());
+    Assert.assertEquals("second", handledResponses.get(1));
+    Assert.assertEquals("failure: failed", handledResponses.get(2));
+  }
+
+  @Test
+  public void testFlushWaitsForAllRequestsOnError() throws Exception {
+    BulkRequestWriter writer = createWriter(1024, 1, false, 3);
+    BulkRequestWriter.ResponseHandler failingHandler = new BulkRequestWriter.ResponseHandler() {
+      @Override
+      public void onResponse(List<Record> records, String response) throws StageException {
+        handledResponses.add(response);
+        throw new StageException(Errors.ELASTICSEARCH_17, records.size(), response);
+      }
+
+      @Override
+      public void onFailure(List<Record> records, Throwable error) {
+        throw new IllegalStateException(error);
+      }
+    };
+    for (int i = 0; i < 3; i++) {
+      writer.beginDocument(Mockito.mock(Record.class)).write('x');
+      writer.endDocument(failingHandler);
+    }
+    try {
+      writer.flush(failingHandler);
+      Assert.fail();
+    } catch (StageException ex) {
+      Assert.assertEquals(Errors.ELASTICSEARCH_17, ex.getErrorCode());
+    }
+    Assert.assertEquals(3, handledResponses.size());
+    Assert.assertEquals(0, writer.getInFlightCount());
+  }
+
+  @Test
+  public void testAbortDocument() throws Exception {
+    BulkRequestWriter writer = createWriter(1024, 100, false, 1);
+    write(writer, "a\n");
+    writer.beginDocument(Mockito.mock(Record.class)).write("partial".getBytes(StandardCharsets.UTF_8));
+    writer.abortDocument();
+    write(writer, "b\n");
+    writer.flush(handler);
+
+    Assert.assertEquals("a\nb\n", requests.get(0));
+    Assert.assertEquals(2, handledRecords.get(0).size());
+  }
+
+  @Test
+  public void testBufferNewLines() throws Exception {
+    BulkRequestWriter.Buffer buffer = new BulkRequestWriter.Buffer(4);
+    buffer.write("{}\n".getBytes(StandardCharsets.UTF_8));
+    buffer.write("{\"a\":\n\"\u00fc\"}\n".getBytes(StandardCharsets.UTF_8));
+    buffer.removeNewLines(3);
+    Assert.assertEquals("{}\n{\"a\":\"\u00fc\"}", new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+
+    buffer.reset();
+    buffer.write("{\"a\":\"\u00fc\"}\n".getBytes(StandardCharsets.UTF_16));
+    buffer.toUtf8(0, StandardCharsets.UTF_16);
+    Assert.assertEquals("{\"a\":\"\u00fc\"}", new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
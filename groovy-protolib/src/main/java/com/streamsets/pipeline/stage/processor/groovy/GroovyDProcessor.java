@@ -31,10 +31,11 @@ import static com.streamsets.pipeline.stage.processor.groovy.GroovyProcessor.GRO
 import static com.streamsets.pipeline.stage.processor.groovy.GroovyProcessor.GROOVY_INDY_ENGINE;
 
 @StageDef(
-    version = 1,
+    version = 2,
     label = "Groovy Evaluator",
     description = "Processes records using Groovy",
     icon="groovy.png",
+    upgrader = GroovyProcessorUpgrader.class,
     producesEvents = true,
     flags = StageBehaviorFlags.USER_CODE_INJECTION,
     onlineHelpRefUrl ="index.html?contextID=task_asl_bpt_gv"
@@ -251,10 +252,23 @@ public class GroovyDProcessor extends DProcessor {
   )
   public boolean invokeDynamic = false;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Script Engines",
+      description = "Number of Groovy engines that process parts of each batch concurrently. Each engine runs the " +
+          "init and destroy scripts and has its own state",
+      displayPosition = 60,
+      group = "GROOVY",
+      min = 1
+  )
+  public int numEngines = 1;
+
   @Override
   protected Processor createProcessor() {
     final String engineName = invokeDynamic ? GROOVY_INDY_ENGINE : GROOVY_ENGINE;
-    return new GroovyProcessor(processingMode, script, initScript, destroyScript, engineName);
+    return new GroovyProcessor(processingMode, script, initScript, destroyScript, engineName, numEngines);
   }
 
 }
@@ -30,6 +30,17 @@ public class GroovyProcessor extends AbstractScriptingProcessor {
   static final String GROOVY_ENGINE = "groovy-sdc";
   static final String GROOVY_INDY_ENGINE = "groovy-sdc-indy";
 
+  public GroovyProcessor(
+      ProcessingMode processingMode,
+      String script,
+      String initScript,
+      String destroyScript,
+      String engineName,
+      int numEngines
+  ) {
+    super(LOG, engineName, Groups.GROOVY.name(), processingMode, script, initScript, destroyScript, numEngines);
+  }
+
   public GroovyProcessor(
       ProcessingMode processingMode,
       String script,
@@ -37,7 +48,7 @@ public class GroovyProcessor extends AbstractScriptingProcessor {
       String destroyScript,
       String engineName
   ) {
-    super(LOG, engineName, Groups.GROOVY.name(), processingMode, script, initScript, destroyScript);
+    this(processingMode, script, initScript, destroyScript, engineName, 1);
   }
 
   public GroovyProcessor(ProcessingMode processingMode, String script, String engineName) {
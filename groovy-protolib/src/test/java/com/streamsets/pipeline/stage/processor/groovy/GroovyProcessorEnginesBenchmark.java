@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.groovy;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.sdk.ProcessorRunner;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.sdk.StageRunner;
+import com.streamsets.pipeline.stage.processor.scripting.ProcessingMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how batch throughput of the Groovy processor scales with the number of script engines, using a script
+ * that spends most of its time computing rather than converting fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroovyProcessorEnginesBenchmark {
+
+  @Param({"1", "4", "8"})
+  public int numEngines;
+
+  @Param({"RECORD", "BATCH"})
+  public ProcessingMode mode;
+
+  @Param({"1000"})
+  public int batchSize;
+
+  private ProcessorRunner runner;
+  private List<Record> records;
+
+  @Setup
+  public void setUp() throws StageException {
+    String script = "for (record in records) {\n" +
+        "  String text = record.value['text']\n" +
+        "  int hash = 0\n" +
+        "  for (int i = 0; i < 50; i++) {\n" +
+        "    hash = 31 * hash + text.reverse().hashCode()\n" +
+        "  }\n" +
+        "  record.value['hash'] = hash\n" +
+        "  output.write(record)\n" +
+        "}";
+    runner = new ProcessorRunner.Builder(
+        GroovyDProcessor.class,
+        new GroovyProcessor(mode, script, "", "", GroovyProcessor.GROOVY_ENGINE, numEngines)
+    )
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+
+    records = new ArrayList<>(batchSize);
+    for (int r = 0; r < batchSize; r++) {
+      LinkedHashMap<String, Field> root = new LinkedHashMap<>();
+      root.put("id", Field.create(r));
+      root.put("text", Field.create("The quick brown fox jumps over the lazy dog " + r));
+      Record record = RecordCreator.create();
+      record.set(Field.createListMap(root));
+      records.add(record);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws StageException {
+    runner.runDestroy();
+  }
+
+  @Benchmark
+  public StageRunner.Output processBatch() throws StageException {
+    return runner.runProcess(records);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(GroovyProcessorEnginesBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
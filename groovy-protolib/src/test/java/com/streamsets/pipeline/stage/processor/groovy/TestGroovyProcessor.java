@@ -226,6 +226,68 @@ public class TestGroovyProcessor {
     ScriptingProcessorTestUtil.verifyNestedMap(GroovyDProcessor.class, processor);
   }
 
+  @Test
+  public void testUntouchedFields() throws Exception {
+    Processor processor = new GroovyProcessor(
+        ProcessingMode.RECORD,
+        "for (record in records) {\n" +
+        "  record.value['a'] = 'B'\n" +
+        "  output.write(record)\n" +
+        "}"
+    );
+    ScriptingProcessorTestUtil.verifyUntouchedFields(GroovyDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFields() throws Exception {
+    Processor processor = new GroovyProcessor(
+        ProcessingMode.RECORD,
+        "for (record in records) {\n" +
+        "  record.value['b'] = record.value['a']\n" +
+        "  newRecord = sdcFunctions.createRecord('copy')\n" +
+        "  newRecord.value = record.value['a']\n" +
+        "  output.write(record)\n" +
+        "  output.write(newRecord)\n" +
+        "}"
+    );
+    ScriptingProcessorTestUtil.verifyCopiedFields(GroovyDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFieldsOfUnmodifiedRecord() throws Exception {
+    String script =
+        "for (record in records) {\n" +
+        "  newRecord = sdcFunctions.createRecord('copy')\n" +
+        "  newRecord.value = record.value['a']\n" +
+        "  output.write(%s)\n" +
+        "  output.write(%s)\n" +
+        "}";
+    Processor processor = new GroovyProcessor(ProcessingMode.RECORD, String.format(script, "record", "newRecord"));
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(GroovyDProcessor.class, processor);
+    processor = new GroovyProcessor(ProcessingMode.RECORD, String.format(script, "newRecord", "record"));
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(GroovyDProcessor.class, processor);
+  }
+
+  @Test
+  public void testMultipleEngines() throws Exception {
+    Processor processor = new GroovyProcessor(
+        ProcessingMode.BATCH,
+        "for (record in records) {\n" +
+        "  if (record.value['i'] % 3 == 0) {\n" +
+        "    error.write(record, 'multiple of 3')\n" +
+        "  } else {\n" +
+        "    record.value['engine'] = state['id']\n" +
+        "    output.write(record)\n" +
+        "  }\n" +
+        "}",
+        "state['id'] = UUID.randomUUID().toString()",
+        "",
+        GroovyProcessor.GROOVY_ENGINE,
+        4
+    );
+    ScriptingProcessorTestUtil.verifyMultipleEngines(GroovyDProcessor.class, processor, 4);
+  }
+
   @Test
   public void testChangeFieldTypeFromScripting() throws Exception {
     final String script = Resources.toString(Resources.getResource("ChangeFieldTypeScript.groovy"), Charsets.UTF_8);
@@ -27,22 +27,31 @@ import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.config.DataFormat;
 import com.streamsets.pipeline.lib.el.RecordEL;
 import com.streamsets.pipeline.lib.el.TimeNowEL;
+import com.streamsets.pipeline.lib.executor.SafeScheduledExecutorService;
 import com.streamsets.pipeline.lib.hdfs.common.Errors;
 import com.streamsets.pipeline.stage.common.DefaultErrorRecordHandler;
 import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import com.streamsets.pipeline.stage.destination.hdfs.writer.ActiveRecordWriters;
 import com.streamsets.pipeline.stage.destination.hdfs.writer.RecordWriter;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class HdfsTarget extends BaseTarget {
   private static final Logger LOG = LoggerFactory.getLogger(HdfsTarget.class);
@@ -55,6 +64,7 @@ public class HdfsTarget extends BaseTarget {
   private final HdfsTargetConfigBean hdfsTargetConfigBean;
   private ErrorRecordHandler errorRecordHandler;
   private Date batchTime;
+  private SafeScheduledExecutorService writerExecutor;
 
   public HdfsTarget(HdfsTargetConfigBean hdfsTargetConfigBean) {
     this.hdfsTargetConfigBean = hdfsTargetConfigBean;
@@ -65,6 +75,14 @@ public class HdfsTarget extends BaseTarget {
     List<ConfigIssue> issues = super.init();
     errorRecordHandler = new DefaultErrorRecordHandler(getContext());
     hdfsTargetConfigBean.init(getContext(), issues);
+    // Whole files are written one record at a time, there is nothing to write in parallel
+    if (issues.isEmpty() && hdfsTargetConfigBean.numberOfWriterThreads > 1
+        && hdfsTargetConfigBean.dataFormat != DataFormat.WHOLE_FILE) {
+      writerExecutor = new SafeScheduledExecutorService(
+          hdfsTargetConfigBean.numberOfWriterThreads,
+          "HDFS Partition Writer"
+      );
+    }
     return issues;
   }
 
@@ -89,6 +107,9 @@ public class HdfsTarget extends BaseTarget {
 
   @Override
   public void destroy() {
+    if (writerExecutor != null) {
+      writerExecutor.shutdownNow();
+    }
     hdfsTargetConfigBean.destroy();
     super.destroy();
   }
@@ -106,21 +127,26 @@ public class HdfsTarget extends BaseTarget {
           }
           Iterator<Record> it = batch.getRecords();
           if (it.hasNext()) {
-            while (it.hasNext()) {
-              Record record = it.next();
-              try {
-                write(record);
-              } catch (OnRecordErrorException ex) {
-                errorRecordHandler.onError(
-                    new OnRecordErrorException(
-                        record,
-                        ex.getErrorCode(),
-                        ex.getParams()
-                    )
-                );
+            if (writerExecutor != null) {
+              // every partition writer flushed its own file already
+              writePartitioned(it);
+            } else {
+              while (it.hasNext()) {
+                Record record = it.next();
+                try {
+                  write(record);
+                } catch (OnRecordErrorException ex) {
+                  errorRecordHandler.onError(
+                      new OnRecordErrorException(
+                          record,
+                          ex.getErrorCode(),
+                          ex.getParams()
+                      )
+                  );
+                }
               }
+              hdfsTargetConfigBean.getCurrentWriters().flushAll();
             }
-            hdfsTargetConfigBean.getCurrentWriters().flushAll();
           } else {
             emptyBatch();
           }
@@ -175,14 +201,98 @@ public class HdfsTarget extends BaseTarget {
     return hdfsTargetConfigBean.getTimeDriverElEval().eval(variables, hdfsTargetConfigBean.getTimeDriver(), Date.class);
   }
 
-  private void write(Record record) throws StageException {
-    try {
-      Date recordTime = getRecordTime(record);
+  private Date getRequiredRecordTime(Record record) throws StageException {
+    Date recordTime = getRecordTime(record);
+
+    // recordTime may not be null!
+    if (recordTime == null) {
+      throw new StageException(Errors.HADOOPFS_47, hdfsTargetConfigBean.getTimeDriver());
+    }
+    return recordTime;
+  }
+
+  /**
+   * Groups the records of the batch by temp path on the pipeline thread, where the directory template is evaluated,
+   * and writes every group on the writer threads. Late records and record errors are handled back on the pipeline
+   * thread once all the groups are written, the batch is flushed as a whole by the caller.
+   */
+  private void writePartitioned(Iterator<Record> it) throws Exception {
+    ActiveRecordWriters writers = hdfsTargetConfigBean.getCurrentWriters();
+    Map<String, PartitionWriter> partitions = new LinkedHashMap<>();
+    while (it.hasNext()) {
+      Record record = it.next();
+      try {
+        Date recordTime = getRequiredRecordTime(record);
+        if(hdfsTargetConfigBean.dirPathTemplateInHeader
+            && !record.getHeader().getAttributeNames().contains(TARGET_DIRECTORY_HEADER)) {
+          getContext().toError(record, Errors.HADOOPFS_50);
+          continue;
+        }
+        Path path = writers.getWriterManager().getPath(recordTime, record);
+        partitions.computeIfAbsent(
+            path.toString(),
+            key -> new PartitionWriter(hdfsTargetConfigBean, getBatchTime(), path)
+        ).add(record, recordTime);
+      } catch (IOException | StageException ex) {
+        errorRecordHandler.onError(toRecordError(record, ex));
+      }
+    }
+
+    UserGroupInformation ugi = hdfsTargetConfigBean.getUGI();
+    List<Future<PartitionWriter>> futures = new ArrayList<>(partitions.size());
+    for (PartitionWriter partition : partitions.values()) {
+      futures.add(writerExecutor.submit((Callable<PartitionWriter>) () -> ugi.doAs(partition)));
+    }
+
+    // Wait for every partition, even after a failure, so that no writer is still running when the batch ends
+    Throwable failure = null;
+    for (Future<PartitionWriter> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        if (failure == null) {
+          failure = (ex.getCause() instanceof UndeclaredThrowableException) ? ex.getCause().getCause() : ex.getCause();
+        }
+      } catch (InterruptedException ex) {
+        for (Future<PartitionWriter> other : futures) {
+          other.cancel(true);
+        }
+        throw ex;
+      }
+    }
+    if (failure instanceof StageException) {
+      throw (StageException) failure;
+    } else if (failure != null) {
+      throw new StageException(Errors.HADOOPFS_13, String.valueOf(failure), failure);
+    }
 
-      // recordTime may not be null!
-      if (recordTime == null) {
-        throw new StageException(Errors.HADOOPFS_47, hdfsTargetConfigBean.getTimeDriver());
+    for (PartitionWriter partition : partitions.values()) {
+      for (OnRecordErrorException error : partition.getErrors()) {
+        errorRecordHandler.onError(error);
       }
+      for (Record record : partition.getLateRecords()) {
+        try {
+          boolean write = true;
+          while (write) {
+            write = writeLateRecord(record);
+          }
+        } catch (IOException | StageException ex) {
+          errorRecordHandler.onError(toRecordError(record, ex));
+        }
+      }
+    }
+  }
+
+  static OnRecordErrorException toRecordError(Record record, Exception ex) {
+    if (ex instanceof StageException) {
+      return new OnRecordErrorException(record, ((StageException) ex).getErrorCode(), ((StageException) ex).getParams());
+    }
+    return new OnRecordErrorException(record, Errors.HADOOPFS_14, ex.toString(), ex);
+  }
+
+  private void write(Record record) throws StageException {
+    try {
+      Date recordTime = getRequiredRecordTime(record);
 
       if(hdfsTargetConfigBean.dirPathTemplateInHeader
           && !record.getHeader().getAttributeNames().contains(TARGET_DIRECTORY_HEADER)) {
@@ -214,34 +324,7 @@ public class HdfsTarget extends BaseTarget {
             LOG.debug("Writer was idle closed. Retrying.. ");
           }
         } else {
-          switch (hdfsTargetConfigBean.lateRecordsAction) {
-            case SEND_TO_ERROR:
-              incrementAndMarkLateRecords();
-              getContext().toError(record, Errors.HADOOPFS_12, record.getHeader().getSourceId());
-              break;
-            case SEND_TO_LATE_RECORDS_FILE:
-              RecordWriter lateWriter =
-                  hdfsTargetConfigBean.getLateWriters().get(getBatchTime(), getBatchTime(), record);
-              try {
-                lateWriter.write(record);
-                // To avoid double counting, in case of IdleClosedException
-                incrementAndMarkLateRecords();
-                //We anyway close the late record writers after writing,
-                //no need to handle specially for whole file
-                hdfsTargetConfigBean.getLateWriters().release(lateWriter, false);
-              } catch (IdleClosedException ex) {
-                // Try to write again, this time with a new lateWriter
-                hdfsTargetConfigBean.getCurrentWriters().release(lateWriter, false);
-                write = true;
-                // No use printing path, since it is a temp path - the real one is created later.
-                LOG.debug("Writer was idle closed. Retrying.. ");
-              }
-              break;
-            default:
-              incrementAndMarkLateRecords();
-              throw new RuntimeException(Utils.format("Unknown late records action: {}",
-                  hdfsTargetConfigBean.lateRecordsAction));
-          }
+          write = writeLateRecord(record);
         }
       }
     } catch (IOException ex) {
@@ -251,6 +334,40 @@ public class HdfsTarget extends BaseTarget {
     }
   }
 
+  /**
+   * Handles a record whose directory was already cut off, returns true if the record has to be written again.
+   */
+  private boolean writeLateRecord(Record record) throws StageException, IOException {
+    switch (hdfsTargetConfigBean.lateRecordsAction) {
+      case SEND_TO_ERROR:
+        incrementAndMarkLateRecords();
+        getContext().toError(record, Errors.HADOOPFS_12, record.getHeader().getSourceId());
+        return false;
+      case SEND_TO_LATE_RECORDS_FILE:
+        RecordWriter lateWriter =
+            hdfsTargetConfigBean.getLateWriters().get(getBatchTime(), getBatchTime(), record);
+        try {
+          lateWriter.write(record);
+          // To avoid double counting, in case of IdleClosedException
+          incrementAndMarkLateRecords();
+          //We anyway close the late record writers after writing,
+          //no need to handle specially for whole file
+          hdfsTargetConfigBean.getLateWriters().release(lateWriter, false);
+          return false;
+        } catch (IdleClosedException ex) {
+          // Try to write again, this time with a new lateWriter
+          hdfsTargetConfigBean.getCurrentWriters().release(lateWriter, false);
+          // No use printing path, since it is a temp path - the real one is created later.
+          LOG.debug("Writer was idle closed. Retrying.. ");
+          return true;
+        }
+      default:
+        incrementAndMarkLateRecords();
+        throw new RuntimeException(Utils.format("Unknown late records action: {}",
+            hdfsTargetConfigBean.lateRecordsAction));
+    }
+  }
+
   private void incrementAndMarkLateRecords() {
     hdfsTargetConfigBean.getLateRecordsCounter().inc();
     hdfsTargetConfigBean.getLateRecordsMeter().mark();
@@ -351,6 +351,19 @@ public class HdfsTargetConfigBean extends HdfsBaseConfigBean {
   )
   public boolean hdfsPermissionCheck;
 
+  @ConfigDef(
+    required = true,
+    type = ConfigDef.Type.NUMBER,
+    defaultValue = "1",
+    label = "Number of Writer Threads",
+    description = "Number of threads writing and compressing the records of different directories in parallel. " +
+        "Records are grouped by directory within each batch. Ignored for the whole file data format.",
+    displayPosition = 240,
+    group = "OUTPUT_FILES",
+    min = 1
+  )
+  public int numberOfWriterThreads = 1;
+
   //Optional if empty file is created with default umask.
   @ConfigDef(
       required = false,
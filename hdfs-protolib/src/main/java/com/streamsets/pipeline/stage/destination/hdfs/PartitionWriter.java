@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.hdfs;
+
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.lib.hdfs.common.Errors;
+import com.streamsets.pipeline.stage.destination.hdfs.writer.ActiveRecordWriters;
+import com.streamsets.pipeline.stage.destination.hdfs.writer.RecordWriter;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes the records of a batch that resolved to the same temp path, on one of the writer threads of the target.
+ * <p/>
+ * Only this writer touches the path while the batch is written, so the writers of different paths only share the
+ * short map lookups of {@link ActiveRecordWriters} and write, compress and flush in parallel. Anything that needs the
+ * stage context, late records and record errors, is collected and handed back to the pipeline thread.
+ */
+final class PartitionWriter implements PrivilegedExceptionAction<PartitionWriter> {
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionWriter.class);
+
+  private final HdfsTargetConfigBean hdfsTargetConfigBean;
+  private final Date batchTime;
+  private final Path path;
+  private final List<Record> records;
+  private final List<Date> recordTimes;
+  private final List<Record> lateRecords;
+  private final List<OnRecordErrorException> errors;
+  private RecordWriter currentWriter;
+
+  PartitionWriter(HdfsTargetConfigBean hdfsTargetConfigBean, Date batchTime, Path path) {
+    this.hdfsTargetConfigBean = hdfsTargetConfigBean;
+    this.batchTime = batchTime;
+    this.path = path;
+    records = new ArrayList<>();
+    recordTimes = new ArrayList<>();
+    lateRecords = new ArrayList<>();
+    errors = new ArrayList<>();
+  }
+
+  void add(Record record, Date recordTime) {
+    records.add(record);
+    recordTimes.add(recordTime);
+  }
+
+  List<Record> getLateRecords() {
+    return lateRecords;
+  }
+
+  List<OnRecordErrorException> getErrors() {
+    return errors;
+  }
+
+  @Override
+  public PartitionWriter run() throws StageException {
+    for (int i = 0; i < records.size(); i++) {
+      Record record = records.get(i);
+      try {
+        write(record, recordTimes.get(i));
+      } catch (IOException | StageException ex) {
+        errors.add(HdfsTarget.toRecordError(record, ex));
+      }
+    }
+    // flushing here hflushes the partitions in parallel, the batch is not done until every partition writer returned
+    if (currentWriter != null && !currentWriter.isClosed()) {
+      try {
+        currentWriter.flush();
+      } catch (IdleClosedException ex) {
+        LOG.debug("Writer was idle closed before flushing, it has been committed already");
+      } catch (IOException ex) {
+        throw new StageException(Errors.HADOOPFS_58, currentWriter.getPath().toString(), ex);
+      }
+    }
+    return this;
+  }
+
+  private void write(Record record, Date recordTime) throws StageException, IOException {
+    ActiveRecordWriters writers = hdfsTargetConfigBean.getCurrentWriters();
+    while (true) {
+      RecordWriter writer = writers.get(batchTime, recordTime, path, record);
+      if (writer == null) {
+        lateRecords.add(record);
+        return;
+      }
+      currentWriter = writer;
+      try {
+        writer.write(record);
+        hdfsTargetConfigBean.getToHdfsRecordsCounter().inc();
+        hdfsTargetConfigBean.getToHdfsRecordsMeter().mark();
+        if (writers.getWriterManager().isOverThresholds(writer)) {
+          writers.releaseWithoutPurge(writer, false);
+        }
+        return;
+      } catch (IdleClosedException ex) {
+        writers.releaseWithoutPurge(writer, false);
+        // No use printing path, since it is a temp path - the real one is created later.
+        LOG.debug("Writer was idle closed. Retrying.. ");
+      }
+    }
+  }
+}
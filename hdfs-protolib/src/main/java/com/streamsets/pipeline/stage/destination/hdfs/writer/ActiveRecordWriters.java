@@ -22,6 +22,7 @@ import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.lib.hdfs.common.Errors;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -122,22 +123,51 @@ public class ActiveRecordWriters {
 
     if (writer == null) {
       writer = manager.getWriter(now, recordDate, record);
-      if (writer != null) {
-        if (IS_TRACE_ENABLED) {
-          LOG.trace("Got '{}'", writer.getPath());
-        }
-        writer.setActiveRecordWriters(this);
+      track(path, writer);
+    }
+    return writer;
+  }
 
-        //We are fine no lock on writer needed.
-        synchronized(this) {
-          writers.put(path, writer);
-        }
-        cutOffQueue.add(new DelayedRecordWriter(writer));
-      }
+  /**
+   * Same as {@link #get(Date, Date, Record)} for a temp path that was already resolved for the record. It never purges
+   * expired writers, so it can be called from several threads as long as each one works on its own paths.
+   */
+  public RecordWriter get(Date now, Date recordDate, Path tempPath, Record record) throws StageException, IOException {
+    String path = tempPath.toString();
+    RecordWriter writer = null;
+
+    //We are fine no lock on writer needed.
+    synchronized (this) {
+      writer = writers.get(path);
+    }
+
+    if(writer != null && manager.shouldRoll(writer, record)) {
+      releaseWithoutPurge(writer, true);
+      writer = null;
+    }
+
+    if (writer == null) {
+      writer = manager.getWriter(now, recordDate, tempPath);
+      track(path, writer);
     }
     return writer;
   }
 
+  private void track(String path, RecordWriter writer) {
+    if (writer != null) {
+      if (IS_TRACE_ENABLED) {
+        LOG.trace("Got '{}'", writer.getPath());
+      }
+      writer.setActiveRecordWriters(this);
+
+      //We are fine no lock on writer needed.
+      synchronized(this) {
+        writers.put(path, writer);
+      }
+      cutOffQueue.add(new DelayedRecordWriter(writer));
+    }
+  }
+
   public RecordWriterManager getWriterManager() {
     return manager;
   }
@@ -154,19 +184,43 @@ public class ActiveRecordWriters {
   //For Ex: idle close thread calls this method
   //and the hdfsTarget (in the pipeline runnable thread), calls flushAll
   public synchronized void release(RecordWriter writer, boolean roll) throws StageException, IOException {
+    releaseWithoutPurge(writer, roll);
+    purge();
+  }
+
+  /**
+   * Same as {@link #release(RecordWriter, boolean)} but leaves expired writers alone, as other threads may still be
+   * writing to them in the current batch.
+   * <p/>
+   * Only removing the writer from the active writers holds the lock on this object, the commit (close and rename)
+   * holds just the lock of the writer so that writer threads working on other paths are not blocked by it. The locks
+   * are never held together, see {@link #release(RecordWriter, boolean)} for their order.
+   */
+  public void releaseWithoutPurge(RecordWriter writer, boolean roll) throws StageException, IOException {
+    boolean commit;
     writer.closeLock();
     try {
-      if (roll || writer.isIdleClosed() || manager.isOverThresholds(writer)) {
-        if (IS_TRACE_ENABLED) {
-          LOG.trace("Release '{}'", writer.getPath());
-        }
-        writers.remove(writer.getPath().toString());
-        manager.commitWriter(writer);
-      }
+      commit = roll || writer.isIdleClosed() || manager.isOverThresholds(writer);
+    } finally {
+      writer.closeUnlock();
+    }
+    if (!commit) {
+      return;
+    }
+    if (IS_TRACE_ENABLED) {
+      LOG.trace("Release '{}'", writer.getPath());
+    }
+    synchronized (this) {
+      // a new writer for the path may have been tracked already
+      writers.remove(writer.getPath().toString(), writer);
+    }
+    writer.closeLock();
+    try {
+      // no-op if the idle close thread committed the writer in the meantime
+      manager.commitWriter(writer);
     } finally {
       writer.closeUnlock();
     }
-    purge();
   }
 
   public synchronized void flushAll() throws StageException {
@@ -15,9 +15,12 @@
  */
 package com.streamsets.pipeline.stage.destination.hdfs.writer;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.streamsets.pipeline.api.ElFunction;
 import com.streamsets.pipeline.api.ElParam;
+import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.api.StageException;
@@ -29,11 +32,14 @@ import com.streamsets.pipeline.lib.el.RecordEL;
 import com.streamsets.pipeline.lib.el.TimeEL;
 import com.streamsets.pipeline.lib.hdfs.common.Errors;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class PathResolver {
   private static final String VALIDATE_CONTEXT = "validateContext";
@@ -41,6 +47,11 @@ public class PathResolver {
   private static final String TIME_UNIT = "timeUnit";
   private static final String TIME_INCREMENT_VALUE = "timeIncrement";
   private static final String[] FUNCTION_NAMES = { "YYYY() or YY()", "MM()", "DD()", "hh()", "mm()", "ss()"};
+  private static final int PATH_CACHE_SIZE = 1000;
+  private static final Pattern RECORD_FUNCTION = Pattern.compile("\\brecord\\s*:");
+  private static final Pattern SIMPLE_RECORD_FUNCTION = Pattern.compile(
+      "record:(value|valueOrDefault|attribute|attributeOrDefault)\\(\\s*(['\"])([^'\"\\\\]*)\\2\\s*[,)]"
+  );
 
   private static final int[] UNITS_ORDERED = {
     Calendar.YEAR,
@@ -79,6 +90,15 @@ public class PathResolver {
   private final ELEval pathEval;
   private boolean validated;
 
+  // The resolved path is a function of the floor date and of the record values the template reads, when the template
+  // only reads them through literal field paths and attribute names we cache the paths by those values.
+  private final List<String> fieldPaths;
+  private final List<String> attributeNames;
+  private final Cache<List<Object>, String> pathCache;
+  private Date lastFloorDate;
+  private Date lastCeilingDate;
+  private boolean dateless;
+
   public PathResolver(Stage.Context context, String config, String pathTemplate, TimeZone timeZone) {
     this.context = context;
     this.pathTemplate = pathTemplate;
@@ -86,6 +106,36 @@ public class PathResolver {
     elVars = context.createELVars();
     freqEdgeElEval = context.createELEval(config, FrequencyEdgeEL.class);
     pathEval = context.createELEval(config);
+    fieldPaths = new ArrayList<>();
+    attributeNames = new ArrayList<>();
+    pathCache = parseRecordInputs(pathTemplate, fieldPaths, attributeNames)
+        ? CacheBuilder.newBuilder().maximumSize(PATH_CACHE_SIZE).<List<Object>, String>build()
+        : null;
+  }
+
+  /**
+   * Collects the field paths and attribute names read by the template, returns false if the template reads the record
+   * in any other way, in which case the path has to be evaluated for every record.
+   */
+  private static boolean parseRecordInputs(String pathTemplate, List<String> fieldPaths, List<String> attributeNames) {
+    if (pathTemplate == null) {
+      return true;
+    }
+    int unknown = 0;
+    Matcher matcher = RECORD_FUNCTION.matcher(pathTemplate);
+    while (matcher.find()) {
+      unknown++;
+    }
+    matcher = SIMPLE_RECORD_FUNCTION.matcher(pathTemplate);
+    while (matcher.find()) {
+      unknown--;
+      if (matcher.group(1).startsWith("value")) {
+        fieldPaths.add(matcher.group(3));
+      } else {
+        attributeNames.add(matcher.group(3));
+      }
+    }
+    return unknown == 0;
   }
 
   public static class ValidateEL {
@@ -333,7 +383,8 @@ public class PathResolver {
     return getDate(date, false);
   }
 
-  public Date getDate(Date date, boolean floorDate) {
+  // synchronized as the writer threads of the target compute ceiling dates while creating writers
+  public synchronized Date getDate(Date date, boolean floorDate) {
     Utils.checkState(validated, Utils.formatL("PathTemplateEL for '{}' must be validated", pathTemplate));
     DateContext dc = new DateContext(date, timeZone);
     elVars.addContextVariable(DATE_CONTEXT, dc);
@@ -384,14 +435,26 @@ public class PathResolver {
     return date;
   }
 
-  String resolvePath(Date date, Record record) throws StageException {
+  synchronized String resolvePath(Date date, Record record) throws StageException {
+    date = getCachedFloorDate(date);
+    List<Object> key = getCacheKey(date, record);
+    String path = (key == null) ? null : pathCache.getIfPresent(key);
+    if (path == null) {
+      path = evaluatePath(date, record);
+      if (key != null) {
+        pathCache.put(key, path);
+      }
+    }
+    return path;
+  }
+
+  private String evaluatePath(Date floorDate, Record record) throws StageException {
     try {
       ELVars vars = context.createELVars();
       RecordEL.setRecordInContext(vars, record);
-      date = getFloorDate(date);
-      if (date != null) {
+      if (floorDate != null) {
         Calendar calendar = Calendar.getInstance(timeZone);
-        calendar.setTime(date);
+        calendar.setTime(floorDate);
         TimeEL.setCalendarInContext(vars, calendar);
       }
       return pathEval.eval(vars, pathTemplate, String.class);
@@ -400,6 +463,55 @@ public class PathResolver {
     }
   }
 
+  /**
+   * Floor dates split the time line in consecutive ranges, so any date within the range of the last computed floor
+   * date shares it. A template either uses the time functions or it does not, validate() relies on that as well.
+   */
+  private Date getCachedFloorDate(Date date) {
+    if (dateless) {
+      return null;
+    }
+    if (lastFloorDate != null && !date.before(lastFloorDate) && !date.after(lastCeilingDate)) {
+      return lastFloorDate;
+    }
+    Date floorDate = getFloorDate(date);
+    if (floorDate == null) {
+      dateless = true;
+    } else {
+      lastFloorDate = floorDate;
+      lastCeilingDate = getCeilingDate(date);
+    }
+    return floorDate;
+  }
+
+  /**
+   * Returns the path cache key of the record, or null if the path of the record can not be cached because the template
+   * reads it in ways we don't track or it reads values that are not immutable.
+   */
+  private List<Object> getCacheKey(Date floorDate, Record record) {
+    if (pathCache == null || record == null) {
+      return null;
+    }
+    List<Object> key = new ArrayList<>(1 + 2 * fieldPaths.size() + attributeNames.size());
+    key.add(floorDate == null ? null : floorDate.getTime());
+    for (String fieldPath : fieldPaths) {
+      Field field = record.get(fieldPath);
+      Object value = (field == null) ? null : field.getValue();
+      if (value instanceof Date) {
+        value = ((Date) value).getTime();
+      } else if (value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean ||
+          value instanceof Character)) {
+        return null;
+      }
+      key.add(field == null ? null : field.getType());
+      key.add(value);
+    }
+    for (String attributeName : attributeNames) {
+      key.add(record.getHeader().getAttribute(attributeName));
+    }
+    return key;
+  }
+
   public static class TimeIncrementUnitEL {
 
     private TimeIncrementUnitEL() {}
@@ -286,9 +286,15 @@ public class RecordWriterManager {
   }
 
   public RecordWriter getWriter(Date now, Date recordDate, Record record) throws StageException, IOException {
+    return getWriter(now, recordDate, getPath(recordDate, record));
+  }
+
+  /**
+   * Same as {@link #getWriter(Date, Date, Record)} for a temp path that was already resolved for the record.
+   */
+  public RecordWriter getWriter(Date now, Date recordDate, Path tempPath) throws StageException, IOException {
     RecordWriter writer = null;
     long writerTimeToLive = getTimeToLiveMillis(now, recordDate);
-    Path tempPath = getPath(recordDate, record);
     if (writerTimeToLive >= 0) {
       if (fs.exists(tempPath)) {
         fsHelper.handleAlreadyExistingFile(fs, tempPath);
@@ -598,4 +598,66 @@ public class TestHdfsTarget {
     File targetDirectory = new File(getTestDir() + "/hdfs/a/b/c");
     Assert.assertFalse(targetDirectory.exists());
   }
+
+  @Test
+  public void testPartitionedWriters() throws Exception {
+    DataGeneratorFormatConfig dataGeneratorFormatConfig = new DataGeneratorFormatConfig();
+    dataGeneratorFormatConfig.jsonMode = JsonMode.MULTIPLE_OBJECTS;
+
+    HdfsTarget hdfsTarget = HdfsTargetUtil.newBuilder()
+      .dirPathTemplate(getTestDir() + "/hdfs/${record:value('/a')}")
+      .dataGeneratorFormatConfig(dataGeneratorFormatConfig)
+      .dataForamt(DataFormat.JSON)
+      .maxRecordsPerFile(5)
+      .numberOfWriterThreads(4)
+      .build();
+
+    TargetRunner runner = new TargetRunner.Builder(HdfsDTarget.class, hdfsTarget)
+      .setOnRecordError(OnRecordError.STOP_PIPELINE)
+      .build();
+
+    runner.runInit();
+
+    // 3 records per directory in the first batch and 7 in the second one, so that the first file of every directory
+    // spans both batches and the second one is rolled in the middle of a batch
+    int directories = 6;
+    for (int[] batch : new int[][] {{0, 3}, {3, 10}}) {
+      List<Record> records = new ArrayList<>();
+      for (int i = batch[0]; i < batch[1]; i++) {
+        for (int d = 0; d < directories; d++) {
+          Record record = RecordCreator.create();
+          Map<String, Field> map = new LinkedHashMap<>();
+          map.put("a", Field.create("d" + d));
+          map.put("i", Field.create(i));
+          record.set(Field.create(map));
+          records.add(record);
+        }
+      }
+      runner.runWrite(records);
+      Assert.assertTrue(runner.getErrorRecords().isEmpty());
+    }
+    runner.runDestroy();
+
+    Assert.assertEquals(2 * directories, runner.getEventRecords().size());
+    for (int d = 0; d < directories; d++) {
+      File[] files = new File(getTestDir() + "/hdfs/d" + d).listFiles();
+      Assert.assertNotNull(files);
+      Assert.assertEquals(2, files.length);
+      List<String> lines = new ArrayList<>();
+      for (File file : files) {
+        Assert.assertFalse("The file wasn't renamed after close: " + file.getName(), file.getName().contains("_tmp_"));
+        List<String> fileLines = FileUtils.readLines(file, Charset.defaultCharset());
+        Assert.assertEquals(5, fileLines.size());
+        lines.addAll(fileLines);
+      }
+      Collections.sort(lines);
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        expected.add("{\"a\":\"d" + d + "\",\"i\":" + i + "}");
+      }
+      Collections.sort(expected);
+      Assert.assertEquals(expected, lines);
+    }
+  }
 }
+
@@ -67,6 +67,7 @@ public class HdfsTargetUtil {
     String permissionEL = "";
     boolean includeSchemaInEvents = false;
     ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.MD5;
+    int numberOfWriterThreads = 1;
 
     public HdfsTarget build() {
       HdfsTargetConfigBean hdfsTargetConfigBean = new HdfsTargetConfigBean();
@@ -103,6 +104,7 @@ public class HdfsTargetUtil {
       hdfsTargetConfigBean.permissionEL = permissionEL;
       hdfsTargetConfigBean.dataGeneratorFormatConfig.includeChecksumInTheEvents = includeSchemaInEvents;
       hdfsTargetConfigBean.dataGeneratorFormatConfig.checksumAlgorithm = checksumAlgorithm;
+      hdfsTargetConfigBean.numberOfWriterThreads = numberOfWriterThreads;
       return new HdfsTarget(hdfsTargetConfigBean);
     }
 
@@ -250,5 +252,10 @@ public class HdfsTargetUtil {
       this.checksumAlgorithm = checksumAlgorithm;
       return this;
     }
+
+    public Builder numberOfWriterThreads(int numberOfWriterThreads) {
+      this.numberOfWriterThreads = numberOfWriterThreads;
+      return this;
+    }
   }
 }
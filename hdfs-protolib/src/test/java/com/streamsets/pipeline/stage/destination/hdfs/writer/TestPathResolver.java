@@ -15,7 +15,9 @@
  */
 package com.streamsets.pipeline.stage.destination.hdfs.writer;
 
+import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.sdk.ContextInfoCreator;
 import com.streamsets.pipeline.sdk.RecordCreator;
@@ -27,7 +29,9 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 public class TestPathResolver {
@@ -280,4 +284,30 @@ public class TestPathResolver {
     Assert.assertEquals(expected, got);
 
   }
+
+  private static Record createRecord(String a, String b) {
+    Record record = RecordCreator.create();
+    Map<String, Field> map = new HashMap<>();
+    map.put("a", Field.create(a));
+    record.set(Field.create(map));
+    record.getHeader().setAttribute("b", b);
+    return record;
+  }
+
+  @Test
+  public void testResolvePathWithSameResolver() throws Exception {
+    PathResolver resolver = getPathTemplateEL("/${YYYY()}/${MM()}/${DD()}/${hh()}/${record:value('/a')}/${record:attribute('b')}");
+    Assert.assertEquals("/2015/01/20/14/x/1", resolver.resolvePath(parseDate("2015-01-20T14:01:15Z"), createRecord("x", "1")));
+    Assert.assertEquals("/2015/01/20/14/x/1", resolver.resolvePath(parseDate("2015-01-20T14:59:59Z"), createRecord("x", "1")));
+    Assert.assertEquals("/2015/01/20/15/x/1", resolver.resolvePath(parseDate("2015-01-20T15:00:00Z"), createRecord("x", "1")));
+    Assert.assertEquals("/2015/01/20/14/y/1", resolver.resolvePath(parseDate("2015-01-20T14:30:00Z"), createRecord("y", "1")));
+    Assert.assertEquals("/2015/01/20/14/x/2", resolver.resolvePath(parseDate("2015-01-20T14:30:00Z"), createRecord("x", "2")));
+    Assert.assertEquals("/2015/01/20/14/x/1", resolver.resolvePath(parseDate("2015-01-20T14:30:00Z"), createRecord("x", "1")));
+
+    // the field path is not a literal, so the path is evaluated for every record
+    resolver = getPathTemplateEL("/${record:value(str:concat('/', 'a'))}");
+    Assert.assertEquals("/x", resolver.resolvePath(parseDate("2015-01-20T14:01:15Z"), createRecord("x", "1")));
+    Assert.assertEquals("/y", resolver.resolvePath(parseDate("2015-01-20T14:01:15Z"), createRecord("y", "1")));
+  }
 }
+
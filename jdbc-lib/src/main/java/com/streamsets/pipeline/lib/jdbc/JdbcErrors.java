@@ -111,6 +111,8 @@ public enum JdbcErrors implements ErrorCode {
   JDBC_86("Redo log files for the current session window are no longer available"),
   JDBC_87("Interrupted while waiting to read data"),
   JDBC_88("'{}' is not a valid decimal number"),
+  JDBC_89("Batch lookups require at least one key column"),
+  JDBC_90("The SQL query can't contain expressions when batch lookups are enabled, use key columns instead"),
 
   JDBC_100("Could not enable partitioning for table {}: {}"),
   JDBC_101("Invalid partition size for table {}: {}"),
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.jdbclookup;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.api.base.OnRecordErrorException;
+import com.streamsets.pipeline.lib.jdbc.DataType;
+import com.streamsets.pipeline.lib.jdbc.JdbcErrors;
+import com.streamsets.pipeline.lib.jdbc.JdbcUtil;
+import com.streamsets.pipeline.lib.jdbc.UnknownTypeAction;
+import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache loader used when batch lookups are enabled. All keys missing in the cache are resolved together: they are
+ * split into chunks of at most <code>maxKeysPerQuery</code> keys and every chunk is resolved with a single query
+ * <code>SELECT * FROM (&lt;query&gt;) sdc_lookup WHERE &lt;key column&gt; IN (?, ?, ...)</code> (or a disjunction of
+ * the key column conditions for compound keys). Chunks run in parallel on the given executor, each with its own
+ * pooled connection. The returned rows are assigned back to the keys by the values of their key columns.
+ *
+ * A chunk whose query fails with a record error doesn't fail the other chunks. Its keys are loaded as missing and
+ * the error is kept, {@link #takeFailedKeys()} returns it so that the caller can evict those keys from the cache and
+ * send only their records to error.
+ */
+public class JdbcLookupBatchLoader extends CacheLoader<JdbcLookupBatchLoader.Key, Optional<List<Map<String, Field>>>> {
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcLookupBatchLoader.class);
+
+  static final String QUERY_ALIAS = "sdc_lookup";
+
+  /**
+   * Lookup key tuple. Values are compared in a normalized form so that e.g. an integer from the record matches a long
+   * or decimal returned by the database, while the original values are bound to the query.
+   */
+  public static final class Key {
+    private final Object[] values;
+    private final List<String> normalized;
+
+    public Key(Object... values) {
+      this.values = values;
+      String[] normalizedValues = new String[values.length];
+      for (int i = 0; i < values.length; i++) {
+        normalizedValues[i] = normalize(values[i]);
+      }
+      this.normalized = Arrays.asList(normalizedValues);
+    }
+
+    Object[] getValues() {
+      return values;
+    }
+
+    boolean hasNullValue() {
+      return normalized.contains(null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof Key && normalized.equals(((Key) o).normalized));
+    }
+
+    @Override
+    public int hashCode() {
+      return normalized.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return normalized.toString();
+    }
+  }
+
+  static String normalize(Object value) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof Number) {
+      try {
+        BigDecimal decimal = new BigDecimal(value.toString());
+        return decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString();
+      } catch (NumberFormatException e) {
+        // NaN and infinity
+        return value.toString();
+      }
+    } else if (value instanceof Date) {
+      return String.valueOf(((Date) value).getTime());
+    } else if (value instanceof byte[]) {
+      return Arrays.toString((byte[]) value);
+    }
+    return value.toString();
+  }
+
+  private final DataSource dataSource;
+  private final String query;
+  private final List<String> keyColumns;
+  private final int maxKeysPerQuery;
+  private final ExecutorService executor;
+  private final Map<String, DataType> columnsToTypes;
+  private final int maxClobSize;
+  private final int maxBlobSize;
+  private final ErrorRecordHandler errorRecordHandler;
+  private final Meter selectMeter;
+  private final Timer selectTimer;
+  private final AtomicInteger roundTrips = new AtomicInteger();
+  private final AtomicLong loadedKeys = new AtomicLong();
+  private final Map<Key, OnRecordErrorException> failedKeys = new ConcurrentHashMap<>();
+
+  /**
+   * @param executor Executor to run the queries for several chunks in parallel, null to run them sequentially
+   */
+  public JdbcLookupBatchLoader(
+      Stage.Context context,
+      DataSource dataSource,
+      String query,
+      List<String> keyColumns,
+      int maxKeysPerQuery,
+      ExecutorService executor,
+      Map<String, DataType> columnsToTypes,
+      int maxClobSize,
+      int maxBlobSize,
+      ErrorRecordHandler errorRecordHandler
+  ) {
+    this.dataSource = dataSource;
+    this.query = query.trim().replaceAll(";+$", "");
+    this.keyColumns = keyColumns;
+    this.maxKeysPerQuery = maxKeysPerQuery;
+    this.executor = executor;
+    this.columnsToTypes = columnsToTypes;
+    this.maxClobSize = maxClobSize;
+    this.maxBlobSize = maxBlobSize;
+    this.errorRecordHandler = errorRecordHandler;
+    this.selectMeter = context.createMeter("Select Queries");
+    this.selectTimer = context.createTimer("Select Queries");
+  }
+
+  /**
+   * Returns number of queries executed since the last call.
+   */
+  public int getAndResetRoundTrips() {
+    return roundTrips.getAndSet(0);
+  }
+
+  /**
+   * Returns the keys whose chunk failed since the last call, with the error of their query.
+   */
+  public Map<Key, OnRecordErrorException> takeFailedKeys() {
+    Map<Key, OnRecordErrorException> failed = new HashMap<>();
+    for (Key key : failedKeys.keySet()) {
+      OnRecordErrorException error = failedKeys.remove(key);
+      if (error != null) {
+        failed.put(key, error);
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Total number of keys that had to be looked up in the database.
+   */
+  public long getLoadedKeys() {
+    return loadedKeys.get();
+  }
+
+  @Override
+  public Optional<List<Map<String, Field>>> load(Key key) throws Exception {
+    return loadAll(Collections.singletonList(key)).get(key);
+  }
+
+  @Override
+  public Map<Key, Optional<List<Map<String, Field>>>> loadAll(Iterable<? extends Key> keys) throws Exception {
+    List<Key> allKeys = ImmutableList.copyOf(keys);
+    loadedKeys.addAndGet(allKeys.size());
+    List<List<Key>> chunks = Lists.partition(allKeys, maxKeysPerQuery);
+
+    Map<Key, Optional<List<Map<String, Field>>>> values = new HashMap<>();
+    if (executor == null || chunks.size() == 1) {
+      for (List<Key> chunk : chunks) {
+        values.putAll(lookupChunk(chunk));
+      }
+      return values;
+    }
+
+    List<Future<Map<Key, Optional<List<Map<String, Field>>>>>> futures = new ArrayList<>(chunks.size());
+    try {
+      for (List<Key> chunk : chunks) {
+        futures.add(executor.submit(() -> lookupChunk(chunk)));
+      }
+      for (Future<Map<Key, Optional<List<Map<String, Field>>>>> future : futures) {
+        values.putAll(future.get());
+      }
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), StageException.class);
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      // Don't keep querying the database if one of the chunks failed with a stage error
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return values;
+  }
+
+  private Map<Key, Optional<List<Map<String, Field>>>> lookupChunk(List<Key> keys) throws StageException {
+    try {
+      return lookupValues(keys);
+    } catch (OnRecordErrorException e) {
+      // Only the records of this chunk go to error, the keys are evicted by the caller
+      Map<Key, Optional<List<Map<String, Field>>>> values = new HashMap<>();
+      for (Key key : keys) {
+        failedKeys.put(key, e);
+        values.put(key, Optional.empty());
+      }
+      return values;
+    }
+  }
+
+  private Map<Key, Optional<List<Map<String, Field>>>> lookupValues(List<Key> keys) throws StageException {
+    Map<Key, List<Map<String, Field>>> lookupItems = new HashMap<>();
+
+    // Null never matches in SQL, so there's no need to send such keys to the database
+    List<Key> keysToQuery = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      if (!key.hasNullValue()) {
+        keysToQuery.add(key);
+      }
+    }
+
+    if (!keysToQuery.isEmpty()) {
+      String preparedQuery = buildQuery(keysToQuery.size());
+      LOG.debug("Executing SQL for {} keys: {}", keysToQuery.size(), preparedQuery);
+
+      Timer.Context t = selectTimer.time();
+      try (
+        Connection connection = dataSource.getConnection();
+        PreparedStatement stmt = connection.prepareStatement(preparedQuery)
+      ) {
+        int paramIndex = 1;
+        for (Key key : keysToQuery) {
+          for (Object value : key.getValues()) {
+            stmt.setObject(paramIndex++, value);
+          }
+        }
+
+        try (ResultSet resultSet = stmt.executeQuery()) {
+          // Stop timer immediately so that we're calculating only query execution time and not the processing time
+          t.stop();
+          t = null;
+
+          ResultSetMetaData md = resultSet.getMetaData();
+          String[] keyLabels = getKeyColumnLabels(md);
+          while (resultSet.next()) {
+            LinkedHashMap<String, Field> fields = JdbcUtil.resultSetToFields(resultSet,
+              maxClobSize,
+              maxBlobSize,
+              columnsToTypes,
+              errorRecordHandler,
+              UnknownTypeAction.STOP_PIPELINE
+            );
+
+            int numColumns = md.getColumnCount();
+            if (fields.size() != numColumns) {
+              throw new OnRecordErrorException(JdbcErrors.JDBC_35, fields.size(), numColumns);
+            }
+
+            Object[] keyValues = new Object[keyLabels.length];
+            for (int i = 0; i < keyLabels.length; i++) {
+              Field keyField = fields.get(keyLabels[i]);
+              keyValues[i] = keyField == null ? null : keyField.getValue();
+            }
+            lookupItems.computeIfAbsent(new Key(keyValues), k -> new ArrayList<>()).add(fields);
+          }
+        }
+      } catch (SQLException e) {
+        // Exception executing query
+        LOG.error(JdbcErrors.JDBC_02.getMessage(), preparedQuery, e);
+        throw new OnRecordErrorException(JdbcErrors.JDBC_02, preparedQuery, e.getMessage());
+      } finally {
+        // If the timer wasn't stopped due to exception yet, stop it now
+        if (t != null) {
+          t.stop();
+        }
+        selectMeter.mark();
+        roundTrips.incrementAndGet();
+      }
+    }
+
+    Map<Key, Optional<List<Map<String, Field>>>> values = new HashMap<>();
+    for (Key key : keys) {
+      values.put(key, Optional.ofNullable(lookupItems.get(key)));
+    }
+    return values;
+  }
+
+  String buildQuery(int numKeys) {
+    StringBuilder sb = new StringBuilder("SELECT * FROM (").append(query).append(") ").append(QUERY_ALIAS);
+    sb.append(" WHERE ");
+    if (keyColumns.size() == 1) {
+      sb.append(keyColumns.get(0)).append(" IN (");
+      sb.append(Joiner.on(", ").join(Collections.nCopies(numKeys, "?")));
+      sb.append(")");
+    } else {
+      List<String> conditions = new ArrayList<>(keyColumns.size());
+      for (String keyColumn : keyColumns) {
+        conditions.add(keyColumn + " = ?");
+      }
+      String keyCondition = "(" + Joiner.on(" AND ").join(conditions) + ")";
+      sb.append(Joiner.on(" OR ").join(Collections.nCopies(numKeys, keyCondition)));
+    }
+    return sb.toString();
+  }
+
+  private String[] getKeyColumnLabels(ResultSetMetaData md) throws SQLException, OnRecordErrorException {
+    String[] labels = new String[keyColumns.size()];
+    List<String> missing = new ArrayList<>();
+    for (int k = 0; k < labels.length; k++) {
+      // Unquoted identifiers may come back in a different case
+      String keyColumn = keyColumns.get(k).replaceAll("[\"`\\[\\]]", "");
+      for (int i = 1; i <= md.getColumnCount(); i++) {
+        if (md.getColumnLabel(i).equalsIgnoreCase(keyColumn)) {
+          labels[k] = md.getColumnLabel(i);
+          break;
+        }
+      }
+      if (labels[k] == null) {
+        missing.add(keyColumns.get(k));
+      }
+    }
+    if (!missing.isEmpty()) {
+      throw new OnRecordErrorException(JdbcErrors.JDBC_402, missing, query);
+    }
+    return labels;
+  }
+}
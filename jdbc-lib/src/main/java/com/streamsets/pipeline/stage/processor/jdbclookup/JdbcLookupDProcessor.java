@@ -36,7 +36,7 @@ import com.streamsets.pipeline.stage.processor.kv.CacheConfig;
 import java.util.List;
 
 @StageDef(
-    version = 3,
+    version = 4,
     label = "JDBC Lookup",
     description = "Lookup values via JDBC to enrich records.",
     icon = "rdbms.png",
@@ -116,6 +116,61 @@ public class JdbcLookupDProcessor extends DProcessor {
   )
   public int maxBlobSize;
 
+  @ConfigDef(
+      required = false,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Batch Lookups",
+      description = "Looks up all keys missing in the cache for a batch with a few multi-key queries instead of " +
+          "running the query once per record. The SQL query must not contain expressions and must return the key " +
+          "columns, it is filtered by the key values of the records.",
+      displayPosition = 60,
+      group = "JDBC"
+  )
+  public boolean batchLookup = false;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.MODEL,
+      defaultValue = "",
+      label = "Key Columns",
+      description = "Columns that identify the looked up rows and the expressions that evaluate to their values",
+      dependsOn = "batchLookup",
+      triggeredByValue = "true",
+      displayPosition = 70,
+      group = "JDBC"
+  )
+  @ListBeanModel
+  public List<JdbcLookupKeyColumn> keyColumns;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "500",
+      label = "Max Keys Per Query",
+      description = "Maximum number of keys looked up by a single query",
+      min = 1,
+      dependsOn = "batchLookup",
+      triggeredByValue = "true",
+      displayPosition = 80,
+      group = "JDBC"
+  )
+  public int maxKeysPerQuery = 500;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "4",
+      label = "Lookup Threads",
+      description = "Number of queries of a batch that run in parallel, limited by the maximum pool size",
+      min = 1,
+      dependsOn = "batchLookup",
+      triggeredByValue = "true",
+      displayPosition = 90,
+      group = "JDBC"
+  )
+  public int batchLookupThreads = 4;
+
   @ConfigDefBean()
   public HikariPoolConfigBean hikariConfigBean;
 
@@ -132,7 +187,11 @@ public class JdbcLookupDProcessor extends DProcessor {
       maxClobSize,
       maxBlobSize,
       hikariConfigBean,
-      cacheConfig
+      cacheConfig,
+      batchLookup,
+      keyColumns,
+      maxKeysPerQuery,
+      batchLookupThreads
     );
   }
 }
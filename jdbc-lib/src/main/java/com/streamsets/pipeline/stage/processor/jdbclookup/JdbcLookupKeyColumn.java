@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.jdbclookup;
+
+import com.streamsets.pipeline.api.ConfigDef;
+import com.streamsets.pipeline.lib.el.RecordEL;
+
+public class JdbcLookupKeyColumn {
+
+  /**
+   * Constructor used for unit testing purposes
+   * @param columnName
+   * @param keyExpression
+   */
+  public JdbcLookupKeyColumn(final String columnName, final String keyExpression) {
+    this.columnName = columnName;
+    this.keyExpression = keyExpression;
+  }
+
+  /**
+   * Parameter-less constructor required.
+   */
+  public JdbcLookupKeyColumn() {}
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      defaultValue = "",
+      label = "Column Name",
+      description = "Column returned by the SQL query that is compared with the key value.",
+      displayPosition = 10
+  )
+  public String columnName;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.STRING,
+      defaultValue = "${record:value('/')}",
+      label = "Key Expression",
+      description = "Expression that evaluates to the value of the key column for the record.",
+      elDefs = {RecordEL.class},
+      evaluation = ConfigDef.Evaluation.EXPLICIT,
+      displayPosition = 20
+  )
+  public String keyExpression;
+}
@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.stage.processor.jdbclookup;
 
+import com.codahale.metrics.Histogram;
 import com.google.common.base.Throwables;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
@@ -46,6 +47,7 @@ import com.streamsets.pipeline.stage.processor.kv.LookupUtils;
 import com.zaxxer.hikari.HikariDataSource;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -60,6 +62,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import static com.streamsets.pipeline.lib.jdbc.JdbcUtil.closeQuietly;
@@ -75,6 +78,8 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
   private static final String HIKARI_CONFIG_PREFIX = "hikariConfigBean.";
   private static final String CONNECTION_STRING = HIKARI_CONFIG_PREFIX + "connectionString";
   private static final String COLUMN_MAPPINGS = "columnMappings";
+  private static final String QUERY = "query";
+  private static final String KEY_COLUMNS = "keyColumns";
   private final CacheConfig cacheConfig;
 
   private ELEval queryEval;
@@ -100,6 +105,20 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
   private List<ExecutorService> generationExecutors = new ArrayList<>();
   private int preprocessThreads = 0;
 
+  private final boolean batchLookup;
+  private final List<JdbcLookupKeyColumn> keyColumns;
+  private final int maxKeysPerQuery;
+  private final int batchLookupThreads;
+
+  private ELEval keyEval;
+  private ExecutorService batchLookupExecutor;
+  private JdbcLookupBatchLoader batchLoader;
+  private LoadingCache<JdbcLookupBatchLoader.Key, Optional<List<Map<String, Field>>>> batchCache;
+  private Histogram roundTripsHistogram;
+  private Map<String, Object> batchLookupGauge;
+  private long lookups;
+  private long cacheHits;
+
   public JdbcLookupProcessor(
       String query,
       List<JdbcFieldColumnMapping> columnMappings,
@@ -108,7 +127,11 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       int maxClobSize,
       int maxBlobSize,
       HikariPoolConfigBean hikariConfigBean,
-      CacheConfig cacheConfig
+      CacheConfig cacheConfig,
+      boolean batchLookup,
+      List<JdbcLookupKeyColumn> keyColumns,
+      int maxKeysPerQuery,
+      int batchLookupThreads
   ) {
     this.query = query;
     this.columnMappings = columnMappings;
@@ -118,6 +141,10 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     this.maxBlobSize = maxBlobSize;
     this.hikariConfigBean = hikariConfigBean;
     this.cacheConfig = cacheConfig;
+    this.batchLookup = batchLookup;
+    this.keyColumns = keyColumns;
+    this.maxKeysPerQuery = maxKeysPerQuery;
+    this.batchLookupThreads = batchLookupThreads;
   }
 
   /** {@inheritDoc} */
@@ -133,6 +160,16 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
 
     issues = hikariConfigBean.validateConfigs(context, issues);
 
+    if (batchLookup) {
+      keyEval = getContext().createELEval("keyExpression");
+      if (keyColumns == null || keyColumns.isEmpty()) {
+        issues.add(context.createConfigIssue(Groups.JDBC.name(), KEY_COLUMNS, JdbcErrors.JDBC_89));
+      }
+      if (query.contains("${")) {
+        issues.add(context.createConfigIssue(Groups.JDBC.name(), QUERY, JdbcErrors.JDBC_90));
+      }
+    }
+
     if (issues.isEmpty() && null == dataSource) {
       try {
         dataSource = JdbcUtil.createDataSourceForRead(hikariConfigBean);
@@ -145,7 +182,15 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       this.defaultValue = calculateDefault(context, issues);
     }
 
-    if (issues.isEmpty()) {
+    if (issues.isEmpty() && batchLookup) {
+      batchCache = buildBatchCache();
+      cacheCleaner = new CacheCleaner(batchCache, "JdbcLookupProcessor", 10 * 60 * 1000);
+      roundTripsHistogram = context.createHistogram("Lookup Round Trips Per Batch");
+      batchLookupGauge = context.createGauge("Batch Lookups").getValue();
+      batchLookupGauge.put("Lookups", 0L);
+      batchLookupGauge.put("Cache Hits", 0L);
+      batchLookupGauge.put("Hit Ratio", 0.0);
+    } else if (issues.isEmpty()) {
       cache = buildCache();
       cacheCleaner = new CacheCleaner(cache, "JdbcLookupProcessor", 10 * 60 * 1000);
       if (cacheConfig.enabled) {
@@ -232,6 +277,9 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
   /** {@inheritDoc} */
   @Override
   public void destroy() {
+    if (batchLookupExecutor != null) {
+      batchLookupExecutor.shutdownNow();
+    }
     closeQuietly(dataSource);
     for (ExecutorService generationExecutor : generationExecutors) {
       generationExecutor.shutdown();
@@ -289,6 +337,10 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       // No records - take the opportunity to clean up the cache so that we don't hold on to memory indefinitely
       cacheCleaner.periodicCleanUp();
     }
+    if (batchLookup) {
+      processWithBatchLookups(batch, batchMaker);
+      return;
+    }
     //Cache warming
     if (preprocessThreads > 0) {
       preprocess(batch);
@@ -305,40 +357,7 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
       RecordEL.setRecordInContext(elVars, record);
       String preparedQuery = queryEval.eval(elVars, query, String.class);
       Optional<List<Map<String, Field>>> entry = cache.get(preparedQuery);
-
-      if (!entry.isPresent()) {
-        // No results
-        switch (missingValuesBehavior) {
-          case SEND_TO_ERROR:
-            LOG.error(JdbcErrors.JDBC_04.getMessage(), preparedQuery);
-            errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_04, preparedQuery));
-            break;
-          case PASS_RECORD_ON:
-            batchMaker.addRecord(record);
-            break;
-          default:
-            throw new IllegalStateException("Unknown missing value behavior: " + missingValuesBehavior);
-        }
-      } else {
-        List<Map<String, Field>> values = entry.get();
-        switch (multipleValuesBehavior) {
-          case FIRST_ONLY:
-            setFieldsInRecord(record, values.get(0));
-            batchMaker.addRecord(record);
-            break;
-          case SPLIT_INTO_MULTIPLE_RECORDS:
-            for(Map<String, Field> lookupItem : values) {
-              Record newRecord = getContext().cloneRecord(record);
-              setFieldsInRecord(newRecord, lookupItem);
-              batchMaker.addRecord(newRecord);
-            }
-            break;
-          default:
-            throw new IllegalStateException("Unknown multiple value behavior: " + multipleValuesBehavior);
-        }
-
-      }
-
+      addLookupResult(record, entry, preparedQuery, batchMaker);
     } catch (ELEvalException e) {
       LOG.error(JdbcErrors.JDBC_01.getMessage(), query, e);
       throw new OnRecordErrorException(record, JdbcErrors.JDBC_01, query);
@@ -350,6 +369,117 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     }
   }
 
+  private void addLookupResult(
+      Record record,
+      Optional<List<Map<String, Field>>> entry,
+      String lookup,
+      SingleLaneBatchMaker batchMaker
+  ) throws StageException {
+    if (!entry.isPresent()) {
+      // No results
+      switch (missingValuesBehavior) {
+        case SEND_TO_ERROR:
+          LOG.error(JdbcErrors.JDBC_04.getMessage(), lookup);
+          errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_04, lookup));
+          break;
+        case PASS_RECORD_ON:
+          batchMaker.addRecord(record);
+          break;
+        default:
+          throw new IllegalStateException("Unknown missing value behavior: " + missingValuesBehavior);
+      }
+    } else {
+      List<Map<String, Field>> values = entry.get();
+      switch (multipleValuesBehavior) {
+        case FIRST_ONLY:
+          setFieldsInRecord(record, values.get(0));
+          batchMaker.addRecord(record);
+          break;
+        case SPLIT_INTO_MULTIPLE_RECORDS:
+          for(Map<String, Field> lookupItem : values) {
+            Record newRecord = getContext().cloneRecord(record);
+            setFieldsInRecord(newRecord, lookupItem);
+            batchMaker.addRecord(newRecord);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown multiple value behavior: " + multipleValuesBehavior);
+      }
+    }
+  }
+
+  /**
+   * Resolves the lookup keys of all records in the batch at once: keys missing in the cache are loaded together by
+   * {@link JdbcLookupBatchLoader} with a few multi-key queries instead of one query per record.
+   */
+  private void processWithBatchLookups(Batch batch, SingleLaneBatchMaker batchMaker) throws StageException {
+    List<Record> records = new ArrayList<>();
+    List<JdbcLookupBatchLoader.Key> recordKeys = new ArrayList<>();
+    Set<JdbcLookupBatchLoader.Key> distinctKeys = new LinkedHashSet<>();
+
+    Iterator<Record> it = batch.getRecords();
+    while (it.hasNext()) {
+      Record record = it.next();
+      ELVars elVars = getContext().createELVars();
+      RecordEL.setRecordInContext(elVars, record);
+      Object[] values = new Object[keyColumns.size()];
+      String keyExpression = null;
+      try {
+        for (int i = 0; i < values.length; i++) {
+          keyExpression = keyColumns.get(i).keyExpression;
+          values[i] = keyEval.eval(elVars, keyExpression, Object.class);
+        }
+      } catch (ELEvalException e) {
+        LOG.error(JdbcErrors.JDBC_01.getMessage(), keyExpression, e);
+        errorRecordHandler.onError(new OnRecordErrorException(record, JdbcErrors.JDBC_01, keyExpression));
+        continue;
+      }
+      JdbcLookupBatchLoader.Key key = new JdbcLookupBatchLoader.Key(values);
+      records.add(record);
+      recordKeys.add(key);
+      distinctKeys.add(key);
+    }
+
+    if (records.isEmpty()) {
+      return;
+    }
+
+    long loadedKeysBefore = batchLoader.getLoadedKeys();
+    Map<JdbcLookupBatchLoader.Key, Optional<List<Map<String, Field>>>> entries;
+    Map<JdbcLookupBatchLoader.Key, OnRecordErrorException> failedKeys;
+    try {
+      entries = batchCache.getAll(distinctKeys);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), StageException.class);
+      throw new IllegalStateException(e); // The cache loader shouldn't throw anything that isn't a StageException.
+    } finally {
+      updateBatchLookupMetrics(distinctKeys.size(), batchLoader.getLoadedKeys() - loadedKeysBefore);
+      // Keys of failed queries were loaded as missing, they must not stay in the cache that way
+      failedKeys = batchLoader.takeFailedKeys();
+      batchCache.invalidateAll(failedKeys.keySet());
+    }
+
+    for (int i = 0; i < records.size(); i++) {
+      Record record = records.get(i);
+      JdbcLookupBatchLoader.Key key = recordKeys.get(i);
+      OnRecordErrorException error = failedKeys.get(key);
+      if (error != null) {
+        errorRecordHandler.onError(new OnRecordErrorException(record, error.getErrorCode(), error.getParams()));
+      } else {
+        addLookupResult(record, entries.get(key), key.toString(), batchMaker);
+      }
+    }
+  }
+
+  private void updateBatchLookupMetrics(long keys, long loadedKeys) {
+    roundTripsHistogram.update(batchLoader.getAndResetRoundTrips());
+    lookups += keys;
+    cacheHits += Math.max(0, keys - loadedKeys);
+    batchLookupGauge.put("Lookups", lookups);
+    batchLookupGauge.put("Cache Hits", cacheHits);
+    batchLookupGauge.put("Hit Ratio", (double) cacheHits / lookups);
+  }
+
   private void setFieldsInRecord(Record record, Map<String, Field>fields) {
     for (Map.Entry<String, Field> entry : fields.entrySet()) {
       String columnName = entry.getKey();
@@ -392,4 +522,32 @@ public class JdbcLookupProcessor extends SingleLaneRecordProcessor {
     );
     return LookupUtils.buildCache(loader, cacheConfig, defaultValue);
   }
+
+  @SuppressWarnings("unchecked")
+  private LoadingCache<JdbcLookupBatchLoader.Key, Optional<List<Map<String, Field>>>> buildBatchCache() {
+    int threads = Math.min(batchLookupThreads, hikariConfigBean.maximumPoolSize);
+    if (threads > 1) {
+      batchLookupExecutor = Executors.newFixedThreadPool(
+          threads,
+          new ThreadFactoryBuilder().setNameFormat("JDBC Lookup Batch Query-%d").setDaemon(true).build()
+      );
+    }
+    List<String> keyColumnNames = new ArrayList<>(keyColumns.size());
+    for (JdbcLookupKeyColumn keyColumn : keyColumns) {
+      keyColumnNames.add(keyColumn.columnName);
+    }
+    batchLoader = new JdbcLookupBatchLoader(
+      getContext(),
+      dataSource,
+      query,
+      keyColumnNames,
+      maxKeysPerQuery,
+      batchLookupExecutor,
+      columnsToTypes,
+      maxClobSize,
+      maxBlobSize,
+      errorRecordHandler
+    );
+    return LookupUtils.buildCache(batchLoader, cacheConfig, defaultValue);
+  }
 }
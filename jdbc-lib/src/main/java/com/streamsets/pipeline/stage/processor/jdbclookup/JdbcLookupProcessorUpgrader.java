@@ -22,6 +22,7 @@ import com.streamsets.pipeline.api.StageUpgrader;
 import com.streamsets.pipeline.api.impl.Utils;
 import com.streamsets.pipeline.stage.common.MissingValuesBehavior;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -40,9 +41,18 @@ public class JdbcLookupProcessorUpgrader implements StageUpgrader {
     switch (fromVersion) {
       case 1:
         upgradeV1ToV2(configs);
-        break;
+        if (toVersion == 2) {
+          break;
+        }
+        // fall through
       case 2:
         upgradeV2ToV3(configs);
+        if (toVersion == 3) {
+          break;
+        }
+        // fall through
+      case 3:
+        upgradeV3ToV4(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -62,4 +72,11 @@ public class JdbcLookupProcessorUpgrader implements StageUpgrader {
   private static void upgradeV2ToV3(List<Config> configs) {
     configs.add(new Config("missingValuesBehavior", MissingValuesBehavior.SEND_TO_ERROR));
   }
+
+  private static void upgradeV3ToV4(List<Config> configs) {
+    configs.add(new Config("batchLookup", false));
+    configs.add(new Config("keyColumns", new ArrayList<>()));
+    configs.add(new Config("maxKeysPerQuery", 500));
+    configs.add(new Config("batchLookupThreads", 4));
+  }
 }
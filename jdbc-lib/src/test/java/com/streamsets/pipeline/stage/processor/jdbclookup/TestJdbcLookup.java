@@ -725,4 +725,211 @@ public class TestJdbcLookup {
       processorRunner.runDestroy();
     }
   }
+
+  private Record createNameRecord(String firstName, String lastName) {
+    Record record = RecordCreator.create();
+    LinkedHashMap<String, Field> fields = new LinkedHashMap<>();
+    fields.put("first_name", Field.create(firstName));
+    fields.put("last_name", Field.create(lastName));
+    record.set(Field.create(fields));
+    return record;
+  }
+
+  private ProcessorRunner createBatchLookupRunner(
+      JdbcLookupDProcessor processor,
+      String query,
+      MultipleValuesBehavior multipleValuesBehavior
+  ) {
+    List<JdbcFieldColumnMapping> columnMappings = ImmutableList.of(new JdbcFieldColumnMapping("P_ID", "/p_id"));
+    List<JdbcLookupKeyColumn> keyColumns = ImmutableList.of(
+        new JdbcLookupKeyColumn("FIRST_NAME", "${record:value('/first_name')}"),
+        new JdbcLookupKeyColumn("LAST_NAME", "${record:value('/last_name')}")
+    );
+
+    return new ProcessorRunner.Builder(JdbcLookupDProcessor.class, processor)
+        .addConfiguration("query", query)
+        .addConfiguration("columnMappings", columnMappings)
+        .addConfiguration("multipleValuesBehavior", multipleValuesBehavior)
+        .addConfiguration("missingValuesBehavior", MissingValuesBehavior.PASS_RECORD_ON)
+        .addConfiguration("maxClobSize", 1000)
+        .addConfiguration("maxBlobSize", 1000)
+        .addConfiguration("batchLookup", true)
+        .addConfiguration("keyColumns", keyColumns)
+        .addConfiguration("maxKeysPerQuery", 2)
+        .addConfiguration("batchLookupThreads", 2)
+        .addOutputLane("lane")
+        .build();
+  }
+
+  @Test
+  public void testBatchLookup() throws Exception {
+    JdbcLookupDProcessor processor = createProcessor();
+    ProcessorRunner processorRunner = createBatchLookupRunner(
+        processor,
+        "SELECT P_ID, FIRST_NAME, LAST_NAME FROM TEST.TEST_TABLE;",
+        MultipleValuesBehavior.SPLIT_INTO_MULTIPLE_RECORDS
+    );
+
+    List<Record> records = ImmutableList.of(
+        createNameRecord("Adam", "Kunicki"),
+        createNameRecord("Jon", "Natkins"),
+        createNameRecord("Girish", "Pancha"),
+        createNameRecord("Adam", "Kunicki"),
+        createNameRecord("Jarcec", "Cecho"),
+        createNameRecord("Jon", "Daulton")
+    );
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(records);
+      List<Record> outputRecords = output.getRecords().get("lane");
+      Assert.assertEquals(7, outputRecords.size());
+
+      // Records keep their order, multiple matches are split into multiple records
+      Assert.assertEquals(1, outputRecords.get(0).get("/p_id").getValueAsInteger());
+      Assert.assertEquals(2, outputRecords.get(1).get("/p_id").getValueAsInteger());
+      Assert.assertEquals(4, outputRecords.get(2).get("/p_id").getValueAsInteger());
+      Assert.assertEquals(5, outputRecords.get(3).get("/p_id").getValueAsInteger());
+      Assert.assertEquals(1, outputRecords.get(4).get("/p_id").getValueAsInteger());
+      Assert.assertNull(outputRecords.get(5).get("/p_id"));
+      Assert.assertEquals(3, outputRecords.get(6).get("/p_id").getValueAsInteger());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupCachesKeys() throws Exception {
+    JdbcLookupDProcessor processor = createProcessor();
+    processor.cacheConfig.enabled = true;
+    ProcessorRunner processorRunner = createBatchLookupRunner(
+        processor,
+        "SELECT P_ID, FIRST_NAME, LAST_NAME FROM TEST.TEST_TABLE",
+        MultipleValuesBehavior.FIRST_ONLY
+    );
+
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(ImmutableList.of(createNameRecord("Adam", "Kunicki")));
+      Assert.assertEquals(1, output.getRecords().get("lane").get(0).get("/p_id").getValueAsInteger());
+
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("DELETE FROM TEST.TEST_TABLE");
+      }
+
+      // Cached key is served without querying the database
+      output = processorRunner.runProcess(ImmutableList.of(createNameRecord("Adam", "Kunicki")));
+      Assert.assertEquals(1, output.getRecords().get("lane").get(0).get("/p_id").getValueAsInteger());
+      output = processorRunner.runProcess(ImmutableList.of(createNameRecord("Jon", "Natkins")));
+      Assert.assertNull(output.getRecords().get("lane").get(0).get("/p_id"));
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testBatchLookupFailedChunk() throws Exception {
+    List<JdbcFieldColumnMapping> columnMappings = ImmutableList.of(new JdbcFieldColumnMapping("LAST_NAME", "/last_name"));
+    List<JdbcLookupKeyColumn> keyColumns = ImmutableList.of(new JdbcLookupKeyColumn("P_ID", "${record:value('/id')}"));
+
+    JdbcLookupDProcessor processor = createProcessor();
+    processor.cacheConfig.enabled = true;
+    ProcessorRunner processorRunner = new ProcessorRunner.Builder(JdbcLookupDProcessor.class, processor)
+        .addConfiguration("query", "SELECT P_ID, LAST_NAME FROM TEST.TEST_TABLE")
+        .addConfiguration("columnMappings", columnMappings)
+        .addConfiguration("multipleValuesBehavior", MultipleValuesBehavior.FIRST_ONLY)
+        .addConfiguration("missingValuesBehavior", MissingValuesBehavior.PASS_RECORD_ON)
+        .addConfiguration("maxClobSize", 1000)
+        .addConfiguration("maxBlobSize", 1000)
+        .addConfiguration("batchLookup", true)
+        .addConfiguration("keyColumns", keyColumns)
+        .addConfiguration("maxKeysPerQuery", 2)
+        .addConfiguration("batchLookupThreads", 2)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .addOutputLane("lane")
+        .build();
+
+    processorRunner.runInit();
+    try {
+      // Cached before the batch with the failing chunk
+      processorRunner.runProcess(ImmutableList.of(createIdRecord(5)));
+
+      // Second chunk fails as 'x' is not a valid P_ID
+      StageRunner.Output output = processorRunner.runProcess(ImmutableList.of(
+          createIdRecord(1),
+          createIdRecord(2),
+          createIdRecord("x"),
+          createIdRecord(3),
+          createIdRecord(5)
+      ));
+      List<Record> outputRecords = output.getRecords().get("lane");
+      Assert.assertEquals(3, outputRecords.size());
+      Assert.assertEquals("Kunicki", outputRecords.get(0).get("/last_name").getValueAsString());
+      Assert.assertEquals("Natkins", outputRecords.get(1).get("/last_name").getValueAsString());
+      Assert.assertEquals("Pancha", outputRecords.get(2).get("/last_name").getValueAsString());
+      Assert.assertEquals(2, processorRunner.getErrorRecords().size());
+
+      // Keys of the failed chunk were not cached as missing
+      processorRunner.clearErrors();
+      output = processorRunner.runProcess(ImmutableList.of(createIdRecord(3)));
+      Assert.assertEquals("Daulton", output.getRecords().get("lane").get(0).get("/last_name").getValueAsString());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
+
+  private static Record createIdRecord(Object id) {
+    Record record = RecordCreator.create();
+    LinkedHashMap<String, Field> fields = new LinkedHashMap<>();
+    fields.put("id", id instanceof Integer ? Field.create((Integer) id) : Field.create(id.toString()));
+    record.set(Field.create(fields));
+    return record;
+  }
+
+  @Test
+  public void testBatchLookupQueryWithExpression() throws Exception {
+    ProcessorRunner processorRunner = createBatchLookupRunner(
+        createProcessor(),
+        mapQuery,
+        MultipleValuesBehavior.FIRST_ONLY
+    );
+
+    List<Stage.ConfigIssue> issues = processorRunner.runValidateConfigs();
+    assertEquals(1, issues.size());
+  }
+
+  @Test
+  public void testBatchLookupMissingKeyColumn() throws Exception {
+    List<JdbcFieldColumnMapping> columnMappings = ImmutableList.of(new JdbcFieldColumnMapping("P_ID", "/p_id"));
+    List<JdbcLookupKeyColumn> keyColumns = ImmutableList.of(
+        new JdbcLookupKeyColumn("FIRST_NAME", "${record:value('/first_name')}")
+    );
+
+    JdbcLookupDProcessor processor = createProcessor();
+    ProcessorRunner processorRunner = new ProcessorRunner.Builder(JdbcLookupDProcessor.class, processor)
+        .addConfiguration("query", "SELECT P_ID FROM TEST.TEST_TABLE")
+        .addConfiguration("columnMappings", columnMappings)
+        .addConfiguration("multipleValuesBehavior", MultipleValuesBehavior.FIRST_ONLY)
+        .addConfiguration("missingValuesBehavior", MissingValuesBehavior.PASS_RECORD_ON)
+        .addConfiguration("maxClobSize", 1000)
+        .addConfiguration("maxBlobSize", 1000)
+        .addConfiguration("batchLookup", true)
+        .addConfiguration("keyColumns", keyColumns)
+        .addConfiguration("maxKeysPerQuery", 100)
+        .addConfiguration("batchLookupThreads", 1)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .addOutputLane("lane")
+        .build();
+
+    processorRunner.runInit();
+    try {
+      StageRunner.Output output = processorRunner.runProcess(ImmutableList.of(
+          createNameRecord("Adam", "Kunicki"),
+          createNameRecord("Jon", "Natkins")
+      ));
+      Assert.assertEquals(0, output.getRecords().get("lane").size());
+      Assert.assertEquals(2, processorRunner.getErrorRecords().size());
+    } finally {
+      processorRunner.runDestroy();
+    }
+  }
 }
@@ -56,4 +56,32 @@ public class TestJdbcLookupUpgrader {
 
     UpgraderTestUtils.assertExists(upgradedConfigs, "missingValuesBehavior", MissingValuesBehavior.SEND_TO_ERROR);
   }
+
+  @Test
+  public void testUpgradeV3toV4() throws StageException {
+    List<Config> configs = new ArrayList<>();
+
+    JdbcLookupProcessorUpgrader upgrader = new JdbcLookupProcessorUpgrader();
+    List<Config> upgradedConfigs = upgrader.upgrade("lib", "stage", "stageInst", 3, 4, configs);
+
+    UpgraderTestUtils.assertExists(upgradedConfigs, "batchLookup", false);
+    UpgraderTestUtils.assertExists(upgradedConfigs, "maxKeysPerQuery", 500);
+    UpgraderTestUtils.assertExists(upgradedConfigs, "batchLookupThreads", 4);
+    UpgraderTestUtils.assertAllExist(upgradedConfigs, "keyColumns");
+  }
+
+  @Test
+  public void testUpgradeV1toV4() throws StageException {
+    List<Config> configs = new ArrayList<>();
+
+    JdbcLookupProcessorUpgrader upgrader = new JdbcLookupProcessorUpgrader();
+    List<Config> upgradedConfigs = upgrader.upgrade("lib", "stage", "stageInst", 1, 4, configs);
+
+    UpgraderTestUtils.assertAllExist(upgradedConfigs,
+        "cacheConfig.enabled",
+        "missingValuesBehavior",
+        "batchLookup",
+        "keyColumns"
+    );
+  }
 }
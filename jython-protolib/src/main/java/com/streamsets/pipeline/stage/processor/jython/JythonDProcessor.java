@@ -27,7 +27,7 @@ import com.streamsets.pipeline.stage.processor.scripting.ProcessingMode;
 import com.streamsets.pipeline.stage.processor.scripting.ProcessingModeChooserValues;
 
 @StageDef(
-    version = 2,
+    version = 3,
     label = "Jython Evaluator",
     description = "Processes records using Jython",
     icon = "jython.png",
@@ -232,9 +232,22 @@ public class JythonDProcessor extends DProcessor {
       mode = ConfigDef.Mode.PYTHON)
   public String destroyScript = "";
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1",
+      label = "Script Engines",
+      description = "Number of Jython engines that process parts of each batch concurrently. Each engine runs the " +
+          "init and destroy scripts and has its own state",
+      displayPosition = 50,
+      group = "JYTHON",
+      min = 1
+  )
+  public int numEngines = 1;
+
   @Override
   protected Processor createProcessor() {
-    return new JythonProcessor(processingMode, script, initScript, destroyScript);
+    return new JythonProcessor(processingMode, script, initScript, destroyScript, numEngines);
   }
 
 }
@@ -16,24 +16,33 @@
 package com.streamsets.pipeline.stage.processor.jython;
 
 import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.Stage;
 import com.streamsets.pipeline.stage.processor.scripting.AbstractScriptingProcessor;
 import com.streamsets.pipeline.stage.processor.scripting.ProcessingMode;
+import com.streamsets.pipeline.stage.processor.scripting.ScriptFieldList;
+import com.streamsets.pipeline.stage.processor.scripting.ScriptFieldMap;
 import com.streamsets.pipeline.stage.processor.scripting.ScriptObjectFactory;
 import com.streamsets.pipeline.stage.processor.scripting.ScriptTypedNullObject;
+import org.python.core.Py;
 import org.python.core.PyDictionary;
 import org.python.core.PyList;
+import org.python.core.PyObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.script.ScriptEngine;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
@@ -42,8 +51,18 @@ public class JythonProcessor extends AbstractScriptingProcessor {
 
   public static final String JYTHON_ENGINE = "jython";
 
+  public JythonProcessor(
+      ProcessingMode processingMode,
+      String script,
+      String initScript,
+      String destroyScript,
+      int numEngines
+  ) {
+    super(LOG, JYTHON_ENGINE, Groups.JYTHON.name(), processingMode, script, initScript, destroyScript, numEngines);
+  }
+
   public JythonProcessor(ProcessingMode processingMode, String script, String initScript, String destroyScript) {
-    super(LOG, JYTHON_ENGINE, Groups.JYTHON.name(), processingMode, script, initScript, destroyScript);
+    this(processingMode, script, initScript, destroyScript, 1);
   }
 
   public JythonProcessor(ProcessingMode processingMode, String script) {
@@ -230,6 +249,177 @@ public class JythonProcessor extends AbstractScriptingProcessor {
       return list;
     }
 
+    // Scripts get a dict reading through to the field, fields are still converted only when the script reads them
+    private static class PyDictionaryFieldView extends PyDictionary implements MapInfo, FieldView {
+      private final ScriptFieldMap map;
+
+      public PyDictionaryFieldView(ScriptFieldMap map) {
+        super(new PyObjectMap(map), true);
+        this.map = map;
+      }
+
+      @Override
+      public boolean isListMap() {
+        return map.isListMap();
+      }
+
+      @Override
+      public boolean isModified() {
+        return map.isModified();
+      }
+
+      @Override
+      public Field toField(Record record, String path) {
+        return map.toField(record, path);
+      }
+
+      @Override
+      public boolean isEmitted() {
+        return map.isEmitted();
+      }
+
+      @Override
+      public void setEmitted() {
+        map.setEmitted();
+      }
+    }
+
+    // Map of PyObjects over a map of Java objects, converts keys and values the same way PyDictionary's own
+    // java.util.Map methods do. Like ConcurrentLinkedHashMap it doesn't guarantee atomicity.
+    private static class PyObjectMap extends AbstractMap<PyObject, PyObject>
+        implements ConcurrentMap<PyObject, PyObject> {
+      private final Map<Object, Object> map;
+
+      public PyObjectMap(Map<Object, Object> map) {
+        this.map = map;
+      }
+
+      private static Object toJava(Object obj) {
+        return (obj instanceof PyObject) ? ((PyObject) obj).__tojava__(Object.class) : obj;
+      }
+
+      @Override
+      public int size() {
+        return map.size();
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return map.containsKey(toJava(key));
+      }
+
+      @Override
+      public PyObject get(Object key) {
+        Object javaKey = toJava(key);
+        Object value = map.get(javaKey);
+        if (value == null && !map.containsKey(javaKey)) {
+          return null;
+        }
+        return Py.java2py(value);
+      }
+
+      @Override
+      public PyObject put(PyObject key, PyObject value) {
+        Object old = map.put(toJava(key), toJava(value));
+        return (old == null) ? null : Py.java2py(old);
+      }
+
+      @Override
+      public PyObject remove(Object key) {
+        Object javaKey = toJava(key);
+        if (!map.containsKey(javaKey)) {
+          return null;
+        }
+        return Py.java2py(map.remove(javaKey));
+      }
+
+      @Override
+      public void clear() {
+        map.clear();
+      }
+
+      @Override
+      public Set<Map.Entry<PyObject, PyObject>> entrySet() {
+        return new AbstractSet<Map.Entry<PyObject, PyObject>>() {
+          @Override
+          public Iterator<Map.Entry<PyObject, PyObject>> iterator() {
+            final Iterator<Map.Entry<Object, Object>> iterator = map.entrySet().iterator();
+            return new Iterator<Map.Entry<PyObject, PyObject>>() {
+              @Override
+              public boolean hasNext() {
+                return iterator.hasNext();
+              }
+
+              @Override
+              public Map.Entry<PyObject, PyObject> next() {
+                final Map.Entry<Object, Object> entry = iterator.next();
+                return new SimpleEntry<PyObject, PyObject>(Py.java2py(entry.getKey()), Py.java2py(entry.getValue())) {
+                  @Override
+                  public PyObject setValue(PyObject value) {
+                    super.setValue(value);
+                    return Py.java2py(entry.setValue(toJava(value)));
+                  }
+                };
+              }
+
+              @Override
+              public void remove() {
+                iterator.remove();
+              }
+            };
+          }
+
+          @Override
+          public int size() {
+            return map.size();
+          }
+        };
+      }
+
+      @Override
+      public PyObject putIfAbsent(PyObject key, PyObject value) {
+        PyObject current = get(key);
+        if (current == null) {
+          put(key, value);
+        }
+        return current;
+      }
+
+      @Override
+      public boolean remove(Object key, Object value) {
+        if (containsKey(key) && Objects.equals(get(key), value)) {
+          remove(key);
+          return true;
+        }
+        return false;
+      }
+
+      @Override
+      public boolean replace(PyObject key, PyObject oldValue, PyObject newValue) {
+        if (containsKey(key) && Objects.equals(get(key), oldValue)) {
+          put(key, newValue);
+          return true;
+        }
+        return false;
+      }
+
+      @Override
+      public PyObject replace(PyObject key, PyObject value) {
+        return containsKey(key) ? put(key, value) : null;
+      }
+    }
+
+    @Override
+    protected Object createMapView(ScriptFieldMap map) {
+      return new PyDictionaryFieldView(map);
+    }
+
+    @Override
+    protected Object createListView(ScriptFieldList list) {
+      // copied into a PyList, elements that are maps are still converted lazily
+      return createArray(list);
+    }
+
     @Override
     protected Field convertPrimitiveObject(Object scriptObject) {
       Field field;
@@ -269,6 +269,63 @@ public class TestJythonProcessor {
     ScriptingProcessorTestUtil.verifyNestedMap(JythonDProcessor.class, processor);
   }
 
+  @Test
+  public void testUntouchedFields() throws Exception {
+    Processor processor = new JythonProcessor(
+        ProcessingMode.RECORD,
+        "for record in records:\n" +
+            "  record.value['a'] = 'B'\n" +
+            "  output.write(record)"
+    );
+    ScriptingProcessorTestUtil.verifyUntouchedFields(JythonDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFields() throws Exception {
+    Processor processor = new JythonProcessor(
+        ProcessingMode.RECORD,
+        "for record in records:\n" +
+            "  record.value['b'] = record.value['a']\n" +
+            "  newRecord = sdcFunctions.createRecord('copy')\n" +
+            "  newRecord.value = record.value['a']\n" +
+            "  output.write(record)\n" +
+            "  output.write(newRecord)"
+    );
+    ScriptingProcessorTestUtil.verifyCopiedFields(JythonDProcessor.class, processor);
+  }
+
+  @Test
+  public void testCopiedFieldsOfUnmodifiedRecord() throws Exception {
+    String script =
+        "for record in records:\n" +
+        "  newRecord = sdcFunctions.createRecord('copy')\n" +
+        "  newRecord.value = record.value['a']\n" +
+        "  output.write(%s)\n" +
+        "  output.write(%s)";
+    Processor processor = new JythonProcessor(ProcessingMode.RECORD, String.format(script, "record", "newRecord"));
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(JythonDProcessor.class, processor);
+    processor = new JythonProcessor(ProcessingMode.RECORD, String.format(script, "newRecord", "record"));
+    ScriptingProcessorTestUtil.verifyCopiedFieldsOfUnmodifiedRecord(JythonDProcessor.class, processor);
+  }
+
+  @Test
+  public void testMultipleEngines() throws Exception {
+    Processor processor = new JythonProcessor(
+        ProcessingMode.RECORD,
+        "for record in records:\n" +
+            "  if record.value['i'] % 3 == 0:\n" +
+            "    error.write(record, 'multiple of 3')\n" +
+            "  else:\n" +
+            "    record.value['engine'] = state['id']\n" +
+            "    output.write(record)",
+        "from java.util import UUID\n" +
+            "state['id'] = UUID.randomUUID().toString()",
+        "",
+        4
+    );
+    ScriptingProcessorTestUtil.verifyMultipleEngines(JythonDProcessor.class, processor, 4);
+  }
+
   @Test
   public void testChangeFieldTypeFromScripting() throws Exception {
     Processor processor = new JythonProcessor(
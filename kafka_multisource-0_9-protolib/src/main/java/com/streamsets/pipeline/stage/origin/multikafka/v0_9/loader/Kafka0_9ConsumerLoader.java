@@ -21,6 +21,7 @@ import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 public class Kafka0_9ConsumerLoader extends KafkaConsumerLoader {
@@ -51,6 +52,11 @@ public class Kafka0_9ConsumerLoader extends KafkaConsumerLoader {
       return delegate.poll(timeout);
     }
 
+    @Override
+    public void commitSync(Map offsets) {
+      delegate.commitSync(offsets);
+    }
+
     @Override
     public void unsubscribe() {
       delegate.unsubscribe();
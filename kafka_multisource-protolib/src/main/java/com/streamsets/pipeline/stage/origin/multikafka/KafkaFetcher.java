@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.origin.multikafka;
+
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls Kafka on its own thread so that the next batch is fetched while the previous one is processed by the pipeline.
+ *
+ * The fetcher is the only thread that touches the consumer (KafkaConsumer isn't thread safe). Fetched batches are
+ * handed to the processing thread through a bounded queue, the processing thread hands back offsets of batches it has
+ * finished and the fetcher commits them before its next poll. Offsets of a batch are therefore never committed before
+ * the batch was processed, batches that were fetched but not processed when the origin stops are read again.
+ */
+class KafkaFetcher implements Callable<Void> {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaFetcher.class);
+
+  private static final long OFFER_TIMEOUT_MS = 100;
+
+  private final MultiSdcKafkaConsumer<String, byte[]> consumer;
+  private final List<String> topics;
+  private final long pollTimeout;
+  private final BlockingQueue<ConsumerRecords<String, byte[]>> fetched;
+  private final Queue<Map<TopicPartition, OffsetAndMetadata>> processed = new ConcurrentLinkedQueue<>();
+  private volatile boolean stopped;
+  private volatile boolean running = true;
+  private volatile Exception failure;
+
+  KafkaFetcher(MultiSdcKafkaConsumer<String, byte[]> consumer, List<String> topics, long pollTimeout, int prefetch) {
+    this.consumer = consumer;
+    this.topics = topics;
+    this.pollTimeout = pollTimeout;
+    this.fetched = new ArrayBlockingQueue<>(prefetch);
+  }
+
+  @Override
+  public Void call() {
+    try {
+      consumer.subscribe(topics);
+      while (!stopped && !Thread.currentThread().isInterrupted()) {
+        commitProcessed();
+        ConsumerRecords<String, byte[]> records = consumer.poll(pollTimeout);
+        if (!records.isEmpty()) {
+          // Keep committing while the processing thread is behind, it can't take the next batch before that
+          while (!stopped && !fetched.offer(records, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            commitProcessed();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      LOG.error("Error while fetching from Kafka: {}", e.toString(), e);
+      failure = e;
+    } finally {
+      running = false;
+      try {
+        commitProcessed();
+      } catch (Exception e) {
+        LOG.warn("Can't commit offsets of processed batches: {}", e.toString(), e);
+      }
+      consumer.unsubscribe();
+      consumer.close();
+    }
+    return null;
+  }
+
+  /**
+   * Returns next fetched batch or null if there was none within given timeout. Rethrows the error that stopped the
+   * fetcher once all batches fetched before it are taken.
+   */
+  ConsumerRecords<String, byte[]> take(long timeout) throws Exception {
+    ConsumerRecords<String, byte[]> records = fetched.poll(timeout, TimeUnit.MILLISECONDS);
+    if (records == null && !running && fetched.isEmpty()) {
+      if (failure != null) {
+        throw failure;
+      }
+      throw new IllegalStateException("Kafka fetcher is not running");
+    }
+    return records;
+  }
+
+  /**
+   * Marks given batch as processed, its offsets will be committed before the next poll.
+   */
+  void processed(ConsumerRecords<String, byte[]> records) {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    for (TopicPartition partition : records.partitions()) {
+      List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(partition);
+      long lastOffset = partitionRecords.get(partitionRecords.size() - 1).offset();
+      offsets.put(partition, new OffsetAndMetadata(lastOffset + 1));
+    }
+    processed.add(offsets);
+  }
+
+  void stop() {
+    stopped = true;
+  }
+
+  private void commitProcessed() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    Map<TopicPartition, OffsetAndMetadata> batchOffsets;
+    // Batches are processed in order, so offsets of a later batch override the earlier ones
+    while ((batchOffsets = processed.poll()) != null) {
+      offsets.putAll(batchOffsets);
+    }
+    if (!offsets.isEmpty()) {
+      try {
+        consumer.commitSync(offsets);
+      } catch (CommitFailedException e) {
+        // Partitions were reassigned in the meantime, their new owner will read the uncommitted messages again
+        LOG.warn("Can't commit offsets {}: {}", offsets, e.toString(), e);
+      }
+    }
+  }
+}
@@ -157,6 +157,20 @@ public class MultiKafkaBeanConfig {
   @ValueChooserModel(ValueDeserializerChooserValues.class)
   public Deserializer valueDeserializer = Deserializer.DEFAULT;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "0",
+      label = "Prefetch Batches",
+      description = "Number of batches each thread fetches from Kafka while the pipeline processes the current batch." +
+          " Offsets are committed once the batch is processed. Use 0 to fetch only after the previous batch is done.",
+      min = 0,
+      max = 100,
+      displayPosition = 110,
+      group = "KAFKA"
+  )
+  public int prefetchBatches;
+
   public void init(Stage.Context context, List<Stage.ConfigIssue> issues) {
 
   }
@@ -16,6 +16,7 @@
 package com.streamsets.pipeline.stage.origin.multikafka;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.pipeline.api.BatchContext;
 import com.streamsets.pipeline.api.Field;
 import com.streamsets.pipeline.api.Record;
@@ -69,6 +70,7 @@ public class MultiKafkaSource extends BasePushSource {
 
   private DataParserFactory parserFactory;
   private ExecutorService executor;
+  private ExecutorService fetchExecutor;
 
   public MultiKafkaSource(MultiKafkaBeanConfig conf) {
     this.conf = conf;
@@ -102,6 +104,12 @@ public class MultiKafkaSource extends BasePushSource {
       LOG.debug("Thread {} waiting on other consumer threads to start up", Thread.currentThread().getName());
       startProcessingGate.await();
 
+      if (conf.prefetchBatches > 0) {
+        messagesProcessed = runWithPrefetch();
+        LOG.info("multi kafka thread {} consumed {} messages", threadID, messagesProcessed);
+        return messagesProcessed;
+      }
+
       LOG.debug("Starting poll loop in thread {}", Thread.currentThread().getName());
       try {
         consumer.subscribe(topicList);
@@ -114,16 +122,7 @@ public class MultiKafkaSource extends BasePushSource {
 
           ConsumerRecords<String, byte[]> messages = consumer.poll(conf.batchWaitTime);
           if(!messages.isEmpty()) {
-            for(ConsumerRecord<String, byte[]> message : messages) {
-              createRecord(
-                  errorRecordHandler,
-                  message.topic(),
-                  message.partition(),
-                  message.offset(),
-                  message.value()
-              ).forEach(batchContext.getBatchMaker()::addRecord);
-            }
-
+            addRecords(batchContext, errorRecordHandler, messages);
             getContext().processBatch(batchContext);
             messagesProcessed += messages.count();
             LOG.trace("Kafka thread {} finished processing {} messages", this.threadID, messages.count());
@@ -141,6 +140,68 @@ public class MultiKafkaSource extends BasePushSource {
       return messagesProcessed;
     }
 
+    /**
+     * Poll loop with prefetching: a {@link KafkaFetcher} polls the consumer on its own thread while this thread parses
+     * and processes the previous batch, offsets are committed only after the batch that contains them is processed.
+     */
+    private long runWithPrefetch() throws StageException {
+      long messagesProcessed = 0;
+      KafkaFetcher fetcher = new KafkaFetcher(consumer, topicList, conf.batchWaitTime, conf.prefetchBatches);
+      Future<Void> fetcherFuture = fetchExecutor.submit(fetcher);
+
+      LOG.debug("Starting prefetching poll loop in thread {}", Thread.currentThread().getName());
+      try {
+        while(!getContext().isStopped() && !Thread.interrupted()) {
+          ConsumerRecords<String, byte[]> messages = fetcher.take(conf.batchWaitTime);
+          if(messages != null) {
+            BatchContext batchContext = getContext().startBatch();
+            ErrorRecordHandler errorRecordHandler = new DefaultErrorRecordHandler(getContext(), batchContext);
+            addRecords(batchContext, errorRecordHandler, messages);
+            if(!getContext().processBatch(batchContext)) {
+              // Stop without committing the failed batch or anything fetched after it, so it's read again on restart
+              LOG.warn("Kafka thread {} failed to process batch of {} messages, stopping", threadID, messages.count());
+              break;
+            }
+            fetcher.processed(messages);
+            messagesProcessed += messages.count();
+            LOG.trace("Kafka thread {} finished processing {} messages", this.threadID, messages.count());
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        LOG.error("Encountered error in multi kafka thread {} during read {}", threadID, e);
+        handleException(KafkaErrors.KAFKA_29, e);
+      } finally {
+        // The fetcher commits offsets of the processed batches and closes the consumer on its way out
+        fetcher.stop();
+        try {
+          fetcherFuture.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          LOG.warn("Kafka fetcher of thread {} failed: {}", threadID, e.toString(), e);
+        }
+      }
+      return messagesProcessed;
+    }
+
+    private void addRecords(
+        BatchContext batchContext,
+        ErrorRecordHandler errorRecordHandler,
+        ConsumerRecords<String, byte[]> messages
+    ) throws StageException {
+      for(ConsumerRecord<String, byte[]> message : messages) {
+        createRecord(
+            errorRecordHandler,
+            message.topic(),
+            message.partition(),
+            message.offset(),
+            message.value()
+        ).forEach(batchContext.getBatchMaker()::addRecord);
+      }
+    }
+
     private List<Record> createRecord(
       ErrorRecordHandler errorRecordHandler,
       String topic,
@@ -152,10 +213,12 @@ public class MultiKafkaSource extends BasePushSource {
       List<Record> records = new ArrayList<>();
       try(DataParser parser = Utils.checkNotNull(parserFactory, "Initialization failed").getParser(messageId, payload)) {
         Record record = parser.parse();
+        String partitionAttribute = String.valueOf(partition);
+        String offsetAttribute = String.valueOf(offset);
         while (record != null) {
           record.getHeader().setAttribute(HeaderAttributeConstants.TOPIC, topic);
-          record.getHeader().setAttribute(HeaderAttributeConstants.PARTITION, String.valueOf(partition));
-          record.getHeader().setAttribute(HeaderAttributeConstants.OFFSET, String.valueOf(offset));
+          record.getHeader().setAttribute(HeaderAttributeConstants.PARTITION, partitionAttribute);
+          record.getHeader().setAttribute(HeaderAttributeConstants.OFFSET, offsetAttribute);
 
           records.add(record);
           record = parser.parse();
@@ -225,6 +288,12 @@ public class MultiKafkaSource extends BasePushSource {
     }
 
     executor = Executors.newFixedThreadPool(getNumberOfThreads());
+    if (conf.prefetchBatches > 0) {
+      fetchExecutor = Executors.newFixedThreadPool(
+          getNumberOfThreads(),
+          new ThreadFactoryBuilder().setNameFormat("kafkaFetcherThread-%d").build()
+      );
+    }
     for (String topic: conf.topicList) {
       LineageEvent event = getContext().createLineageEvent(LineageEventType.ENTITY_READ);
       event.setSpecificAttribute(LineageSpecificAttribute.ENDPOINT_TYPE, EndPointType.KAFKA.name());
@@ -283,6 +352,9 @@ public class MultiKafkaSource extends BasePushSource {
 
     LOG.info("Total messages consumed by all threads: {}", totalMessagesProcessed);
     executor.shutdown();
+    if (fetchExecutor != null) {
+      fetchExecutor.shutdown();
+    }
   }
 
   //no trespassing...
@@ -293,8 +365,13 @@ public class MultiKafkaSource extends BasePushSource {
     props.setProperty("bootstrap.servers", conf.brokerURI);
     props.setProperty("group.id", conf.consumerGroup);
     props.setProperty("max.poll.records", String.valueOf(batchSize));
-    props.setProperty("enable.auto.commit", "true");
-    props.setProperty("auto.commit.interval.ms", "1000");
+    if (conf.prefetchBatches > 0) {
+      // Offsets are committed by the fetcher once the batch containing them was processed
+      props.setProperty("enable.auto.commit", "false");
+    } else {
+      props.setProperty("enable.auto.commit", "true");
+      props.setProperty("auto.commit.interval.ms", "1000");
+    }
     props.setProperty(KafkaConstants.KEY_DESERIALIZER_CLASS_CONFIG, conf.keyDeserializer.getKeyClass());
     props.setProperty(KafkaConstants.VALUE_DESERIALIZER_CLASS_CONFIG, conf.valueDeserializer.getValueClass());
     props.setProperty(KafkaConstants.CONFLUENT_SCHEMA_REGISTRY_URL_CONFIG, StringUtils.join(conf.dataFormatConfig.schemaRegistryUrls, ","));
@@ -327,12 +404,18 @@ public class MultiKafkaSource extends BasePushSource {
   @Override
   public void destroy() {
     executor.shutdownNow();
+    if (fetchExecutor != null) {
+      fetchExecutor.shutdownNow();
+    }
     super.destroy();
   }
 
   private void shutdown() {
     if (!shutdownCalled.getAndSet(true)) {
       executor.shutdownNow();
+      if (fetchExecutor != null) {
+        fetchExecutor.shutdownNow();
+      }
     }
   }
 }
@@ -18,6 +18,7 @@ package com.streamsets.pipeline.stage.origin.multikafka;
 import com.streamsets.pipeline.api.Config;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.StageUpgrader;
+import com.streamsets.pipeline.api.impl.Utils;
 
 import java.util.List;
 
@@ -26,7 +27,17 @@ public class MultiKafkaSourceUpgrader implements StageUpgrader {
   public List<Config> upgrade(
       String library, String stageName, String stageInstance, int fromVersion, int toVersion, List<Config> configs
   ) throws StageException {
-    //noop
+    switch(fromVersion) {
+      case 1:
+        upgradeV1ToV2(configs);
+        break;
+      default:
+        throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
+    }
     return configs;
   }
+
+  private static void upgradeV1ToV2(List<Config> configs) {
+    configs.add(new Config("conf.prefetchBatches", 0));
+  }
 }
@@ -16,8 +16,11 @@
 package com.streamsets.pipeline.stage.origin.multikafka;
 
 import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is very thin wrapper on top of KafkaConsumer (Kafka native class) that is abstracting method calls that
@@ -30,6 +33,8 @@ public interface MultiSdcKafkaConsumer<K, V> {
 
   public ConsumerRecords<K, V> poll(long timeout);
 
+  public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets);
+
   public void unsubscribe();
 
   public void close();
@@ -16,6 +16,8 @@
 package com.streamsets.pipeline.stage.origin.multikafka;
 
 import com.google.common.base.Throwables;
+import com.streamsets.pipeline.api.BatchContext;
+import com.streamsets.pipeline.api.PushSource;
 import com.streamsets.pipeline.api.Record;
 import com.streamsets.pipeline.api.StageException;
 import com.streamsets.pipeline.api.lineage.LineageEvent;
@@ -30,11 +32,13 @@ import com.streamsets.pipeline.stage.origin.multikafka.loader.MockKafkaConsumerL
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -204,6 +208,86 @@ public class TestMultiKafkaSource {
     }
   }
 
+  @Test
+  public void testPrefetchCommitsProcessedOffsets() throws StageException, InterruptedException {
+    MultiKafkaBeanConfig conf = getConfig();
+    conf.topicList = Collections.singletonList("topic");
+    conf.numberOfThreads = 1;
+    conf.prefetchBatches = 2;
+
+    List<ConsumerRecord<String, byte[]>> messages = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      messages.add(new ConsumerRecord<>("topic", 0, 10 + i, "key" + i, ("value" + i).getBytes()));
+    }
+    ConsumerRecords<String, byte[]> consumerRecords = new ConsumerRecords<>(
+        Collections.singletonMap(new TopicPartition("topic", 0), messages)
+    );
+    ConsumerRecords<String, byte[]> emptyRecords = generateConsumerRecords(0, "topic", 0);
+
+    KafkaConsumer mockConsumer = Mockito.mock(KafkaConsumer.class);
+    List<KafkaConsumer> consumerList = Collections.singletonList(mockConsumer);
+    Mockito.when(mockConsumer.poll(conf.batchWaitTime)).thenReturn(consumerRecords).thenReturn(emptyRecords);
+
+    MockKafkaConsumerLoader.consumers = consumerList.iterator();
+    MultiKafkaSource source = new MultiKafkaSource(conf);
+    PushSourceRunner sourceRunner = new PushSourceRunner.Builder(MultiKafkaDSource.class, source)
+        .addOutputLane("lane")
+        .build();
+    sourceRunner.runInit();
+
+    MultiKafkaPushSourceTestCallback callback = new MultiKafkaPushSourceTestCallback(sourceRunner, 1);
+    try {
+      sourceRunner.runProduce(new HashMap<>(), 5, callback);
+      int records = callback.waitForAllBatches();
+
+      source.await();
+      Assert.assertEquals(5, records);
+      Assert.assertFalse(source.isRunning());
+      // Offset after the last processed message is committed and the consumer is closed by the fetcher
+      Mockito.verify(mockConsumer, Mockito.atLeastOnce()).commitSync(
+          Collections.singletonMap(new TopicPartition("topic", 0), new OffsetAndMetadata(15))
+      );
+      Mockito.verify(mockConsumer).close();
+    } finally {
+      sourceRunner.runDestroy();
+    }
+  }
+
+  @Test
+  public void testPrefetchDoesNotCommitFailedBatch() throws Exception {
+    MultiKafkaBeanConfig conf = getConfig();
+    conf.topicList = Collections.singletonList("topic");
+    conf.numberOfThreads = 1;
+    conf.prefetchBatches = 2;
+
+    ConsumerRecords<String, byte[]> consumerRecords = generateConsumerRecords(5, "topic", 0);
+    ConsumerRecords<String, byte[]> emptyRecords = generateConsumerRecords(0, "topic", 0);
+
+    KafkaConsumer mockConsumer = Mockito.mock(KafkaConsumer.class);
+    List<KafkaConsumer> consumerList = Collections.singletonList(mockConsumer);
+    Mockito.when(mockConsumer.poll(conf.batchWaitTime)).thenReturn(consumerRecords).thenReturn(emptyRecords);
+
+    MockKafkaConsumerLoader.consumers = consumerList.iterator();
+    MultiKafkaSource source = new FailingBatchMultiKafkaSource(conf);
+    PushSourceRunner sourceRunner = new PushSourceRunner.Builder(MultiKafkaDSource.class, source)
+        .addOutputLane("lane")
+        .build();
+    sourceRunner.runInit();
+
+    MultiKafkaPushSourceTestCallback callback = new MultiKafkaPushSourceTestCallback(sourceRunner, 1);
+    try {
+      sourceRunner.runProduce(new HashMap<>(), 5, callback);
+      // The thread stops on the failed batch on its own
+      sourceRunner.waitOnProduce();
+
+      Assert.assertFalse(source.isRunning());
+      Mockito.verify(mockConsumer, Mockito.never()).commitSync(Mockito.anyMap());
+      Mockito.verify(mockConsumer).close();
+    } finally {
+      sourceRunner.runDestroy();
+    }
+  }
+
   @Test(expected = ExecutionException.class)
   public void testPollFail() throws StageException, InterruptedException, ExecutionException {
     MultiKafkaBeanConfig conf = getConfig();
@@ -302,6 +386,26 @@ public class TestMultiKafkaSource {
     return new ConsumerRecords<>(recordsMap);
   }
 
+  /**
+   * Origin whose batches are never processed successfully.
+   */
+  static class FailingBatchMultiKafkaSource extends MultiKafkaSource {
+    private PushSource.Context failingContext;
+
+    FailingBatchMultiKafkaSource(MultiKafkaBeanConfig conf) {
+      super(conf);
+    }
+
+    @Override
+    public synchronized PushSource.Context getContext() {
+      if (failingContext == null) {
+        failingContext = Mockito.mock(PushSource.Context.class, AdditionalAnswers.delegatesTo(super.getContext()));
+        Mockito.doReturn(false).when(failingContext).processBatch(Mockito.any(BatchContext.class));
+      }
+      return failingContext;
+    }
+  }
+
   static class MultiKafkaPushSourceTestCallback implements PushSourceRunner.Callback {
     private final PushSourceRunner pushSourceRunner;
     private final AtomicInteger batchesProduced;
@@ -21,6 +21,7 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -64,6 +65,11 @@ public class MockKafkaConsumerLoader extends KafkaConsumerLoader {
       return delegate.poll(timeout);
     }
 
+    @Override
+    public void commitSync(Map offsets) {
+      delegate.commitSync(offsets);
+    }
+
     @Override
     public void unsubscribe() {
       delegate.unsubscribe();
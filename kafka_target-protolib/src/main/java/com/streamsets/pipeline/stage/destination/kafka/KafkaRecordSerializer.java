@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.kafka;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.config.CsvHeader;
+import com.streamsets.pipeline.config.DataFormat;
+import com.streamsets.pipeline.lib.generator.DataGenerator;
+import com.streamsets.pipeline.lib.generator.DataGeneratorException;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.stage.destination.lib.DataGeneratorFormatConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes records into Kafka message payloads using a single growable buffer that is reused for every message.
+ *
+ * The Kafka producers take the value as a <code>byte[]</code> that is sent whole (and that the 0.8 producer holds on
+ * to until the batch is written), so every message still ends up as one exact-size copy of the buffer. What is saved
+ * compared to a fresh stream per record is the initial allocation, the copies done while the stream grows and, for
+ * data formats whose output doesn't depend on what was written before, the generator itself.
+ *
+ * Not thread safe, every stage instance has its own serializer.
+ */
+class KafkaRecordSerializer {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaRecordSerializer.class);
+
+  // Buffer grown by an unusually large message is dropped rather than kept for the lifetime of the pipeline
+  @VisibleForTesting
+  static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+    ReusableByteArrayOutputStream() {
+      super(INITIAL_BUFFER_SIZE);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+
+  private final DataGeneratorFactory generatorFactory;
+  private final boolean reuseGenerator;
+  private ReusableByteArrayOutputStream buffer;
+  private DataGenerator generator;
+
+  KafkaRecordSerializer(DataGeneratorFactory generatorFactory, boolean reuseGenerator) {
+    this.generatorFactory = generatorFactory;
+    this.reuseGenerator = reuseGenerator;
+    this.buffer = new ReusableByteArrayOutputStream();
+  }
+
+  /**
+   * Whether a generator of the configured data format writes exactly the same bytes for a record regardless of the
+   * records it wrote before. JSON (root value separator), delimited with header line (header before the first
+   * record), Avro, SDC Record and XML (per stream headers) don't and need a new generator for every message. Neither
+   * do text and delimited in a charset that starts the stream with a byte order mark.
+   */
+  static boolean canReuseGenerator(DataFormat dataFormat, DataGeneratorFormatConfig formatConfig) {
+    switch (dataFormat) {
+      case BINARY:
+      case PROTOBUF:
+        return true;
+      case TEXT:
+        return !writesByteOrderMark(formatConfig.charset);
+      case DELIMITED:
+        return formatConfig.csvHeader != CsvHeader.WITH_HEADER && !writesByteOrderMark(formatConfig.charset);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Whether the encoder of given charset starts its output with a byte order mark (UTF-16 for example).
+   */
+  @VisibleForTesting
+  static boolean writesByteOrderMark(String charset) {
+    Charset cs;
+    try {
+      cs = (charset == null || charset.trim().isEmpty()) ? StandardCharsets.UTF_8 : Charset.forName(charset);
+    } catch (IllegalArgumentException ex) {
+      return true;
+    }
+    // Encoding the same text twice separately takes more bytes than encoding it once only if there is a prefix
+    return 2 * "a".getBytes(cs).length != "aa".getBytes(cs).length;
+  }
+
+  /**
+   * Serializes given record as a single message.
+   */
+  byte[] serialize(Record record) throws IOException, DataGeneratorException {
+    buffer.reset();
+    try {
+      if (reuseGenerator) {
+        if (generator == null) {
+          generator = generatorFactory.getGenerator(buffer);
+        }
+        generator.write(record);
+        generator.flush();
+      } else {
+        DataGenerator recordGenerator = generatorFactory.getGenerator(buffer);
+        recordGenerator.write(record);
+        recordGenerator.close();
+      }
+    } catch (IOException | DataGeneratorException | RuntimeException ex) {
+      // Generator might hold a partially written record in its own buffers
+      closeGenerator();
+      throw ex;
+    }
+    return toMessage();
+  }
+
+  /**
+   * Starts a message made of several records. The returned generator must be closed before calling
+   * {@link #finishMessage()}.
+   */
+  DataGenerator startMessage() throws IOException {
+    buffer.reset();
+    return generatorFactory.getGenerator(buffer);
+  }
+
+  /**
+   * Returns content of the message started by {@link #startMessage()}.
+   */
+  byte[] finishMessage() {
+    return toMessage();
+  }
+
+  /**
+   * Closes the generator reused across messages, if any.
+   */
+  void close() {
+    closeGenerator();
+  }
+
+  @VisibleForTesting
+  int getBufferCapacity() {
+    return buffer.capacity();
+  }
+
+  private byte[] toMessage() {
+    byte[] message = buffer.toByteArray();
+    if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      closeGenerator();
+      buffer = new ReusableByteArrayOutputStream();
+    }
+    return message;
+  }
+
+  private void closeGenerator() {
+    if (generator != null) {
+      try {
+        generator.close();
+      } catch (IOException | RuntimeException ex) {
+        LOG.debug("Error while closing the generator: {}", ex.toString(), ex);
+      }
+      generator = null;
+    }
+  }
+}
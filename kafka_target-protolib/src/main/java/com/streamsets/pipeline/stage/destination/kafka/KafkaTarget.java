@@ -35,7 +35,6 @@ import com.streamsets.pipeline.stage.destination.lib.ToOriginResponseConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -56,6 +55,7 @@ public class KafkaTarget extends BaseTarget {
   private SdcKafkaProducer kafkaProducer;
   private ErrorRecordHandler errorRecordHandler;
   private Set<String> accessedTopic;
+  private KafkaRecordSerializer serializer;
 
   public KafkaTarget(KafkaTargetConfig conf, ToOriginResponseConfig responseConf) {
     this.conf = conf;
@@ -71,6 +71,13 @@ public class KafkaTarget extends BaseTarget {
     kafkaProducer = conf.getKafkaProducer();
     errorRecordHandler = new DefaultErrorRecordHandler(getContext());
     accessedTopic = new HashSet<>();
+    if (issues.isEmpty()) {
+      serializer = new KafkaRecordSerializer(
+          conf.dataGeneratorFormatConfig.getDataGeneratorFactory(),
+          !conf.singleMessagePerBatch &&
+              KafkaRecordSerializer.canReuseGenerator(conf.dataFormat, conf.dataGeneratorFormatConfig)
+      );
+    }
     return issues;
   }
 
@@ -150,11 +157,9 @@ public class KafkaTarget extends BaseTarget {
           for (Map.Entry<Object, List<Record>> entry : perPartition.entrySet()) {
             Object partition = entry.getKey();
             List<Record> list = entry.getValue();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(1024 * list.size());
             Record currentRecord = null;
             try {
-              DataGenerator generator = conf.dataGeneratorFormatConfig.getDataGeneratorFactory()
-                .getGenerator(baos);
+              DataGenerator generator = serializer.startMessage();
               for (Record record : list) {
                 currentRecord = record;
                 generator.write(record);
@@ -162,7 +167,7 @@ public class KafkaTarget extends BaseTarget {
               }
               currentRecord = null;
               generator.close();
-              byte[] bytes = baos.toByteArray();
+              byte[] bytes = serializer.finishMessage();
               kafkaProducer.enqueueMessage(entryTopic, bytes, partition);
             } catch (StageException ex) {
               errorRecordHandler.onError(
@@ -286,16 +291,15 @@ public class KafkaTarget extends BaseTarget {
   }
 
   private Object serializeRecord(Record record) throws StageException, IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-    DataGenerator generator = conf.dataGeneratorFormatConfig.getDataGeneratorFactory().getGenerator(baos);
-    generator.write(record);
-    generator.close();
-    return baos.toByteArray();
+    return serializer.serialize(record);
   }
 
   @Override
   public void destroy() {
     LOG.info("Wrote {} number of records to Kafka Broker", recordCounter);
+    if (serializer != null) {
+      serializer.close();
+    }
     conf.destroy();
   }
 
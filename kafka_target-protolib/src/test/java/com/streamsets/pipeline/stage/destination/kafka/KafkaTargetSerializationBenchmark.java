@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.kafka;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import com.streamsets.pipeline.config.CsvHeader;
+import com.streamsets.pipeline.config.CsvMode;
+import com.streamsets.pipeline.config.DataFormat;
+import com.streamsets.pipeline.lib.generator.DataGenerator;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactoryBuilder;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFormat;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.stage.destination.lib.DataGeneratorFormatConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.streamsets.pipeline.lib.util.AvroSchemaHelper.SCHEMA_KEY;
+
+/**
+ * Compares serialization of a record into a Kafka message through a new stream and generator per record (as done
+ * before {@link KafkaRecordSerializer}) with the reusable buffer of {@link KafkaRecordSerializer}. Run with
+ * <code>-prof gc</code> to see the difference in allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KafkaTargetSerializationBenchmark {
+
+  private static final String AVRO_SCHEMA = "{\"type\": \"record\", \"name\": \"Event\", \"fields\": [" +
+      "{\"name\": \"id\", \"type\": \"long\"}, " +
+      "{\"name\": \"name\", \"type\": \"string\"}, " +
+      "{\"name\": \"city\", \"type\": \"string\"}, " +
+      "{\"name\": \"amount\", \"type\": \"double\"}" +
+      "]}";
+
+  @Param({"JSON", "AVRO", "DELIMITED"})
+  public DataFormat dataFormat;
+
+  private DataGeneratorFactory factory;
+  private KafkaRecordSerializer serializer;
+  private Record record;
+
+  @Setup
+  public void setUp() {
+    Stage.Context context = ContextInfoCreator.createTargetContext("i", false, OnRecordError.TO_ERROR);
+    DataGeneratorFormatConfig formatConfig = new DataGeneratorFormatConfig();
+    switch (dataFormat) {
+      case JSON:
+        factory = new DataGeneratorFactoryBuilder(context, DataGeneratorFormat.JSON)
+            .setMode(Mode.MULTIPLE_OBJECTS)
+            .build();
+        break;
+      case AVRO:
+        factory = new DataGeneratorFactoryBuilder(context, DataGeneratorFormat.AVRO)
+            .setConfig(SCHEMA_KEY, AVRO_SCHEMA)
+            .build();
+        break;
+      case DELIMITED:
+        formatConfig.csvHeader = CsvHeader.NO_HEADER;
+        factory = new DataGeneratorFactoryBuilder(context, DataGeneratorFormat.DELIMITED)
+            .setMode(CsvMode.CSV)
+            .setMode(CsvHeader.NO_HEADER)
+            .build();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported data format: " + dataFormat);
+    }
+    serializer = new KafkaRecordSerializer(factory, KafkaRecordSerializer.canReuseGenerator(dataFormat, formatConfig));
+
+    LinkedHashMap<String, Field> map = new LinkedHashMap<>();
+    map.put("id", Field.create(123456789L));
+    map.put("name", Field.create("StreamSets Data Collector"));
+    map.put("city", Field.create("San Francisco"));
+    map.put("amount", Field.create(1234.5678));
+    record = RecordCreator.create();
+    record.set(Field.createListMap(map));
+  }
+
+  @Benchmark
+  public byte[] newStreamPerRecord() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+    DataGenerator generator = factory.getGenerator(baos);
+    generator.write(record);
+    generator.close();
+    return baos.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] reusedBuffer() throws Exception {
+    return serializer.serialize(record);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(KafkaTargetSerializationBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
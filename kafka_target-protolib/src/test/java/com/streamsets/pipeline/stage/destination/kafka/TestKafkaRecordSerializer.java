@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.kafka;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.Stage;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import com.streamsets.pipeline.config.CsvHeader;
+import com.streamsets.pipeline.config.CsvMode;
+import com.streamsets.pipeline.config.DataFormat;
+import com.streamsets.pipeline.lib.generator.DataGenerator;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactoryBuilder;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFormat;
+import com.streamsets.pipeline.lib.generator.text.TextDataGeneratorFactory;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.stage.destination.lib.DataGeneratorFormatConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class TestKafkaRecordSerializer {
+
+  private static final Stage.Context CONTEXT =
+      ContextInfoCreator.createTargetContext("i", false, OnRecordError.TO_ERROR);
+
+  private static List<Record> createRecords(int count, int textLength) {
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder text = new StringBuilder();
+      while (text.length() < textLength) {
+        text.append("text").append(i);
+      }
+      LinkedHashMap<String, Field> map = new LinkedHashMap<>();
+      map.put("id", Field.create(i));
+      map.put("text", Field.create(text.toString()));
+      Record record = RecordCreator.create();
+      record.set(Field.createListMap(map));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static byte[] serializeWithNewGenerator(DataGeneratorFactory factory, Record record) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataGenerator generator = factory.getGenerator(baos);
+    generator.write(record);
+    generator.close();
+    return baos.toByteArray();
+  }
+
+  private static void assertSameMessages(DataGeneratorFactory factory, boolean reuseGenerator) throws Exception {
+    KafkaRecordSerializer serializer = new KafkaRecordSerializer(factory, reuseGenerator);
+    for (Record record : createRecords(10, 16)) {
+      Assert.assertArrayEquals(serializeWithNewGenerator(factory, record), serializer.serialize(record));
+    }
+  }
+
+  @Test
+  public void testReusedTextGenerator() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.TEXT)
+        .setConfig(TextDataGeneratorFactory.FIELD_PATH_KEY, "/text")
+        .build();
+    assertSameMessages(factory, true);
+  }
+
+  @Test
+  public void testReusedDelimitedGenerator() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.DELIMITED)
+        .setMode(CsvMode.CSV)
+        .setMode(CsvHeader.NO_HEADER)
+        .build();
+    assertSameMessages(factory, true);
+  }
+
+  @Test
+  public void testJsonGenerator() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.JSON)
+        .setMode(Mode.MULTIPLE_OBJECTS)
+        .build();
+    assertSameMessages(factory, false);
+  }
+
+  @Test
+  public void testMessageOfSeveralRecords() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.JSON)
+        .setMode(Mode.ARRAY_OBJECTS)
+        .build();
+    KafkaRecordSerializer serializer = new KafkaRecordSerializer(factory, false);
+    List<Record> records = createRecords(3, 4);
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    DataGenerator generator = factory.getGenerator(expected);
+    for (Record record : records) {
+      generator.write(record);
+    }
+    generator.close();
+
+    for (int i = 0; i < 2; i++) {
+      generator = serializer.startMessage();
+      for (Record record : records) {
+        generator.write(record);
+      }
+      generator.close();
+      Assert.assertArrayEquals(expected.toByteArray(), serializer.finishMessage());
+    }
+  }
+
+  @Test
+  public void testLargeBufferIsNotRetained() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.TEXT)
+        .setConfig(TextDataGeneratorFactory.FIELD_PATH_KEY, "/text")
+        .build();
+    KafkaRecordSerializer serializer = new KafkaRecordSerializer(factory, true);
+    Record large = createRecords(1, KafkaRecordSerializer.MAX_RETAINED_BUFFER_SIZE + 1).get(0);
+    Record small = createRecords(1, 16).get(0);
+
+    Assert.assertEquals(serializeWithNewGenerator(factory, large).length, serializer.serialize(large).length);
+    Assert.assertTrue(serializer.getBufferCapacity() <= KafkaRecordSerializer.MAX_RETAINED_BUFFER_SIZE);
+    Assert.assertArrayEquals(serializeWithNewGenerator(factory, small), serializer.serialize(small));
+  }
+
+  @Test
+  public void testCanReuseGenerator() {
+    DataGeneratorFormatConfig formatConfig = new DataGeneratorFormatConfig();
+    Assert.assertTrue(KafkaRecordSerializer.canReuseGenerator(DataFormat.TEXT, formatConfig));
+    Assert.assertTrue(KafkaRecordSerializer.canReuseGenerator(DataFormat.BINARY, formatConfig));
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.JSON, formatConfig));
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.AVRO, formatConfig));
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.SDC_JSON, formatConfig));
+    for (CsvHeader header : ImmutableList.of(CsvHeader.NO_HEADER, CsvHeader.IGNORE_HEADER)) {
+      formatConfig.csvHeader = header;
+      Assert.assertTrue(KafkaRecordSerializer.canReuseGenerator(DataFormat.DELIMITED, formatConfig));
+    }
+    formatConfig.csvHeader = CsvHeader.WITH_HEADER;
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.DELIMITED, formatConfig));
+
+    // A reused generator would write the byte order mark in the first message only
+    formatConfig.csvHeader = CsvHeader.NO_HEADER;
+    formatConfig.charset = "UTF-16";
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.TEXT, formatConfig));
+    Assert.assertFalse(KafkaRecordSerializer.canReuseGenerator(DataFormat.DELIMITED, formatConfig));
+    Assert.assertTrue(KafkaRecordSerializer.canReuseGenerator(DataFormat.BINARY, formatConfig));
+  }
+
+  @Test
+  public void testWritesByteOrderMark() {
+    for (String charset : ImmutableList.of("UTF-16", "x-UTF-16LE-BOM")) {
+      Assert.assertTrue(charset, KafkaRecordSerializer.writesByteOrderMark(charset));
+    }
+    for (String charset : ImmutableList.of("UTF-8", "UTF-16LE", "UTF-16BE", "ISO-8859-1")) {
+      Assert.assertFalse(charset, KafkaRecordSerializer.writesByteOrderMark(charset));
+    }
+    Assert.assertFalse(KafkaRecordSerializer.writesByteOrderMark(null));
+  }
+
+  @Test
+  public void testCloseReusedGenerator() throws Exception {
+    DataGeneratorFactory factory = new DataGeneratorFactoryBuilder(CONTEXT, DataGeneratorFormat.TEXT)
+        .setConfig(TextDataGeneratorFactory.FIELD_PATH_KEY, "/text")
+        .build();
+    KafkaRecordSerializer serializer = new KafkaRecordSerializer(factory, true);
+    Record record = createRecords(1, 16).get(0);
+    serializer.serialize(record);
+    serializer.close();
+    // Next message gets a new generator
+    Assert.assertArrayEquals(serializeWithNewGenerator(factory, record), serializer.serialize(record));
+    serializer.close();
+  }
+}
@@ -117,6 +117,32 @@ public class KuduConfigBean {
   )
   public int mutationBufferSpace;
 
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.BOOLEAN,
+      defaultValue = "false",
+      label = "Flush in Background",
+      description = "Sends buffered operations to Kudu while records are still being processed and waits for them " +
+          "only at the end of the batch. The mutation buffer doesn't have to hold the whole batch.",
+      displayPosition = 16,
+      group = "ADVANCED"
+  )
+  public boolean backgroundFlush = false;
+
+  @ConfigDef(
+      required = true,
+      type = ConfigDef.Type.NUMBER,
+      defaultValue = "1000",
+      min = 1,
+      label = "Flush Interval (milliseconds)",
+      description = "Maximum time operations stay in the mutation buffer before being sent to Kudu",
+      displayPosition = 17,
+      group = "ADVANCED",
+      dependsOn = "backgroundFlush",
+      triggeredByValue = "true"
+  )
+  public int flushInterval = 1000;
+
   @ConfigDef(
       required = false,
       type = ConfigDef.Type.NUMBER,
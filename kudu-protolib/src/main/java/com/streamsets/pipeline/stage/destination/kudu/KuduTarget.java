@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.stage.destination.kudu;
 
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
@@ -58,6 +59,7 @@ import org.apache.kudu.client.Operation;
 import org.apache.kudu.client.OperationResponse;
 import org.apache.kudu.client.PartialRow;
 import org.apache.kudu.client.RowError;
+import org.apache.kudu.client.RowErrorsAndOverflowStatus;
 import org.apache.kudu.client.SessionConfiguration;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -65,9 +67,12 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -99,6 +104,7 @@ public class KuduTarget extends BaseTarget {
   private static final String FIELD_MAPPING_CONFIGS = "fieldMappingConfigs";
   private static final String OPERATION_TIMEOUT = "operationTimeout";
   private static final String ADMIN_OPERATION_TIMEOUT = "adminOperationTimeout";
+  private static final String FLUSH_GAUGE = "Kudu Flush";
 
 
   private final String kuduMaster;
@@ -120,6 +126,8 @@ public class KuduTarget extends BaseTarget {
 
   private KuduOperationType defaultOperation;
   private Set<String> accessedTables;
+  private Timer flushTimer;
+  private Map<String, Object> flushGauge;
   private long CACHE_EXPIRATION_PERIOD = 60;
 
   public KuduTarget(KuduConfigBean configBean) {
@@ -176,6 +184,13 @@ public class KuduTarget extends BaseTarget {
     validateServerSideConfig(issues);
     accessedTables = new HashSet<>();
 
+    flushTimer = getContext().createTimer("kuduFlush");
+    flushGauge = getContext().createGauge(FLUSH_GAUGE).getValue();
+    flushGauge.put("Flush in Background", configBean.backgroundFlush);
+    flushGauge.put("Mutation Buffer Space", configBean.mutationBufferSpace);
+    flushGauge.put("Operations in Last Flush", 0);
+    flushGauge.put("Last Flush Wait (ms)", 0L);
+
     return issues;
   }
 
@@ -319,7 +334,13 @@ public class KuduTarget extends BaseTarget {
       );
     }
     session.setMutationBufferSpace(configBean.mutationBufferSpace);
-    session.setFlushMode(SessionConfiguration.FlushMode.MANUAL_FLUSH);
+    if (configBean.backgroundFlush) {
+      // The client flushes a buffer once it's full or the interval elapses, while apply() fills the other buffer
+      session.setFlushMode(SessionConfiguration.FlushMode.AUTO_FLUSH_BACKGROUND);
+      session.setFlushInterval(configBean.flushInterval);
+    } else {
+      session.setFlushMode(SessionConfiguration.FlushMode.MANUAL_FLUSH);
+    }
     return session;
   }
 
@@ -380,10 +401,30 @@ public class KuduTarget extends BaseTarget {
 
       writeBatch(batch);
     } catch (Exception e) {
+      discardPendingOperations();
       throw throwStageException(e);
     }
   }
 
+  /**
+   * Waits for the operations that a failed batch left in the session and drops their row errors. They have no record
+   * in the next batch and would otherwise fail it with KUDU_03.
+   */
+  private void discardPendingOperations() {
+    if (kuduSession == null) {
+      return;
+    }
+    try {
+      kuduSession.flush();
+    } catch (KuduException | RuntimeException ex) {
+      LOG.debug("Error while flushing the operations of a failed batch: {}", ex.toString(), ex);
+    }
+    RowErrorsAndOverflowStatus pendingErrors = kuduSession.getPendingErrors();
+    if (pendingErrors.getRowErrors().length > 0) {
+      LOG.warn("Dropping {} row errors of the failed batch", pendingErrors.getRowErrors().length);
+    }
+  }
+
   private static StageException throwStageException(Exception e) {
     if (e instanceof RuntimeException) {
       Throwable cause = e.getCause();
@@ -405,6 +446,8 @@ public class KuduTarget extends BaseTarget {
     );
 
     KuduSession session = Preconditions.checkNotNull(kuduSession, KUDU_SESSION);
+    // Operations are compared by identity, row keys aren't unique within a batch
+    Map<Operation, Record> operationToRecord = new IdentityHashMap<>();
 
     for (String tableName : partitions.keySet()) {
 
@@ -416,7 +459,6 @@ public class KuduTarget extends BaseTarget {
         }
       }
 
-      Map<String, Record> keyToRecordMap = new HashMap<>();
       Iterator<Record> it = partitions.get(tableName).iterator();
 
       KuduTable table;
@@ -474,7 +516,7 @@ public class KuduTarget extends BaseTarget {
                 operation.getRow().toString()
             );
             try {
-              keyToRecordMap.put(operation.getRow().stringifyRowKey(), record);
+              operationToRecord.put(operation, record);
               session.apply(operation);
             } catch (IllegalStateException ex) {
               // IllegalStateException is thrown when there is issue in column values
@@ -489,37 +531,65 @@ public class KuduTarget extends BaseTarget {
           errorRecordHandler.onError(new OnRecordErrorException(record, Errors.KUDU_03, ex.getMessage(), ex));
         }
       }
-      // from here, executed at the end of batch
-      try {
-        List<RowError> rowErrors = Collections.emptyList();
-        List<OperationResponse> responses = session.flush();
-        if (responses != null) {
-          rowErrors = OperationResponse.collectErrors(responses);
-        }
-        // log ALL errors then process them
-        for (RowError error : rowErrors) {
-          LOG.warn(Errors.KUDU_03.getMessage(), error.toString());
+      if (!configBean.backgroundFlush) {
+        flush(session, operationToRecord);
+        operationToRecord.clear();
+      }
+    }
+
+    // In background mode operations of all tables were being sent while the records were converted, only wait for
+    // the rest here. The batch is committed once this returns, so everything must be acknowledged by then.
+    if (configBean.backgroundFlush) {
+      flush(session, operationToRecord);
+    }
+  }
+
+  private void flush(KuduSession session, Map<Operation, Record> operationToRecord) throws StageException {
+    try {
+      List<RowError> rowErrors = new ArrayList<>();
+      Timer.Context flushTime = flushTimer.time();
+      List<OperationResponse> responses = session.flush();
+      long waitNanos = flushTime.stop();
+      flushGauge.put("Operations in Last Flush", operationToRecord.size());
+      flushGauge.put("Last Flush Wait (ms)", TimeUnit.NANOSECONDS.toMillis(waitNanos));
+
+      if (responses != null) {
+        rowErrors.addAll(OperationResponse.collectErrors(responses));
+      }
+      if (configBean.backgroundFlush) {
+        // Responses of buffers flushed in background aren't returned by flush(), their errors are collected instead
+        RowErrorsAndOverflowStatus pendingErrors = session.getPendingErrors();
+        if (pendingErrors.isOverflowed()) {
+          throw new StageException(Errors.KUDU_16);
         }
-        for (RowError error : rowErrors) {
-          Operation operation = error.getOperation();
-          String rowKey = operation.getRow().stringifyRowKey();
-          Record errorRecord = keyToRecordMap.get(rowKey);
-          if (error.getErrorStatus().isAlreadyPresent()) {
-            // Failed due to inserting duplicate row key
-            errorRecordHandler.onError(new OnRecordErrorException(errorRecord, Errors.KUDU_08, rowKey));
-          } else if (error.getErrorStatus().isNotFound()) {
-            // Row key not found error, mostly for update and delete operations.
-            errorRecordHandler.onError(new OnRecordErrorException(errorRecord, Errors.KUDU_15, rowKey));
-          } else {
-            // Failure is most likely caused by setting, network, or corrupted table.
-            // Worth throwing StageException.
-            throw new StageException(Errors.KUDU_03, error.toString());
-          }
+        rowErrors.addAll(Arrays.asList(pendingErrors.getRowErrors()));
+      }
+      // log ALL errors then process them
+      for (RowError error : rowErrors) {
+        LOG.warn(Errors.KUDU_03.getMessage(), error.toString());
+      }
+      for (RowError error : rowErrors) {
+        Operation operation = error.getOperation();
+        String rowKey = operation.getRow().stringifyRowKey();
+        Record errorRecord = operationToRecord.get(operation);
+        if (errorRecord == null) {
+          // Operation of a batch that failed half way through, there is no record to send to error
+          throw new StageException(Errors.KUDU_03, error.toString());
+        } else if (error.getErrorStatus().isAlreadyPresent()) {
+          // Failed due to inserting duplicate row key
+          errorRecordHandler.onError(new OnRecordErrorException(errorRecord, Errors.KUDU_08, rowKey));
+        } else if (error.getErrorStatus().isNotFound()) {
+          // Row key not found error, mostly for update and delete operations.
+          errorRecordHandler.onError(new OnRecordErrorException(errorRecord, Errors.KUDU_15, rowKey));
+        } else {
+          // Failure is most likely caused by setting, network, or corrupted table.
+          // Worth throwing StageException.
+          throw new StageException(Errors.KUDU_03, error.toString());
         }
-      } catch (KuduException ex) {
-        LOG.error(Errors.KUDU_03.getMessage(), ex.toString(), ex);
-        throw new StageException(Errors.KUDU_03, ex.getMessage(), ex);
       }
+    } catch (KuduException ex) {
+      LOG.error(Errors.KUDU_03.getMessage(), ex.toString(), ex);
+      throw new StageException(Errors.KUDU_03, ex.getMessage(), ex);
     }
   }
 
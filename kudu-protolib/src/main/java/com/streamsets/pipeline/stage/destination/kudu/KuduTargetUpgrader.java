@@ -48,6 +48,12 @@ public class KuduTargetUpgrader implements StageUpgrader {
         // fall through
       case 4:
         upgradeV4ToV5(configs);
+        if (toVersion == 5) {
+          break;
+        }
+        // fall through
+      case 5:
+        upgradeV5ToV6(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -134,4 +140,9 @@ public class KuduTargetUpgrader implements StageUpgrader {
     configs.add(new Config(KuduConfigBean.CONF_PREFIX + "adminOperationTimeout", 30000));
     configs.add(new Config(KuduConfigBean.CONF_PREFIX + "numWorkers", 0)); // use default
   }
+
+  private void upgradeV5ToV6(List<Config> configs) {
+    configs.add(new Config(KuduConfigBean.CONF_PREFIX + "backgroundFlush", false));
+    configs.add(new Config(KuduConfigBean.CONF_PREFIX + "flushInterval", 1000));
+  }
 }
@@ -35,6 +35,7 @@ public enum Errors implements ErrorCode {
   KUDU_13("Operation not supported: {}"),
   KUDU_14("Unknown action for unsupported operation: {}"),
   KUDU_15("Row key '{}' not found"),
+  KUDU_16("Kudu client dropped row errors of the batch, failed records can't be identified"),
 
   KUDU_30("Column mappings must be specified for lookup processor"),
   KUDU_31("No rows found"),
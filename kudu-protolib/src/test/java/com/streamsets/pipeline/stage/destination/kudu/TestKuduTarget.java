@@ -429,6 +429,36 @@ public class TestKuduTarget {
     targetRunner.runDestroy();
   }
 
+  @Test
+  public void testBackgroundFlush() throws Exception {
+    KuduTarget target = new KuduTarget(new KuduConfigBeanBuilder()
+        .setMaster(KUDU_MASTER)
+        .setTableName(tableName)
+        .setDefaultOperation(KuduOperationType.INSERT)
+        .setUnsupportedAction(UnsupportedOperationAction.SEND_TO_ERROR)
+        .setBackgroundFlush(true)
+        .build());
+    TargetRunner targetRunner = getTargetRunner(target);
+    targetRunner.runInit();
+
+    List<Record> records = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Record record = RecordCreator.create();
+      LinkedHashMap<String, Field> field = new LinkedHashMap<>();
+      field.put("key", Field.create(i));
+      field.put("value", Field.create("value"));
+      field.put("name", Field.create("name"));
+      record.set(Field.createListMap(field));
+      records.add(record);
+    }
+
+    try {
+      targetRunner.runWrite(records);
+      Assert.assertEquals(0, targetRunner.getErrorRecords().size());
+    } finally {
+      targetRunner.runDestroy();
+    }
+  }
 
   private TargetRunner getTargetRunner(String tableName,
                                        KuduOperationType defaultOperation,
@@ -457,6 +487,7 @@ public class TestKuduTarget {
     KuduOperationType defaultOperation;
     List<KuduFieldMappingConfig> mapping;
     UnsupportedOperationAction unsupportedAction;
+    boolean backgroundFlush;
 
     public KuduConfigBeanBuilder setMaster(String master) {
       this.kuduMaster = master;
@@ -478,6 +509,11 @@ public class TestKuduTarget {
       return this;
     }
 
+    public KuduConfigBeanBuilder setBackgroundFlush(boolean backgroundFlush) {
+      this.backgroundFlush = backgroundFlush;
+      return this;
+    }
+
     public KuduConfigBean build() {
       KuduConfigBean conf = new KuduConfigBean();
       conf.kuduMaster = kuduMaster;
@@ -485,6 +521,7 @@ public class TestKuduTarget {
       conf.defaultOperation = KuduOperationType.INSERT;
       conf.fieldMappingConfigs = mapping;
       conf.unsupportedAction = unsupportedAction;
+      conf.backgroundFlush = backgroundFlush;
       return conf;
     }
   }
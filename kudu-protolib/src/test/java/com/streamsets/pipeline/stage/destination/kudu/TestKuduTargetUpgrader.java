@@ -51,4 +51,16 @@ public class TestKuduTargetUpgrader {
     Assert.assertEquals("kuduConfigBean.numWorkers", addedConf2.getName());
     Assert.assertEquals(0, addedConf2.getValue());
   }
+
+  @Test
+  public void testUpgradeV5toV6() throws StageException {
+    List<Config> configs = new ArrayList<>();
+    KuduTargetUpgrader upgrader = new KuduTargetUpgrader();
+    List<Config> upgradedConfigs = upgrader.upgrade("lib", "stage", "stageInst", 5, 6, configs);
+    Assert.assertEquals(2, upgradedConfigs.size());
+    Assert.assertEquals("kuduConfigBean.backgroundFlush", upgradedConfigs.get(0).getName());
+    Assert.assertEquals(false, upgradedConfigs.get(0).getValue());
+    Assert.assertEquals("kuduConfigBean.flushInterval", upgradedConfigs.get(1).getName());
+    Assert.assertEquals(1000, upgradedConfigs.get(1).getValue());
+  }
 }
@@ -31,6 +31,12 @@ public class MapRFSTargetUpgrader implements StageUpgrader {
     switch (fromVersion) {
       case 1:
         upgradeV1ToV2(configs);
+        if (toVersion == 2) {
+          break;
+        }
+        // fall through
+      case 2:
+        upgradeV2ToV3(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -41,4 +47,8 @@ public class MapRFSTargetUpgrader implements StageUpgrader {
   private static void upgradeV1ToV2(List<Config> configs) {
     DataFormatUpgradeHelper.upgradeAvroGeneratorWithSchemaRegistrySupport(configs);
   }
+
+  private static void upgradeV2ToV3(List<Config> configs) {
+    configs.add(new Config("hdfsTargetConfigBean.numberOfWriterThreads", 1));
+  }
 }
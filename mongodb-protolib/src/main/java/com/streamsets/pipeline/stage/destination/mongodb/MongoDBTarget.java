@@ -15,10 +15,13 @@
  */
 package com.streamsets.pipeline.stage.destination.mongodb;
 
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReplaceOneModel;
@@ -42,6 +45,8 @@ import com.streamsets.pipeline.stage.common.ErrorRecordHandler;
 import com.streamsets.pipeline.stage.common.mongodb.Errors;
 import org.apache.commons.io.IOUtils;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,8 +54,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
@@ -59,10 +66,17 @@ public class MongoDBTarget extends BaseTarget {
 
   public static final int DEFAULT_CAPACITY = 1024;
 
+  // Bulk writes are split into chunks, the driver splits bigger writes anyway and this keeps failures contained
+  static final int MAX_BULK_WRITE_DOCUMENTS = 1000;
+  static final int MAX_BULK_WRITE_BYTES = 16 * 1024 * 1024;
+
   private final MongoTargetConfigBean mongoTargetConfigBean;
   private MongoClient mongoClient;
   private MongoCollection<Document> mongoCollection;
+  // used instead of mongoCollection when field types are preserved, the encoded documents are sent as they are
+  private MongoCollection<RawBsonDocument> rawCollection;
   private ErrorRecordHandler errorRecordHandler;
+  private RecordBsonEncoder encoder;
   private DataGeneratorFactory generatorFactory;
 
   public MongoDBTarget(MongoTargetConfigBean mongoTargetConfigBean) {
@@ -90,13 +104,18 @@ public class MongoDBTarget extends BaseTarget {
     mongoClient = Utils.checkNotNull(mongoTargetConfigBean.mongoConfig.getMongoClient(), "MongoClient");
     mongoCollection = Utils.checkNotNull(mongoTargetConfigBean.mongoConfig.getMongoCollection(), "MongoCollection");
 
-    DataGeneratorFactoryBuilder builder = new DataGeneratorFactoryBuilder(
-        getContext(),
-        DataFormat.JSON.getGeneratorFormat()
-    );
-    builder.setCharset(StandardCharsets.UTF_8);
-    builder.setMode(Mode.MULTIPLE_OBJECTS);
-    generatorFactory = builder.build();
+    if (mongoTargetConfigBean.preserveFieldTypes) {
+      encoder = new RecordBsonEncoder(DEFAULT_CAPACITY);
+      rawCollection = mongoCollection.withDocumentClass(RawBsonDocument.class);
+    } else {
+      DataGeneratorFactoryBuilder builder = new DataGeneratorFactoryBuilder(
+          getContext(),
+          DataFormat.JSON.getGeneratorFormat()
+      );
+      builder.setCharset(StandardCharsets.UTF_8);
+      builder.setMode(Mode.MULTIPLE_OBJECTS);
+      generatorFactory = builder.build();
+    }
 
     return issues;
   }
@@ -107,19 +126,36 @@ public class MongoDBTarget extends BaseTarget {
     super.destroy();
   }
 
+  /**
+   * Converts a record to the document written to MongoDB.
+   */
+  private interface DocumentConverter<T> {
+    T toDocument(Record record) throws IOException, StageException;
+  }
+
   @Override
   public void write(Batch batch) throws StageException {
+    if (encoder != null) {
+      write(batch, rawCollection, encoder::encode);
+    } else {
+      write(batch, mongoCollection, this::toJsonDocument);
+    }
+  }
+
+  private <T extends Bson> void write(
+      Batch batch,
+      MongoCollection<T> collection,
+      DocumentConverter<T> converter
+  ) throws StageException {
     Iterator<Record> records = batch.getRecords();
-    List<WriteModel<Document>> documentList = new ArrayList<>();
+    List<WriteModel<T>> documentList = new ArrayList<>();
     List<Record> recordList = new ArrayList<>();
+    boolean insertsOnly = true;
+    long documentBytes = 0;
     while (records.hasNext()) {
       Record record = records.next();
       try {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(DEFAULT_CAPACITY);
-        DataGenerator generator = generatorFactory.getGenerator(baos);
-        generator.write(record);
-        generator.close();
-        Document document = Document.parse(new String(baos.toByteArray()));
+        T document = converter.toDocument(record);
 
         // create a write model based on record header
         if (isNullOrEmpty(record.getHeader().getAttribute(OperationType.SDC_OPERATION_TYPE))) {
@@ -144,6 +180,7 @@ public class MongoDBTarget extends BaseTarget {
             break;
           case "REPLACE":
             validateUniqueKey(operation, record);
+            insertsOnly = false;
             recordList.add(record);
             documentList.add(
                 new ReplaceOneModel<>(
@@ -158,6 +195,7 @@ public class MongoDBTarget extends BaseTarget {
             break;
           case "UPDATE":
             validateUniqueKey(operation, record);
+            insertsOnly = false;
             recordList.add(record);
             documentList.add(
                 new UpdateOneModel<>(
@@ -171,6 +209,7 @@ public class MongoDBTarget extends BaseTarget {
             );
             break;
           case "DELETE":
+            insertsOnly = false;
             recordList.add(record);
             documentList.add(new DeleteOneModel<>(document));
             break;
@@ -178,6 +217,10 @@ public class MongoDBTarget extends BaseTarget {
             LOG.error(Errors.MONGODB_14.getMessage(), operation, record.getHeader().getSourceId());
             throw new StageException(Errors.MONGODB_14, operation, record.getHeader().getSourceId());
         }
+        if (document instanceof RawBsonDocument) {
+          // the size of a parsed document isn't known without encoding it, those chunks are limited by count only
+          documentBytes += ((RawBsonDocument) document).getByteBuffer().remaining();
+        }
       } catch (IOException | StageException | NumberFormatException e) {
         errorRecordHandler.onError(
             new OnRecordErrorException(
@@ -188,31 +231,95 @@ public class MongoDBTarget extends BaseTarget {
             )
         );
       }
+      // Outside of the record's try, failures of the chunk are not about this record
+      if (documentList.size() >= MAX_BULK_WRITE_DOCUMENTS || documentBytes >= MAX_BULK_WRITE_BYTES) {
+        bulkWrite(collection, documentList, recordList, insertsOnly);
+        documentList.clear();
+        recordList.clear();
+        insertsOnly = true;
+        documentBytes = 0;
+      }
     }
 
     if (!documentList.isEmpty()) {
-      try {
-        BulkWriteResult bulkWriteResult = mongoCollection.bulkWrite(documentList);
-        if (bulkWriteResult.wasAcknowledged()) {
-          LOG.trace(
-              "Wrote batch with {} inserts, {} updates and {} deletes",
-              bulkWriteResult.getInsertedCount(),
-              bulkWriteResult.getModifiedCount(),
-              bulkWriteResult.getDeletedCount()
-          );
-        }
-      } catch (MongoException e) {
-        for (Record record : recordList) {
+      bulkWrite(collection, documentList, recordList, insertsOnly);
+    }
+  }
+
+  private Document toJsonDocument(Record record) throws IOException, StageException {
+    RecordBsonEncoder.checkRoot(record);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(DEFAULT_CAPACITY);
+    DataGenerator generator = generatorFactory.getGenerator(baos);
+    generator.write(record);
+    generator.close();
+    return Document.parse(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Writes given operations in one bulk write. Inserts can't depend on each other, so a bulk write of only inserts
+   * is unordered (the server applies them in parallel and doesn't stop at the first failure); any other bulk write
+   * stays ordered so that operations on the same document are applied in the order of the records.
+   */
+  private <T> void bulkWrite(
+      MongoCollection<T> collection,
+      List<WriteModel<T>> documentList,
+      List<Record> recordList,
+      boolean insertsOnly
+  ) throws StageException {
+    try {
+      BulkWriteResult bulkWriteResult = collection.bulkWrite(
+          documentList,
+          new BulkWriteOptions().ordered(!insertsOnly)
+      );
+      if (bulkWriteResult.wasAcknowledged()) {
+        LOG.trace(
+            "Wrote batch with {} inserts, {} updates and {} deletes",
+            bulkWriteResult.getInsertedCount(),
+            bulkWriteResult.getModifiedCount(),
+            bulkWriteResult.getDeletedCount()
+        );
+      }
+    } catch (MongoBulkWriteException e) {
+      if (e.getWriteConcernError() != null) {
+        // We don't know which of the writes are durable
+        sendToError(recordList, e);
+        return;
+      }
+      // Only the failed operations and, if the write was ordered, the operations after the first failure weren't done
+      Map<Integer, BulkWriteError> errors = new HashMap<>();
+      int firstError = recordList.size();
+      for (BulkWriteError error : e.getWriteErrors()) {
+        errors.put(error.getIndex(), error);
+        firstError = Math.min(firstError, error.getIndex());
+      }
+      for (int i = 0; i < recordList.size(); i++) {
+        BulkWriteError error = errors.get(i);
+        if (error != null || (!insertsOnly && i > firstError)) {
           errorRecordHandler.onError(
               new OnRecordErrorException(
-                  record,
+                  recordList.get(i),
                   Errors.MONGODB_17,
-                  e.toString(),
+                  error != null ? error.getMessage() : e.toString(),
                   e
               )
           );
         }
       }
+    } catch (MongoException e) {
+      sendToError(recordList, e);
+    }
+  }
+
+  private void sendToError(List<Record> recordList, MongoException e) throws StageException {
+    for (Record record : recordList) {
+      errorRecordHandler.onError(
+          new OnRecordErrorException(
+              record,
+              Errors.MONGODB_17,
+              e.toString(),
+              e
+          )
+      );
     }
   }
 
@@ -47,6 +47,12 @@ public class MongoDBTargetUpgrader implements StageUpgrader {
         // fall through
       case 3:
         upgradeV3toV4(configs);
+        if (toVersion == 4) {
+          break;
+        }
+        // fall through
+      case 4:
+        upgradeV4toV5(configs);
         break;
       default:
         throw new IllegalStateException(Utils.format("Unexpected fromVersion {}", fromVersion));
@@ -121,4 +127,9 @@ public class MongoDBTargetUpgrader implements StageUpgrader {
   private void upgradeV3toV4(List<Config> configs) {
     configs.add(new Config(MongoDBConfig.MONGO_CONFIG_PREFIX + "authSource", ""));
   }
+
+  private void upgradeV4toV5(List<Config> configs) {
+    // Existing pipelines keep writing the documents they always did
+    configs.add(new Config(MongoDBConfig.CONFIG_PREFIX + "preserveFieldTypes", false));
+  }
 }
@@ -60,4 +60,16 @@ public class MongoTargetConfigBean {
   @ValueChooserModel(WriteConcernChooserValues.class)
   public WriteConcernLabel writeConcern = WriteConcernLabel.JOURNALED;
 
+  @ConfigDef(
+      type = ConfigDef.Type.BOOLEAN,
+      label = "Preserve Field Types",
+      defaultValue = "false",
+      description = "Writes dates, decimals, longs and byte arrays as the matching BSON types. Otherwise records are " +
+          "converted through JSON, which stores dates as numbers and byte arrays as strings.",
+      required = true,
+      displayPosition = 1030,
+      group = "MONGODB"
+  )
+  public boolean preserveFieldTypes;
+
 }
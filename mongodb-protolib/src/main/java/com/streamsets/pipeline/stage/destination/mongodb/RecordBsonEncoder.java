@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.mongodb;
+
+import com.streamsets.datacollector.record.FieldTreeReader;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.stage.common.mongodb.Errors;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.math.MathContext;
+import java.util.Map;
+
+/**
+ * Encodes records directly into BSON documents, without going through JSON text.
+ *
+ * Field types are preserved as far as BSON allows: dates and times become BSON dates, decimals Decimal128 (rounded to
+ * 34 significant digits), byte arrays binary data, while BYTE and SHORT are stored as 32 bit integers. The output
+ * buffer is reused between records, so an encoder must be used by one thread only.
+ */
+final class RecordBsonEncoder {
+  private final BasicOutputBuffer buffer;
+
+  RecordBsonEncoder(int initialCapacity) {
+    buffer = new BasicOutputBuffer(initialCapacity);
+  }
+
+  RawBsonDocument encode(Record record) throws IOException, StageException {
+    Field root = checkRoot(record);
+    buffer.truncateToPosition(0);
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      writeDocument(writer, root.getValueAsMap());
+    }
+    return new RawBsonDocument(buffer.toByteArray());
+  }
+
+  /**
+   * Returns the root field of the record, making sure that it can become a document.
+   */
+  static Field checkRoot(Record record) throws StageException {
+    Field root = FieldTreeReader.peek(record);
+    if (root == null || root.getValue() == null || !root.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+      throw new StageException(Errors.MONGODB_22, root == null ? null : root.getType());
+    }
+    return root;
+  }
+
+  private static void writeDocument(BsonWriter writer, Map<String, Field> map) throws IOException {
+    writer.writeStartDocument();
+    for (Map.Entry<String, Field> entry : map.entrySet()) {
+      writer.writeName(entry.getKey());
+      writeValue(writer, entry.getValue());
+    }
+    writer.writeEndDocument();
+  }
+
+  private static void writeValue(BsonWriter writer, Field field) throws IOException {
+    if (field == null || field.getValue() == null) {
+      writer.writeNull();
+      return;
+    }
+    switch (field.getType()) {
+      case MAP:
+      case LIST_MAP:
+        writeDocument(writer, field.getValueAsMap());
+        break;
+      case LIST:
+        writer.writeStartArray();
+        for (Field element : field.getValueAsList()) {
+          writeValue(writer, element);
+        }
+        writer.writeEndArray();
+        break;
+      case BOOLEAN:
+        writer.writeBoolean(field.getValueAsBoolean());
+        break;
+      case CHAR:
+        writer.writeString(String.valueOf(field.getValueAsChar()));
+        break;
+      case BYTE:
+        writer.writeInt32(field.getValueAsByte());
+        break;
+      case SHORT:
+        writer.writeInt32(field.getValueAsShort());
+        break;
+      case INTEGER:
+        writer.writeInt32(field.getValueAsInteger());
+        break;
+      case LONG:
+        writer.writeInt64(field.getValueAsLong());
+        break;
+      case FLOAT:
+        // Same double as the decimal representation of the float, e.g. 0.1 and not 0.10000000149011612
+        writer.writeDouble(Double.parseDouble(Float.toString(field.getValueAsFloat())));
+        break;
+      case DOUBLE:
+        writer.writeDouble(field.getValueAsDouble());
+        break;
+      case DECIMAL:
+        writer.writeDecimal128(new Decimal128(field.getValueAsDecimal().round(MathContext.DECIMAL128)));
+        break;
+      case DATE:
+        writer.writeDateTime(field.getValueAsDate().getTime());
+        break;
+      case DATETIME:
+        writer.writeDateTime(field.getValueAsDatetime().getTime());
+        break;
+      case TIME:
+        writer.writeDateTime(field.getValueAsTime().getTime());
+        break;
+      case STRING:
+      case ZONED_DATETIME:
+        writer.writeString(field.getValueAsString());
+        break;
+      case BYTE_ARRAY:
+        writer.writeBinaryData(new BsonBinary(field.getValueAsByteArray()));
+        break;
+      case FILE_REF:
+        throw new IOException("Cannot serialize FileRef fields.");
+      default:
+        throw new IllegalStateException(String.format(
+            "Unrecognized field type (%s) in field: %s",
+            field.getType().name(),
+            field.toString())
+        );
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.mongodb;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.OnRecordError;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.ext.json.Mode;
+import com.streamsets.pipeline.config.DataFormat;
+import com.streamsets.pipeline.lib.generator.DataGenerator;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactory;
+import com.streamsets.pipeline.lib.generator.DataGeneratorFactoryBuilder;
+import com.streamsets.pipeline.sdk.ContextInfoCreator;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former JSON round trip of the MongoDB destination (JSON generator followed by {@link Document#parse})
+ * with {@link RecordBsonEncoder}. Results are in records per second, allocated bytes per record are reported by the
+ * GC profiler as <code>gc.alloc.rate.norm</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoDBTargetEncodingBenchmark {
+
+  @Param({"5", "50"})
+  public int fields;
+
+  private DataGeneratorFactory generatorFactory;
+  private RecordBsonEncoder encoder;
+  private Record record;
+
+  @Setup
+  public void setUp() {
+    DataGeneratorFactoryBuilder builder = new DataGeneratorFactoryBuilder(
+        ContextInfoCreator.createTargetContext("i", false, OnRecordError.TO_ERROR),
+        DataFormat.JSON.getGeneratorFormat()
+    );
+    builder.setCharset(StandardCharsets.UTF_8);
+    builder.setMode(Mode.MULTIPLE_OBJECTS);
+    generatorFactory = builder.build();
+    encoder = new RecordBsonEncoder(MongoDBTarget.DEFAULT_CAPACITY);
+
+    LinkedHashMap<String, Field> map = new LinkedHashMap<>();
+    for (int i = 0; i < fields; i += 5) {
+      map.put("string" + i, Field.create("value of field " + i));
+      map.put("long" + i, Field.create(1530000000000L + i));
+      map.put("double" + i, Field.create(i / 3d));
+      map.put("decimal" + i, Field.create(new BigDecimal("1234.5678")));
+      map.put("datetime" + i, Field.createDatetime(new Date(1530000000000L + i)));
+    }
+    List<Field> list = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      list.add(Field.create(i));
+    }
+    map.put("list", Field.create(list));
+    record = RecordCreator.create();
+    record.set(Field.createListMap(map));
+  }
+
+  @Benchmark
+  public Object json() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(MongoDBTarget.DEFAULT_CAPACITY);
+    DataGenerator generator = generatorFactory.getGenerator(baos);
+    generator.write(record);
+    generator.close();
+    return Document.parse(new String(baos.toByteArray()));
+  }
+
+  @Benchmark
+  public Object bson() throws Exception {
+    return encoder.encode(record);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+        .include(MongoDBTargetEncodingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build()
+    ).run();
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.mongodb;
+
+import com.streamsets.pipeline.api.Config;
+import com.streamsets.pipeline.api.StageException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestMongoDBTargetUpgrader {
+
+  @Test
+  public void testUpgradeV3toV5() throws StageException {
+    List<Config> configs = new ArrayList<>();
+    configs.add(new Config("configBean.isUpsert", false));
+
+    new MongoDBTargetUpgrader().upgrade("a", "b", "c", 3, 5, configs);
+
+    Map<String, Object> configValues = new HashMap<>();
+    for (Config config : configs) {
+      configValues.put(config.getName(), config.getValue());
+    }
+    Assert.assertEquals(3, configs.size());
+    Assert.assertEquals("", configValues.get("configBean.mongoConfig.authSource"));
+    Assert.assertEquals(false, configValues.get("configBean.preserveFieldTypes"));
+  }
+
+  @Test
+  public void testUpgradeV3toV4() throws StageException {
+    List<Config> configs = new ArrayList<>();
+
+    new MongoDBTargetUpgrader().upgrade("a", "b", "c", 3, 4, configs);
+
+    Assert.assertEquals(1, configs.size());
+    Assert.assertEquals("configBean.mongoConfig.authSource", configs.get(0).getName());
+  }
+
+}
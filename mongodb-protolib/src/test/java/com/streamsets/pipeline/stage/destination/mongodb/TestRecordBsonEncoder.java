@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.destination.mongodb;
+
+import com.google.common.collect.ImmutableList;
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.StageException;
+import com.streamsets.pipeline.sdk.RecordCreator;
+import com.streamsets.pipeline.stage.common.mongodb.Errors;
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.types.Decimal128;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TestRecordBsonEncoder {
+
+  private static Record createRecord(Map<String, Field> map) {
+    Record record = RecordCreator.create();
+    record.set(Field.createListMap(new LinkedHashMap<>(map)));
+    return record;
+  }
+
+  @Test
+  public void testTypes() throws Exception {
+    Map<String, Field> nested = new LinkedHashMap<>();
+    nested.put("inner", Field.create("value"));
+
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("boolean", Field.create(true));
+    map.put("char", Field.create('c'));
+    map.put("byte", Field.create((byte) 1));
+    map.put("short", Field.create((short) 2));
+    map.put("integer", Field.create(3));
+    map.put("long", Field.create(4L));
+    map.put("float", Field.create(0.1f));
+    map.put("double", Field.create(5.5d));
+    map.put("decimal", Field.create(new BigDecimal("12345678901234567890.123456789")));
+    map.put("date", Field.create(Field.Type.DATE, new Date(1000)));
+    map.put("datetime", Field.createDatetime(new Date(2000)));
+    map.put("time", Field.createTime(new Date(3000)));
+    map.put("string", Field.create("text"));
+    map.put("bytes", Field.create(new byte[] {1, 2, 3}));
+    map.put("null", Field.create(Field.Type.STRING, null));
+    map.put("list", Field.create(ImmutableList.of(Field.create(1), Field.create("two"))));
+    map.put("map", Field.create(nested));
+
+    BsonDocument document = new RecordBsonEncoder(16).encode(createRecord(map));
+
+    Assert.assertTrue(document.getBoolean("boolean").getValue());
+    Assert.assertEquals("c", document.getString("char").getValue());
+    Assert.assertEquals(1, document.getInt32("byte").getValue());
+    Assert.assertEquals(2, document.getInt32("short").getValue());
+    Assert.assertEquals(3, document.getInt32("integer").getValue());
+    Assert.assertEquals(4L, document.getInt64("long").getValue());
+    Assert.assertEquals(0.1d, document.getDouble("float").getValue(), 0);
+    Assert.assertEquals(5.5d, document.getDouble("double").getValue(), 0);
+    Assert.assertEquals(
+        new Decimal128(new BigDecimal("12345678901234567890.123456789")),
+        document.getDecimal128("decimal").getValue()
+    );
+    Assert.assertEquals(1000, document.getDateTime("date").getValue());
+    Assert.assertEquals(2000, document.getDateTime("datetime").getValue());
+    Assert.assertEquals(3000, document.getDateTime("time").getValue());
+    Assert.assertEquals("text", document.getString("string").getValue());
+    Assert.assertArrayEquals(new byte[] {1, 2, 3}, document.getBinary("bytes").getData());
+    Assert.assertEquals(BsonType.NULL, document.get("null").getBsonType());
+    Assert.assertEquals(1, document.getArray("list").get(0).asInt32().getValue());
+    Assert.assertEquals("two", document.getArray("list").get(1).asString().getValue());
+    Assert.assertEquals("value", document.getDocument("map").getString("inner").getValue());
+
+    // Field order is kept
+    Assert.assertEquals(ImmutableList.copyOf(map.keySet()), ImmutableList.copyOf(document.keySet()));
+  }
+
+  @Test
+  public void testBufferIsReused() throws Exception {
+    RecordBsonEncoder encoder = new RecordBsonEncoder(16);
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create("a much longer value than the initial capacity of the buffer"));
+    RawBsonDocument first = encoder.encode(createRecord(map));
+
+    map.put("a", Field.create("b"));
+    RawBsonDocument second = encoder.encode(createRecord(map));
+
+    // Documents don't share the reused buffer
+    Assert.assertEquals("a much longer value than the initial capacity of the buffer", first.getString("a").getValue());
+    Assert.assertEquals("b", second.getString("a").getValue());
+  }
+
+  @Test
+  public void testRootMustBeMap() throws Exception {
+    Record record = RecordCreator.create();
+    record.set(Field.create(ImmutableList.of(Field.create(1))));
+    try {
+      new RecordBsonEncoder(16).encode(record);
+      Assert.fail();
+    } catch (StageException e) {
+      Assert.assertEquals(Errors.MONGODB_22, e.getErrorCode());
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.streamsets.pipeline.stage.processor.scripting;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.streamsets.pipeline.api.Batch;
 import com.streamsets.pipeline.api.EventRecord;
 import com.streamsets.pipeline.api.Record;
@@ -37,7 +38,24 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for the scripting processors.
+ * <p/>
+ * By default the whole batch runs through a single script engine on the pipeline thread. When configured with more
+ * than one engine, every engine is initialized independently (each one runs the init script), the batch is split in
+ * contiguous sub-batches that are processed concurrently, and the output, error and event records are merged back in
+ * record order once all sub-batches are done.
+ * <p/>
+ * The <code>state</code> object is not shared between engines: each engine gets its own, seeded by its own run of the
+ * init script and handed to its own run of the destroy script. Scripts that keep counters or caches in
+ * <code>state</code> will see only the records of their sub-batches. Records sent to error or to the event stream
+ * while running with several engines are delivered after the script returns rather than immediately.
+ */
 public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
   private static final String STATE_BINDING_NAME = "state";
   private static final String LOG_BINDING_NAME = "log";
@@ -49,15 +67,12 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
   private final String script;
   private final String initScript;
   private final String destroyScript;
-  // State obj for use by end-user scripts.
-  private Object state;
+  private final int numEngines;
 
-  private CompiledScript compiledScript;
   private ScriptObjectFactory scriptObjectFactory;
   private ErrorRecordHandler errorRecordHandler;
-  private Err err;
-  private SdcFunctions sdcFunc;
-  private List<ScriptRecord> records;
+  private List<EngineInstance> engines;
+  private ExecutorService executor;
 
   protected ScriptEngine engine;
 
@@ -66,15 +81,33 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
     void write(ScriptRecord record);
   }
 
+  // Receives whatever a script emits, either straight into the pipeline or into a buffer while running concurrently
+  private interface Sink {
+    void output(Record record);
+    void error(OnRecordErrorException ex) throws StageException;
+    void event(EventRecord event);
+  }
+
   // to hide all other methods of Stage.Context
   public class Err {
+    private final EngineInstance instance;
+
+    Err(EngineInstance instance) {
+      this.instance = instance;
+    }
+
     public void write(ScriptRecord scriptRecord, String errMsg) throws StageException {
-      errorRecordHandler.onError(new OnRecordErrorException(getScriptObjectFactory().getRecord(scriptRecord), Errors.SCRIPTING_04, errMsg));
+      instance.sink.error(new OnRecordErrorException(getScriptObjectFactory().getRecord(scriptRecord), Errors.SCRIPTING_04, errMsg));
     }
   }
 
   // This class will contain functions to expose to scripting processors
   public class SdcFunctions {
+    private final EngineInstance instance;
+
+    SdcFunctions(EngineInstance instance) {
+      this.instance = instance;
+    }
 
     // To access getFieldNull function through SimpleBindings
     public Object getFieldNull(ScriptRecord scriptRecord, String fieldPath) {
@@ -102,7 +135,7 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
         throw new StageException(Errors.SCRIPTING_07, event.record.getHeader().getSourceId());
       }
 
-      getContext().toEvent((EventRecord)getScriptObjectFactory().getRecord(event));
+      instance.sink.event((EventRecord)getScriptObjectFactory().getRecord(event));
     }
 
     public boolean isPreview() { return getContext().isPreview(); }
@@ -124,6 +157,19 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
       String script,
       String initScript,
       String destroyScript
+  ) {
+    this(log, scriptingEngineName, scriptConfigGroup, processingMode, script, initScript, destroyScript, 1);
+  }
+
+  public AbstractScriptingProcessor(
+      Logger log,
+      String scriptingEngineName,
+      String scriptConfigGroup,
+      ProcessingMode processingMode,
+      String script,
+      String initScript,
+      String destroyScript,
+      int numEngines
   ) {
     this.log = log;
     this.scriptingEngineName = scriptingEngineName;
@@ -132,7 +178,8 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
     this.script = script;
     this.initScript = initScript;
     this.destroyScript = destroyScript;
-    this.records = new ArrayList<>();
+    this.numEngines = numEngines;
+    this.engines = new ArrayList<>();
   }
 
   private ScriptObjectFactory getScriptObjectFactory() {
@@ -149,25 +196,60 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
     List<ConfigIssue> issues = super.init();
     errorRecordHandler = new DefaultErrorRecordHandler(getContext());
 
-    //We need Stage.Context for createScriptObjectFactory()
-    state = getScriptObjectFactory().createMap(false);
+    if (numEngines < 1) {
+      issues.add(getContext().createConfigIssue(scriptConfigGroup, "numEngines", Errors.SCRIPTING_10, numEngines));
+      return issues;
+    }
+
+    if (script.trim().isEmpty()) {
+      issues.add(getContext().createConfigIssue(scriptConfigGroup, "script", Errors.SCRIPTING_02));
+    }
 
+    EngineInstance instance = createEngine(issues);
+    if (instance != null) {
+      engines.add(instance);
+      engine = instance.engine;
+    }
+    // Only bring up the remaining engines once the first one is known to be good
+    for (int i = 1; i < numEngines && issues.isEmpty(); i++) {
+      instance = createEngine(issues);
+      if (instance != null) {
+        engines.add(instance);
+      }
+    }
+
+    if (issues.isEmpty() && numEngines > 1) {
+      executor = Executors.newFixedThreadPool(
+          numEngines,
+          new ThreadFactoryBuilder().setNameFormat("Script Engine-%d").setDaemon(true).build()
+      );
+    }
+
+    return issues;
+  }
+
+  // Creates an engine with its own state and compiled script, and runs the init script on it
+  private EngineInstance createEngine(List<ConfigIssue> issues) {
+    ScriptEngine scriptEngine;
     try {
-      engine = new ScriptEngineManager(getClass().getClassLoader()).getEngineByName(scriptingEngineName);
-      if (engine == null) {
+      scriptEngine = new ScriptEngineManager(getClass().getClassLoader()).getEngineByName(scriptingEngineName);
+      if (scriptEngine == null) {
         issues.add(getContext().createConfigIssue(null, null, Errors.SCRIPTING_00, scriptingEngineName));
+        return null;
       }
     } catch (Exception ex) {
       issues.add(
           getContext().createConfigIssue(null, null, Errors.SCRIPTING_01, scriptingEngineName, ex.toString(), ex)
       );
+      return null;
     }
 
-    if (script.trim().isEmpty()) {
-      issues.add(getContext().createConfigIssue(scriptConfigGroup, "script", Errors.SCRIPTING_02));
-    } else {
+    //We need Stage.Context for createScriptObjectFactory()
+    EngineInstance instance = new EngineInstance(scriptEngine, getScriptObjectFactory().createMap(false));
+
+    if (!script.trim().isEmpty()) {
       try {
-        compiledScript = ((Compilable) engine).compile(script);
+        instance.compiledScript = ((Compilable) scriptEngine).compile(script);
       } catch (ScriptException e) {
         // This likely means that there is a syntactic error in the script.
         issues.add(
@@ -177,115 +259,243 @@ public abstract class AbstractScriptingProcessor extends SingleLaneProcessor {
       }
     }
 
-    err = new Err();
-    sdcFunc = new SdcFunctions();
-
     try {
-      engine.eval(initScript, createBindings());
+      scriptEngine.eval(initScript, instance.createBindings());
     } catch (ScriptException e) {
       issues.add(getContext().createConfigIssue(scriptConfigGroup, "initScript", Errors.SCRIPTING_08, e.toString(), e));
     }
 
-    return issues;
+    return instance;
   }
 
   @Override
   public void destroy() {
-    try {
-      if(engine != null) {
-        engine.eval(destroyScript, createBindings());
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    for (EngineInstance instance : engines) {
+      try {
+        instance.engine.eval(destroyScript, instance.createBindings());
+      } catch (ScriptException e) {
+        log.error(Errors.SCRIPTING_09.getMessage(), e.toString(), e);
       }
-    } catch (ScriptException e) {
-      log.error(Errors.SCRIPTING_09.getMessage(), e.toString(), e);
     }
+    engines.clear();
     super.destroy();
   }
 
   @Override
   public void process(Batch batch, final SingleLaneBatchMaker singleLaneBatchMaker) throws StageException {
-    Out out = scriptRecord -> singleLaneBatchMaker.addRecord(getScriptObjectFactory().getRecord(scriptRecord));
-    records.clear();
-
-    switch (processingMode) {
-      case RECORD:
-        runRecord(batch, out);
-        break;
-      case BATCH:
-        runBatch(batch, out);
-        break;
-      default:
-        throw new IllegalStateException(Utils.format("Unknown Processing Mode: '{}'", processingMode));
+    Sink sink = new Sink() {
+      @Override
+      public void output(Record record) {
+        singleLaneBatchMaker.addRecord(record);
+      }
+
+      @Override
+      public void error(OnRecordErrorException ex) throws StageException {
+        errorRecordHandler.onError(ex);
+      }
+
+      @Override
+      public void event(EventRecord event) {
+        getContext().toEvent(event);
+      }
+    };
+
+    if (executor == null) {
+      engines.get(0).process(batch.getRecords(), sink);
+    } else {
+      processConcurrently(batch, sink);
     }
   }
 
-  private void runRecord(Batch batch, Out out) throws StageException {
-    records.add(null);
+  private void processConcurrently(Batch batch, Sink sink) throws StageException {
+    List<Record> batchRecords = new ArrayList<>();
     Iterator<Record> it = batch.getRecords();
     while (it.hasNext()) {
-      Record record = it.next();
-      records.set(0, getScriptObjectFactory().createScriptRecord(record));
-      runScript(records, out);
+      batchRecords.add(it.next());
+    }
+
+    int parts = Math.max(1, Math.min(engines.size(), batchRecords.size()));
+    int partSize = (batchRecords.size() + parts - 1) / parts;
+    List<Future<BufferedSink>> futures = new ArrayList<>(parts);
+    for (int i = 0; i < parts; i++) {
+      final EngineInstance instance = engines.get(i);
+      final List<Record> part = batchRecords.subList(
+          Math.min(i * partSize, batchRecords.size()),
+          Math.min((i + 1) * partSize, batchRecords.size())
+      );
+      futures.add(executor.submit(() -> {
+        BufferedSink buffer = new BufferedSink();
+        instance.process(part.iterator(), buffer);
+        return buffer;
+      }));
+    }
+
+    // Wait for every sub-batch before delivering anything, so that no engine is still running if one of them failed
+    List<BufferedSink> buffers = new ArrayList<>(parts);
+    StageException failure = null;
+    for (Future<BufferedSink> future : futures) {
+      try {
+        buffers.add(future.get());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        if (failure == null) {
+          failure = new StageException(Errors.SCRIPTING_06, ex.toString(), ex);
+        }
+      } catch (ExecutionException ex) {
+        if (failure == null) {
+          Throwable cause = ex.getCause();
+          failure = (cause instanceof StageException)
+              ? (StageException) cause
+              : new StageException(Errors.SCRIPTING_06, cause.toString(), cause);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+
+    for (BufferedSink buffer : buffers) {
+      buffer.drainTo(sink);
     }
   }
 
-  private void runBatch(Batch batch, Out out) throws StageException {
-    Iterator<Record> it = batch.getRecords();
-    while (it.hasNext()) {
-      Record record = it.next();
-      records.add(getScriptObjectFactory().createScriptRecord(record));
+  public List<ScriptRecord> getScriptRecords() {
+    return engines.get(0).records;
+  }
+
+  // Keeps what a script emits for a sub-batch until all sub-batches are done
+  private static class BufferedSink implements Sink {
+    private final List<Record> output = new ArrayList<>();
+    private final List<OnRecordErrorException> errors = new ArrayList<>();
+    private final List<EventRecord> events = new ArrayList<>();
+
+    @Override
+    public void output(Record record) {
+      output.add(record);
+    }
+
+    @Override
+    public void error(OnRecordErrorException ex) {
+      errors.add(ex);
+    }
+
+    @Override
+    public void event(EventRecord event) {
+      events.add(event);
+    }
+
+    void drainTo(Sink sink) throws StageException {
+      for (Record record : output) {
+        sink.output(record);
+      }
+      for (OnRecordErrorException ex : errors) {
+        sink.error(ex);
+      }
+      for (EventRecord event : events) {
+        sink.event(event);
+      }
     }
-    runScript(records, out);
   }
 
-  private void runScript(List<ScriptRecord> records, Out out) throws StageException {
-    try {
-      runScript(createBindings(records, out));
-    } catch (ScriptException ex) {
+  // A script engine with its own compiled script, state and script facing objects
+  private class EngineInstance {
+    private final ScriptEngine engine;
+    // State obj for use by end-user scripts.
+    private final Object state;
+    private final Err err;
+    private final SdcFunctions sdcFunc;
+    private final List<ScriptRecord> records;
+    private CompiledScript compiledScript;
+    private Sink sink;
+
+    EngineInstance(ScriptEngine engine, Object state) {
+      this.engine = engine;
+      this.state = state;
+      this.err = new Err(this);
+      this.sdcFunc = new SdcFunctions(this);
+      this.records = new ArrayList<>();
+    }
+
+    void process(Iterator<Record> it, Sink sink) throws StageException {
+      this.sink = sink;
+      Out out = scriptRecord -> sink.output(getScriptObjectFactory().getRecord(scriptRecord));
+      records.clear();
+
       switch (processingMode) {
         case RECORD:
-          errorRecordHandler.onError(
-              new OnRecordErrorException(
-                  getScriptObjectFactory().getRecord(records.get(0)),
-                  Errors.SCRIPTING_05,
-                  ex.toString(),
-                  ex
-              )
-          );
+          runRecord(it, out);
           break;
         case BATCH:
-          throw new StageException(Errors.SCRIPTING_06, ex.toString(), ex);
+          runBatch(it, out);
+          break;
         default:
-          throw new IllegalStateException(
-              Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord(), ex)
-          );
+          throw new IllegalStateException(Utils.format("Unknown Processing Mode: '{}'", processingMode));
       }
     }
-  }
 
-  private SimpleBindings createBindings(List<ScriptRecord> records, Out out) {
-    SimpleBindings bindings = createBindings();
-    bindings.put("records", records.toArray(new Object[records.size()]));
-    bindings.put("output", out);
-    return bindings;
-  }
+    private void runRecord(Iterator<Record> it, Out out) throws StageException {
+      records.add(null);
+      while (it.hasNext()) {
+        Record record = it.next();
+        records.set(0, getScriptObjectFactory().createScriptRecord(record));
+        runScript(records, out);
+      }
+    }
 
-  private SimpleBindings createBindings() {
-    SimpleBindings bindings = new SimpleBindings();
+    private void runBatch(Iterator<Record> it, Out out) throws StageException {
+      while (it.hasNext()) {
+        Record record = it.next();
+        records.add(getScriptObjectFactory().createScriptRecord(record));
+      }
+      runScript(records, out);
+    }
+
+    private void runScript(List<ScriptRecord> records, Out out) throws StageException {
+      try {
+        compiledScript.eval(createBindings(records, out));
+      } catch (ScriptException ex) {
+        switch (processingMode) {
+          case RECORD:
+            sink.error(
+                new OnRecordErrorException(
+                    getScriptObjectFactory().getRecord(records.get(0)),
+                    Errors.SCRIPTING_05,
+                    ex.toString(),
+                    ex
+                )
+            );
+            break;
+          case BATCH:
+            throw new StageException(Errors.SCRIPTING_06, ex.toString(), ex);
+          default:
+            throw new IllegalStateException(
+                Utils.format("Unknown OnError value '{}'", getContext().getOnErrorRecord(), ex)
+            );
+        }
+      }
+    }
 
-    bindings.put("error", err);
-    bindings.put(STATE_BINDING_NAME, state);
-    bindings.put(LOG_BINDING_NAME, log);
-    ScriptTypedNullObject.fillNullTypes(bindings);
-    bindings.put("sdcFunctions", sdcFunc);
+    private SimpleBindings createBindings(List<ScriptRecord> records, Out out) {
+      SimpleBindings bindings = createBindings();
+      bindings.put("records", records.toArray(new Object[records.size()]));
+      bindings.put("output", out);
+      return bindings;
+    }
 
-    return bindings;
-  }
+    private SimpleBindings createBindings() {
+      SimpleBindings bindings = new SimpleBindings();
 
-  private void runScript(SimpleBindings bindings) throws ScriptException {
-    compiledScript.eval(bindings);
-  }
+      bindings.put("error", err);
+      bindings.put(STATE_BINDING_NAME, state);
+      bindings.put(LOG_BINDING_NAME, log);
+      ScriptTypedNullObject.fillNullTypes(bindings);
+      bindings.put("sdcFunctions", sdcFunc);
 
-  public List<ScriptRecord> getScriptRecords() {
-    return records;
+      return bindings;
+    }
   }
 }
@@ -30,6 +30,7 @@ public enum Errors implements ErrorCode {
   SCRIPTING_07("Sending normal record to event stream: {}"),
   SCRIPTING_08("Script error while running init script: {}"),
   SCRIPTING_09("Script error while running destroy script: {}"),
+  SCRIPTING_10("Number of script engines must be at least 1: {}"),
   ;
   private final String msg;
 
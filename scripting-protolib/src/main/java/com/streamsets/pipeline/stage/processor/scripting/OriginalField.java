@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.scripting;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field of a {@link ScriptFieldMap} or {@link ScriptFieldList} that the script didn't replace. The field is converted
+ * to a script object the first time the script reads it.
+ */
+final class OriginalField {
+  private final ScriptObjectFactory factory;
+  private final Field field;
+  private Object value;
+  private boolean converted;
+
+  OriginalField(ScriptObjectFactory factory, Field field) {
+    this.factory = factory;
+    this.field = field;
+  }
+
+  Object getValue() {
+    if (!converted) {
+      value = factory.fieldToScript(field);
+      converted = true;
+    }
+    return value;
+  }
+
+  boolean isModified() {
+    if (!converted) {
+      return false;
+    }
+    if (value instanceof ScriptObjectFactory.FieldView) {
+      return ((ScriptObjectFactory.FieldView) value).isModified();
+    }
+    // containers that are not views (e.g. Jython lists) can't tell whether the script changed them
+    return value instanceof Map || value instanceof List;
+  }
+
+  boolean isEmitted() {
+    return converted && value instanceof ScriptObjectFactory.FieldView &&
+        ((ScriptObjectFactory.FieldView) value).isEmitted();
+  }
+
+  void setEmitted() {
+    if (converted && value instanceof ScriptObjectFactory.FieldView) {
+      ((ScriptObjectFactory.FieldView) value).setEmitted();
+    }
+  }
+
+  Field toField(Record record, String path) {
+    if (!converted) {
+      return field;
+    }
+    if (value instanceof ScriptObjectFactory.FieldView) {
+      return ((ScriptObjectFactory.FieldView) value).toField(record, path);
+    }
+    if (value instanceof Map || value instanceof List) {
+      return factory.scriptToField(value, record, path);
+    }
+    return field;
+  }
+
+  static Object toScript(Object value) {
+    return (value instanceof OriginalField) ? ((OriginalField) value).getValue() : value;
+  }
+
+}
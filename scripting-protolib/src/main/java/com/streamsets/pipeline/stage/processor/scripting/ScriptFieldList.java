@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.scripting;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List given to scripts for a LIST field.
+ *
+ * Elements are converted to script objects only when the script reads them. When the record is rebuilt, elements that
+ * the script didn't replace keep their original fields, and a list in which nothing changed returns its original
+ * field.
+ */
+public class ScriptFieldList extends AbstractList<Object> implements RandomAccess, ScriptObjectFactory.FieldView {
+
+  private final ScriptObjectFactory factory;
+  private final Field field;
+  private final List<Field> fields;
+  // elements are OriginalField or objects that the script put in the list
+  private List<Object> elements;
+  private boolean modified;
+  // set once toField returned the field, later calls return copies so that no two positions share a field
+  private boolean emitted;
+
+  ScriptFieldList(ScriptObjectFactory factory, Field field) {
+    this.factory = factory;
+    this.field = field;
+    this.fields = field.getValueAsList();
+  }
+
+  private List<Object> elements() {
+    if (elements == null) {
+      elements = new ArrayList<>(fields.size());
+      for (Field element : fields) {
+        elements.add(new OriginalField(factory, element));
+      }
+    }
+    return elements;
+  }
+
+  @Override
+  public int size() {
+    return (elements != null) ? elements.size() : fields.size();
+  }
+
+  @Override
+  public Object get(int index) {
+    return OriginalField.toScript(elements().get(index));
+  }
+
+  @Override
+  public Object set(int index, Object element) {
+    modified = true;
+    return OriginalField.toScript(elements().set(index, element));
+  }
+
+  @Override
+  public void add(int index, Object element) {
+    elements().add(index, element);
+    modified = true;
+    modCount++;
+  }
+
+  @Override
+  public Object remove(int index) {
+    Object removed = elements().remove(index);
+    modified = true;
+    modCount++;
+    return OriginalField.toScript(removed);
+  }
+
+  @Override
+  public boolean isModified() {
+    if (modified) {
+      return true;
+    }
+    if (elements != null) {
+      for (Object element : elements) {
+        if (((OriginalField) element).isModified()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isEmitted() {
+    return emitted || isChildEmitted();
+  }
+
+  private boolean isChildEmitted() {
+    if (elements != null) {
+      for (Object element : elements) {
+        if (element instanceof OriginalField && ((OriginalField) element).isEmitted()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void setEmitted() {
+    emitted = true;
+    setChildrenEmitted();
+  }
+
+  private void setChildrenEmitted() {
+    if (elements != null) {
+      for (Object element : elements) {
+        if (element instanceof OriginalField) {
+          ((OriginalField) element).setEmitted();
+        }
+      }
+    }
+  }
+
+  @Override
+  public Field toField(Record record, String path) {
+    Field result = buildField(record, path);
+    if (emitted) {
+      // the script placed the list at more than one position, every position gets its own fields
+      return result.clone();
+    }
+    emitted = true;
+    return result;
+  }
+
+  private Field buildField(Record record, String path) {
+    if (!isModified()) {
+      if (!isChildEmitted()) {
+        // the original field holds the fields of the nested views too, they must return copies from now on
+        setChildrenEmitted();
+        return field;
+      }
+      // a nested view already returned its field, rebuild the list so that it gets a copy
+    }
+    List<Field> fieldList = new ArrayList<>(elements.size());
+    for (int i = 0; i < elements.size(); i++) {
+      Object element = elements.get(i);
+      String elementPath = factory.composeArrayPath(path, i);
+      fieldList.add(
+          (element instanceof OriginalField) ?
+              ((OriginalField) element).toField(record, elementPath) :
+              factory.scriptToField(element, record, elementPath)
+      );
+    }
+    return Field.create(fieldList);
+  }
+
+}
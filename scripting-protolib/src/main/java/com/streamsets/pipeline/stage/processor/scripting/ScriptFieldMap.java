@@ -0,0 +1,295 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.pipeline.stage.processor.scripting;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map given to scripts for a MAP or LIST_MAP field.
+ *
+ * The map reads through to the field: values are converted to script objects only when the script reads them and the
+ * entries are copied only when the script iterates or modifies the map. When the record is rebuilt, entries that the
+ * script didn't replace keep their original fields, and a map in which nothing changed returns its original field.
+ */
+public class ScriptFieldMap extends AbstractMap<Object, Object>
+    implements ScriptObjectFactory.MapInfo, ScriptObjectFactory.FieldView {
+
+  private final ScriptObjectFactory factory;
+  private final Field field;
+  private final Map<String, Field> fields;
+  // entries the script read before the map was copied
+  private Map<Object, OriginalField> read;
+  // copy of the entries, values are OriginalField or objects that the script put in the map
+  private Map<Object, Object> entries;
+  private boolean modified;
+  // set once toField returned the field, later calls return copies so that no two positions share a field
+  private boolean emitted;
+
+  ScriptFieldMap(ScriptObjectFactory factory, Field field) {
+    this.factory = factory;
+    this.field = field;
+    this.fields = field.getValueAsMap();
+  }
+
+  private Map<Object, Object> entries() {
+    if (entries == null) {
+      entries = new LinkedHashMap<>();
+      for (Map.Entry<String, Field> entry : fields.entrySet()) {
+        OriginalField value = (read != null) ? read.get(entry.getKey()) : null;
+        entries.put(entry.getKey(), (value != null) ? value : new OriginalField(factory, entry.getValue()));
+      }
+      read = null;
+    }
+    return entries;
+  }
+
+  @Override
+  public boolean isListMap() {
+    return field.getType() == Field.Type.LIST_MAP;
+  }
+
+  @Override
+  public int size() {
+    return (entries != null) ? entries.size() : fields.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return (entries != null) ? entries.containsKey(key) : fields.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (entries != null) {
+      return OriginalField.toScript(entries.get(key));
+    }
+    OriginalField value = (read != null) ? read.get(key) : null;
+    if (value == null) {
+      Field child = fields.get(key);
+      if (child == null && !fields.containsKey(key)) {
+        return null;
+      }
+      if (read == null) {
+        read = new HashMap<>();
+      }
+      value = new OriginalField(factory, child);
+      read.put(key, value);
+    }
+    return value.getValue();
+  }
+
+  @Override
+  public Object put(Object key, Object value) {
+    modified = true;
+    return OriginalField.toScript(entries().put(key, value));
+  }
+
+  @Override
+  public Object remove(Object key) {
+    Map<Object, Object> entries = entries();
+    if (!entries.containsKey(key)) {
+      return null;
+    }
+    modified = true;
+    return OriginalField.toScript(entries.remove(key));
+  }
+
+  @Override
+  public void clear() {
+    entries().clear();
+    modified = true;
+  }
+
+  @Override
+  public Set<Map.Entry<Object, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<Object, Object>>() {
+      @Override
+      public Iterator<Map.Entry<Object, Object>> iterator() {
+        final Iterator<Map.Entry<Object, Object>> iterator = entries().entrySet().iterator();
+        return new Iterator<Map.Entry<Object, Object>>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Map.Entry<Object, Object> next() {
+            return new ScriptEntry(iterator.next());
+          }
+
+          @Override
+          public void remove() {
+            iterator.remove();
+            modified = true;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ScriptFieldMap.this.size();
+      }
+    };
+  }
+
+  private class ScriptEntry implements Map.Entry<Object, Object> {
+    private final Map.Entry<Object, Object> entry;
+
+    ScriptEntry(Map.Entry<Object, Object> entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public Object getKey() {
+      return entry.getKey();
+    }
+
+    @Override
+    public Object getValue() {
+      return OriginalField.toScript(entry.getValue());
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      modified = true;
+      return OriginalField.toScript(entry.setValue(value));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry other = (Map.Entry) obj;
+      return Objects.equals(getKey(), other.getKey()) && Objects.equals(getValue(), other.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  // values the script may have converted to script objects
+  private Collection<?> children() {
+    return (entries != null) ? entries.values() : (read != null) ? read.values() : Collections.emptyList();
+  }
+
+  @Override
+  public boolean isModified() {
+    if (modified) {
+      return true;
+    }
+    for (Object value : children()) {
+      if (value instanceof OriginalField && ((OriginalField) value).isModified()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isEmitted() {
+    return emitted || isChildEmitted();
+  }
+
+  private boolean isChildEmitted() {
+    for (Object value : children()) {
+      if (value instanceof OriginalField && ((OriginalField) value).isEmitted()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void setEmitted() {
+    emitted = true;
+    setChildrenEmitted();
+  }
+
+  private void setChildrenEmitted() {
+    for (Object value : children()) {
+      if (value instanceof OriginalField) {
+        ((OriginalField) value).setEmitted();
+      }
+    }
+  }
+
+  @Override
+  public Field toField(Record record, String path) {
+    Field result = buildField(record, path);
+    if (emitted) {
+      // the script placed the map at more than one position, every position gets its own fields
+      return result.clone();
+    }
+    emitted = true;
+    return result;
+  }
+
+  private Field buildField(Record record, String path) {
+    if (!isModified()) {
+      if (!isChildEmitted()) {
+        // the original field holds the fields of the nested views too, they must return copies from now on
+        setChildrenEmitted();
+        return field;
+      }
+      // a nested view already returned its field, rebuild the map so that it gets a copy
+    }
+    LinkedHashMap<String, Field> fieldMap = new LinkedHashMap<>();
+    if (entries == null) {
+      // only values of entries the script read may differ from the original fields
+      for (Map.Entry<String, Field> entry : fields.entrySet()) {
+        OriginalField value = read.get(entry.getKey());
+        fieldMap.put(
+            entry.getKey(),
+            (value != null) ? value.toField(record, factory.composeMapPath(path, entry.getKey())) : entry.getValue()
+        );
+      }
+    } else {
+      for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+        String key = entry.getKey().toString();
+        String childPath = factory.composeMapPath(path, key);
+        Object value = entry.getValue();
+        fieldMap.put(
+            key,
+            (value instanceof OriginalField) ?
+                ((OriginalField) value).toField(record, childPath) :
+                factory.scriptToField(value, record, childPath)
+        );
+      }
+    }
+    return isListMap() ? Field.createListMap(fieldMap) : Field.create(fieldMap);
+  }
+
+}
@@ -66,6 +66,36 @@ public class ScriptObjectFactory {
 
   }
 
+  /**
+   * Script object that reads through to a field of the record, see {@link ScriptFieldMap} and {@link ScriptFieldList}.
+   */
+  public interface FieldView {
+
+    /**
+     * Returns whether the script changed the field or any of the fields nested in it.
+     */
+    public boolean isModified();
+
+    /**
+     * Returns the field with the changes done by the script, the original field if there were none. A view that the
+     * script placed at more than one position (e.g. copied to another field or record) returns a copy after the first
+     * call, as does a view whose field was already returned as part of an enclosing view.
+     */
+    public Field toField(Record record, String path);
+
+    /**
+     * Returns whether toField was called on the view or on any of the views nested in it that the script read.
+     */
+    public boolean isEmitted();
+
+    /**
+     * Marks the view and the views nested in it that the script read as emitted, their later toField calls return
+     * copies. Called when an enclosing view returns its original field, which contains their fields.
+     */
+    public void setEmitted();
+
+  }
+
   public interface ScriptFileRef {
     public InputStream getInputStream() throws IOException;
   }
@@ -112,7 +142,22 @@ public class ScriptObjectFactory {
     return elements;
   }
 
-  @SuppressWarnings("unchecked")
+  /**
+   * Returns script object for given view of a MAP or LIST_MAP field. Engines whose scripts can't use java.util.Map
+   * directly can wrap the view.
+   */
+  protected Object createMapView(ScriptFieldMap map) {
+    return map;
+  }
+
+  /**
+   * Returns script object for given view of a LIST field. Engines whose scripts can't use java.util.List directly can
+   * wrap the view.
+   */
+  protected Object createListView(ScriptFieldList list) {
+    return list;
+  }
+
   protected Object fieldToScript(Field field) {
     Object scriptObject = null;
     if (field != null) {
@@ -121,20 +166,11 @@ public class ScriptObjectFactory {
         switch (field.getType()) {
           case MAP:
           case LIST_MAP:
-            Map<String, Field> fieldMap = (Map<String, Field>) scriptObject;
-            Object scriptMap = createMap(field.getType() == Field.Type.LIST_MAP);
-            for (Map.Entry<String, Field> entry : fieldMap.entrySet()) {
-              putInMap(scriptMap, entry.getKey(), fieldToScript(entry.getValue()));
-            }
-            scriptObject = scriptMap;
+            // converted lazily, only the fields the script touches
+            scriptObject = createMapView(new ScriptFieldMap(this, field));
             break;
           case LIST:
-            List<Field> fieldArray = (List<Field>) scriptObject;
-            List scripArrayElements = new ArrayList();
-            for (Field aFieldArray : fieldArray) {
-              scripArrayElements.add(fieldToScript(aFieldArray));
-            }
-            scriptObject = createArray(scripArrayElements);
+            scriptObject = createListView(new ScriptFieldList(this, field));
             break;
           case FILE_REF:
             scriptObject = new ScriptFileRefImpl(field.getValueAsFileRef(), context);
@@ -180,7 +216,9 @@ public class ScriptObjectFactory {
   @SuppressWarnings("unchecked")
   protected Field scriptToField(Object scriptObject, Record record, String path) {
     Field field;
-    if (scriptObject != null) {
+    if (scriptObject instanceof FieldView) {
+      field = ((FieldView) scriptObject).toField(record, path);
+    } else if (scriptObject != null) {
       if (scriptObject instanceof Map) {
         Map<String, Object> scriptMap = (Map<String, Object>) scriptObject;
         LinkedHashMap<String, Field> fieldMap = new LinkedHashMap<>();
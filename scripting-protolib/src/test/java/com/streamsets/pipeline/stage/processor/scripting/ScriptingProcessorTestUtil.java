@@ -42,9 +42,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.LinkedList;
 import java.util.UUID;
 
@@ -593,6 +595,175 @@ public class ScriptingProcessorTestUtil {
     Assert.assertNull(outRec.get().getValueAsMap().get("row2").getValue());
   }
 
+  /**
+   * Script must set "/a" to "B" and leave the other fields alone.
+   */
+  public static <C extends Processor> void verifyUntouchedFields(Class<C> clazz, Processor processor)
+      throws StageException {
+    ProcessorRunner runner = new ProcessorRunner.Builder(clazz, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+
+    Record record = RecordCreator.create();
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create("A"));
+    Field date = Field.createDate(new Date());
+    date.setAttribute("attr", "value");
+    map.put("date", date);
+    Map<String, Field> nested = new LinkedHashMap<>();
+    nested.put("time", Field.createTime(new Date()));
+    nested.put("char", Field.create('c'));
+    map.put("nested", Field.create(nested));
+    map.put("list", Field.create(new ArrayList<>(Arrays.asList(Field.create((short) 1), Field.createDate(new Date()))))));
+    record.set(Field.create(map));
+
+    StageRunner.Output output;
+    try {
+      output = runner.runProcess(Collections.singletonList(record));
+    } finally {
+      runner.runDestroy();
+    }
+
+    assertEquals(1, output.getRecords().get("lane").size());
+    Record outRec = output.getRecords().get("lane").get(0);
+    assertEquals("B", outRec.get("/a").getValueAsString());
+    // fields the script didn't change keep their types and attributes
+    assertEquals(Field.Type.DATE, outRec.get("/date").getType());
+    assertEquals("value", outRec.get("/date").getAttribute("attr"));
+    assertEquals(map.get("nested"), outRec.get("/nested"));
+    assertEquals(map.get("list"), outRec.get("/list"));
+  }
+
+  /**
+   * Script must copy "/a" to "/b", then write the record and a new record whose value is "/a".
+   */
+  public static <C extends Processor> void verifyCopiedFields(Class<C> clazz, Processor processor)
+      throws StageException {
+    ProcessorRunner runner = new ProcessorRunner.Builder(clazz, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+
+    Record record = RecordCreator.create();
+    Map<String, Field> nested = new LinkedHashMap<>();
+    nested.put("x", Field.create("X"));
+    nested.put("list", Field.create(new ArrayList<>(Arrays.asList(Field.create(1), Field.create(2)))));
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create(nested));
+    record.set(Field.create(map));
+
+    StageRunner.Output output;
+    try {
+      output = runner.runProcess(Collections.singletonList(record));
+    } finally {
+      runner.runDestroy();
+    }
+
+    List<Record> records = output.getRecords().get("lane");
+    assertEquals(2, records.size());
+    Record outRec = records.get(0);
+    Record newRec = records.get(1);
+    assertEquals(outRec.get("/a"), outRec.get("/b"));
+    assertEquals(outRec.get("/a"), newRec.get());
+
+    // every position holds its own fields, changing one must not change the others
+    outRec.get("/a/x").setAttribute("attr", "value");
+    outRec.get("/a/list").getValueAsList().add(Field.create(3));
+    assertEquals(null, outRec.get("/b/x").getAttribute("attr"));
+    assertEquals(null, newRec.get("/x").getAttribute("attr"));
+    assertEquals(2, outRec.get("/b/list").getValueAsList().size());
+    assertEquals(2, newRec.get("/list").getValueAsList().size());
+  }
+
+  /**
+   * Script must leave the record unchanged and write it together with a new record whose value is "/a", in any order.
+   */
+  public static <C extends Processor> void verifyCopiedFieldsOfUnmodifiedRecord(Class<C> clazz, Processor processor)
+      throws StageException {
+    ProcessorRunner runner = new ProcessorRunner.Builder(clazz, processor)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+
+    Record record = RecordCreator.create();
+    Map<String, Field> nested = new LinkedHashMap<>();
+    nested.put("x", Field.create("X"));
+    nested.put("list", Field.create(new ArrayList<>(Arrays.asList(Field.create(1), Field.create(2)))));
+    Map<String, Field> map = new LinkedHashMap<>();
+    map.put("a", Field.create(nested));
+    record.set(Field.create(map));
+
+    StageRunner.Output output;
+    try {
+      output = runner.runProcess(Collections.singletonList(record));
+    } finally {
+      runner.runDestroy();
+    }
+
+    List<Record> records = output.getRecords().get("lane");
+    assertEquals(2, records.size());
+    Record outRec = records.get(0).getHeader().getSourceId().equals("copy") ? records.get(1) : records.get(0);
+    Record newRec = (outRec == records.get(0)) ? records.get(1) : records.get(0);
+    assertEquals(outRec.get("/a"), newRec.get());
+
+    // the records hold their own fields, changing one must not change the other
+    newRec.get("/x").setAttribute("attr", "value");
+    newRec.get("/list").getValueAsList().add(Field.create(3));
+    assertEquals(null, outRec.get("/a/x").getAttribute("attr"));
+    assertEquals(2, outRec.get("/a/list").getValueAsList().size());
+    outRec.get("/a/x").setAttribute("attr2", "value");
+    assertEquals(null, newRec.get("/x").getAttribute("attr2"));
+  }
+
+  /**
+   * The script is expected to send records whose /i is a multiple of 3 to error and to add an /engine field with a
+   * value unique to the engine that processed the record.
+   */
+  public static <C extends Processor> void verifyMultipleEngines(Class<C> clazz, Processor processor, int engines)
+      throws StageException {
+    ProcessorRunner runner = new ProcessorRunner.Builder(clazz, processor)
+        .setOnRecordError(OnRecordError.TO_ERROR)
+        .addOutputLane("lane")
+        .build();
+    runner.runInit();
+
+    List<Record> input = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Record record = RecordCreator.create();
+      Map<String, Field> map = new LinkedHashMap<>();
+      map.put("i", Field.create(i));
+      record.set(Field.create(map));
+      input.add(record);
+    }
+
+    StageRunner.Output output;
+    try {
+      output = runner.runProcess(input);
+    } finally {
+      runner.runDestroy();
+    }
+
+    // output and error records keep the order of the input batch
+    List<Record> outRecords = output.getRecords().get("lane");
+    assertEquals(66, outRecords.size());
+    assertEquals(34, runner.getErrorRecords().size());
+    Set<String> engineIds = new HashSet<>();
+    int i = 0;
+    for (Record outRec : outRecords) {
+      if (i % 3 == 0) {
+        i++;
+      }
+      assertEquals(i++, outRec.get("/i").getValueAsInteger());
+      engineIds.add(outRec.get("/engine").getValueAsString());
+    }
+    for (i = 0; i < runner.getErrorRecords().size(); i++) {
+      assertEquals(i * 3, runner.getErrorRecords().get(i).get("/i").getValueAsInteger());
+    }
+    // every engine got a part of the batch and its own state
+    assertEquals(engines, engineIds.size());
+  }
+
   public static <C extends Processor> void verifyTypedFieldWithNullValue(
       Class<C> clazz,
       Processor processor,
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+import com.streamsets.pipeline.api.impl.Utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled (single quote escaped) field path.
+ *
+ * The path is parsed once into its {@link PathElement}s and can then be resolved against any number of records
+ * without re-parsing it and without allocating intermediate collections. Handles obtained through {@link #of(String)}
+ * are interned in a process wide cache, so stages that resolve the same handful of field paths for every record
+ * share a single parsed instance.
+ */
+public final class FieldPath {
+
+  // Upper bound on the number of interned paths, protects against pipelines that generate unbounded distinct paths
+  static final int MAX_INTERNED_PATHS = 10000;
+  private static final int INTERNED_LOW_WATER_MARK = MAX_INTERNED_PATHS * 3 / 4;
+
+  private static final ConcurrentMap<String, FieldPath> INTERNED = new ConcurrentHashMap<>();
+
+  private final String path;
+  private final PathElement[] elements;
+  // set when an interned handle is looked up, cleared by the eviction sweep
+  private volatile boolean used;
+
+  private FieldPath(String path, List<PathElement> elements) {
+    this.path = path;
+    this.elements = elements.toArray(new PathElement[elements.size()]);
+  }
+
+  /**
+   * Returns the interned compiled handle for the given single quote escaped field path, parsing it if this is the
+   * first time the path is seen.
+   *
+   * @param fieldPath single quote escaped field path
+   * @return compiled field path
+   * @throws IllegalArgumentException if the field path is not valid
+   */
+  public static FieldPath of(String fieldPath) {
+    if (fieldPath == null) {
+      throw new NullPointerException("fieldPath cannot be null");
+    }
+    FieldPath compiled = INTERNED.get(fieldPath);
+    if (compiled == null) {
+      compiled = compile(fieldPath);
+      if (INTERNED.size() >= MAX_INTERNED_PATHS) {
+        evictUnused();
+      }
+      FieldPath existing = INTERNED.putIfAbsent(fieldPath, compiled);
+      if (existing != null) {
+        compiled = existing;
+      }
+    } else if (!compiled.used) {
+      compiled.used = true;
+    }
+    return compiled;
+  }
+
+  // Second chance (clock) eviction, approximates LRU without making lookups pay for ordering: paths used since the
+  // previous sweep survive it, the rest is dropped until the cache is back under its low water mark.
+  private static synchronized void evictUnused() {
+    while (INTERNED.size() > INTERNED_LOW_WATER_MARK) {
+      Iterator<FieldPath> iterator = INTERNED.values().iterator();
+      while (iterator.hasNext() && INTERNED.size() > INTERNED_LOW_WATER_MARK) {
+        FieldPath interned = iterator.next();
+        if (interned.used) {
+          interned.used = false;
+        } else {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses the given single quote escaped field path without interning it.
+   *
+   * @param fieldPath single quote escaped field path
+   * @return compiled field path
+   * @throws IllegalArgumentException if the field path is not valid
+   */
+  public static FieldPath compile(String fieldPath) {
+    return new FieldPath(fieldPath, PathElement.parse(fieldPath, true));
+  }
+
+  static int internedCount() {
+    return INTERNED.size();
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public List<PathElement> getElements() {
+    return Collections.unmodifiableList(Arrays.asList(elements));
+  }
+
+  /**
+   * Returns the field this path points to within the given record, or <code>null</code> if it is not reachable.
+   * Records implementing {@link FieldPathResolver} resolve the compiled path, other records parse the path string.
+   */
+  public Field get(Record record) {
+    return (record instanceof FieldPathResolver) ? ((FieldPathResolver) record).get(this) : record.get(path);
+  }
+
+  /**
+   * Returns the field this path points to within the given root field, or <code>null</code> if it is not reachable.
+   */
+  public Field get(Field root) {
+    return fieldAt(root, elements.length - 1);
+  }
+
+  /**
+   * Returns <code>true</code> if this path points to an existing field within the given record.
+   */
+  public boolean has(Record record) {
+    return (record instanceof FieldPathResolver) ? ((FieldPathResolver) record).has(this) : record.has(path);
+  }
+
+  /**
+   * Returns <code>true</code> if this path points to an existing field within the given root field.
+   */
+  public boolean has(Field root) {
+    return depth(root) == elements.length;
+  }
+
+  /**
+   * Removes the field this path points to from the given record.
+   *
+   * @return the removed field, or <code>null</code> if the path was not reachable
+   */
+  public Field delete(Record record) {
+    return (record instanceof FieldPathResolver) ? ((FieldPathResolver) record).delete(this) : record.delete(path);
+  }
+
+  /**
+   * Removes the field this path points to, resolving the path against the given root field which must be the current
+   * root field of the record. Used by record implementations that must not expose their root field to do so.
+   *
+   * @return the removed field, or <code>null</code> if the path was not reachable
+   */
+  public Field delete(Record record, Field root) {
+    Field deleted = null;
+    if (depth(root) == elements.length) {
+      int fieldPos = elements.length - 1;
+      if (fieldPos == 0) {
+        // the field to delete must be a primitive. delete it directly.
+        deleted = root;
+        record.set((Field) null);
+      } else {
+        // the field to delete is a map or list element, so to delete, you must remove it from the parent collection.
+        PathElement element = elements[fieldPos];
+        Field parent = fieldAt(root, fieldPos - 1);
+        switch (element.getType()) {
+          case MAP:
+            deleted = parent.getValueAsMap().remove(element.getName());
+            break;
+          case LIST:
+            deleted = parent.getValueAsList().remove(element.getIndex());
+            break;
+          case FIELD_EXPRESSION:
+          default:
+            throw new IllegalStateException("Unexpected field type " + element.getType());
+        }
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Sets the field this path points to in the given record. The parent of the field must exist; if the field itself
+   * does not exist it is added to its parent map or appended to its parent list.
+   *
+   * @return the replaced field, or <code>null</code> if the field did not exist
+   * @throws IllegalArgumentException if the parent of the field does not exist
+   */
+  public Field set(Record record, Field newField) {
+    if (record instanceof FieldPathResolver) {
+      return ((FieldPathResolver) record).set(this, newField);
+    }
+    return record.set(path, newField);
+  }
+
+  /**
+   * Sets the field this path points to, resolving the path against the given root field which must be the current
+   * root field of the record. Used by record implementations that must not expose their root field to do so.
+   *
+   * @return the replaced field, or <code>null</code> if the field did not exist
+   * @throws IllegalArgumentException if the parent of the field does not exist
+   */
+  public Field set(Record record, Field root, Field newField) {
+    int fieldPos = depth(root);
+    if (elements.length == fieldPos) {
+      //The number of elements in the path is same as the number of fields => set use case
+      fieldPos--;
+    } else if (elements.length - 1 != fieldPos) {
+      throw new IllegalArgumentException(Utils.format("Field-path '{}' not reachable", path));
+    }
+    //Otherwise the number of elements in the path is one more than the number of fields => add use case
+    return doSet(record, root, fieldPos, newField);
+  }
+
+  private Field doSet(Record record, Field root, int fieldPos, Field newField) {
+    Field fieldToReplace = null;
+    if (fieldPos == 0) {
+      //root element
+      fieldToReplace = record.set(newField);
+    } else {
+      //get the type of the element based on the output of the parser.
+      //Note that this is not the real type of the field, this is how the parser interpreted the fieldPath argument
+      //to the set API above. For example if fieldPath is /a/b parser interprets a as type map, if fieldPath is a[0]/b
+      //parser interprets a as of type list
+      PathElement element = elements[fieldPos];
+      Field parentField = fieldAt(root, fieldPos - 1);
+      switch (element.getType()) {
+        case MAP:
+          fieldToReplace = parentField.getValueAsMap().put(element.getName(), newField);
+          break;
+        case LIST:
+          int elementIndex = element.getIndex();
+          if (elementIndex == parentField.getValueAsList().size()) {
+            //add at end
+            parentField.getValueAsList().add(newField);
+          } else {
+            //replace existing value
+            fieldToReplace = parentField.getValueAsList().set(elementIndex, newField);
+          }
+          break;
+        case FIELD_EXPRESSION:
+        case ROOT:
+          break;
+      }
+    }
+    return fieldToReplace;
+  }
+
+  /**
+   * Returns the number of leading path elements that resolve to a field within the given root field.
+   */
+  private int depth(Field root) {
+    int resolved = 0;
+    Field current = root;
+    while (current != null && resolved < elements.length) {
+      Field next = null;
+      boolean found = false;
+      PathElement element = elements[resolved];
+      switch (element.getType()) {
+        case ROOT:
+          next = current;
+          found = true;
+          break;
+        case MAP:
+          if (current.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+            Map<String, Field> map = current.getValueAsMap();
+            if (map != null) {
+              next = map.get(element.getName());
+              found = next != null;
+            }
+          }
+          break;
+        case LIST:
+          if (current.getType().isOneOf(Field.Type.LIST, Field.Type.LIST_MAP)) {
+            List<Field> list = current.getValueAsList();
+            if (list != null && list.size() > element.getIndex()) {
+              next = list.get(element.getIndex());
+              found = true;
+            }
+          }
+          break;
+        case FIELD_EXPRESSION:
+        default:
+          break;
+      }
+      if (!found) {
+        break;
+      }
+      resolved++;
+      current = next;
+    }
+    return resolved;
+  }
+
+  /**
+   * Returns the field resolved by the path elements up to and including the given position.
+   */
+  private Field fieldAt(Field root, int position) {
+    Field current = root;
+    for (int i = 0; current != null && i <= position; i++) {
+      PathElement element = elements[i];
+      Field next = null;
+      switch (element.getType()) {
+        case ROOT:
+          next = current;
+          break;
+        case MAP:
+          if (current.getType().isOneOf(Field.Type.MAP, Field.Type.LIST_MAP)) {
+            Map<String, Field> map = current.getValueAsMap();
+            if (map != null) {
+              next = map.get(element.getName());
+            }
+          }
+          break;
+        case LIST:
+          if (current.getType().isOneOf(Field.Type.LIST, Field.Type.LIST_MAP)) {
+            List<Field> list = current.getValueAsList();
+            if (list != null && list.size() > element.getIndex()) {
+              next = list.get(element.getIndex());
+            }
+          }
+          break;
+        case FIELD_EXPRESSION:
+        default:
+          break;
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || (o instanceof FieldPath && path.equals(((FieldPath) o).path));
+  }
+
+  @Override
+  public int hashCode() {
+    return path.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return Utils.format("FieldPath[path='{}']", path);
+  }
+}
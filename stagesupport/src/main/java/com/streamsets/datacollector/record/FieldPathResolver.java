@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+
+/**
+ * Implemented by records that resolve compiled {@link FieldPath} handles against their root field directly. The
+ * {@link FieldPath} methods taking a {@link com.streamsets.pipeline.api.Record} use it when available, other records
+ * are given the path string which they parse again.
+ */
+public interface FieldPathResolver {
+
+  /**
+   * Returns the field the given path points to, or <code>null</code> if it is not reachable.
+   */
+  Field get(FieldPath fieldPath);
+
+  /**
+   * Returns <code>true</code> if the given path points to an existing field.
+   */
+  boolean has(FieldPath fieldPath);
+
+  /**
+   * Removes the field the given path points to.
+   *
+   * @return the removed field, or <code>null</code> if the path was not reachable
+   */
+  Field delete(FieldPath fieldPath);
+
+  /**
+   * Sets the field the given path points to, see {@link FieldPath#set(com.streamsets.pipeline.api.Record, Field)}.
+   *
+   * @return the replaced field, or <code>null</code> if the field did not exist
+   * @throws IllegalArgumentException if the parent of the field does not exist
+   */
+  Field set(FieldPath fieldPath, Field newField);
+
+}
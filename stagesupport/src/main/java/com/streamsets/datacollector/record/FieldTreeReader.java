@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import com.streamsets.pipeline.api.Field;
+import com.streamsets.pipeline.api.Record;
+
+/**
+ * Implemented by records that can hand out their root field for reading without first making it private to the
+ * record, see {@link #peek(Record)}.
+ */
+public interface FieldTreeReader {
+
+  /**
+   * Returns the root field of the record as is. The returned fields may be shared with other records and must not be
+   * modified.
+   */
+  Field peek();
+
+  /**
+   * Returns the root field of the given record for reading only. Cheaper than {@link Record#get()} for records sharing
+   * their field tree with other records, the returned fields must not be modified.
+   */
+  static Field peek(Record record) {
+    return (record instanceof FieldTreeReader) ? ((FieldTreeReader) record).peek() : record.get();
+  }
+
+}
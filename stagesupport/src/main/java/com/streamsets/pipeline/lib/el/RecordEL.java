@@ -15,6 +15,8 @@
  */
 package com.streamsets.pipeline.lib.el;
 
+import com.streamsets.datacollector.record.FieldPath;
+import com.streamsets.datacollector.record.FieldTreeReader;
 import com.streamsets.pipeline.api.ElConstant;
 import com.streamsets.pipeline.api.ElFunction;
 import com.streamsets.pipeline.api.ElParam;
@@ -51,7 +53,7 @@ public class RecordEL {
     Field.Type type = null;
     Record record = getRecordInContext();
     if (record != null) {
-      Field field = record.get(fieldPath);
+      Field field = FieldPath.of(fieldPath).get(record);
       if (field != null) {
         type = field.getType();
       }
@@ -69,7 +71,7 @@ public class RecordEL {
     Object value = null;
     Record record = getRecordInContext();
     if (record != null) {
-      Field field = record.get(fieldPath);
+      Field field = FieldPath.of(fieldPath).get(record);
       if (field != null) {
         value = field.getValue();
       }
@@ -87,7 +89,7 @@ public class RecordEL {
     Object value = null;
     Record record = getRecordInContext();
     if (record != null) {
-      Field field = record.get(fieldPath);
+      Field field = FieldPath.of(fieldPath).get(record);
       if (field != null && field.getValue() != null) {
         value = field.getValue();
       } else {
@@ -122,7 +124,7 @@ public class RecordEL {
       @ElParam("fieldPath") String fieldPath) {
     Record record = getRecordInContext();
     if (record != null) {
-      return record.has(fieldPath);
+      return FieldPath.of(fieldPath).has(record);
     }
     return false;
   }
@@ -136,7 +138,7 @@ public class RecordEL {
       @ElParam("fieldPath") String fieldPath, @ElParam("attributeName") String attributeName) {
     Record record = getRecordInContext();
     if (record != null) {
-      Field field = record.get(fieldPath);
+      Field field = FieldPath.of(fieldPath).get(record);
       if (field != null) {
         return field.getAttribute(attributeName);
       }
@@ -366,7 +368,7 @@ public class RecordEL {
     String value = null;
     Record record = getRecordInContext();
     if (record != null) {
-      Field root = record.get();
+      Field root = FieldTreeReader.peek(record);
       if (root != null && root.getType() == Field.Type.LIST && root.getValue() != null) {
         List<Field> list = root.getValueAsList();
         for (Field element : list) {
@@ -412,7 +414,7 @@ public class RecordEL {
     if (index >= 0) {
       Record record = getRecordInContext();
       if (record != null) {
-        Field root = record.get();
+        Field root = FieldTreeReader.peek(record);
         if (root != null && root.getType() == Field.Type.LIST && root.getValue() != null) {
           List<Field> list = root.getValueAsList();
           if (index < list.size()) {
@@ -441,7 +443,7 @@ public class RecordEL {
     Map<String, Field> asMap = new LinkedHashMap<>();
     Record record = getRecordInContext();
     if (record != null) {
-      Field root = record.get();
+      Field root = FieldTreeReader.peek(record);
       if (root != null && root.getType() == Field.Type.LIST && root.getValue() != null) {
         List<Field> list = root.getValueAsList();
         for (int i = 0; i < list.size(); i++) {
@@ -496,7 +498,7 @@ public class RecordEL {
     boolean dup = false;
     Record record = getRecordInContext();
     if (record != null) {
-      Field root = record.get();
+      Field root = FieldTreeReader.peek(record);
       if (root != null && root.getType() == Field.Type.LIST && root.getValue() != null) {
         Set<String> headers = new HashSet<>();
         List<Field> list = root.getValueAsList();
@@ -525,7 +527,7 @@ public class RecordEL {
     int index = -1;
     Record record = getRecordInContext();
     if (record != null) {
-      Field root = record.get();
+      Field root = FieldTreeReader.peek(record);
       if (root != null && root.getType() == Field.Type.LIST && root.getValue() != null) {
         List<Field> list = root.getValueAsList();
         for (int i= startIndex; index == -1 && i < list.size(); i++) {
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 StreamSets Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.streamsets.datacollector.record;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFieldPath {
+
+  @Test
+  public void testInterning() {
+    Assert.assertSame(FieldPath.of("/a/b"), FieldPath.of("/a/b"));
+    Assert.assertNotSame(FieldPath.of("/a/b"), FieldPath.compile("/a/b"));
+    Assert.assertEquals("/a/b", FieldPath.of("/a/b").getPath());
+  }
+
+  @Test
+  public void testInternedPathsAreBounded() {
+    FieldPath hot = FieldPath.of("/hot");
+    for (int i = 0; i < 5 * FieldPath.MAX_INTERNED_PATHS; i++) {
+      FieldPath.of("/cold" + i);
+      // a path used all the time survives the evictions
+      Assert.assertSame(hot, FieldPath.of("/hot"));
+      Assert.assertTrue(FieldPath.internedCount() <= FieldPath.MAX_INTERNED_PATHS);
+    }
+  }
+
+}